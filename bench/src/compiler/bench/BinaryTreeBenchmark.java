@@ -0,0 +1,62 @@
+package compiler.bench;
+
+import compiler.parser.AST.BinaryTreeReader;
+import compiler.parser.AST.BinaryTreeWriter;
+import compiler.parser.AST.FlatTree;
+import compiler.parser.CMinusParser;
+import compiler.scanner.ScannerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures loading an AST from the binary format of BinaryTreeWriter against
+ * parsing the source it was written from.
+ *
+ * "parse" scans and parses the source with the mapped engine; "load" maps
+ * the binary file and reads it back. The "nodes" tree builds AbstractNode
+ * objects, "flat" a FlatTree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryTreeBenchmark {
+    @Param({ "64KB", "1MB", "16MB" })
+    public String input;
+
+    @Param({ "nodes", "flat" })
+    public String tree;
+
+    private String file;
+    private Path binary;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Inputs.resolve(input).toString();
+        FlatTree flatRoot = new CMinusParser(ScannerFactory.open("mapped", file)).parseFlat();
+        binary = Files.createTempFile("binary-", ".bast");
+        binary.toFile().deleteOnExit();
+        BinaryTreeWriter.write(flatRoot, flatRoot.root(), binary.toString());
+    }
+
+    @Benchmark
+    public Object parse() throws IOException {
+        CMinusParser parser = new CMinusParser(ScannerFactory.open("mapped", file));
+        if (tree.equals("flat")) {
+            return parser.parseFlat();
+        }
+        parser.parse();
+        return parser.getRoot();
+    }
+
+    @Benchmark
+    public Object load() throws IOException {
+        BinaryTreeReader reader = BinaryTreeReader.open(binary);
+        return tree.equals("flat") ? reader.readFlat() : reader.readNodes();
+    }
+}
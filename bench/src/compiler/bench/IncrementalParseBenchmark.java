@@ -0,0 +1,67 @@
+package compiler.bench;
+
+import compiler.parser.CMinusParser;
+import compiler.parser.IncrementalParser;
+import compiler.scanner.ScannerFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures one keystroke in the middle of a program: IncrementalParser.edit()
+ * against parsing the whole file again, as an editor would without it.
+ *
+ * The "space" edit types a space before a ';' and the "newline" edit a line
+ * break, which moves the line numbers of everything after it. Each operation
+ * either makes the edit or takes it back, so the text does not grow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalParseBenchmark {
+    @Param({ "64KB", "1MB", "16MB" })
+    public String input;
+
+    @Param({ "space", "newline" })
+    public String edit;
+
+    private String file;
+    private IncrementalParser parser;
+    private int offset;
+    private String inserted;
+    private boolean undo;
+
+    @Setup
+    public void setup() throws IOException {
+        Path path = Inputs.resolve(input);
+        file = path.toString();
+        String text = new String(Files.readAllBytes(path), StandardCharsets.ISO_8859_1);
+        parser = new IncrementalParser(text);
+        offset = text.indexOf(';', text.length() / 2);
+        inserted = edit.equals("space") ? " " : "\n";
+    }
+
+    @Benchmark
+    public Object incremental() throws IOException {
+        if (undo) {
+            parser.edit(offset, inserted.length(), "");
+        } else {
+            parser.edit(offset, 0, inserted);
+        }
+        undo = !undo;
+        return parser.getRoot();
+    }
+
+    @Benchmark
+    public Object full() throws IOException {
+        CMinusParser full = new CMinusParser(ScannerFactory.open("mapped", file));
+        full.parse();
+        return full.getRoot();
+    }
+}
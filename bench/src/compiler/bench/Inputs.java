@@ -0,0 +1,55 @@
+package compiler.bench;
+
+import compiler.generator.ProgramGenerator;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Resolves the benchmark input names to C- source files.
+ *
+ * "test1", "binaryOp" and so on name the bundled files in test/. A size such
+ * as "64KB" or "4MB" names a synthetic program of about that size, written
+ * once per JVM to a temporary file by ProgramGenerator.
+ */
+final class Inputs {
+    private Inputs() {
+    }
+
+    static Path resolve(String input) throws IOException {
+        String upper = input.toUpperCase();
+        if (upper.endsWith("KB")) {
+            return synthetic(Long.parseLong(upper.substring(0, upper.length() - 2)) * 1024);
+        }
+        if (upper.endsWith("MB")) {
+            return synthetic(Long.parseLong(upper.substring(0, upper.length() - 2)) * 1024 * 1024);
+        }
+        return bundled(input + ".cm");
+    }
+
+    // The bundled tests are found from the project root or from bench/
+    private static Path bundled(String name) throws FileNotFoundException {
+        for (String dir : new String[] { "test", "../test" }) {
+            Path path = Paths.get(dir, name);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        throw new FileNotFoundException("Cannot find test/" + name);
+    }
+
+    // Generates a program of about the given size with a fixed seed, so every
+    // run measures the same input
+    private static Path synthetic(long size) throws IOException {
+        Path path = Files.createTempFile("synthetic-" + size + "-", ".cm");
+        path.toFile().deleteOnExit();
+
+        ProgramGenerator generator = new ProgramGenerator(42);
+        generator.setSize(size);
+        try (Writer writer = new BufferedWriter(new FileWriter(path.toFile()))) {
+            generator.generate(writer);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,119 @@
+package compiler.bench;
+
+import compiler.interpreter.ClosureCompiler;
+import compiler.interpreter.CompiledProgram;
+import compiler.jvm.BytecodeCompiler;
+import compiler.jvm.JvmProgram;
+import compiler.parser.AST.ProgramNode;
+import compiler.parser.CMinusParser;
+import compiler.tm.TmCodeGenerator;
+import compiler.tm.TmMachine;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures running loop-heavy C- programs with the ClosureCompiler against
+ * NaiveEvaluator, which walks the AST and looks names up in HashMaps, and
+ * against BytecodeCompiler, whose classes C2 compiles to machine code once
+ * they are hot, and against TmMachine simulating the Tiny Machine code
+ * from TmCodeGenerator. Programs are parsed and compiled once in setup; each
+ * operation is one run of main.
+ *
+ * "loops" sums over two nested loops, "sieve" finds the primes below
+ * 100,000 in a global array, "gcd" makes many recursive calls, and "sort"
+ * bubble-sorts a local array passed to a function.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+    private static final String LOOPS = "void main(void) { int i; int j; int sum;"
+            + " i = 0; sum = 0;"
+            + " while (i < 1000) { j = 0; while (j < 1000) { sum = sum + i * j - j / 3; j = j + 1; } i = i + 1; }"
+            + " output(sum); }";
+
+    private static final String SIEVE = "int composite[100000];"
+            + " void main(void) { int i; int j; int count;"
+            + " i = 2; count = 0;"
+            + " while (i < 100000) {"
+            + "   if (composite[i] == 0) { count = count + 1; j = i + i;"
+            + "     while (j < 100000) { composite[j] = 1; j = j + i; } }"
+            + "   i = i + 1; }"
+            + " output(count); }";
+
+    private static final String GCD = "int gcd(int u, int v) {"
+            + " if (v == 0) return u; else return gcd(v, u - u / v * v); }"
+            + " void main(void) { int i; int sum; i = 1; sum = 0;"
+            + " while (i < 100000) { sum = sum + gcd(i * 7919, 104729 - i); i = i + 1; }"
+            + " output(sum); }";
+
+    private static final String SORT = "void sort(int a[], int n) { int i; int j; int t;"
+            + " i = 0; while (i < n) { j = 0; while (j < n - i - 1) {"
+            + "   if (a[j] > a[j + 1]) { t = a[j]; a[j] = a[j + 1]; a[j + 1] = t; }"
+            + "   j = j + 1; } i = i + 1; } }"
+            + " void main(void) { int a[1000]; int i; int seed; i = 0; seed = 42;"
+            + " while (i < 1000) { seed = seed * 1103515245 + 12345; a[i] = seed / 65536; i = i + 1; }"
+            + " sort(a, 1000); output(a[0]); output(a[999]); }";
+
+    @Param({ "loops", "sieve", "gcd", "sort" })
+    public String program;
+
+    @Param({ "bytecode", "closures", "naive", "tm" })
+    public String engine;
+
+    private JvmProgram bytecode;
+    private CompiledProgram compiled;
+    private NaiveEvaluator naive;
+    private TmMachine machine;
+    private long checksum;
+
+    @Setup
+    public void setup() throws IOException {
+        String source;
+        switch (program) {
+            case "loops":
+                source = LOOPS;
+                break;
+            case "sieve":
+                source = SIEVE;
+                break;
+            case "gcd":
+                source = GCD;
+                break;
+            default:
+                source = SORT;
+                break;
+        }
+        Path path = Files.createTempFile(program + "-", ".cm");
+        path.toFile().deleteOnExit();
+        Files.write(path, source.getBytes());
+
+        CMinusParser parser = new CMinusParser(path.toString());
+        parser.parse();
+        ProgramNode root = parser.getRoot();
+        bytecode = BytecodeCompiler.load(root, "cminus.Program", path.getFileName().toString());
+        compiled = ClosureCompiler.compile(root);
+        naive = new NaiveEvaluator(root);
+        machine = new TmMachine(TmCodeGenerator.generate(root, path.getFileName().toString(), true, true));
+    }
+
+    @Benchmark
+    public long run() {
+        if (engine.equals("bytecode")) {
+            bytecode.run(() -> 0, value -> checksum += value);
+        } else if (engine.equals("closures")) {
+            compiled.run(() -> 0, value -> checksum += value);
+        } else if (engine.equals("tm")) {
+            machine.run(() -> 0, value -> checksum += value);
+        } else {
+            naive.run(value -> checksum += value);
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,201 @@
+package compiler.bench;
+
+import compiler.parser.AST.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The baseline for InterpreterBenchmark: runs a C- program by walking its
+ * AST each time a node executes. Every variable access looks the name up in
+ * a chain of HashMaps, scalars are boxed Integers, and a return statement
+ * unwinds with an exception. output() goes to an IntConsumer; input() is
+ * not supported.
+ */
+final class NaiveEvaluator {
+    private static final class Return extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int value;
+
+        Return(int value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    private final Map<String, FunDeclarationNode> functions = new HashMap<>();
+    private final Map<String, Object> globals = new HashMap<>();
+    private final ProgramNode program;
+    private Deque<Map<String, Object>> scopes;
+    private IntConsumer output;
+
+    NaiveEvaluator(ProgramNode program) {
+        this.program = program;
+    }
+
+    int run(IntConsumer output) {
+        this.output = output;
+        functions.clear();
+        globals.clear();
+        for (DeclarationNode decl : program.getDeclarations()) {
+            if (decl instanceof FunDeclarationNode) {
+                functions.put(decl.getName(), (FunDeclarationNode) decl);
+            } else {
+                declare(globals, (VarDeclarationNode) decl);
+            }
+        }
+        return call(functions.get("main"), new Object[0]);
+    }
+
+    private static void declare(Map<String, Object> scope, VarDeclarationNode var) {
+        scope.put(var.getName(), var.isArray() ? new int[var.getArraySize()] : (Object) 0);
+    }
+
+    private int call(FunDeclarationNode function, Object[] args) {
+        Deque<Map<String, Object>> caller = scopes;
+        scopes = new ArrayDeque<>();
+        scopes.push(globals);
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            params.put(function.getParams().get(i).getName(), args[i]);
+        }
+        scopes.push(params);
+        try {
+            execute(function.getBody());
+            return 0;
+        } catch (Return e) {
+            return e.value;
+        } finally {
+            scopes = caller;
+        }
+    }
+
+    private Map<String, Object> scopeOf(String name) {
+        for (Map<String, Object> scope : scopes) {
+            if (scope.containsKey(name)) {
+                return scope;
+            }
+        }
+        throw new IllegalStateException("Undeclared variable " + name);
+    }
+
+    private void execute(StatementNode node) {
+        if (node instanceof CompoundStmtNode) {
+            CompoundStmtNode block = (CompoundStmtNode) node;
+            Map<String, Object> scope = new HashMap<>();
+            for (VarDeclarationNode var : block.getLocalDeclarations()) {
+                declare(scope, var);
+            }
+            scopes.push(scope);
+            try {
+                for (StatementNode statement : block.getStatements()) {
+                    execute(statement);
+                }
+            } finally {
+                scopes.pop();
+            }
+        } else if (node instanceof ExpressionStmtNode) {
+            ExpressionNode expression = ((ExpressionStmtNode) node).getExpression();
+            if (expression != null) {
+                evaluate(expression);
+            }
+        } else if (node instanceof SelectionStmtNode) {
+            SelectionStmtNode selection = (SelectionStmtNode) node;
+            if (evaluate(selection.getCondition()) != 0) {
+                execute(selection.getThenBranch());
+            } else if (selection.getElseBranch() != null) {
+                execute(selection.getElseBranch());
+            }
+        } else if (node instanceof IterationStmtNode) {
+            IterationStmtNode iteration = (IterationStmtNode) node;
+            while (evaluate(iteration.getCondition()) != 0) {
+                execute(iteration.getBody());
+            }
+        } else {
+            ExpressionNode expression = ((ReturnStmtNode) node).getExpression();
+            throw new Return(expression == null ? 0 : evaluate(expression));
+        }
+    }
+
+    private int evaluate(ExpressionNode node) {
+        if (node instanceof NumberNode) {
+            return ((NumberNode) node).getValue();
+        }
+        if (node instanceof VarExpressionNode) {
+            VarExpressionNode var = (VarExpressionNode) node;
+            Object value = scopeOf(var.getName()).get(var.getName());
+            if (var.isArray()) {
+                return ((int[]) value)[evaluate(var.getIndex())];
+            }
+            return (Integer) value;
+        }
+        if (node instanceof AssignExpressionNode) {
+            AssignExpressionNode assign = (AssignExpressionNode) node;
+            VarExpressionNode var = assign.getVariable();
+            Map<String, Object> scope = scopeOf(var.getName());
+            if (var.isArray()) {
+                int index = evaluate(var.getIndex());
+                int value = evaluate(assign.getExpression());
+                ((int[]) scope.get(var.getName()))[index] = value;
+                return value;
+            }
+            int value = evaluate(assign.getExpression());
+            scope.put(var.getName(), value);
+            return value;
+        }
+        if (node instanceof CallNode) {
+            CallNode call = (CallNode) node;
+            if (call.getFunctionName().equals("output")) {
+                output.accept(evaluate(call.getArguments().get(0)));
+                return 0;
+            }
+            FunDeclarationNode function = functions.get(call.getFunctionName());
+            Object[] args = new Object[call.getArguments().size()];
+            for (int i = 0; i < args.length; i++) {
+                ExpressionNode arg = call.getArguments().get(i);
+                if (function.getParams().get(i).isArray()) {
+                    String name = ((VarExpressionNode) arg).getName();
+                    args[i] = scopeOf(name).get(name);
+                } else {
+                    args[i] = evaluate(arg);
+                }
+            }
+            return call(function, args);
+        }
+        if (node instanceof SimpleExpressionNode) {
+            SimpleExpressionNode simple = (SimpleExpressionNode) node;
+            int left = evaluate(simple.getLeft());
+            if (simple.getRight() == null) {
+                return left;
+            }
+            int right = evaluate(simple.getRight());
+            if (!simple.isRelational()) {
+                return simple.getAddOperator() == AddOpType.PLUS ? left + right : left - right;
+            }
+            switch (simple.getRelOperator()) {
+                case LTE:
+                    return left <= right ? 1 : 0;
+                case LT:
+                    return left < right ? 1 : 0;
+                case GT:
+                    return left > right ? 1 : 0;
+                case GTE:
+                    return left >= right ? 1 : 0;
+                case EQ:
+                    return left == right ? 1 : 0;
+                default:
+                    return left != right ? 1 : 0;
+            }
+        }
+        TermNode term = (TermNode) node;
+        int left = evaluate(term.getLeft());
+        if (term.getRight() == null) {
+            return left;
+        }
+        int right = evaluate(term.getRight());
+        return term.getOperator() == MulOpType.TIMES ? left * right : left / right;
+    }
+}
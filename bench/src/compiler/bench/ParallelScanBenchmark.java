@@ -0,0 +1,79 @@
+package compiler.bench;
+
+import compiler.scanner.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures how ParallelScanner scales with the number of threads.
+ *
+ * threads = 0 is the sequential cminusMapped.scanAll() baseline; the other
+ * values run ParallelScanner on a pool of that many threads. The file is
+ * mapped once in setup so only scanning is measured. The "bytes" secondary
+ * result is bytes/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelScanBenchmark {
+    @Param({ "1MB", "16MB", "64MB" })
+    public String input;
+
+    @Param({ "0", "1", "2", "4", "8" })
+    public int threads;
+
+    private ByteBuffer source;
+    private long fileSize;
+    private ForkJoinPool pool;
+    private ParallelScanner scanner;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Path path = Inputs.resolve(input);
+        fileSize = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            source = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            scanner = new ParallelScanner(pool, 0);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int scan(Counters counters) {
+        TokenBuffer buffer = scanner == null
+                ? new cminusMapped(source).scanAll()
+                : scanner.scan(source);
+        counters.bytes += fileSize;
+        return buffer.size();
+    }
+}
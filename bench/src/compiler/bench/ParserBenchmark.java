@@ -0,0 +1,67 @@
+package compiler.bench;
+
+import compiler.parser.CMinusParser;
+import compiler.scanner.ScannerFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures CMinusParser.parse() including scanning, for each scanner engine.
+ * With the pipelined engine the scan runs on a second thread.
+ * The "bytes" secondary result is source bytes parsed per second.
+ *
+ * The "nodes" tree builds AbstractNode objects with parse(); "flat" builds a
+ * FlatTree with parseFlat().
+ *
+ * The file is read once in setup by ScannerFactory.read, so an operation
+ * opens no file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({ "test2", "64KB", "1MB", "16MB" })
+    public String input;
+
+    @Param({ "cminus", "mapped", "jflex", "pipelined" })
+    public String engine;
+
+    @Param({ "nodes", "flat" })
+    public String tree;
+
+    private ByteBuffer source;
+    private long fileSize;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        source = ScannerFactory.read(engine, Inputs.resolve(input).toString());
+        fileSize = source.remaining();
+    }
+
+    @Benchmark
+    public Object parse(Counters counters) throws IOException {
+        CMinusParser parser = new CMinusParser(ScannerFactory.open(engine, source.duplicate()));
+        counters.bytes += fileSize;
+        if (tree.equals("flat")) {
+            return parser.parseFlat();
+        }
+        parser.parse();
+        return parser.getRoot();
+    }
+}
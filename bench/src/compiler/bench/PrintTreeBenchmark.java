@@ -0,0 +1,94 @@
+package compiler.bench;
+
+import compiler.parser.AST.FlatTree;
+import compiler.parser.AST.ProgramNode;
+import compiler.parser.AST.TreePrinter;
+import compiler.parser.CMinusParser;
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures AbstractNode.printTree on a tree that is parsed once up front.
+ * The "chars" secondary result is characters of output per second.
+ *
+ * The "builder" target prints into a StringBuilder; "stream" writes through
+ * a TreePrinter to a buffered Writer that discards the output, which is how
+ * CMinusParser.printTree writes a file. "flat" does the same from a FlatTree
+ * built by parseFlat().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrintTreeBenchmark {
+    @Param({ "test2", "64KB", "1MB", "16MB" })
+    public String input;
+
+    @Param({ "builder", "stream", "flat" })
+    public String target;
+
+    private ProgramNode root;
+    private FlatTree flatRoot;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long chars;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            chars = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        CMinusParser parser = new CMinusParser(Inputs.resolve(input).toString());
+        parser.parse();
+        root = parser.getRoot();
+        flatRoot = new CMinusParser(Inputs.resolve(input).toString()).parseFlat();
+    }
+
+    @Benchmark
+    public long printTree(Counters counters) throws IOException {
+        long chars;
+        if (target.equals("builder")) {
+            StringBuilder sb = new StringBuilder();
+            root.printTree(sb, "");
+            chars = sb.length();
+        } else {
+            CountingWriter counter = new CountingWriter();
+            try (Writer writer = new BufferedWriter(counter)) {
+                if (target.equals("flat")) {
+                    flatRoot.printTree(new TreePrinter(writer), flatRoot.root(), 0);
+                } else {
+                    root.printTree(new TreePrinter(writer), 0);
+                }
+            }
+            chars = counter.chars;
+        }
+        counters.chars += chars;
+        return chars;
+    }
+
+    // Counts and drops everything written to it
+    private static final class CountingWriter extends Writer {
+        long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
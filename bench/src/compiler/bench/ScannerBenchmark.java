@@ -0,0 +1,90 @@
+package compiler.bench;
+
+import compiler.scanner.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures how fast each scanner engine turns a file into tokens.
+ *
+ * The "tokens" and "bytes" secondary results are tokens/s and bytes/s. The
+ * "buffer" engine is cminusMapped.scanAll() filling a TokenBuffer instead of
+ * returning a Token per getToken() call.
+ *
+ * The file is read once in setup by ScannerFactory.read, mapped for the
+ * mapped and buffer engines, so an operation opens no file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScannerBenchmark {
+    @Param({ "test2", "64KB", "1MB", "16MB" })
+    public String input;
+
+    @Param({ "cminus", "mapped", "jflex", "buffer" })
+    public String engine;
+
+    private ByteBuffer source;
+    private long fileSize;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long tokens;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        String file = Inputs.resolve(input).toString();
+        source = ScannerFactory.read(engine.equals("buffer") ? "mapped" : engine, file);
+        fileSize = source.remaining();
+    }
+
+    @Benchmark
+    public int getToken(Counters counters) throws IOException {
+        int count;
+        if (engine.equals("buffer")) {
+            count = new cminusMapped(source.duplicate()).scanAll().size();
+        } else {
+            scanner scanner = scanner();
+            count = 1;
+            while (scanner.getToken().getType() != TokenType.ENDFILE) {
+                count++;
+            }
+        }
+        counters.tokens += count;
+        counters.bytes += fileSize;
+        return count;
+    }
+
+    private scanner scanner() {
+        switch (engine) {
+            case "mapped":
+                return new cminusMapped(source.duplicate());
+            case "jflex":
+                return new cminusScanner(reader());
+            default:
+                return new cminus(reader());
+        }
+    }
+
+    // Decodes the source with the default charset, as FileReader does
+    private Reader reader() {
+        return new InputStreamReader(new ByteArrayInputStream(source.array()));
+    }
+}
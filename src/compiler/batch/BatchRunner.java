@@ -0,0 +1,263 @@
+package compiler.batch;
+
+import java.io.*;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs a scanner or parser job over many source files in one JVM.
+ *
+ * Inputs may be source files, directories (searched recursively for .cm
+ * files), glob patterns such as "test/*.cm", or "@file" for a manifest that
+ * lists more inputs, one per line. Relative paths in a manifest are resolved
+ * against the manifest's directory; blank lines and lines starting with '#'
+ * are skipped.
+ *
+ * The files are processed concurrently on a fixed pool of threads, one
+ * thread per processor unless --jobs=N is given, and no more threads than
+ * files. Each output file is written next to its source with the .cm
+ * extension replaced. When all files are done a summary lists every file
+ * with its time and errors.
+ */
+public final class BatchRunner {
+    public static final String SOURCE_EXTENSION = ".cm";
+
+    // The most errors listed per file in the summary
+    private static final int MAX_LISTED_ERRORS = 3;
+
+    /**
+     * Processes one file and returns the errors found in it. An IOException
+     * marks the file as failed.
+     */
+    @FunctionalInterface
+    public interface Job {
+        List<String> run(String inputFile, String outputFile) throws IOException;
+    }
+
+    private final String outputExtension;
+    private final int threads;
+    private final Job job;
+
+    public BatchRunner(String outputExtension, int threads, Job job) {
+        this.outputExtension = outputExtension;
+        this.threads = threads;
+        this.job = job;
+    }
+
+    /**
+     * Runs a batch from the command line arguments that follow --batch.
+     *
+     * @return the exit status: 0 if every file was processed without errors,
+     *         1 otherwise
+     */
+    public static int main(String[] args, String outputExtension, Job job) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> inputs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--jobs=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--jobs=".length()));
+                } catch (NumberFormatException e) {
+                    // Not a number; the usage line below says what is
+                    threads = 0;
+                }
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty() || threads < 1) {
+            System.out.println("Usage: --batch [--jobs=<threads>] <file|directory|glob|@manifest>...");
+            return 1;
+        }
+
+        try {
+            return new BatchRunner(outputExtension, threads, job).run(collect(inputs), System.out);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Expands the inputs into the list of source files they name, sorted and
+     * without duplicates.
+     */
+    public static List<Path> collect(List<String> inputs) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            collect(input, Paths.get(""), files);
+        }
+        List<Path> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.naturalOrder());
+        return sorted;
+    }
+
+    private static void collect(String input, Path base, Set<Path> files) throws IOException {
+        if (input.startsWith("@")) {
+            Path manifest = base.resolve(input.substring(1));
+            Path dir = manifest.getParent() == null ? Paths.get("") : manifest.getParent();
+            for (String line : Files.readAllLines(manifest)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    collect(line, dir, files);
+                }
+            }
+            return;
+        }
+
+        int glob = firstGlobChar(input);
+        if (glob >= 0) {
+            // Walk the directory before the first glob character and match
+            // the whole pattern against the paths found there
+            Path root = base.resolve(input.substring(0, input.lastIndexOf('/', glob) + 1));
+            String pattern = input.startsWith("/") || base.toString().isEmpty() ? input : base + "/" + input;
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    walk.filter(Files::isRegularFile).filter(matcher::matches).forEach(p -> files.add(p.normalize()));
+                }
+            }
+            return;
+        }
+
+        Path path = base.resolve(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile)
+                        .filter(p -> p.toString().endsWith(SOURCE_EXTENSION))
+                        .forEach(p -> files.add(p.normalize()));
+            }
+        } else if (Files.exists(path)) {
+            files.add(path.normalize());
+        } else {
+            throw new FileNotFoundException("No such file or directory: " + path);
+        }
+    }
+
+    private static int firstGlobChar(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Processes every file and prints the summary to out.
+     *
+     * @return the exit status: 0 if every file was processed without errors,
+     *         1 otherwise
+     */
+    public int run(List<Path> files, PrintStream out) {
+        long start = System.nanoTime();
+        // No more threads than files
+        int poolSize = Math.min(threads, Math.max(files.size(), 1));
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        List<Future<Result>> futures = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                futures.add(executor.submit(() -> process(file)));
+            }
+            List<Result> results = new ArrayList<>(files.size());
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return summarize(results, System.nanoTime() - start, poolSize, out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Batch interrupted");
+            return 1;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result process(Path file) {
+        String input = file.toString();
+        String output = outputFile(input);
+        long start = System.nanoTime();
+        try {
+            List<String> errors = job.run(input, output);
+            return new Result(input, errors, null, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            return new Result(input, List.of(), e, System.nanoTime() - start);
+        }
+    }
+
+    private String outputFile(String input) {
+        String stem = input.endsWith(SOURCE_EXTENSION)
+                ? input.substring(0, input.length() - SOURCE_EXTENSION.length())
+                : input;
+        return stem + outputExtension;
+    }
+
+    private static int summarize(List<Result> results, long wallNanos, int threads, PrintStream out) {
+        int width = results.stream().mapToInt(r -> r.input.length()).max().orElse(0);
+        int ok = 0;
+        int withErrors = 0;
+        int failed = 0;
+        long cpuNanos = 0;
+
+        for (Result result : results) {
+            cpuNanos += result.nanos;
+            String status;
+            if (result.failure != null) {
+                failed++;
+                status = "FAILED";
+            } else if (!result.errors.isEmpty()) {
+                withErrors++;
+                status = result.errors.size() + (result.errors.size() == 1 ? " error" : " errors");
+            } else {
+                ok++;
+                status = "ok";
+            }
+            out.printf("%-" + width + "s  %-10s %9.1f ms%n", result.input, status, result.nanos / 1e6);
+
+            if (result.failure != null) {
+                out.println("    " + result.failure);
+            }
+            for (String error : result.errors.subList(0, Math.min(result.errors.size(), MAX_LISTED_ERRORS))) {
+                out.println("    " + error);
+            }
+            if (result.errors.size() > MAX_LISTED_ERRORS) {
+                out.println("    ... " + (result.errors.size() - MAX_LISTED_ERRORS) + " more");
+            }
+        }
+
+        out.println("----------------------------------------");
+        out.printf("%d files: %d ok, %d with errors, %d failed%n", results.size(), ok, withErrors, failed);
+        out.printf("%.1f ms elapsed, %.1f ms total on %d %s%n",
+                wallNanos / 1e6, cpuNanos / 1e6, threads, threads == 1 ? "thread" : "threads");
+        return withErrors == 0 && failed == 0 ? 0 : 1;
+    }
+
+    private static final class Result {
+        final String input;
+        final List<String> errors;
+        final Exception failure;
+        final long nanos;
+
+        Result(String input, List<String> errors, Exception failure, long nanos) {
+            this.input = input;
+            this.errors = errors;
+            this.failure = failure;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package compiler.generator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Command line entry point for the C- program generator.
+ *
+ * Usage: java compiler.generator.Main [options] <output-file | ->
+ *
+ * Options:
+ * --seed N random seed (default 1)
+ * --size N[KB|MB|GB] approximate program size (default 64KB)
+ * --functions N maximum number of functions besides main
+ * --statements N maximum statements per block (default 8)
+ * --depth N maximum nesting of blocks, if and while (default 3)
+ * --expr-depth N maximum expression nesting (default 3)
+ * --comments P chance of a comment before each statement (default 0.1)
+ * --id-length MIN-MAX identifier length range (default 1-8)
+ * --errors P chance of a syntax error in each statement (default 0)
+ */
+public class Main {
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java compiler.generator.Main [options] <output-file | ->");
+            System.exit(1);
+        }
+
+        long seed = 1;
+        ProgramGenerator generator = null;
+        String output = args[args.length - 1];
+
+        try {
+            for (int i = 0; i < args.length - 1; i += 2) {
+                if (args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[i + 1]);
+                }
+            }
+            generator = new ProgramGenerator(seed);
+
+            for (int i = 0; i < args.length - 1; i += 2) {
+                String value = i + 1 < args.length - 1 ? args[i + 1] : "";
+                switch (args[i]) {
+                    case "--seed":
+                        break;
+                    case "--size":
+                        generator.setSize(parseSize(value));
+                        break;
+                    case "--functions":
+                        generator.setFunctions(Integer.parseInt(value));
+                        break;
+                    case "--statements":
+                        generator.setStatements(Integer.parseInt(value));
+                        break;
+                    case "--depth":
+                        generator.setDepth(Integer.parseInt(value));
+                        break;
+                    case "--expr-depth":
+                        generator.setExpressionDepth(Integer.parseInt(value));
+                        break;
+                    case "--comments":
+                        generator.setCommentDensity(Double.parseDouble(value));
+                        break;
+                    case "--id-length":
+                        String[] range = value.split("-");
+                        generator.setIdLength(Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+                        break;
+                    case "--errors":
+                        generator.setErrorRate(Double.parseDouble(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+
+        OutputStream stream = null;
+        try {
+            stream = output.equals("-") ? System.out : new FileOutputStream(output);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII), 1 << 16);
+            long written = generator.generate(writer);
+            writer.flush();
+            if (!output.equals("-")) {
+                System.out.println("Generated " + written + " bytes to " + output);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (stream != null && stream != System.out) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    System.err.println("Error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Parses a byte count with an optional KB, MB or GB suffix
+    private static long parseSize(String value) {
+        String upper = value.toUpperCase();
+        long scale = 1;
+        if (upper.endsWith("KB")) {
+            scale = 1L << 10;
+        } else if (upper.endsWith("MB")) {
+            scale = 1L << 20;
+        } else if (upper.endsWith("GB")) {
+            scale = 1L << 30;
+        }
+        if (scale > 1) {
+            upper = upper.substring(0, upper.length() - 2);
+        }
+        return Long.parseLong(upper) * scale;
+    }
+}
@@ -0,0 +1,494 @@
+package compiler.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random C- programs that follow the grammar in
+ * "Proj. 2 Grammar.txt", for scale and performance testing.
+ *
+ * The same seed and settings always produce the same program. The program is
+ * written straight to the Writer while it is generated, so its size is not
+ * limited by memory. Generated programs declare every variable before use,
+ * only call functions defined earlier with the right number and kinds of
+ * arguments, and end with void main(void). With an error rate above zero,
+ * some statements are deliberately broken.
+ */
+public class ProgramGenerator {
+    private static final String[] KEYWORDS = { "else", "if", "int", "return", "void", "while" };
+    private static final String[] ADD_OPS = { " + ", " - " };
+    private static final String[] MUL_OPS = { " * ", " / " };
+    private static final String[] REL_OPS = { " < ", " <= ", " > ", " >= ", " == ", " != " };
+    private static final String[] STRAY_TOKENS = { "@", "#", "$", "!", ";;", ")", "int" };
+    private static final String[] WORDS = { "loop", "check", "the", "value", "index", "update",
+            "sum", "array", "result", "temporary", "compute", "partition", "sort", "swap" };
+
+    // Only the most recent functions and globals are candidates for use, so
+    // memory stays bounded however large the program gets
+    private static final int MAX_CALLABLE = 64;
+    private static final int MAX_GLOBALS = 32;
+
+    private final SplittableRandom random;
+
+    private long size = 64 * 1024;
+    private int functions = Integer.MAX_VALUE;
+    private int statements = 8;
+    private int depth = 3;
+    private int expressionDepth = 3;
+    private double commentDensity = 0.1;
+    private int minIdLength = 1;
+    private int maxIdLength = 8;
+    private double errorRate = 0.0;
+
+    private Writer out;
+    private long written;
+    private int nextIndex;
+    private final List<Function> callable = new ArrayList<>();
+    private final List<Variable> globals = new ArrayList<>();
+    private final List<Variable> scope = new ArrayList<>();
+    private final Set<String> localNames = new HashSet<>();
+
+    private static class Function {
+        final String name;
+        final boolean returnsInt;
+        final boolean[] arrayParams;
+
+        Function(String name, boolean returnsInt, boolean[] arrayParams) {
+            this.name = name;
+            this.returnsInt = returnsInt;
+            this.arrayParams = arrayParams;
+        }
+    }
+
+    private static class Variable {
+        final String name;
+        final boolean isArray;
+
+        Variable(String name, boolean isArray) {
+            this.name = name;
+            this.isArray = isArray;
+        }
+    }
+
+    public ProgramGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    // Approximate size of the program in bytes; generation stops adding
+    // functions once it is reached
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    // Maximum number of functions before main
+    public void setFunctions(int functions) {
+        this.functions = functions;
+    }
+
+    // Maximum number of statements in one compound statement
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    // Maximum nesting of compound, if and while statements in a function body
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    // Maximum nesting of operators and parentheses in an expression
+    public void setExpressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+    }
+
+    // Chance of a comment before each statement or declaration
+    public void setCommentDensity(double commentDensity) {
+        this.commentDensity = commentDensity;
+    }
+
+    // Identifier lengths are drawn uniformly from min to max
+    public void setIdLength(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid identifier length range: " + min + "-" + max);
+        }
+        this.minIdLength = min;
+        this.maxIdLength = max;
+    }
+
+    // Chance of a syntax error in each statement
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Writes one program to out.
+     *
+     * @return the number of characters written
+     * @throws IOException
+     */
+    public long generate(Writer out) throws IOException {
+        this.out = out;
+        written = 0;
+
+        emit("/* Generated C- program */\n");
+        for (int i = 0; i < functions && written < size; i++) {
+            if (random.nextInt(4) == 0) {
+                globalDeclaration();
+            }
+            function(false);
+        }
+        function(true);
+        out.flush();
+        return written;
+    }
+
+    // var-declaration at the top level
+    private void globalDeclaration() throws IOException {
+        comment(0);
+        boolean isArray = random.nextInt(3) == 0;
+        String name = uniqueName();
+        emit("int ").emit(name);
+        if (isArray) {
+            emit("[").emit(1 + random.nextInt(100)).emit("]");
+        }
+        emit(";\n");
+
+        if (globals.size() == MAX_GLOBALS) {
+            globals.remove(0);
+        }
+        globals.add(new Variable(name, isArray));
+    }
+
+    // fun-declaration, or main when isMain is set
+    private void function(boolean isMain) throws IOException {
+        localNames.clear();
+        scope.clear();
+        scope.addAll(globals);
+
+        boolean returnsInt = !isMain && random.nextBoolean();
+        String name = isMain ? "main" : uniqueName();
+        int paramCount = isMain ? 0 : random.nextInt(4);
+        boolean[] arrayParams = new boolean[paramCount];
+
+        emit("\n");
+        comment(0);
+        emit(returnsInt ? "int " : "void ").emit(name).emit("(");
+        if (paramCount == 0) {
+            emit("void");
+        }
+        for (int i = 0; i < paramCount; i++) {
+            arrayParams[i] = random.nextInt(4) == 0;
+            String param = localName();
+            emit(i > 0 ? ", int " : "int ").emit(param);
+            if (arrayParams[i]) {
+                emit("[]");
+            }
+            scope.add(new Variable(param, arrayParams[i]));
+        }
+        emit(") ");
+
+        compoundStmt(0, returnsInt);
+        emit("\n");
+
+        if (!isMain) {
+            if (callable.size() == MAX_CALLABLE) {
+                callable.remove(0);
+            }
+            callable.add(new Function(name, returnsInt, arrayParams));
+        }
+    }
+
+    // compound-stmt; a function body that returns int ends with a return
+    private void compoundStmt(int level, boolean returnsInt) throws IOException {
+        int scopeMark = scope.size();
+        emit("{\n");
+
+        int locals = random.nextInt(4) + (level == 0 ? 1 : 0);
+        for (int i = 0; i < locals; i++) {
+            comment(level + 1);
+            boolean isArray = random.nextInt(5) == 0;
+            String name = localName();
+            indent(level + 1).emit("int ").emit(name);
+            if (isArray) {
+                emit("[").emit(1 + random.nextInt(100)).emit("]");
+            }
+            emit(";\n");
+            scope.add(new Variable(name, isArray));
+        }
+
+        int count = random.nextInt(statements + 1);
+        for (int i = 0; i < count; i++) {
+            statement(level + 1);
+        }
+        if (level == 0 && returnsInt) {
+            indent(level + 1).emit("return ");
+            expression(expressionDepth);
+            emit(";\n");
+        }
+
+        indent(level).emit("}");
+        scope.subList(scopeMark, scope.size()).clear();
+    }
+
+    private void statement(int level) throws IOException {
+        comment(level);
+        indent(level);
+
+        int choice = level > depth ? 0 : random.nextInt(10);
+        if (choice < 5) {
+            expressionStmt();
+        } else if (choice < 7) {
+            emit("if (");
+            condition();
+            emit(broken() ? " " : ") ");
+            nestedStatement(level);
+            if (random.nextBoolean()) {
+                emit(" else ");
+                nestedStatement(level);
+            }
+            emit("\n");
+        } else if (choice < 9) {
+            emit("while (");
+            condition();
+            emit(") ");
+            nestedStatement(level);
+            emit("\n");
+        } else {
+            compoundStmt(level, false);
+            emit("\n");
+        }
+    }
+
+    // The body of an if or while is usually a block
+    private void nestedStatement(int level) throws IOException {
+        if (random.nextInt(4) == 0) {
+            expressionStmt();
+        } else {
+            compoundStmt(level, false);
+        }
+    }
+
+    // expression-stmt: an assignment or a call to a void function
+    private void expressionStmt() throws IOException {
+        Function function = randomFunction(false);
+        if (function != null && random.nextInt(4) == 0) {
+            call(function, expressionDepth);
+        } else {
+            Variable target = randomVariable();
+            if (target == null) {
+                emit(";\n");
+                return;
+            }
+            variable(target, expressionDepth);
+            emit(" = ");
+            expression(expressionDepth);
+        }
+        if (broken()) {
+            emit(STRAY_TOKENS[random.nextInt(STRAY_TOKENS.length)]);
+        }
+        emit(";\n");
+    }
+
+    private void condition() throws IOException {
+        additiveExpression(expressionDepth);
+        emit(REL_OPS[random.nextInt(REL_OPS.length)]);
+        additiveExpression(expressionDepth);
+    }
+
+    private void expression(int budget) throws IOException {
+        additiveExpression(budget);
+    }
+
+    // additive-expression -> term {addop term}
+    private void additiveExpression(int budget) throws IOException {
+        term(budget);
+        if (budget > 0) {
+            int terms = random.nextInt(3);
+            for (int i = 0; i < terms; i++) {
+                emit(ADD_OPS[random.nextInt(ADD_OPS.length)]);
+                term(budget - 1);
+            }
+        }
+    }
+
+    // term -> factor {mulop factor}
+    private void term(int budget) throws IOException {
+        factor(budget);
+        if (budget > 0 && random.nextInt(3) == 0) {
+            emit(MUL_OPS[random.nextInt(MUL_OPS.length)]);
+            factor(budget - 1);
+        }
+    }
+
+    // factor -> ( expression ) | var | call | NUM
+    private void factor(int budget) throws IOException {
+        int choice = budget > 0 ? random.nextInt(10) : random.nextInt(5);
+        if (choice < 2) {
+            emit(random.nextInt(1000));
+            return;
+        }
+        if (choice < 5) {
+            Variable variable = randomVariable();
+            if (variable != null) {
+                variable(variable, budget);
+                return;
+            }
+            emit(random.nextInt(1000));
+            return;
+        }
+        if (choice < 7) {
+            Function function = randomFunction(true);
+            if (function != null) {
+                call(function, budget - 1);
+                return;
+            }
+        }
+        emit("(");
+        expression(budget - 1);
+        emit(")");
+    }
+
+    // var -> ID [[ expression ]]; arrays are always indexed
+    private void variable(Variable variable, int budget) throws IOException {
+        emit(variable.name);
+        if (variable.isArray) {
+            emit("[");
+            expression(Math.max(budget - 1, 0));
+            emit("]");
+        }
+    }
+
+    // call -> ID ( args ); whole arrays are passed to array parameters
+    private void call(Function function, int budget) throws IOException {
+        emit(function.name).emit("(");
+        for (int i = 0; i < function.arrayParams.length; i++) {
+            if (i > 0) {
+                emit(", ");
+            }
+            if (function.arrayParams[i]) {
+                emit(randomArray().name);
+            } else {
+                expression(Math.max(budget, 0));
+            }
+        }
+        emit(")");
+    }
+
+    private Variable randomVariable() {
+        return scope.isEmpty() ? null : scope.get(random.nextInt(scope.size()));
+    }
+
+    // Returns an array in scope to pass whole, or null if there is none
+    private Variable randomArray() {
+        Variable array = null;
+        for (int i = scope.size() - 1; i >= 0; i--) {
+            if (scope.get(i).isArray) {
+                array = scope.get(i);
+                if (random.nextBoolean()) {
+                    break;
+                }
+            }
+        }
+        return array;
+    }
+
+    // Picks a function to call, or returns null if the one picked has the
+    // wrong return type or needs an array and none is in scope
+    private Function randomFunction(boolean returnsInt) {
+        if (callable.isEmpty()) {
+            return null;
+        }
+        Function function = callable.get(random.nextInt(callable.size()));
+        if (function.returnsInt != returnsInt) {
+            return null;
+        }
+        for (boolean isArray : function.arrayParams) {
+            if (isArray) {
+                return randomArray() != null ? function : null;
+            }
+        }
+        return function;
+    }
+
+    private boolean broken() {
+        return errorRate > 0 && random.nextDouble() < errorRate;
+    }
+
+    private void comment(int level) throws IOException {
+        if (random.nextDouble() >= commentDensity) {
+            return;
+        }
+        indent(level).emit("/*");
+        int words = 1 + random.nextInt(8);
+        for (int i = 0; i < words; i++) {
+            emit(" ").emit(WORDS[random.nextInt(WORDS.length)]);
+        }
+        emit(" */\n");
+    }
+
+    // Locals and parameters are letters only; the digits in function and
+    // global names keep the two from ever colliding
+    private String localName() {
+        int length = idLength();
+        for (int attempt = 1;; attempt++) {
+            String name = letters(length);
+            if (!isKeyword(name) && localNames.add(name)) {
+                return name;
+            }
+            // Short names run out quickly, so grow the name instead of
+            // retrying forever
+            if (attempt % 16 == 0) {
+                length++;
+            }
+        }
+    }
+
+    // Function and global names end in a number that is never reused
+    private String uniqueName() {
+        String suffix = Integer.toString(nextIndex++);
+        return letters(Math.max(1, idLength() - suffix.length())) + suffix;
+    }
+
+    private int idLength() {
+        return minIdLength + random.nextInt(maxIdLength - minIdLength + 1);
+    }
+
+    private String letters(int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int c = random.nextInt(52);
+            chars[i] = (char) (c < 26 ? 'a' + c : 'A' + c - 26);
+        }
+        return new String(chars);
+    }
+
+    private static boolean isKeyword(String name) {
+        for (String keyword : KEYWORDS) {
+            if (keyword.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ProgramGenerator indent(int level) throws IOException {
+        for (int i = 0; i < level; i++) {
+            emit("    ");
+        }
+        return this;
+    }
+
+    private ProgramGenerator emit(String text) throws IOException {
+        out.write(text);
+        written += text.length();
+        return this;
+    }
+
+    private ProgramGenerator emit(int value) throws IOException {
+        return emit(Integer.toString(value));
+    }
+}
@@ -0,0 +1,562 @@
+package compiler.interpreter;
+
+import compiler.parser.AST.*;
+import compiler.scanner.SymbolTable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a C- program into a tree of Java closures that CompiledProgram
+ * runs.
+ *
+ * Each FunDeclarationNode is compiled once. Names are looked up while
+ * compiling, never while running: a scalar becomes an index into the int[]
+ * of its Frame or of the globals, and an array an index into the int[][]
+ * of its Frame, or the global int[] itself. Values are never boxed. Each
+ * operator becomes its own closure, with forms of its own for a constant
+ * right operand, and a comparison used as the condition of an if or while
+ * is tested directly instead of going through 1 or 0.
+ *
+ * A statement closure returns true when a return statement ran, which
+ * leaves the value in the Frame, so returning needs no exception.
+ *
+ * input() reads the next integer and output(x) writes x on a line of its
+ * own, unless the program declares functions of those names itself.
+ *
+ * The program must be free of syntax errors. Names are resolved in
+ * declaration order, as in C: a function can call itself and the functions
+ * before it. Compiling and running a closure tree recurses, so expressions
+ * and blocks nested thousands deep end with an InterpreterException
+ * instead of running.
+ */
+public class ClosureCompiler {
+    interface Int {
+        int eval(Frame frame);
+    }
+
+    interface Array {
+        int[] eval(Frame frame);
+    }
+
+    interface Condition {
+        boolean test(Frame frame);
+    }
+
+    interface Statement {
+        boolean exec(Frame frame);
+    }
+
+    private static final int INPUT = SymbolTable.shared().intern("input");
+    private static final int OUTPUT = SymbolTable.shared().intern("output");
+    private static final int MAIN = SymbolTable.shared().intern("main");
+
+    // Where a variable lives
+    private static final class Slot {
+        final boolean array;
+        // Set for a global array, null for everything else
+        final int[] globalArray;
+        final boolean global;
+        final int index;
+
+        Slot(boolean global, boolean array, int index, int[] globalArray) {
+            this.global = global;
+            this.array = array;
+            this.index = index;
+            this.globalArray = globalArray;
+        }
+    }
+
+    private final Deque<Map<Integer, Slot>> scopes = new ArrayDeque<>();
+    private final Map<Integer, Function> functions = new HashMap<>();
+    private final List<int[]> globalArrays = new ArrayList<>();
+    private final StatementCompiler statements = new StatementCompiler();
+    private final ExpressionCompiler expressions = new ExpressionCompiler();
+    private int globalInts;
+    private int[] globals;
+    private CompiledProgram program;
+
+    // The function being compiled
+    private Function function;
+    private int nextInt;
+    private List<Integer> arraySizes;
+
+    /**
+     * @throws InterpreterException if the program uses a name it does not
+     *                              declare, has no main function, or nests
+     *                              too deeply
+     */
+    public static CompiledProgram compile(ProgramNode root) {
+        return new ClosureCompiler().compileProgram(root);
+    }
+
+    private CompiledProgram compileProgram(ProgramNode root) {
+        // Every global scalar is known before a function captures the array
+        int scalars = 0;
+        for (DeclarationNode decl : root.getDeclarations()) {
+            if (decl instanceof VarDeclarationNode && !((VarDeclarationNode) decl).isArray()) {
+                scalars++;
+            }
+        }
+        globals = new int[scalars];
+        program = new CompiledProgram(globals, globalArrays);
+
+        scopes.push(new HashMap<>());
+        for (DeclarationNode decl : root.getDeclarations()) {
+            if (decl instanceof VarDeclarationNode) {
+                VarDeclarationNode var = (VarDeclarationNode) decl;
+                if (var.isArray()) {
+                    int[] array = new int[var.getArraySize()];
+                    globalArrays.add(array);
+                    declare(var, new Slot(true, true, globalArrays.size() - 1, array));
+                } else {
+                    declare(var, new Slot(true, false, globalInts++, null));
+                }
+            } else {
+                FunDeclarationNode fun = (FunDeclarationNode) decl;
+                if (functions.containsKey(fun.getSymbol()) || scopes.peek().containsKey(fun.getSymbol())) {
+                    throw new InterpreterException(fun.getLineNum(), fun.getName() + " is already declared");
+                }
+                try {
+                    compileFunction(fun);
+                } catch (StackOverflowError e) {
+                    throw new InterpreterException(fun.getLineNum(),
+                            "Function " + fun.getName() + " nests too deeply to compile");
+                }
+            }
+        }
+
+        Function main = functions.get(MAIN);
+        if (main == null || main.arrayParams.length != 0) {
+            throw new InterpreterException(root.getLineNum(), "No main(void) function");
+        }
+        program.setMain(main);
+        return program;
+    }
+
+    private void compileFunction(FunDeclarationNode fun) {
+        List<ParamNode> params = fun.getParams();
+        function = new Function(fun.getName(), fun.getLineNum(), fun.getType() == TypeSpecifier.INT, params.size());
+        functions.put(fun.getSymbol(), function);
+        nextInt = 0;
+        arraySizes = new ArrayList<>();
+
+        scopes.push(new HashMap<>());
+        for (int i = 0; i < params.size(); i++) {
+            ParamNode param = params.get(i);
+            Slot slot = param.isArray() ? localArray(-1) : new Slot(false, false, nextInt++, null);
+            function.arrayParams[i] = param.isArray();
+            function.paramSlots[i] = slot.index;
+            declare(param.getSymbol(), param.getName(), param.getLineNum(), slot);
+        }
+        function.body = fun.getBody().accept(statements);
+        scopes.pop();
+
+        function.intSlots = nextInt;
+        function.arraySizes = arraySizes.stream().mapToInt(Integer::intValue).toArray();
+        function = null;
+    }
+
+    private Slot localArray(int size) {
+        arraySizes.add(size);
+        return new Slot(false, true, arraySizes.size() - 1, null);
+    }
+
+    private void declare(VarDeclarationNode var, Slot slot) {
+        declare(var.getSymbol(), var.getName(), var.getLineNum(), slot);
+    }
+
+    private void declare(int symbol, String name, int line, Slot slot) {
+        if (scopes.peek().putIfAbsent(symbol, slot) != null) {
+            throw new InterpreterException(line, name + " is already declared");
+        }
+    }
+
+    private Slot lookup(int symbol, String name, int line) {
+        for (Map<Integer, Slot> scope : scopes) {
+            Slot slot = scope.get(symbol);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        throw new InterpreterException(line, "Undeclared variable " + name);
+    }
+
+    private Condition condition(ExpressionNode node) {
+        if (node instanceof NumberNode) {
+            boolean value = ((NumberNode) node).getValue() != 0;
+            return frame -> value;
+        }
+        if (!(node instanceof SimpleExpressionNode) || !((SimpleExpressionNode) node).isRelational()) {
+            Int value = node.accept(expressions);
+            return frame -> value.eval(frame) != 0;
+        }
+
+        SimpleExpressionNode compare = (SimpleExpressionNode) node;
+        Int left = compare.getLeft().accept(expressions);
+        if (compare.getRight() instanceof NumberNode) {
+            int right = ((NumberNode) compare.getRight()).getValue();
+            switch (compare.getRelOperator()) {
+                case LTE:
+                    return frame -> left.eval(frame) <= right;
+                case LT:
+                    return frame -> left.eval(frame) < right;
+                case GT:
+                    return frame -> left.eval(frame) > right;
+                case GTE:
+                    return frame -> left.eval(frame) >= right;
+                case EQ:
+                    return frame -> left.eval(frame) == right;
+                default:
+                    return frame -> left.eval(frame) != right;
+            }
+        }
+        Int right = compare.getRight().accept(expressions);
+        switch (compare.getRelOperator()) {
+            case LTE:
+                return frame -> left.eval(frame) <= right.eval(frame);
+            case LT:
+                return frame -> left.eval(frame) < right.eval(frame);
+            case GT:
+                return frame -> left.eval(frame) > right.eval(frame);
+            case GTE:
+                return frame -> left.eval(frame) >= right.eval(frame);
+            case EQ:
+                return frame -> left.eval(frame) == right.eval(frame);
+            default:
+                return frame -> left.eval(frame) != right.eval(frame);
+        }
+    }
+
+    private Int add(ExpressionNode leftNode, AddOpType operator, ExpressionNode rightNode) {
+        Int left = leftNode.accept(expressions);
+        if (rightNode instanceof NumberNode) {
+            int right = ((NumberNode) rightNode).getValue();
+            return operator == AddOpType.PLUS
+                    ? frame -> left.eval(frame) + right
+                    : frame -> left.eval(frame) - right;
+        }
+        Int right = rightNode.accept(expressions);
+        return operator == AddOpType.PLUS
+                ? frame -> left.eval(frame) + right.eval(frame)
+                : frame -> left.eval(frame) - right.eval(frame);
+    }
+
+    // An array passed by name to an array parameter
+    private Array arrayArgument(ExpressionNode node, String function, int line) {
+        if (node instanceof VarExpressionNode && !((VarExpressionNode) node).isArray()) {
+            VarExpressionNode var = (VarExpressionNode) node;
+            Slot slot = lookup(var.getSymbol(), var.getName(), var.getLineNum());
+            if (slot.array) {
+                if (slot.global) {
+                    int[] array = slot.globalArray;
+                    return frame -> array;
+                }
+                int index = slot.index;
+                return frame -> frame.arrays[index];
+            }
+        }
+        throw new InterpreterException(line, "An argument of " + function + " must be an array");
+    }
+
+    static int checkIndex(int[] array, int index, int line) {
+        if (index < 0 || index >= array.length) {
+            throw new InterpreterException(line,
+                    "Index " + index + " is outside an array of " + array.length + " elements");
+        }
+        return index;
+    }
+
+    private final class StatementCompiler extends SimpleNodeVisitor<Statement> {
+        @Override
+        protected Statement defaultVisit(AbstractNode node) {
+            throw new IllegalStateException("Not a statement: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Statement visitCompoundStmt(CompoundStmtNode node) {
+            scopes.push(new HashMap<>());
+            for (VarDeclarationNode var : node.getLocalDeclarations()) {
+                declare(var, var.isArray() ? localArray(var.getArraySize())
+                        : new Slot(false, false, nextInt++, null));
+            }
+            Statement[] body = new Statement[node.getStatements().size()];
+            for (int i = 0; i < body.length; i++) {
+                body[i] = node.getStatements().get(i).accept(this);
+            }
+            scopes.pop();
+
+            switch (body.length) {
+                case 0:
+                    return frame -> false;
+                case 1:
+                    return body[0];
+                case 2: {
+                    Statement first = body[0];
+                    Statement second = body[1];
+                    return frame -> first.exec(frame) || second.exec(frame);
+                }
+                default:
+                    return frame -> {
+                        for (Statement statement : body) {
+                            if (statement.exec(frame)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    };
+            }
+        }
+
+        @Override
+        public Statement visitExpressionStmt(ExpressionStmtNode node) {
+            if (node.getExpression() == null) {
+                return frame -> false;
+            }
+            Int expression = node.getExpression().accept(expressions);
+            return frame -> {
+                expression.eval(frame);
+                return false;
+            };
+        }
+
+        @Override
+        public Statement visitSelectionStmt(SelectionStmtNode node) {
+            Condition condition = condition(node.getCondition());
+            Statement thenBranch = node.getThenBranch().accept(this);
+            if (node.getElseBranch() == null) {
+                return frame -> condition.test(frame) && thenBranch.exec(frame);
+            }
+            Statement elseBranch = node.getElseBranch().accept(this);
+            return frame -> condition.test(frame) ? thenBranch.exec(frame) : elseBranch.exec(frame);
+        }
+
+        @Override
+        public Statement visitIterationStmt(IterationStmtNode node) {
+            Condition condition = condition(node.getCondition());
+            Statement body = node.getBody().accept(this);
+            return frame -> {
+                while (condition.test(frame)) {
+                    if (body.exec(frame)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        @Override
+        public Statement visitReturnStmt(ReturnStmtNode node) {
+            if (node.getExpression() == null) {
+                return frame -> true;
+            }
+            Int expression = node.getExpression().accept(expressions);
+            return frame -> {
+                frame.returnValue = expression.eval(frame);
+                return true;
+            };
+        }
+    }
+
+    private final class ExpressionCompiler extends SimpleNodeVisitor<Int> {
+        @Override
+        protected Int defaultVisit(AbstractNode node) {
+            throw new IllegalStateException("Not an expression: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Int visitNumber(NumberNode node) {
+            int value = node.getValue();
+            return frame -> value;
+        }
+
+        @Override
+        public Int visitVarExpression(VarExpressionNode node) {
+            int line = node.getLineNum();
+            Slot slot = lookup(node.getSymbol(), node.getName(), line);
+            int index = slot.index;
+            if (!node.isArray()) {
+                if (slot.array) {
+                    throw new InterpreterException(line, "Array " + node.getName() + " used as a value");
+                }
+                if (slot.global) {
+                    int[] ints = globals;
+                    return frame -> ints[index];
+                }
+                return frame -> frame.ints[index];
+            }
+
+            if (!slot.array) {
+                throw new InterpreterException(line, node.getName() + " is not an array");
+            }
+            Int element = node.getIndex().accept(this);
+            if (slot.global) {
+                int[] array = slot.globalArray;
+                return frame -> array[checkIndex(array, element.eval(frame), line)];
+            }
+            return frame -> {
+                int[] array = frame.arrays[index];
+                return array[checkIndex(array, element.eval(frame), line)];
+            };
+        }
+
+        @Override
+        public Int visitAssignExpression(AssignExpressionNode node) {
+            VarExpressionNode var = node.getVariable();
+            int line = var.getLineNum();
+            Slot slot = lookup(var.getSymbol(), var.getName(), line);
+            int index = slot.index;
+            if (!var.isArray()) {
+                if (slot.array) {
+                    throw new InterpreterException(line, "Cannot assign to array " + var.getName());
+                }
+                Int value = node.getExpression().accept(this);
+                if (slot.global) {
+                    int[] ints = globals;
+                    return frame -> ints[index] = value.eval(frame);
+                }
+                return frame -> frame.ints[index] = value.eval(frame);
+            }
+
+            if (!slot.array) {
+                throw new InterpreterException(line, var.getName() + " is not an array");
+            }
+            Int element = var.getIndex().accept(this);
+            Int value = node.getExpression().accept(this);
+            if (slot.global) {
+                int[] array = slot.globalArray;
+                return frame -> {
+                    int i = element.eval(frame);
+                    int v = value.eval(frame);
+                    return array[checkIndex(array, i, line)] = v;
+                };
+            }
+            return frame -> {
+                int[] array = frame.arrays[index];
+                int i = element.eval(frame);
+                int v = value.eval(frame);
+                return array[checkIndex(array, i, line)] = v;
+            };
+        }
+
+        @Override
+        public Int visitCall(CallNode node) {
+            int line = node.getLineNum();
+            List<ExpressionNode> args = node.getArguments();
+            Function callee = functions.get(node.getSymbol());
+            if (callee == null) {
+                return builtin(node);
+            }
+            if (args.size() != callee.arrayParams.length) {
+                throw new InterpreterException(line, callee.name + " takes " + callee.arrayParams.length
+                        + " arguments, not " + args.size());
+            }
+
+            int scalars = 0;
+            for (boolean array : callee.arrayParams) {
+                if (!array) {
+                    scalars++;
+                }
+            }
+            Int[] ints = new Int[scalars];
+            int[] intSlots = new int[scalars];
+            Array[] arrays = new Array[args.size() - scalars];
+            int[] arraySlots = new int[arrays.length];
+            for (int i = 0, s = 0, a = 0; i < args.size(); i++) {
+                if (callee.arrayParams[i]) {
+                    arrays[a] = arrayArgument(args.get(i), callee.name, line);
+                    arraySlots[a++] = callee.paramSlots[i];
+                } else {
+                    ints[s] = args.get(i).accept(this);
+                    intSlots[s++] = callee.paramSlots[i];
+                }
+            }
+
+            return frame -> {
+                Frame call = callee.newFrame();
+                for (int i = 0; i < ints.length; i++) {
+                    call.ints[intSlots[i]] = ints[i].eval(frame);
+                }
+                for (int i = 0; i < arrays.length; i++) {
+                    call.arrays[arraySlots[i]] = arrays[i].eval(frame);
+                }
+                callee.body.exec(call);
+                return call.returnValue;
+            };
+        }
+
+        private Int builtin(CallNode node) {
+            int line = node.getLineNum();
+            int arguments = node.getArguments().size();
+            CompiledProgram program = ClosureCompiler.this.program;
+            if (node.getSymbol() == INPUT && arguments == 0) {
+                return frame -> program.input(line);
+            }
+            if (node.getSymbol() == OUTPUT && arguments == 1) {
+                Int value = node.getArguments().get(0).accept(this);
+                return frame -> {
+                    program.output(value.eval(frame));
+                    return 0;
+                };
+            }
+            if (node.getSymbol() == INPUT || node.getSymbol() == OUTPUT) {
+                throw new InterpreterException(line, node.getFunctionName() + " takes "
+                        + (node.getSymbol() == INPUT ? 0 : 1) + " arguments, not " + arguments);
+            }
+            throw new InterpreterException(line, "Undeclared function " + node.getFunctionName());
+        }
+
+        @Override
+        public Int visitSimpleExpression(SimpleExpressionNode node) {
+            if (node.getRight() == null) {
+                return node.getLeft().accept(this);
+            }
+            if (node.isRelational()) {
+                Condition condition = condition(node);
+                return frame -> condition.test(frame) ? 1 : 0;
+            }
+            return add(node.getLeft(), node.getAddOperator(), node.getRight());
+        }
+
+        @Override
+        public Int visitAddExpression(AddExpressionNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            return add(node.getLeft(), node.getOperator(), node.getRight());
+        }
+
+        @Override
+        public Int visitTerm(TermNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            int line = node.getLineNum();
+            Int left = node.getLeft().accept(this);
+            if (node.getOperator() == MulOpType.TIMES) {
+                if (node.getRight() instanceof NumberNode) {
+                    int right = ((NumberNode) node.getRight()).getValue();
+                    return frame -> left.eval(frame) * right;
+                }
+                Int right = node.getRight().accept(this);
+                return frame -> left.eval(frame) * right.eval(frame);
+            }
+            if (node.getRight() instanceof NumberNode && ((NumberNode) node.getRight()).getValue() != 0) {
+                int right = ((NumberNode) node.getRight()).getValue();
+                return frame -> left.eval(frame) / right;
+            }
+            Int right = node.getRight().accept(this);
+            return frame -> {
+                int dividend = left.eval(frame);
+                int divisor = right.eval(frame);
+                if (divisor == 0) {
+                    throw new InterpreterException(line, "Division by zero");
+                }
+                return dividend / divisor;
+            };
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package compiler.interpreter;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * A C- program compiled by ClosureCompiler, ready to run any number of
+ * times. Every run starts with the globals set to zero.
+ *
+ * The globals belong to the program, so one CompiledProgram must not run
+ * on two threads at once.
+ */
+public final class CompiledProgram {
+    private final int[] globals;
+    private final List<int[]> globalArrays;
+    private Function main;
+    private IntSupplier input;
+    private IntConsumer output;
+
+    CompiledProgram(int[] globals, List<int[]> globalArrays) {
+        this.globals = globals;
+        this.globalArrays = globalArrays;
+    }
+
+    void setMain(Function main) {
+        this.main = main;
+    }
+
+    /**
+     * Runs main.
+     *
+     * @param input  supplies the values of input(); it throws
+     *               NoSuchElementException when there are no more
+     * @param output receives the values of output()
+     * @return the value main returned, or 0
+     * @throws InterpreterException if the program fails
+     */
+    public int run(IntSupplier input, IntConsumer output) {
+        Arrays.fill(globals, 0);
+        for (int[] array : globalArrays) {
+            Arrays.fill(array, 0);
+        }
+        this.input = input;
+        this.output = output;
+        Frame frame = main.newFrame();
+        try {
+            main.body.exec(frame);
+        } catch (StackOverflowError e) {
+            throw new InterpreterException(main.line, "Stack overflow, the calls nest too deeply");
+        }
+        return frame.returnValue;
+    }
+
+    /**
+     * Runs main, reading the values of input() from in, separated by white
+     * space, and writing each value of output() to out on a line of its
+     * own. out is not flushed.
+     */
+    public int run(Reader in, Writer out) {
+        return run(ProgramIo.reader(in), ProgramIo.writer(out));
+    }
+
+    int input(int line) {
+        try {
+            return input.getAsInt();
+        } catch (NoSuchElementException e) {
+            throw new InterpreterException(line, "input() found no more numbers");
+        }
+    }
+
+    void output(int value) {
+        output.accept(value);
+    }
+}
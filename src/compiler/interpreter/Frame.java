@@ -0,0 +1,20 @@
+package compiler.interpreter;
+
+/**
+ * The storage of one call: the function's scalar variables and parameters
+ * in ints, and its arrays and array parameters in arrays, each at the slot
+ * the ClosureCompiler gave it. The globals are kept in a Frame as well.
+ */
+final class Frame {
+    private static final int[][] NO_ARRAYS = new int[0][];
+
+    final int[] ints;
+    final int[][] arrays;
+    // Set by a return statement
+    int returnValue;
+
+    Frame(int ints, int arrays) {
+        this.ints = new int[ints];
+        this.arrays = arrays == 0 ? NO_ARRAYS : new int[arrays][];
+    }
+}
@@ -0,0 +1,45 @@
+package compiler.interpreter;
+
+/**
+ * A compiled C- function: its frame layout and its body as closures.
+ *
+ * The object exists before its body is compiled, so calls to functions
+ * that are still being compiled, such as recursive ones, can refer to it.
+ */
+final class Function {
+    final String name;
+    final int line;
+    final boolean returnsValue;
+    // For each parameter, whether it is an array, and its slot in the ints
+    // or arrays of the frame
+    final boolean[] arrayParams;
+    final int[] paramSlots;
+
+    int intSlots;
+    // The size of the local array in each array slot, or -1 for an array
+    // parameter
+    int[] arraySizes = new int[0];
+    ClosureCompiler.Statement body;
+
+    Function(String name, int line, boolean returnsValue, int params) {
+        this.name = name;
+        this.line = line;
+        this.returnsValue = returnsValue;
+        this.arrayParams = new boolean[params];
+        this.paramSlots = new int[params];
+    }
+
+    /**
+     * @return a frame for a call, with the local arrays allocated and the
+     *         parameters not yet set
+     */
+    Frame newFrame() {
+        Frame frame = new Frame(intSlots, arraySizes.length);
+        for (int i = 0; i < arraySizes.length; i++) {
+            if (arraySizes[i] >= 0) {
+                frame.arrays[i] = new int[arraySizes[i]];
+            }
+        }
+        return frame;
+    }
+}
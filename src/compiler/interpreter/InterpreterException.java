@@ -0,0 +1,22 @@
+package compiler.interpreter;
+
+/**
+ * A C- program that cannot be compiled, such as one that uses an undeclared
+ * name, or that fails while it runs, such as by dividing by zero or
+ * indexing outside an array. The message starts with the source line, as
+ * syntax errors do.
+ */
+public class InterpreterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+
+    public InterpreterException(int line, String message) {
+        super("Line " + line + ": " + message);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,63 @@
+package compiler.interpreter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * The text forms of input() and output() shared by the ways of running a
+ * C- program.
+ */
+public final class ProgramIo {
+    private ProgramIo() {
+    }
+
+    /**
+     * @return a supplier of the optionally signed decimal ints in in,
+     *         separated by white space, that throws NoSuchElementException
+     *         when there are no more
+     */
+    public static IntSupplier reader(Reader in) {
+        return () -> {
+            try {
+                int c = in.read();
+                while (c != -1 && Character.isWhitespace(c)) {
+                    c = in.read();
+                }
+                boolean negative = c == '-';
+                if (negative) {
+                    c = in.read();
+                }
+                if (c < '0' || c > '9') {
+                    throw new NoSuchElementException();
+                }
+                int value = 0;
+                while (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    c = in.read();
+                }
+                return negative ? -value : value;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * @return a consumer that writes each value to out on a line of its own
+     */
+    public static IntConsumer writer(Writer out) {
+        return value -> {
+            try {
+                out.write(Integer.toString(value));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
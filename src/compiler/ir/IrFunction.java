@@ -0,0 +1,500 @@
+package compiler.ir;
+
+import compiler.scanner.SymbolTable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One C- function in three-address code, as Lowering produces it.
+ *
+ * An instruction is an int index into parallel arrays: an opcode, a
+ * destination and two operands. An operand is a variable number, or a
+ * constant, which is negative; getConstant gives its value. Instructions
+ * are grouped into basic blocks, numbered in the order they are laid out,
+ * and each block ends with a JUMP, an IF or a RETURN. Its successors, at
+ * most two, and its predecessors form the control-flow graph.
+ *
+ * The instructions:
+ * - COPY: dst = a
+ * - ADD, SUB, MUL, DIV: dst = a op b
+ * - LT, LE, GT, GE, EQ, NE: dst = 1 if a op b holds, 0 if not
+ * - LOAD: dst = a[b], where a is an array variable
+ * - STORE: dst[a] = b, where dst is an array variable
+ * - ARG: pushes a, which may be an array variable, for the next CALL
+ * - CALL: dst = the function with symbol a, called with the last b
+ *   arguments pushed; dst is NONE if the value is not used
+ * - JUMP: goes to successor 0
+ * - IF_LT to IF_NE: goes to successor 0 if a op b holds, else successor 1
+ * - RETURN: returns a, or nothing if a is NONE
+ *
+ * Parameters, locals, globals and temporaries are all variables. A local
+ * that shadows another is a variable of its own.
+ */
+public final class IrFunction {
+    public static final int NOP = 0;
+    public static final int COPY = 1;
+    public static final int ADD = 2;
+    public static final int SUB = 3;
+    public static final int MUL = 4;
+    public static final int DIV = 5;
+    public static final int LT = 6;
+    public static final int LE = 7;
+    public static final int GT = 8;
+    public static final int GE = 9;
+    public static final int EQ = 10;
+    public static final int NE = 11;
+    public static final int LOAD = 12;
+    public static final int STORE = 13;
+    public static final int ARG = 14;
+    public static final int CALL = 15;
+    public static final int JUMP = 16;
+    public static final int IF_LT = 17;
+    public static final int IF_LE = 18;
+    public static final int IF_GT = 19;
+    public static final int IF_GE = 20;
+    public static final int IF_EQ = 21;
+    public static final int IF_NE = 22;
+    public static final int RETURN = 23;
+
+    // The distance from a comparison to its IF
+    public static final int IF_OFFSET = IF_LT - LT;
+
+    // No destination or operand
+    public static final int NONE = Integer.MIN_VALUE;
+
+    // The kinds of variable
+    public static final int PARAM = 0;
+    public static final int LOCAL = 1;
+    public static final int GLOBAL = 2;
+    public static final int TEMP = 3;
+
+    private static final String[] OPERATORS = { "", "", "+", "-", "*", "/", "<", "<=", ">", ">=", "==", "!=" };
+
+    private final String name;
+    private final boolean returnsValue;
+
+    private int[] ops = new int[64];
+    private int[] dsts = new int[64];
+    private int[] as = new int[64];
+    private int[] bs = new int[64];
+    private int[] lines = new int[64];
+    private int size;
+
+    private int[] constants = new int[16];
+    private int constantCount;
+
+    private int[] variableSymbols = new int[16];
+    private byte[] variableKinds = new byte[16];
+    // -1 for a scalar, 0 for an array parameter
+    private int[] arraySizes = new int[16];
+    private int variableCount;
+
+    private int[] blockStarts = new int[16];
+    // Two per block, -1 for none; labels until finish() makes them blocks
+    private int[] successors = new int[32];
+    private int blockCount;
+    private int[] labelBlocks = new int[16];
+    private int labelCount;
+    private int[] predecessorStarts;
+    private int[] predecessors;
+
+    IrFunction(String name, boolean returnsValue) {
+        this.name = name;
+        this.returnsValue = returnsValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean returnsValue() {
+        return returnsValue;
+    }
+
+    /**
+     * @return the number of instructions
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getOpcode(int i) {
+        return ops[i];
+    }
+
+    public int getDst(int i) {
+        return dsts[i];
+    }
+
+    public int getA(int i) {
+        return as[i];
+    }
+
+    public int getB(int i) {
+        return bs[i];
+    }
+
+    /**
+     * @return the C- line the instruction came from
+     */
+    public int getLine(int i) {
+        return lines[i];
+    }
+
+    public static boolean isConstant(int operand) {
+        return operand < 0 && operand != NONE;
+    }
+
+    public static boolean isVariable(int operand) {
+        return operand >= 0;
+    }
+
+    public int getConstant(int operand) {
+        return constants[~operand];
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public int getVariableKind(int variable) {
+        return variableKinds[variable];
+    }
+
+    /**
+     * @return the symbol of the variable's name, or NO_SYMBOL for a
+     *         temporary
+     */
+    public int getVariableSymbol(int variable) {
+        return variableSymbols[variable];
+    }
+
+    public boolean isArray(int variable) {
+        return arraySizes[variable] >= 0;
+    }
+
+    /**
+     * @return the number of elements, 0 for an array parameter and -1 for a
+     *         scalar
+     */
+    public int getArraySize(int variable) {
+        return arraySizes[variable];
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return the first instruction of the block
+     */
+    public int getBlockStart(int block) {
+        return blockStarts[block];
+    }
+
+    /**
+     * @return the instruction after the last one of the block
+     */
+    public int getBlockEnd(int block) {
+        return block + 1 < blockCount ? blockStarts[block + 1] : size;
+    }
+
+    /**
+     * @param index 0 or 1
+     * @return the successor, or -1
+     */
+    public int getSuccessor(int block, int index) {
+        return successors[2 * block + index];
+    }
+
+    public int getPredecessorCount(int block) {
+        return predecessorStarts[block + 1] - predecessorStarts[block];
+    }
+
+    public int getPredecessor(int block, int index) {
+        return predecessors[predecessorStarts[block] + index];
+    }
+
+    int newVariable(int symbol, int kind, int arraySize) {
+        if (variableCount == variableSymbols.length) {
+            int length = variableCount * 2;
+            variableSymbols = Arrays.copyOf(variableSymbols, length);
+            variableKinds = Arrays.copyOf(variableKinds, length);
+            arraySizes = Arrays.copyOf(arraySizes, length);
+        }
+        variableSymbols[variableCount] = symbol;
+        variableKinds[variableCount] = (byte) kind;
+        arraySizes[variableCount] = arraySize;
+        return variableCount++;
+    }
+
+    int newTemp() {
+        return newVariable(SymbolTable.NO_SYMBOL, TEMP, -1);
+    }
+
+    /**
+     * @return the operand for value
+     */
+    int constant(int value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        return ~constantCount++;
+    }
+
+    /**
+     * @return the index of the instruction
+     */
+    int emit(int op, int dst, int a, int b, int line) {
+        if (size == ops.length) {
+            int length = size * 2;
+            ops = Arrays.copyOf(ops, length);
+            dsts = Arrays.copyOf(dsts, length);
+            as = Arrays.copyOf(as, length);
+            bs = Arrays.copyOf(bs, length);
+            lines = Arrays.copyOf(lines, length);
+        }
+        ops[size] = op;
+        dsts[size] = dst;
+        as[size] = a;
+        bs[size] = b;
+        lines[size] = line;
+        return size++;
+    }
+
+    /**
+     * Rewrites instruction i, which must be a NOP.
+     */
+    void set(int i, int op, int dst, int a, int b) {
+        ops[i] = op;
+        dsts[i] = dst;
+        as[i] = a;
+        bs[i] = b;
+    }
+
+    int newLabel() {
+        if (labelCount == labelBlocks.length) {
+            labelBlocks = Arrays.copyOf(labelBlocks, labelCount * 2);
+        }
+        labelBlocks[labelCount] = -1;
+        return labelCount++;
+    }
+
+    /**
+     * Starts the block of label at the next instruction.
+     */
+    void startBlock(int label) {
+        if (blockCount == blockStarts.length) {
+            blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+            successors = Arrays.copyOf(successors, blockCount * 4);
+        }
+        labelBlocks[label] = blockCount;
+        blockStarts[blockCount] = size;
+        successors[2 * blockCount] = -1;
+        successors[2 * blockCount + 1] = -1;
+        blockCount++;
+    }
+
+    /**
+     * Sets the successors of the current block, as labels or -1.
+     */
+    void setSuccessors(int first, int second) {
+        successors[2 * blockCount - 2] = first;
+        successors[2 * blockCount - 1] = second;
+    }
+
+    /**
+     * Resolves the successors, drops the NOPs and builds the predecessors.
+     */
+    void finish() {
+        for (int i = 0; i < 2 * blockCount; i++) {
+            if (successors[i] >= 0) {
+                successors[i] = labelBlocks[successors[i]];
+            }
+        }
+
+        int kept = 0;
+        int block = 0;
+        for (int i = 0; i < size; i++) {
+            while (block < blockCount && blockStarts[block] == i) {
+                blockStarts[block++] = kept;
+            }
+            if (ops[i] != NOP) {
+                set(kept, ops[i], dsts[i], as[i], bs[i]);
+                lines[kept] = lines[i];
+                kept++;
+            }
+        }
+        while (block < blockCount) {
+            blockStarts[block++] = kept;
+        }
+        size = kept;
+
+        // An IF with both edges to one block gives it one predecessor
+        predecessorStarts = new int[blockCount + 1];
+        for (int b = 0; b < blockCount; b++) {
+            for (int k = 0; k < 2; k++) {
+                int successor = successors[2 * b + k];
+                if (successor >= 0 && (k == 0 || successor != successors[2 * b])) {
+                    predecessorStarts[successor + 1]++;
+                }
+            }
+        }
+        for (int b = 0; b < blockCount; b++) {
+            predecessorStarts[b + 1] += predecessorStarts[b];
+        }
+        predecessors = new int[predecessorStarts[blockCount]];
+        int[] fill = Arrays.copyOf(predecessorStarts, blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            for (int k = 0; k < 2; k++) {
+                int successor = successors[2 * b + k];
+                if (successor >= 0 && (k == 0 || successor != successors[2 * b])) {
+                    predecessors[fill[successor]++] = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the names of the variables for the dump; a temporary is t
+     *         and a number, and a shadowing local gets a number too
+     */
+    private String[] variableNames() {
+        String[] names = new String[variableCount];
+        Map<Integer, Integer> seen = new HashMap<>();
+        int temps = 0;
+        for (int v = 0; v < variableCount; v++) {
+            if (variableKinds[v] == TEMP) {
+                names[v] = "t" + temps++;
+                continue;
+            }
+            String name = SymbolTable.shared().name(variableSymbols[v]);
+            int count = seen.merge(variableSymbols[v], 1, Integer::sum);
+            names[v] = count == 1 ? name : name + "." + (count - 1);
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return toString(null);
+    }
+
+    /**
+     * @return the code as text, with the variables live into and out of
+     *         each block if liveness is given
+     */
+    public String toString(Liveness liveness) {
+        String[] names = variableNames();
+        StringBuilder out = new StringBuilder();
+        out.append("function ").append(name).append('(');
+        boolean first = true;
+        for (int v = 0; v < variableCount; v++) {
+            if (variableKinds[v] == PARAM) {
+                out.append(first ? "" : ", ").append(names[v]).append(isArray(v) ? "[]" : "");
+                first = false;
+            }
+        }
+        out.append(returnsValue ? ") returns int\n" : ")\n");
+        for (int kind = LOCAL; kind <= GLOBAL; kind++) {
+            first = true;
+            for (int v = 0; v < variableCount; v++) {
+                if (variableKinds[v] == kind) {
+                    out.append(first ? (kind == LOCAL ? "  locals: " : "  globals: ") : ", ").append(names[v]);
+                    if (isArray(v)) {
+                        out.append('[').append(arraySizes[v]).append(']');
+                    }
+                    first = false;
+                }
+            }
+            if (!first) {
+                out.append('\n');
+            }
+        }
+
+        for (int b = 0; b < blockCount; b++) {
+            out.append("B").append(b).append(":");
+            if (getPredecessorCount(b) > 0) {
+                out.append("  preds");
+                for (int k = 0; k < getPredecessorCount(b); k++) {
+                    out.append(" B").append(getPredecessor(b, k));
+                }
+            } else if (b > 0) {
+                out.append("  unreachable");
+            }
+            out.append('\n');
+            if (liveness != null) {
+                liveSet(out.append("    live in: "), liveness, b, true, names);
+            }
+            for (int i = getBlockStart(b); i < getBlockEnd(b); i++) {
+                instruction(out.append("    "), i, b, names);
+                out.append('\n');
+            }
+            if (liveness != null) {
+                liveSet(out.append("    live out: "), liveness, b, false, names);
+            }
+        }
+        return out.toString();
+    }
+
+    private void liveSet(StringBuilder out, Liveness liveness, int block, boolean in, String[] names) {
+        int count = in ? liveness.getLiveInCount(block) : liveness.getLiveOutCount(block);
+        for (int k = 0; k < count; k++) {
+            int v = in ? liveness.getLiveIn(block, k) : liveness.getLiveOut(block, k);
+            out.append(k == 0 ? "" : " ").append(names[v]);
+        }
+        out.append(count == 0 ? "-\n" : "\n");
+    }
+
+    private void instruction(StringBuilder out, int i, int block, String[] names) {
+        int op = ops[i];
+        int dst = dsts[i];
+        switch (op) {
+            case COPY:
+                out.append(names[dst]).append(" = ").append(operand(as[i], names));
+                break;
+            case LOAD:
+                out.append(names[dst]).append(" = ").append(names[as[i]]).append('[')
+                        .append(operand(bs[i], names)).append(']');
+                break;
+            case STORE:
+                out.append(names[dst]).append('[').append(operand(as[i], names)).append("] = ")
+                        .append(operand(bs[i], names));
+                break;
+            case ARG:
+                out.append("arg ").append(operand(as[i], names));
+                break;
+            case CALL:
+                if (dst != NONE) {
+                    out.append(names[dst]).append(" = ");
+                }
+                out.append("call ").append(SymbolTable.shared().name(as[i])).append(", ").append(bs[i]);
+                break;
+            case JUMP:
+                out.append("goto B").append(getSuccessor(block, 0));
+                break;
+            case RETURN:
+                out.append("return");
+                if (as[i] != NONE) {
+                    out.append(' ').append(operand(as[i], names));
+                }
+                break;
+            default:
+                if (op >= IF_LT && op <= IF_NE) {
+                    out.append("if ").append(operand(as[i], names)).append(' ').append(OPERATORS[op - IF_OFFSET])
+                            .append(' ').append(operand(bs[i], names)).append(" goto B")
+                            .append(getSuccessor(block, 0)).append(" else B").append(getSuccessor(block, 1));
+                } else {
+                    out.append(names[dst]).append(" = ").append(operand(as[i], names)).append(' ')
+                            .append(OPERATORS[op]).append(' ').append(operand(bs[i], names));
+                }
+                break;
+        }
+    }
+
+    private String operand(int operand, String[] names) {
+        return isConstant(operand) ? Integer.toString(getConstant(operand)) : names[operand];
+    }
+}
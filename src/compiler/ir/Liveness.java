@@ -0,0 +1,232 @@
+package compiler.ir;
+
+import java.util.Arrays;
+
+/**
+ * Which variables of an IrFunction are live into and out of each block:
+ * read later along some path before they are written.
+ *
+ * Only the scalar parameters, locals and temporaries are tracked. Globals
+ * and arrays live in memory, where a call or a store through another name
+ * can reach them.
+ *
+ * Rather than a bit set of every variable for every block, which grows
+ * with blocks times variables, each variable is followed on its own:
+ * backwards from the blocks that read it before writing it, through
+ * predecessors, until a block that writes it. That takes time and memory
+ * linear in the instructions plus the total size of the live sets, so a
+ * long function whose temporaries each live in one block costs no more
+ * than its code. The sets of each block are kept sorted by variable.
+ */
+public final class Liveness {
+    private final int[] inStarts;
+    private final int[] in;
+    private final int[] outStarts;
+    private final int[] out;
+    private final IrFunction function;
+
+    private Liveness(IrFunction function, int[] inStarts, int[] in, int[] outStarts, int[] out) {
+        this.function = function;
+        this.inStarts = inStarts;
+        this.in = in;
+        this.outStarts = outStarts;
+        this.out = out;
+    }
+
+    public static Liveness analyze(IrFunction function) {
+        return new Solver(function).solve();
+    }
+
+    public boolean isLiveIn(int block, int variable) {
+        return Arrays.binarySearch(in, inStarts[block], inStarts[block + 1], variable) >= 0;
+    }
+
+    public boolean isLiveOut(int block, int variable) {
+        return Arrays.binarySearch(out, outStarts[block], outStarts[block + 1], variable) >= 0;
+    }
+
+    public int getLiveInCount(int block) {
+        return inStarts[block + 1] - inStarts[block];
+    }
+
+    /**
+     * @return the index-th variable live into block, in increasing order
+     */
+    public int getLiveIn(int block, int index) {
+        return in[inStarts[block] + index];
+    }
+
+    public int getLiveOutCount(int block) {
+        return outStarts[block + 1] - outStarts[block];
+    }
+
+    public int getLiveOut(int block, int index) {
+        return out[outStarts[block] + index];
+    }
+
+    /**
+     * @return whether liveness is computed for the variable
+     */
+    public boolean isTracked(int variable) {
+        return isTracked(function, variable);
+    }
+
+    private static boolean isTracked(IrFunction function, int variable) {
+        return !function.isArray(variable) && function.getVariableKind(variable) != IrFunction.GLOBAL;
+    }
+
+    private static final class Solver {
+        private final IrFunction function;
+        private final int blocks;
+        // (variable, block) pairs, as parallel arrays
+        private int[] pairVariables = new int[16];
+        private int[] pairBlocks = new int[16];
+        private int pairCount;
+
+        Solver(IrFunction function) {
+            this.function = function;
+            this.blocks = function.getBlockCount();
+        }
+
+        Liveness solve() {
+            int variables = function.getVariableCount();
+            // The blocks that read each variable before writing it, and the
+            // blocks that write it
+            int[] lastUse = new int[variables];
+            int[] lastDef = new int[variables];
+            Arrays.fill(lastUse, -1);
+            Arrays.fill(lastDef, -1);
+            for (int b = 0; b < blocks; b++) {
+                for (int i = function.getBlockStart(b); i < function.getBlockEnd(b); i++) {
+                    int op = function.getOpcode(i);
+                    // A CALL's operands are a symbol and a count, and unused
+                    // operands are NONE
+                    if (op == IrFunction.LOAD) {
+                        read(function.getB(i), b, lastUse, lastDef);
+                    } else if (op != IrFunction.CALL) {
+                        read(function.getA(i), b, lastUse, lastDef);
+                        read(function.getB(i), b, lastUse, lastDef);
+                    }
+                    int dst = function.getDst(i);
+                    if (writesDst(op) && dst != IrFunction.NONE && isTracked(function, dst) && lastDef[dst] != b) {
+                        lastDef[dst] = b;
+                        add(dst, -1 - b);
+                    }
+                }
+            }
+            int uses = pairCount;
+            int[] useStarts = byVariable(variables, uses, pairVariables, pairBlocks);
+            int[] useBlocks = Arrays.copyOf(pairBlocks, uses);
+
+            // Walk back from each upward exposed use; a def is stored as
+            // -1 - block among the uses
+            pairCount = 0;
+            int[] defined = new int[blocks];
+            int[] liveIn = new int[blocks];
+            int[] liveOut = new int[blocks];
+            int[] stack = new int[blocks];
+            for (int v = 0; v < variables; v++) {
+                int mark = v + 1;
+                for (int k = useStarts[v]; k < useStarts[v + 1]; k++) {
+                    if (useBlocks[k] < 0) {
+                        defined[-1 - useBlocks[k]] = mark;
+                    }
+                }
+                int top = 0;
+                for (int k = useStarts[v]; k < useStarts[v + 1]; k++) {
+                    int b = useBlocks[k];
+                    if (b >= 0 && liveIn[b] != mark) {
+                        liveIn[b] = mark;
+                        stack[top++] = b;
+                    }
+                }
+                while (top > 0) {
+                    int b = stack[--top];
+                    add(v, b);
+                    for (int k = 0; k < function.getPredecessorCount(b); k++) {
+                        int p = function.getPredecessor(b, k);
+                        if (liveOut[p] != mark) {
+                            liveOut[p] = mark;
+                            add(v, -1 - p);
+                        }
+                        if (defined[p] != mark && liveIn[p] != mark) {
+                            liveIn[p] = mark;
+                            stack[top++] = p;
+                        }
+                    }
+                }
+            }
+
+            // Split the pairs into the two sets, grouped by block
+            int[] inStarts = new int[blocks + 1];
+            int[] outStarts = new int[blocks + 1];
+            for (int k = 0; k < pairCount; k++) {
+                int b = pairBlocks[k];
+                if (b >= 0) {
+                    inStarts[b + 1]++;
+                } else {
+                    outStarts[-b]++;
+                }
+            }
+            for (int b = 0; b < blocks; b++) {
+                inStarts[b + 1] += inStarts[b];
+                outStarts[b + 1] += outStarts[b];
+            }
+            int[] in = new int[inStarts[blocks]];
+            int[] out = new int[outStarts[blocks]];
+            int[] inNext = Arrays.copyOf(inStarts, blocks);
+            int[] outNext = Arrays.copyOf(outStarts, blocks);
+            // The pairs come in variable order, so each set ends up sorted
+            for (int k = 0; k < pairCount; k++) {
+                int b = pairBlocks[k];
+                if (b >= 0) {
+                    in[inNext[b]++] = pairVariables[k];
+                } else {
+                    out[outNext[-1 - b]++] = pairVariables[k];
+                }
+            }
+            return new Liveness(function, inStarts, in, outStarts, out);
+        }
+
+        // Records a read of operand in block unless the block wrote it first
+        private void read(int operand, int block, int[] lastUse, int[] lastDef) {
+            if (IrFunction.isVariable(operand) && isTracked(function, operand) && lastDef[operand] != block
+                    && lastUse[operand] != block) {
+                lastUse[operand] = block;
+                add(operand, block);
+            }
+        }
+
+        private void add(int variable, int block) {
+            if (pairCount == pairVariables.length) {
+                pairVariables = Arrays.copyOf(pairVariables, pairCount * 2);
+                pairBlocks = Arrays.copyOf(pairBlocks, pairCount * 2);
+            }
+            pairVariables[pairCount] = variable;
+            pairBlocks[pairCount++] = block;
+        }
+
+        // Sorts the first count pairs by variable, keeping their order
+        // otherwise, and returns where each variable starts
+        private static int[] byVariable(int variables, int count, int[] pairVariables, int[] pairBlocks) {
+            int[] starts = new int[variables + 1];
+            for (int k = 0; k < count; k++) {
+                starts[pairVariables[k] + 1]++;
+            }
+            for (int v = 0; v < variables; v++) {
+                starts[v + 1] += starts[v];
+            }
+            int[] next = Arrays.copyOf(starts, variables);
+            int[] sortedBlocks = new int[count];
+            for (int k = 0; k < count; k++) {
+                sortedBlocks[next[pairVariables[k]]++] = pairBlocks[k];
+            }
+            System.arraycopy(sortedBlocks, 0, pairBlocks, 0, count);
+            return starts;
+        }
+
+        private static boolean writesDst(int op) {
+            return op >= IrFunction.COPY && op <= IrFunction.LOAD || op == IrFunction.CALL;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package compiler.ir;
+
+import compiler.interpreter.InterpreterException;
+import compiler.parser.AST.*;
+import compiler.scanner.SymbolTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lowers the FunDeclarationNodes of a program into IrFunctions.
+ *
+ * Expressions become a temporary per operator, except that the value of an
+ * assignment to a scalar goes straight into the variable. Operands and
+ * arguments are evaluated left to right: a variable used as an operand is
+ * copied to a temporary first only when the operands after it assign to
+ * it, or call a function and it is a global. The ARGs of a call come
+ * together just before its CALL. An if or a while becomes an IF that ends
+ * its block, with the condition of a while in a block of its own.
+ * Statements after a return in the same block are dropped.
+ *
+ * Each node is visited once and each instruction, block and variable is
+ * appended to an array that doubles when full. A name is found with one
+ * lookup in a map from symbols to the variable now in scope, and leaving a
+ * scope restores what its declarations shadowed. So lowering takes time
+ * and memory linear in the size of the function, however many names and
+ * blocks it has.
+ *
+ * Names are resolved in declaration order, as in the ClosureCompiler, and
+ * a program that uses an undeclared name gives an InterpreterException.
+ */
+public class Lowering {
+    private static final int INPUT = SymbolTable.shared().intern("input");
+    private static final int OUTPUT = SymbolTable.shared().intern("output");
+
+    // The globals, as -1 for a scalar or the size of an array
+    private final Map<Integer, Integer> globals = new HashMap<>();
+    // Whether each function declared so far returns a value
+    private final Map<Integer, Boolean> functions = new HashMap<>();
+    private final StatementLowering statements = new StatementLowering();
+    private final ExpressionLowering expressions = new ExpressionLowering();
+
+    // The function being lowered
+    private IrFunction function;
+    private final Map<Integer, Integer> visible = new HashMap<>();
+    // For each variable, the one its declaration shadowed or -1, and the
+    // depth of its scope
+    private int[] shadowed = new int[16];
+    private int[] depths = new int[16];
+    // For each variable, the clock when it was last written
+    private int[] written = new int[16];
+    // The variables declared in the open scopes, and where each scope
+    // starts among them
+    private int[] declared = new int[16];
+    private int declaredCount;
+    private int[] scopeStarts = new int[16];
+    private int depth;
+    private int line;
+    private boolean terminated;
+    // Counts calls and writes to named variables; a call may write any
+    // global
+    private int clock;
+    private int lastCall;
+
+    // The variable ExpressionLowering should leave its value in, or NONE
+    private int target = IrFunction.NONE;
+    // The operand ExpressionLowering produced
+    private int result;
+    // The operands operands() produced
+    private int leftOperand;
+    private int rightOperand;
+
+    private Lowering() {
+    }
+
+    /**
+     * @return one IrFunction for each function, in declaration order
+     * @throws InterpreterException if the program uses an undeclared name
+     */
+    public static List<IrFunction> lower(ProgramNode root) {
+        return new Lowering().lowerProgram(root);
+    }
+
+    private List<IrFunction> lowerProgram(ProgramNode root) {
+        List<IrFunction> lowered = new ArrayList<>();
+        for (DeclarationNode decl : root.getDeclarations()) {
+            if (decl instanceof VarDeclarationNode) {
+                VarDeclarationNode var = (VarDeclarationNode) decl;
+                if (globals.containsKey(var.getSymbol()) || functions.containsKey(var.getSymbol())) {
+                    throw new InterpreterException(var.getLineNum(), var.getName() + " is already declared");
+                }
+                globals.put(var.getSymbol(), var.isArray() ? var.getArraySize() : -1);
+            } else {
+                FunDeclarationNode fun = (FunDeclarationNode) decl;
+                if (globals.containsKey(fun.getSymbol()) || functions.containsKey(fun.getSymbol())) {
+                    throw new InterpreterException(fun.getLineNum(), fun.getName() + " is already declared");
+                }
+                functions.put(fun.getSymbol(), fun.getType() == TypeSpecifier.INT);
+                try {
+                    lowered.add(lowerFunction(fun));
+                } catch (StackOverflowError e) {
+                    throw new InterpreterException(fun.getLineNum(),
+                            "Function " + fun.getName() + " nests too deeply to lower");
+                } finally {
+                    visible.clear();
+                    declaredCount = 0;
+                    depth = 0;
+                }
+            }
+        }
+        return lowered;
+    }
+
+    private IrFunction lowerFunction(FunDeclarationNode fun) {
+        function = new IrFunction(fun.getName(), fun.getType() == TypeSpecifier.INT);
+        function.startBlock(function.newLabel());
+        terminated = false;
+        line = fun.getLineNum();
+
+        enterScope();
+        for (ParamNode param : fun.getParams()) {
+            declare(param.getSymbol(), param.getName(), param.getLineNum(), IrFunction.PARAM,
+                    param.isArray() ? 0 : -1);
+        }
+        fun.getBody().accept(statements);
+        leaveScope();
+
+        if (!terminated) {
+            emit(IrFunction.RETURN, IrFunction.NONE,
+                    function.returnsValue() ? function.constant(0) : IrFunction.NONE, IrFunction.NONE);
+        }
+        function.finish();
+        IrFunction lowered = function;
+        function = null;
+        return lowered;
+    }
+
+    private void enterScope() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = declaredCount;
+    }
+
+    private void leaveScope() {
+        int start = scopeStarts[--depth];
+        while (declaredCount > start) {
+            int variable = declared[--declaredCount];
+            int symbol = function.getVariableSymbol(variable);
+            if (shadowed[variable] >= 0) {
+                visible.put(symbol, shadowed[variable]);
+            } else {
+                visible.remove(symbol);
+            }
+        }
+    }
+
+    private int declare(int symbol, String name, int line, int kind, int arraySize) {
+        Integer previous = visible.get(symbol);
+        if (previous != null && depths[previous] == depth) {
+            throw new InterpreterException(line, name + " is already declared");
+        }
+        int variable = newVariable(symbol, kind, arraySize, previous == null ? -1 : previous);
+        visible.put(symbol, variable);
+        if (declaredCount == declared.length) {
+            declared = Arrays.copyOf(declared, declaredCount * 2);
+        }
+        declared[declaredCount++] = variable;
+        return variable;
+    }
+
+    private int newVariable(int symbol, int kind, int arraySize, int shadows) {
+        int variable = function.newVariable(symbol, kind, arraySize);
+        // Temporaries take numbers too, so variable may be past the end
+        if (variable >= shadowed.length) {
+            int length = Math.max(variable + 1, shadowed.length * 2);
+            shadowed = Arrays.copyOf(shadowed, length);
+            depths = Arrays.copyOf(depths, length);
+            written = Arrays.copyOf(written, length);
+        }
+        shadowed[variable] = shadows;
+        written[variable] = 0;
+        depths[variable] = kind == IrFunction.GLOBAL ? 0 : depth;
+        return variable;
+    }
+
+    private int lookup(VarExpressionNode var) {
+        Integer variable = visible.get(var.getSymbol());
+        if (variable != null) {
+            return variable;
+        }
+        Integer size = globals.get(var.getSymbol());
+        if (size == null) {
+            throw new InterpreterException(var.getLineNum(), "Undeclared variable " + var.getName());
+        }
+        // A global gets a variable in the first function that uses it
+        int global = newVariable(var.getSymbol(), IrFunction.GLOBAL, size, -1);
+        visible.put(var.getSymbol(), global);
+        return global;
+    }
+
+    private int emit(int op, int dst, int a, int b) {
+        if (op == IrFunction.CALL) {
+            lastCall = ++clock;
+        }
+        if (dst != IrFunction.NONE && op != IrFunction.STORE && function.getVariableKind(dst) != IrFunction.TEMP) {
+            written[dst] = ++clock;
+        }
+        return function.emit(op, dst, a, b, line);
+    }
+
+    // Whether operand may have been changed since the clock read since
+    private boolean changedSince(int operand, int since) {
+        return written[operand] > since || lastCall > since && function.getVariableKind(operand) == IrFunction.GLOBAL;
+    }
+
+    // A placeholder for a copy of operand if it is a named variable, or -1
+    private int holdCopy(int operand) {
+        if (IrFunction.isVariable(operand) && function.getVariableKind(operand) != IrFunction.TEMP) {
+            return emit(IrFunction.NOP, IrFunction.NONE, IrFunction.NONE, IrFunction.NONE);
+        }
+        return -1;
+    }
+
+    // Fills in the placeholder if operand changed since, and gives the
+    // operand to use
+    private int copyIfChanged(int copy, int operand, int since) {
+        if (copy < 0 || !changedSince(operand, since)) {
+            return operand;
+        }
+        int temp = function.newTemp();
+        function.set(copy, IrFunction.COPY, temp, operand, IrFunction.NONE);
+        return temp;
+    }
+
+    // Ends the block with a jump to label, unless it has ended already
+    private void jump(int label) {
+        if (!terminated) {
+            emit(IrFunction.JUMP, IrFunction.NONE, IrFunction.NONE, IrFunction.NONE);
+            function.setSuccessors(label, -1);
+            terminated = true;
+        }
+    }
+
+    // Starts the block of label, which the block before falls through to
+    private void start(int label) {
+        jump(label);
+        function.startBlock(label);
+        terminated = false;
+    }
+
+    private int value(ExpressionNode node, int target) {
+        int saved = this.target;
+        this.target = target;
+        node.accept(expressions);
+        this.target = saved;
+        return result;
+    }
+
+    // The destination for the value of the node being lowered
+    private int destination() {
+        return target != IrFunction.NONE ? target : function.newTemp();
+    }
+
+    // Gives operand as the result, copied into the target if there is one
+    private void produce(int operand) {
+        if (target != IrFunction.NONE && operand != target) {
+            emit(IrFunction.COPY, target, operand, IrFunction.NONE);
+            operand = target;
+        }
+        result = operand;
+    }
+
+    private static boolean isLeaf(ExpressionNode node) {
+        return node instanceof NumberNode || node instanceof VarExpressionNode && !((VarExpressionNode) node).isArray();
+    }
+
+    /**
+     * Lowers left and then right into leftOperand and rightOperand. If
+     * left is a named variable and right may change it, left is copied
+     * first.
+     */
+    private void operands(ExpressionNode left, ExpressionNode right) {
+        int l = value(left, IrFunction.NONE);
+        int since = clock;
+        int copy = isLeaf(right) ? -1 : holdCopy(l);
+        rightOperand = value(right, IrFunction.NONE);
+        leftOperand = copyIfChanged(copy, l, since);
+    }
+
+    private void binary(int op, ExpressionNode left, ExpressionNode right) {
+        operands(left, right);
+        int dst = destination();
+        emit(op, dst, leftOperand, rightOperand);
+        result = dst;
+    }
+
+    private static int compareOpcode(RelOpType operator) {
+        switch (operator) {
+            case LTE:
+                return IrFunction.LE;
+            case LT:
+                return IrFunction.LT;
+            case GT:
+                return IrFunction.GT;
+            case GTE:
+                return IrFunction.GE;
+            case EQ:
+                return IrFunction.EQ;
+            default:
+                return IrFunction.NE;
+        }
+    }
+
+    // Ends the block with an IF going to ifTrue or ifFalse
+    private void branch(ExpressionNode condition, int ifTrue, int ifFalse) {
+        if (condition instanceof SimpleExpressionNode && ((SimpleExpressionNode) condition).isRelational()) {
+            SimpleExpressionNode compare = (SimpleExpressionNode) condition;
+            operands(compare.getLeft(), compare.getRight());
+            emit(compareOpcode(compare.getRelOperator()) + IrFunction.IF_OFFSET, IrFunction.NONE, leftOperand,
+                    rightOperand);
+        } else {
+            int value = value(condition, IrFunction.NONE);
+            emit(IrFunction.IF_NE, IrFunction.NONE, value, function.constant(0));
+        }
+        function.setSuccessors(ifTrue, ifFalse);
+        terminated = true;
+    }
+
+    private int arrayVariable(VarExpressionNode var) {
+        int variable = lookup(var);
+        if (!function.isArray(variable)) {
+            throw new InterpreterException(var.getLineNum(), var.getName() + " is not an array");
+        }
+        return variable;
+    }
+
+    /**
+     * Lowers a call, leaving its value as the result unless discard is
+     * set.
+     */
+    private void call(CallNode node, boolean discard) {
+        Boolean returnsValue = functions.get(node.getSymbol());
+        if (returnsValue == null) {
+            if (node.getSymbol() != INPUT && node.getSymbol() != OUTPUT) {
+                throw new InterpreterException(node.getLineNum(), "Undeclared function " + node.getFunctionName());
+            }
+            returnsValue = node.getSymbol() == INPUT;
+        }
+        // The ARGs go together just before the CALL, so every argument is
+        // evaluated first
+        List<ExpressionNode> arguments = node.getArguments();
+        int count = arguments.size();
+        int[] operands = new int[count];
+        int[] copies = new int[count];
+        int[] since = new int[count];
+        for (int i = 0; i < count; i++) {
+            ExpressionNode arg = arguments.get(i);
+            if (arg instanceof VarExpressionNode && !((VarExpressionNode) arg).isArray()
+                    && function.isArray(lookup((VarExpressionNode) arg))) {
+                operands[i] = lookup((VarExpressionNode) arg);
+                copies[i] = -1;
+            } else {
+                operands[i] = value(arg, IrFunction.NONE);
+                copies[i] = i < count - 1 ? holdCopy(operands[i]) : -1;
+            }
+            since[i] = clock;
+        }
+        for (int i = 0; i < count; i++) {
+            emit(IrFunction.ARG, IrFunction.NONE, copyIfChanged(copies[i], operands[i], since[i]), IrFunction.NONE);
+        }
+        int dst = discard || !returnsValue ? IrFunction.NONE : destination();
+        emit(IrFunction.CALL, dst, node.getSymbol(), node.getArguments().size());
+        if (!discard) {
+            if (returnsValue) {
+                result = dst;
+            } else {
+                produce(function.constant(0));
+            }
+        }
+    }
+
+    private final class StatementLowering extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            throw new IllegalArgumentException("Not a statement: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitCompoundStmt(CompoundStmtNode node) {
+            enterScope();
+            for (VarDeclarationNode var : node.getLocalDeclarations()) {
+                declare(var.getSymbol(), var.getName(), var.getLineNum(), IrFunction.LOCAL,
+                        var.isArray() ? var.getArraySize() : -1);
+            }
+            for (StatementNode statement : node.getStatements()) {
+                if (terminated) {
+                    break;
+                }
+                statement.accept(this);
+            }
+            leaveScope();
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(ExpressionStmtNode node) {
+            ExpressionNode expression = node.getExpression();
+            if (expression == null) {
+                return null;
+            }
+            line = node.getLineNum();
+            if (expression instanceof CallNode) {
+                call((CallNode) expression, true);
+            } else {
+                value(expression, IrFunction.NONE);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSelectionStmt(SelectionStmtNode node) {
+            line = node.getLineNum();
+            int thenLabel = function.newLabel();
+            int elseLabel = function.newLabel();
+            int end = node.getElseBranch() == null ? elseLabel : function.newLabel();
+            branch(node.getCondition(), thenLabel, elseLabel);
+            start(thenLabel);
+            node.getThenBranch().accept(this);
+            boolean reached = node.getElseBranch() == null || !terminated;
+            jump(end);
+            if (node.getElseBranch() != null) {
+                start(elseLabel);
+                node.getElseBranch().accept(this);
+                reached |= !terminated;
+                jump(end);
+            }
+            // Nothing follows an if whose branches both return
+            if (reached) {
+                start(end);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitIterationStmt(IterationStmtNode node) {
+            line = node.getLineNum();
+            int condition = function.newLabel();
+            int body = function.newLabel();
+            int exit = function.newLabel();
+            start(condition);
+            branch(node.getCondition(), body, exit);
+            start(body);
+            node.getBody().accept(this);
+            jump(condition);
+            start(exit);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(ReturnStmtNode node) {
+            line = node.getLineNum();
+            int operand = IrFunction.NONE;
+            if (node.getExpression() != null) {
+                operand = value(node.getExpression(), IrFunction.NONE);
+            }
+            if (!function.returnsValue()) {
+                operand = IrFunction.NONE;
+            } else if (operand == IrFunction.NONE) {
+                operand = function.constant(0);
+            }
+            emit(IrFunction.RETURN, IrFunction.NONE, operand, IrFunction.NONE);
+            terminated = true;
+            return null;
+        }
+    }
+
+    // Each visit sets result to the operand holding the value, which is
+    // target if there is one
+    private final class ExpressionLowering extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            throw new IllegalArgumentException("Not an expression: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitNumber(NumberNode node) {
+            produce(function.constant(node.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visitVarExpression(VarExpressionNode node) {
+            if (!node.isArray()) {
+                int variable = lookup(node);
+                if (function.isArray(variable)) {
+                    throw new InterpreterException(node.getLineNum(), "Array " + node.getName() + " used as a value");
+                }
+                produce(variable);
+                return null;
+            }
+            int array = arrayVariable(node);
+            int index = value(node.getIndex(), IrFunction.NONE);
+            int dst = destination();
+            emit(IrFunction.LOAD, dst, array, index);
+            result = dst;
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpression(AssignExpressionNode node) {
+            VarExpressionNode var = node.getVariable();
+            if (!var.isArray()) {
+                int variable = lookup(var);
+                if (function.isArray(variable)) {
+                    throw new InterpreterException(var.getLineNum(), "Cannot assign to array " + var.getName());
+                }
+                produce(value(node.getExpression(), variable));
+                return null;
+            }
+            int array = arrayVariable(var);
+            operands(var.getIndex(), node.getExpression());
+            emit(IrFunction.STORE, array, leftOperand, rightOperand);
+            produce(rightOperand);
+            return null;
+        }
+
+        @Override
+        public Void visitCall(CallNode node) {
+            call(node, false);
+            return null;
+        }
+
+        @Override
+        public Void visitSimpleExpression(SimpleExpressionNode node) {
+            if (node.getRight() == null) {
+                return node.getLeft().accept(this);
+            }
+            binary(node.isRelational() ? compareOpcode(node.getRelOperator())
+                    : node.getAddOperator() == AddOpType.PLUS ? IrFunction.ADD : IrFunction.SUB,
+                    node.getLeft(), node.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visitAddExpression(AddExpressionNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            binary(node.getOperator() == AddOpType.PLUS ? IrFunction.ADD : IrFunction.SUB, node.getLeft(),
+                    node.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visitTerm(TermNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            binary(node.getOperator() == MulOpType.TIMES ? IrFunction.MUL : IrFunction.DIV, node.getLeft(),
+                    node.getRight());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package compiler.ir;
+
+import compiler.interpreter.InterpreterException;
+import compiler.optimizer.PassManager;
+import compiler.parser.CMinusParser;
+import compiler.parser.AST.ProgramNode;
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lowers each function of a C- program to an IrFunction and prints its
+ * blocks, with the variables live into and out of each.
+ *
+ * --optimize runs PassManager.standard() over the AST first.
+ * --no-liveness leaves out the live sets.
+ * --stats prints the number of functions, instructions and blocks and the
+ * time lowering and liveness took to standard error.
+ */
+public class Main {
+    public static void main(String[] args) {
+        boolean optimize = false;
+        boolean liveness = true;
+        boolean stats = false;
+        while (args.length > 0 && args[0].startsWith("--")) {
+            if (args[0].equals("--optimize")) {
+                optimize = true;
+            } else if (args[0].equals("--no-liveness")) {
+                liveness = false;
+            } else if (args[0].equals("--stats")) {
+                stats = true;
+            } else {
+                break;
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length != 1) {
+            System.out.println("Usage: java compiler.ir.Main [--optimize] [--no-liveness] [--stats] <input-file>");
+            System.exit(1);
+        }
+
+        try {
+            CMinusParser parser = new CMinusParser(args[0]);
+            parser.parse();
+            if (!parser.getErrors().isEmpty()) {
+                for (String error : parser.getErrors()) {
+                    System.err.println(error);
+                }
+                System.exit(1);
+            }
+            ProgramNode root = parser.getRoot();
+            if (optimize) {
+                root = PassManager.standard().run(root);
+            }
+
+            long start = System.nanoTime();
+            List<IrFunction> functions = Lowering.lower(root);
+            long lowered = System.nanoTime();
+            Liveness[] live = new Liveness[functions.size()];
+            if (liveness) {
+                for (int i = 0; i < live.length; i++) {
+                    live[i] = Liveness.analyze(functions.get(i));
+                }
+            }
+            long analyzed = System.nanoTime();
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            for (int i = 0; i < live.length; i++) {
+                if (i > 0) {
+                    out.write(System.lineSeparator());
+                }
+                IrFunction function = functions.get(i);
+                out.write(live[i] == null ? function.toString() : function.toString(live[i]));
+            }
+            out.flush();
+
+            if (stats) {
+                int instructions = 0;
+                int blocks = 0;
+                for (IrFunction function : functions) {
+                    instructions += function.size();
+                    blocks += function.getBlockCount();
+                }
+                System.err.printf("%d functions, %d instructions, %d blocks; lowering %.1f ms, liveness %.1f ms%n",
+                        functions.size(), instructions, blocks, (lowered - start) / 1e6, (analyzed - lowered) / 1e6);
+            }
+        } catch (InterpreterException | IllegalArgumentException | IOException | UncheckedIOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package compiler.jvm;
+
+import compiler.interpreter.InterpreterException;
+import compiler.jvm.MethodCode.Label;
+import compiler.parser.AST.*;
+import compiler.scanner.SymbolTable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a C- program into one JVM class, so that HotSpot can compile it
+ * to native code like any Java method.
+ *
+ * Each FunDeclarationNode becomes a public static method of the same name,
+ * taking int for a scalar parameter and int[] for an array parameter, and
+ * returning int or void. Local scalars are int locals and local arrays
+ * int[] locals, both set up where their block starts. Globals are public
+ * static fields, which $reset() zeroes and allocates. input() and output()
+ * call the IntSupplier in $input and the IntConsumer in $output.
+ *
+ * Comparisons in conditions become if_icmp branches, and x = x + c on a
+ * local becomes iinc. Every statement gets a LineNumberTable entry, so
+ * JvmProgram can give the C- line of a run-time error.
+ *
+ * Names are resolved in declaration order, as in the ClosureCompiler, and
+ * a program that uses an undeclared name, or a function too large for a
+ * JVM method, gives an InterpreterException.
+ */
+public class BytecodeCompiler {
+    static final String INPUT_FIELD = "$input";
+    static final String OUTPUT_FIELD = "$output";
+    static final String RESET_METHOD = "$reset";
+
+    private static final String INT_SUPPLIER = "java/util/function/IntSupplier";
+    private static final String INT_CONSUMER = "java/util/function/IntConsumer";
+
+    private static final int INPUT = SymbolTable.shared().intern("input");
+    private static final int OUTPUT = SymbolTable.shared().intern("output");
+
+    // Where a variable lives: a local slot, or a static field by name
+    private static final class Slot {
+        final boolean array;
+        final int local;
+        final String field;
+
+        Slot(boolean array, int local, String field) {
+            this.array = array;
+            this.local = local;
+            this.field = field;
+        }
+    }
+
+    private static final class Function {
+        final String name;
+        final String descriptor;
+        final boolean[] arrayParams;
+        final boolean returnsValue;
+
+        Function(String name, boolean[] arrayParams, boolean returnsValue) {
+            this.name = name;
+            this.arrayParams = arrayParams;
+            this.returnsValue = returnsValue;
+            StringBuilder descriptor = new StringBuilder("(");
+            for (boolean array : arrayParams) {
+                descriptor.append(array ? "[I" : "I");
+            }
+            this.descriptor = descriptor.append(returnsValue ? ")I" : ")V").toString();
+        }
+    }
+
+    private final ClassFileWriter classFile;
+    private final Deque<Map<Integer, Slot>> scopes = new ArrayDeque<>();
+    private final Map<Integer, Function> functions = new HashMap<>();
+    private final StatementCompiler statements = new StatementCompiler();
+    private final ExpressionCompiler expressions = new ExpressionCompiler();
+
+    // The method being compiled
+    private MethodCode code;
+    private Function function;
+
+    private BytecodeCompiler(String className) {
+        classFile = new ClassFileWriter(className);
+    }
+
+    /**
+     * @param className  the binary name of the class, such as
+     *                   "cminus.Program"
+     * @param sourceFile the name of the source for stack traces
+     * @return the class file
+     * @throws InterpreterException if the program cannot be compiled
+     */
+    public static byte[] compile(ProgramNode root, String className, String sourceFile) {
+        return new BytecodeCompiler(className.replace('.', '/')).compileProgram(root, sourceFile);
+    }
+
+    /**
+     * Compiles root and loads it into a class loader of its own.
+     */
+    public static JvmProgram load(ProgramNode root, String className, String sourceFile) {
+        return new JvmProgram(className, compile(root, className, sourceFile));
+    }
+
+    private byte[] compileProgram(ProgramNode root, String sourceFile) {
+        int access = ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC;
+        classFile.field(access, INPUT_FIELD, "L" + INT_SUPPLIER + ";");
+        classFile.field(access, OUTPUT_FIELD, "L" + INT_CONSUMER + ";");
+
+        // $reset() sets the globals up for a run
+        MethodCode reset = new MethodCode(classFile, 0);
+        scopes.push(new HashMap<>());
+        for (DeclarationNode decl : root.getDeclarations()) {
+            if (decl instanceof VarDeclarationNode) {
+                VarDeclarationNode var = (VarDeclarationNode) decl;
+                String descriptor = var.isArray() ? "[I" : "I";
+                classFile.field(access, var.getName(), descriptor);
+                declare(var.getSymbol(), var.getName(), var.getLineNum(), new Slot(var.isArray(), -1, var.getName()));
+                if (var.isArray()) {
+                    reset.iconst(var.getArraySize());
+                    reset.newIntArray();
+                } else {
+                    reset.iconst(0);
+                }
+                reset.member(MethodCode.PUTSTATIC, classFile.fieldRef(classFile.getClassName(), var.getName(),
+                        descriptor), -1);
+            } else {
+                FunDeclarationNode fun = (FunDeclarationNode) decl;
+                if (functions.containsKey(fun.getSymbol()) || scopes.peek().containsKey(fun.getSymbol())) {
+                    throw new InterpreterException(fun.getLineNum(), fun.getName() + " is already declared");
+                }
+                try {
+                    compileFunction(fun);
+                } catch (StackOverflowError e) {
+                    throw new InterpreterException(fun.getLineNum(),
+                            "Function " + fun.getName() + " nests too deeply to compile");
+                } catch (IllegalStateException e) {
+                    throw new InterpreterException(fun.getLineNum(),
+                            "Function " + fun.getName() + " is too large for the JVM: " + e.getMessage());
+                }
+            }
+        }
+        reset.op(MethodCode.RETURN, 0);
+        classFile.method(access, RESET_METHOD, "()V", reset);
+        scopes.pop();
+
+        Function main = functions.get(SymbolTable.shared().intern("main"));
+        if (main == null || main.arrayParams.length != 0) {
+            throw new InterpreterException(root.getLineNum(), "No main(void) function");
+        }
+        return classFile.toBytes(sourceFile);
+    }
+
+    private void compileFunction(FunDeclarationNode fun) {
+        List<ParamNode> params = fun.getParams();
+        boolean[] arrayParams = new boolean[params.size()];
+        for (int i = 0; i < arrayParams.length; i++) {
+            arrayParams[i] = params.get(i).isArray();
+        }
+        function = new Function(fun.getName(), arrayParams, fun.getType() == TypeSpecifier.INT);
+        functions.put(fun.getSymbol(), function);
+        code = new MethodCode(classFile, params.size());
+
+        scopes.push(new HashMap<>());
+        for (int i = 0; i < params.size(); i++) {
+            ParamNode param = params.get(i);
+            declare(param.getSymbol(), param.getName(), param.getLineNum(), new Slot(param.isArray(), i, null));
+        }
+        fun.getBody().accept(statements);
+        scopes.pop();
+
+        if (code.isReachable()) {
+            if (function.returnsValue) {
+                code.iconst(0);
+                code.op(MethodCode.IRETURN, -1);
+            } else {
+                code.op(MethodCode.RETURN, 0);
+            }
+        }
+        classFile.method(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, function.name,
+                function.descriptor, code);
+        code = null;
+        function = null;
+    }
+
+    private void declare(int symbol, String name, int line, Slot slot) {
+        if (scopes.peek().putIfAbsent(symbol, slot) != null) {
+            throw new InterpreterException(line, name + " is already declared");
+        }
+    }
+
+    private Slot lookup(VarExpressionNode var) {
+        for (Map<Integer, Slot> scope : scopes) {
+            Slot slot = scope.get(var.getSymbol());
+            if (slot != null) {
+                return slot;
+            }
+        }
+        throw new InterpreterException(var.getLineNum(), "Undeclared variable " + var.getName());
+    }
+
+    private int field(Slot slot) {
+        return classFile.fieldRef(classFile.getClassName(), slot.field, slot.array ? "[I" : "I");
+    }
+
+    // Pushes the array of slot
+    private void loadArray(Slot slot) {
+        if (slot.field != null) {
+            code.member(MethodCode.GETSTATIC, field(slot), 1);
+        } else {
+            code.aload(slot.local);
+        }
+    }
+
+    /**
+     * Emits a branch to target, taken when the condition is true if
+     * whenTrue is set and when it is false otherwise.
+     */
+    private void branch(ExpressionNode condition, Label target, boolean whenTrue) {
+        if (condition instanceof SimpleExpressionNode && ((SimpleExpressionNode) condition).isRelational()) {
+            SimpleExpressionNode compare = (SimpleExpressionNode) condition;
+            compare.getLeft().accept(expressions);
+            compare.getRight().accept(expressions);
+            RelOpType operator = compare.getRelOperator();
+            code.branch(whenTrue ? compareOpcode(operator) : compareOpcode(negate(operator)), target, -2);
+        } else {
+            condition.accept(expressions);
+            code.branch(whenTrue ? MethodCode.IFNE : MethodCode.IFEQ, target, -1);
+        }
+    }
+
+    private static int compareOpcode(RelOpType operator) {
+        switch (operator) {
+            case LTE:
+                return MethodCode.IF_ICMPLE;
+            case LT:
+                return MethodCode.IF_ICMPLT;
+            case GT:
+                return MethodCode.IF_ICMPGT;
+            case GTE:
+                return MethodCode.IF_ICMPGE;
+            case EQ:
+                return MethodCode.IF_ICMPEQ;
+            default:
+                return MethodCode.IF_ICMPNE;
+        }
+    }
+
+    private static RelOpType negate(RelOpType operator) {
+        switch (operator) {
+            case LTE:
+                return RelOpType.GT;
+            case LT:
+                return RelOpType.GTE;
+            case GT:
+                return RelOpType.LTE;
+            case GTE:
+                return RelOpType.LT;
+            case EQ:
+                return RelOpType.NEQ;
+            default:
+                return RelOpType.EQ;
+        }
+    }
+
+    /**
+     * Emits an assignment, leaving the assigned value on the stack if
+     * keepValue is set.
+     */
+    private void assign(AssignExpressionNode node, boolean keepValue) {
+        VarExpressionNode var = node.getVariable();
+        Slot slot = lookup(var);
+        if (var.isArray()) {
+            if (!slot.array) {
+                throw new InterpreterException(var.getLineNum(), var.getName() + " is not an array");
+            }
+            loadArray(slot);
+            var.getIndex().accept(expressions);
+            node.getExpression().accept(expressions);
+            if (keepValue) {
+                code.op(MethodCode.DUP_X2, 1);
+            }
+            code.op(MethodCode.IASTORE, -3);
+            return;
+        }
+
+        if (slot.array) {
+            throw new InterpreterException(var.getLineNum(), "Cannot assign to array " + var.getName());
+        }
+        if (!keepValue && slot.field == null && increment(slot.local, var.getSymbol(), node.getExpression())) {
+            return;
+        }
+        node.getExpression().accept(expressions);
+        if (keepValue) {
+            code.op(MethodCode.DUP, 1);
+        }
+        if (slot.field != null) {
+            code.member(MethodCode.PUTSTATIC, field(slot), -1);
+        } else {
+            code.istore(slot.local);
+        }
+    }
+
+    // Emits iinc for x = x + c or x = x - c, if value has that form
+    private boolean increment(int local, int symbol, ExpressionNode value) {
+        if (!(value instanceof SimpleExpressionNode)) {
+            return false;
+        }
+        SimpleExpressionNode add = (SimpleExpressionNode) value;
+        if (add.getAddOperator() == null || !(add.getLeft() instanceof VarExpressionNode)
+                || !(add.getRight() instanceof NumberNode)) {
+            return false;
+        }
+        VarExpressionNode var = (VarExpressionNode) add.getLeft();
+        if (var.isArray() || var.getSymbol() != symbol) {
+            return false;
+        }
+        long delta = ((NumberNode) add.getRight()).getValue();
+        if (add.getAddOperator() == AddOpType.MINUS) {
+            delta = -delta;
+        }
+        if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) {
+            return false;
+        }
+        code.iinc(local, (int) delta);
+        return true;
+    }
+
+    /**
+     * Emits a call, leaving its value on the stack if keepValue is set.
+     */
+    private void call(CallNode node, boolean keepValue) {
+        int line = node.getLineNum();
+        List<ExpressionNode> args = node.getArguments();
+        Function callee = functions.get(node.getSymbol());
+        if (callee == null) {
+            builtin(node, keepValue);
+            return;
+        }
+        if (args.size() != callee.arrayParams.length) {
+            throw new InterpreterException(line, callee.name + " takes " + callee.arrayParams.length
+                    + " arguments, not " + args.size());
+        }
+        for (int i = 0; i < args.size(); i++) {
+            if (callee.arrayParams[i]) {
+                ExpressionNode arg = args.get(i);
+                Slot slot = arg instanceof VarExpressionNode && !((VarExpressionNode) arg).isArray()
+                        ? lookup((VarExpressionNode) arg) : null;
+                if (slot == null || !slot.array) {
+                    throw new InterpreterException(line, "An argument of " + callee.name + " must be an array");
+                }
+                loadArray(slot);
+            } else {
+                args.get(i).accept(expressions);
+            }
+        }
+        code.member(MethodCode.INVOKESTATIC,
+                classFile.methodRef(classFile.getClassName(), callee.name, callee.descriptor),
+                (callee.returnsValue ? 1 : 0) - args.size());
+        if (keepValue && !callee.returnsValue) {
+            code.iconst(0);
+        } else if (!keepValue && callee.returnsValue) {
+            code.op(MethodCode.POP, -1);
+        }
+    }
+
+    private void builtin(CallNode node, boolean keepValue) {
+        int line = node.getLineNum();
+        int arguments = node.getArguments().size();
+        String owner = classFile.getClassName();
+        if (node.getSymbol() == INPUT && arguments == 0) {
+            code.member(MethodCode.GETSTATIC, classFile.fieldRef(owner, INPUT_FIELD, "L" + INT_SUPPLIER + ";"), 1);
+            code.invokeInterface(classFile.interfaceMethodRef(INT_SUPPLIER, "getAsInt", "()I"), 0, 0);
+            if (!keepValue) {
+                code.op(MethodCode.POP, -1);
+            }
+        } else if (node.getSymbol() == OUTPUT && arguments == 1) {
+            code.member(MethodCode.GETSTATIC, classFile.fieldRef(owner, OUTPUT_FIELD, "L" + INT_CONSUMER + ";"), 1);
+            node.getArguments().get(0).accept(expressions);
+            code.invokeInterface(classFile.interfaceMethodRef(INT_CONSUMER, "accept", "(I)V"), 1, -2);
+            if (keepValue) {
+                code.iconst(0);
+            }
+        } else if (node.getSymbol() == INPUT || node.getSymbol() == OUTPUT) {
+            throw new InterpreterException(line, node.getFunctionName() + " takes "
+                    + (node.getSymbol() == INPUT ? 0 : 1) + " arguments, not " + arguments);
+        } else {
+            throw new InterpreterException(line, "Undeclared function " + node.getFunctionName());
+        }
+    }
+
+    private void arithmetic(ExpressionNode left, int opcode, ExpressionNode right) {
+        left.accept(expressions);
+        right.accept(expressions);
+        code.op(opcode, -1);
+    }
+
+    private final class StatementCompiler extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            throw new IllegalArgumentException("Not a statement: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitCompoundStmt(CompoundStmtNode node) {
+            scopes.push(new HashMap<>());
+            for (VarDeclarationNode var : node.getLocalDeclarations()) {
+                code.line(var.getLineNum());
+                int local = code.newLocal();
+                if (var.isArray()) {
+                    code.iconst(var.getArraySize());
+                    code.newIntArray();
+                    code.astore(local);
+                } else {
+                    // The verifier wants every local set before it is read
+                    code.iconst(0);
+                    code.istore(local);
+                }
+                declare(var.getSymbol(), var.getName(), var.getLineNum(), new Slot(var.isArray(), local, null));
+            }
+            for (StatementNode statement : node.getStatements()) {
+                if (!code.isReachable()) {
+                    break;
+                }
+                statement.accept(this);
+            }
+            scopes.pop();
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(ExpressionStmtNode node) {
+            ExpressionNode expression = node.getExpression();
+            if (expression == null) {
+                return null;
+            }
+            code.line(node.getLineNum());
+            if (expression instanceof AssignExpressionNode) {
+                assign((AssignExpressionNode) expression, false);
+            } else if (expression instanceof CallNode) {
+                call((CallNode) expression, false);
+            } else {
+                expression.accept(expressions);
+                code.op(MethodCode.POP, -1);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSelectionStmt(SelectionStmtNode node) {
+            code.line(node.getLineNum());
+            Label elseLabel = new Label();
+            branch(node.getCondition(), elseLabel, false);
+            node.getThenBranch().accept(this);
+            if (node.getElseBranch() == null) {
+                code.mark(elseLabel);
+                return null;
+            }
+            Label end = new Label();
+            boolean thenFallsThrough = code.isReachable();
+            if (thenFallsThrough) {
+                code.branch(MethodCode.GOTO, end, 0);
+            }
+            code.mark(elseLabel);
+            node.getElseBranch().accept(this);
+            if (thenFallsThrough || code.isReachable()) {
+                code.mark(end);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitIterationStmt(IterationStmtNode node) {
+            // The condition goes after the body, so each iteration takes
+            // one branch
+            code.line(node.getLineNum());
+            Label body = new Label();
+            Label condition = new Label();
+            code.branch(MethodCode.GOTO, condition, 0);
+            code.mark(body);
+            node.getBody().accept(this);
+            code.mark(condition);
+            code.line(node.getLineNum());
+            branch(node.getCondition(), body, true);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(ReturnStmtNode node) {
+            code.line(node.getLineNum());
+            ExpressionNode expression = node.getExpression();
+            if (function.returnsValue) {
+                if (expression != null) {
+                    expression.accept(expressions);
+                } else {
+                    code.iconst(0);
+                }
+                code.op(MethodCode.IRETURN, -1);
+            } else {
+                if (expression != null) {
+                    expression.accept(expressions);
+                    code.op(MethodCode.POP, -1);
+                }
+                code.op(MethodCode.RETURN, 0);
+            }
+            return null;
+        }
+    }
+
+    // Each visit leaves the expression's value on the stack
+    private final class ExpressionCompiler extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            throw new IllegalArgumentException("Not an expression: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitNumber(NumberNode node) {
+            code.iconst(node.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visitVarExpression(VarExpressionNode node) {
+            Slot slot = lookup(node);
+            if (!node.isArray()) {
+                if (slot.array) {
+                    throw new InterpreterException(node.getLineNum(), "Array " + node.getName() + " used as a value");
+                }
+                if (slot.field != null) {
+                    code.member(MethodCode.GETSTATIC, field(slot), 1);
+                } else {
+                    code.iload(slot.local);
+                }
+                return null;
+            }
+            if (!slot.array) {
+                throw new InterpreterException(node.getLineNum(), node.getName() + " is not an array");
+            }
+            loadArray(slot);
+            node.getIndex().accept(this);
+            code.op(MethodCode.IALOAD, -1);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpression(AssignExpressionNode node) {
+            assign(node, true);
+            return null;
+        }
+
+        @Override
+        public Void visitCall(CallNode node) {
+            call(node, true);
+            return null;
+        }
+
+        @Override
+        public Void visitSimpleExpression(SimpleExpressionNode node) {
+            if (node.getRight() == null) {
+                return node.getLeft().accept(this);
+            }
+            if (node.isRelational()) {
+                Label isFalse = new Label();
+                Label end = new Label();
+                branch(node, isFalse, false);
+                code.iconst(1);
+                code.branch(MethodCode.GOTO, end, 0);
+                code.mark(isFalse);
+                code.iconst(0);
+                code.mark(end);
+                return null;
+            }
+            arithmetic(node.getLeft(), node.getAddOperator() == AddOpType.PLUS ? MethodCode.IADD : MethodCode.ISUB,
+                    node.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visitAddExpression(AddExpressionNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            arithmetic(node.getLeft(), node.getOperator() == AddOpType.PLUS ? MethodCode.IADD : MethodCode.ISUB,
+                    node.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visitTerm(TermNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            arithmetic(node.getLeft(), node.getOperator() == MulOpType.TIMES ? MethodCode.IMUL : MethodCode.IDIV,
+                    node.getRight());
+            return null;
+        }
+    }
+}
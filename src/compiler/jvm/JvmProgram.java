@@ -0,0 +1,146 @@
+package compiler.jvm;
+
+import compiler.interpreter.InterpreterException;
+import compiler.interpreter.ProgramIo;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A C- program compiled by BytecodeCompiler and loaded into a class loader
+ * of its own, ready to run any number of times. Every run starts with the
+ * globals set to zero.
+ *
+ * The globals and the input and output of a run are static fields of the
+ * class, so one JvmProgram must not run on two threads at once.
+ */
+public final class JvmProgram {
+    // Defines the one generated class
+    private static final class ProgramClassLoader extends ClassLoader {
+        ProgramClassLoader() {
+            super(JvmProgram.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // How HotSpot describes a bad index
+    private static final Pattern INDEX_MESSAGE = Pattern.compile("Index (-?\\d+) out of bounds for length (\\d+)");
+
+    private final String className;
+    private final byte[] bytes;
+    private final MethodHandle reset;
+    private final MethodHandle main;
+    private final MethodHandle setInput;
+    private final MethodHandle setOutput;
+
+    JvmProgram(String className, byte[] bytes) {
+        this.className = className;
+        this.bytes = bytes;
+        Class<?> type = new ProgramClassLoader().define(className, bytes);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            reset = lookup.findStatic(type, BytecodeCompiler.RESET_METHOD, MethodType.methodType(void.class));
+            MethodHandle main;
+            try {
+                main = lookup.findStatic(type, "main", MethodType.methodType(void.class));
+            } catch (NoSuchMethodException e) {
+                main = lookup.findStatic(type, "main", MethodType.methodType(int.class));
+            }
+            this.main = main;
+            setInput = lookup.findStaticSetter(type, BytecodeCompiler.INPUT_FIELD, IntSupplier.class);
+            setOutput = lookup.findStaticSetter(type, BytecodeCompiler.OUTPUT_FIELD, IntConsumer.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Generated class " + className + " is incomplete", e);
+        }
+    }
+
+    /**
+     * @return the class file
+     */
+    public byte[] getClassBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * Writes the class file under directory, in the subdirectories for its
+     * package, as javap and other tools expect.
+     *
+     * @return the file written
+     */
+    public Path dump(Path directory) throws IOException {
+        Path file = directory.resolve(className.replace('.', '/') + ".class");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        return Files.write(file, bytes);
+    }
+
+    /**
+     * Runs main.
+     *
+     * @param input  supplies the values of input(); it throws
+     *               NoSuchElementException when there are no more
+     * @param output receives the values of output()
+     * @return the value main returned, or 0
+     * @throws InterpreterException if the program fails
+     */
+    public int run(IntSupplier input, IntConsumer output) {
+        try {
+            setInput.invokeExact(input);
+            setOutput.invokeExact(output);
+            reset.invokeExact();
+            if (main.type().returnType() == int.class) {
+                return (int) main.invokeExact();
+            }
+            main.invokeExact();
+            return 0;
+        } catch (ArithmeticException e) {
+            throw new InterpreterException(line(e), "Division by zero");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            Matcher message = INDEX_MESSAGE.matcher(String.valueOf(e.getMessage()));
+            throw new InterpreterException(line(e), message.matches()
+                    ? "Index " + message.group(1) + " is outside an array of " + message.group(2) + " elements"
+                    : e.getMessage());
+        } catch (NoSuchElementException e) {
+            throw new InterpreterException(line(e), "input() found no more numbers");
+        } catch (StackOverflowError e) {
+            throw new InterpreterException(line(e), "Stack overflow, the calls nest too deeply");
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs main, reading the values of input() from in, separated by white
+     * space, and writing each value of output() to out on a line of its
+     * own. out is not flushed.
+     */
+    public int run(Reader in, Writer out) {
+        return run(ProgramIo.reader(in), ProgramIo.writer(out));
+    }
+
+    // The C- line of the innermost generated frame in the stack trace
+    private int line(Throwable e) {
+        for (StackTraceElement frame : e.getStackTrace()) {
+            if (frame.getClassName().equals(className) && frame.getLineNumber() > 0) {
+                return frame.getLineNumber();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,90 @@
+package compiler.jvm;
+
+import compiler.interpreter.InterpreterException;
+import compiler.optimizer.PassManager;
+import compiler.parser.CMinusParser;
+import compiler.parser.AST.ProgramNode;
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Compiles a C- program to a JVM class and runs it in this JVM. input()
+ * reads integers from standard input and output(x) prints x on a line of
+ * its own.
+ *
+ * --dump=<dir> also writes the class file, cminus/Program.class, under dir.
+ * --optimize runs PassManager.standard() over the AST before compiling it.
+ * --stats prints how long parsing, compiling and running took to standard
+ * error.
+ */
+public class Main {
+    private static final String CLASS_NAME = "cminus.Program";
+
+    public static void main(String[] args) {
+        boolean optimize = false;
+        boolean stats = false;
+        String dump = null;
+        while (args.length > 0 && (args[0].equals("--optimize") || args[0].equals("--stats")
+                || args[0].startsWith("--dump="))) {
+            if (args[0].equals("--optimize")) {
+                optimize = true;
+            } else if (args[0].equals("--stats")) {
+                stats = true;
+            } else {
+                dump = args[0].substring("--dump=".length());
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length != 1) {
+            System.out.println("Usage: java compiler.jvm.Main [--dump=<dir>] [--optimize] [--stats] <input-file>");
+            System.exit(1);
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            long start = System.nanoTime();
+            CMinusParser parser = new CMinusParser(args[0]);
+            parser.parse();
+            if (!parser.getErrors().isEmpty()) {
+                for (String error : parser.getErrors()) {
+                    System.err.println(error);
+                }
+                System.exit(1);
+            }
+            ProgramNode program = parser.getRoot();
+            if (optimize) {
+                program = PassManager.standard().run(program);
+            }
+            long parseEnd = System.nanoTime();
+
+            JvmProgram compiled = BytecodeCompiler.load(program, CLASS_NAME, Paths.get(args[0]).getFileName().toString());
+            if (dump != null) {
+                compiled.dump(Paths.get(dump));
+            }
+            long compileEnd = System.nanoTime();
+
+            compiled.run(new BufferedReader(new InputStreamReader(System.in)), out);
+            out.flush();
+            long runEnd = System.nanoTime();
+
+            if (stats) {
+                System.err.printf("Parsed in %.1f ms, compiled and loaded in %.1f ms, ran in %.1f ms%n",
+                        (parseEnd - start) / 1e6, (compileEnd - parseEnd) / 1e6, (runEnd - compileEnd) / 1e6);
+            }
+        } catch (InterpreterException | IOException | UncheckedIOException e) {
+            flush(out);
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void flush(Writer out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // The output is gone either way
+        }
+    }
+}
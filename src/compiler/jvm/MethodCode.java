@@ -0,0 +1,316 @@
+package compiler.jvm;
+
+import java.util.Arrays;
+
+/**
+ * The bytecode of one method as it is emitted, with forward branches
+ * patched when their label is marked, the operand stack depth tracked for
+ * max_stack, and a line number entry for each source line.
+ */
+final class MethodCode {
+    static final int ICONST_0 = 3;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int LDC = 18;
+    static final int LDC_W = 19;
+    static final int ILOAD = 21;
+    static final int ALOAD = 25;
+    static final int IALOAD = 46;
+    static final int ISTORE = 54;
+    static final int ASTORE = 58;
+    static final int IASTORE = 79;
+    static final int POP = 87;
+    static final int DUP = 89;
+    static final int DUP_X2 = 91;
+    static final int IADD = 96;
+    static final int ISUB = 100;
+    static final int IMUL = 104;
+    static final int IDIV = 108;
+    static final int IINC = 132;
+    static final int IFEQ = 153;
+    static final int IFNE = 154;
+    static final int IF_ICMPEQ = 159;
+    static final int IF_ICMPNE = 160;
+    static final int IF_ICMPLT = 161;
+    static final int IF_ICMPGE = 162;
+    static final int IF_ICMPGT = 163;
+    static final int IF_ICMPLE = 164;
+    static final int GOTO = 167;
+    static final int IRETURN = 172;
+    static final int RETURN = 177;
+    static final int GETSTATIC = 178;
+    static final int PUTSTATIC = 179;
+    static final int INVOKESTATIC = 184;
+    static final int INVOKEINTERFACE = 185;
+    static final int NEWARRAY = 188;
+    static final int WIDE = 196;
+
+    static final int T_INT = 10;
+
+    // The largest method the JVM accepts
+    static final int MAX_CODE_LENGTH = 65535;
+
+    /**
+     * A position in the code that branches can go to before it is known.
+     */
+    static final class Label {
+        private int position = -1;
+        // The stack depth at the label, from the first branch to it
+        private int stack = -1;
+        // The offsets of the branch instructions waiting for the position
+        private int[] fixups = new int[2];
+        private int fixupCount;
+    }
+
+    private final ClassFileWriter classFile;
+    private byte[] code = new byte[256];
+    private int length;
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+    private boolean reachable = true;
+    private int[] lines = new int[32];
+    private int lineCount;
+
+    MethodCode(ClassFileWriter classFile, int parameterSlots) {
+        this.classFile = classFile;
+        this.maxLocals = parameterSlots;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    int getMaxLocals() {
+        return maxLocals;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return false after a goto or return, until the next label
+     */
+    boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * @return a new local variable slot
+     */
+    int newLocal() {
+        if (maxLocals == 0xFFFF) {
+            throw new IllegalStateException("Too many local variables for one method");
+        }
+        return maxLocals++;
+    }
+
+    /**
+     * Starts the code for a source line.
+     */
+    void line(int line) {
+        if (lineCount > 0 && lines[lineCount - 1] == line) {
+            return;
+        }
+        if (lineCount > 0 && lines[lineCount - 2] == length) {
+            lines[lineCount - 1] = line;
+            return;
+        }
+        if (lineCount + 2 > lines.length) {
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+        lines[lineCount++] = length;
+        lines[lineCount++] = line;
+    }
+
+    /**
+     * Emits an instruction without operands.
+     *
+     * @param stackChange how many values it pushes minus how many it pops
+     */
+    void op(int opcode, int stackChange) {
+        byte1(opcode);
+        adjust(stackChange);
+        if (opcode == IRETURN || opcode == RETURN) {
+            reachable = false;
+        }
+    }
+
+    void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            byte1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            byte1(BIPUSH);
+            byte1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            byte1(SIPUSH);
+            byte2(value);
+        } else {
+            int index = classFile.integer(value);
+            if (index <= 0xFF) {
+                byte1(LDC);
+                byte1(index);
+            } else {
+                byte1(LDC_W);
+                byte2(index);
+            }
+        }
+        adjust(1);
+    }
+
+    void iload(int local) {
+        local(ILOAD, local);
+        adjust(1);
+    }
+
+    void istore(int local) {
+        local(ISTORE, local);
+        adjust(-1);
+    }
+
+    void aload(int local) {
+        local(ALOAD, local);
+        adjust(1);
+    }
+
+    void astore(int local) {
+        local(ASTORE, local);
+        adjust(-1);
+    }
+
+    private void local(int opcode, int local) {
+        if (local <= 0xFF) {
+            byte1(opcode);
+            byte1(local);
+        } else {
+            byte1(WIDE);
+            byte1(opcode);
+            byte2(local);
+        }
+    }
+
+    void iinc(int local, int delta) {
+        if (local <= 0xFF && delta >= Byte.MIN_VALUE && delta <= Byte.MAX_VALUE) {
+            byte1(IINC);
+            byte1(local);
+            byte1(delta);
+        } else {
+            byte1(WIDE);
+            byte1(IINC);
+            byte2(local);
+            byte2(delta);
+        }
+    }
+
+    void newIntArray() {
+        byte1(NEWARRAY);
+        byte1(T_INT);
+    }
+
+    /**
+     * Emits a getstatic, putstatic or invokestatic of the constant at index.
+     */
+    void member(int opcode, int index, int stackChange) {
+        byte1(opcode);
+        byte2(index);
+        adjust(stackChange);
+    }
+
+    void invokeInterface(int index, int argumentSlots, int stackChange) {
+        byte1(INVOKEINTERFACE);
+        byte2(index);
+        byte1(argumentSlots + 1);
+        byte1(0);
+        adjust(stackChange);
+    }
+
+    /**
+     * Emits a branch to label.
+     *
+     * @param stackChange what the branch pops, as a negative number
+     */
+    void branch(int opcode, Label label, int stackChange) {
+        adjust(stackChange);
+        if (label.stack < 0) {
+            label.stack = stack;
+        }
+        int at = length;
+        byte1(opcode);
+        if (label.position >= 0) {
+            byte2(offset(label.position - at));
+        } else {
+            if (label.fixupCount == label.fixups.length) {
+                label.fixups = Arrays.copyOf(label.fixups, label.fixups.length * 2);
+            }
+            label.fixups[label.fixupCount++] = at;
+            byte2(0);
+        }
+        if (opcode == GOTO) {
+            reachable = false;
+        }
+    }
+
+    /**
+     * Places label at the current position.
+     */
+    void mark(Label label) {
+        label.position = length;
+        for (int i = 0; i < label.fixupCount; i++) {
+            int at = label.fixups[i];
+            int offset = offset(length - at);
+            code[at + 1] = (byte) (offset >> 8);
+            code[at + 2] = (byte) offset;
+        }
+        label.fixupCount = 0;
+        if (label.stack >= 0) {
+            stack = label.stack;
+        } else {
+            label.stack = stack;
+        }
+        reachable = true;
+    }
+
+    private static int offset(int offset) {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new IllegalStateException("Branch too far for one method");
+        }
+        return offset;
+    }
+
+    private void adjust(int stackChange) {
+        stack += stackChange;
+        if (stack > maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    private void byte1(int value) {
+        if (length == code.length) {
+            if (length >= MAX_CODE_LENGTH) {
+                throw new IllegalStateException("Too much code for one method");
+            }
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void byte2(int value) {
+        byte1(value >> 8);
+        byte1(value);
+    }
+
+    byte[] toBytes() {
+        if (length > MAX_CODE_LENGTH) {
+            throw new IllegalStateException("Too much code for one method");
+        }
+        return Arrays.copyOf(code, length);
+    }
+
+    /**
+     * @return pairs of bytecode offset and source line
+     */
+    int[] lineNumbers() {
+        return Arrays.copyOf(lines, lineCount);
+    }
+}
@@ -0,0 +1,94 @@
+package compiler.optimizer;
+
+import compiler.parser.AST.*;
+
+/**
+ * Removes arithmetic that does nothing: x + 0, 0 + x and x - 0 become x,
+ * x * 1, 1 * x and x / 1 become x, and x * 0 and 0 * x become 0. The last
+ * rule is only applied when x has no effects, since x would no longer be
+ * evaluated: it may contain no call or assignment, and no division or
+ * array element either, which can stop the program with a division by zero
+ * or an index out of bounds. As in ConstantFolding, those are left for run
+ * time.
+ */
+public class AlgebraicSimplification extends Pass {
+    @Override
+    public String getName() {
+        return "algebraic-simplification";
+    }
+
+    @Override
+    public String getChangeDescription() {
+        return "expressions simplified";
+    }
+
+    @Override
+    public AbstractNode visitSimpleExpression(SimpleExpressionNode node) {
+        if (node.getAddOperator() == null) {
+            return node;
+        }
+        return simplifyAdd(node, node.getLeft(), node.getAddOperator(), node.getRight());
+    }
+
+    @Override
+    public AbstractNode visitAddExpression(AddExpressionNode node) {
+        if (node.getOperator() == null) {
+            return node;
+        }
+        return simplifyAdd(node, node.getLeft(), node.getOperator(), node.getRight());
+    }
+
+    @Override
+    public AbstractNode visitTerm(TermNode node) {
+        if (node.getOperator() == null) {
+            return node;
+        }
+        ExpressionNode left = node.getLeft();
+        ExpressionNode right = node.getRight();
+        if (isNumber(right, 1)) {
+            changed();
+            return left;
+        }
+        if (node.getOperator() == MulOpType.DIVIDE) {
+            return node;
+        }
+        if (isNumber(left, 1)) {
+            changed();
+            return right;
+        }
+        if (isNumber(right, 0) && !hasEffects(left) || isNumber(left, 0) && !hasEffects(right)) {
+            changed();
+            return new NumberNode(node.getLineNum(), 0);
+        }
+        return node;
+    }
+
+    private AbstractNode simplifyAdd(ExpressionNode node, ExpressionNode left, AddOpType operator,
+            ExpressionNode right) {
+        if (isNumber(right, 0)) {
+            changed();
+            return left;
+        }
+        if (operator == AddOpType.PLUS && isNumber(left, 0)) {
+            changed();
+            return right;
+        }
+        return node;
+    }
+
+    private static boolean isNumber(ExpressionNode expression, int value) {
+        return expression instanceof NumberNode && ((NumberNode) expression).getValue() == value;
+    }
+
+    private static boolean hasEffects(ExpressionNode expression) {
+        boolean[] found = new boolean[1];
+        expression.walk(node -> {
+            if (node instanceof CallNode || node instanceof AssignExpressionNode
+                    || node instanceof TermNode && ((TermNode) node).getOperator() == MulOpType.DIVIDE
+                    || node instanceof VarExpressionNode && ((VarExpressionNode) node).getIndex() != null) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+}
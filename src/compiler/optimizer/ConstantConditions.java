@@ -0,0 +1,43 @@
+package compiler.optimizer;
+
+import compiler.parser.AST.*;
+
+/**
+ * Prunes if and while statements whose condition is a number, as left by
+ * ConstantFolding. An if with a true condition becomes its then branch, and
+ * one with a false condition becomes its else branch or is removed. A while
+ * with a false condition is removed. A while with a true condition is kept,
+ * since it only ends through a return.
+ */
+public class ConstantConditions extends Pass {
+    @Override
+    public String getName() {
+        return "constant-conditions";
+    }
+
+    @Override
+    public String getChangeDescription() {
+        return "branches and loops pruned";
+    }
+
+    @Override
+    public AbstractNode visitSelectionStmt(SelectionStmtNode node) {
+        if (!(node.getCondition() instanceof NumberNode)) {
+            return node;
+        }
+        changed();
+        if (((NumberNode) node.getCondition()).getValue() != 0) {
+            return node.getThenBranch();
+        }
+        return node.getElseBranch();
+    }
+
+    @Override
+    public AbstractNode visitIterationStmt(IterationStmtNode node) {
+        if (node.getCondition() instanceof NumberNode && ((NumberNode) node.getCondition()).getValue() == 0) {
+            changed();
+            return null;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,101 @@
+package compiler.optimizer;
+
+import compiler.parser.AST.*;
+
+/**
+ * Replaces operators whose operands are both numbers with the number they
+ * compute, as C- would at run time: int arithmetic wraps around, division
+ * truncates toward zero, and a comparison is 1 or 0. A division by zero is
+ * left for run time. Expressions with a single operand and no operator are
+ * replaced by the operand.
+ *
+ * The tree is rewritten bottom-up, so nested constant expressions such as
+ * (1 + 2) * 3 fold all the way to one number.
+ */
+public class ConstantFolding extends Pass {
+    @Override
+    public String getName() {
+        return "constant-folding";
+    }
+
+    @Override
+    public String getChangeDescription() {
+        return "expressions folded";
+    }
+
+    @Override
+    public AbstractNode visitSimpleExpression(SimpleExpressionNode node) {
+        if (node.getRight() == null) {
+            changed();
+            return node.getLeft();
+        }
+        if (!(node.getLeft() instanceof NumberNode) || !(node.getRight() instanceof NumberNode)) {
+            return node;
+        }
+        int left = ((NumberNode) node.getLeft()).getValue();
+        int right = ((NumberNode) node.getRight()).getValue();
+        changed();
+        if (node.isRelational()) {
+            return new NumberNode(node.getLineNum(), compare(left, node.getRelOperator(), right) ? 1 : 0);
+        }
+        return new NumberNode(node.getLineNum(), add(left, node.getAddOperator(), right));
+    }
+
+    @Override
+    public AbstractNode visitAddExpression(AddExpressionNode node) {
+        if (node.getOperator() == null) {
+            changed();
+            return node.getLeft();
+        }
+        if (!(node.getLeft() instanceof NumberNode) || !(node.getRight() instanceof NumberNode)) {
+            return node;
+        }
+        int left = ((NumberNode) node.getLeft()).getValue();
+        int right = ((NumberNode) node.getRight()).getValue();
+        changed();
+        return new NumberNode(node.getLineNum(), add(left, node.getOperator(), right));
+    }
+
+    @Override
+    public AbstractNode visitTerm(TermNode node) {
+        if (node.getOperator() == null) {
+            changed();
+            return node.getLeft();
+        }
+        if (!(node.getLeft() instanceof NumberNode) || !(node.getRight() instanceof NumberNode)) {
+            return node;
+        }
+        int left = ((NumberNode) node.getLeft()).getValue();
+        int right = ((NumberNode) node.getRight()).getValue();
+        if (node.getOperator() == MulOpType.DIVIDE) {
+            if (right == 0) {
+                return node;
+            }
+            changed();
+            return new NumberNode(node.getLineNum(), left / right);
+        }
+        changed();
+        return new NumberNode(node.getLineNum(), left * right);
+    }
+
+    private static int add(int left, AddOpType operator, int right) {
+        return operator == AddOpType.PLUS ? left + right : left - right;
+    }
+
+    private static boolean compare(int left, RelOpType operator, int right) {
+        switch (operator) {
+            case LTE:
+                return left <= right;
+            case LT:
+                return left < right;
+            case GT:
+                return left > right;
+            case GTE:
+                return left >= right;
+            case EQ:
+                return left == right;
+            default:
+                return left != right;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package compiler.optimizer;
+
+import compiler.parser.AST.NodeTransformer;
+
+/**
+ * One rewrite of the AST that a PassManager runs. A pass counts each change
+ * it makes with changed(), and the PassManager reports the count with the
+ * pass's name.
+ */
+public abstract class Pass extends NodeTransformer {
+    /**
+     * @return a short name for reports, such as "constant-folding"
+     */
+    public abstract String getName();
+
+    /**
+     * @return what the changes are, in the plural, such as "expressions
+     *         folded"
+     */
+    public abstract String getChangeDescription();
+}
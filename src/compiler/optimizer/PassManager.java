@@ -0,0 +1,113 @@
+package compiler.optimizer;
+
+import compiler.parser.AST.AbstractNode;
+import compiler.parser.AST.ProgramNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs a list of passes over an AST in order, timing each one and keeping
+ * what it changed for getResults.
+ *
+ * The passes change the tree in place. A PassManager and its passes keep
+ * state while they run, so use one per thread.
+ */
+public class PassManager {
+    /**
+     * What one pass did in the last run.
+     */
+    public static final class Result {
+        private final String name;
+        private final String changeDescription;
+        private final int changes;
+        private final long nanos;
+
+        Result(Pass pass, long nanos) {
+            this.name = pass.getName();
+            this.changeDescription = pass.getChangeDescription();
+            this.changes = pass.getChanges();
+            this.nanos = nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getChanges() {
+            return changes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d %s in %.2f ms", name, changes, changeDescription, nanos / 1e6);
+        }
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+    private final List<Result> results = new ArrayList<>();
+    private int nodesBefore;
+    private int nodesAfter;
+
+    /**
+     * @return a PassManager with the usual passes, in an order where each
+     *         one can use what the ones before it left: constant folding,
+     *         algebraic simplification, constant conditions, unreachable
+     *         code
+     */
+    public static PassManager standard() {
+        return new PassManager()
+                .add(new ConstantFolding())
+                .add(new AlgebraicSimplification())
+                .add(new ConstantConditions())
+                .add(new UnreachableCode());
+    }
+
+    public PassManager add(Pass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    /**
+     * Runs the passes over program.
+     *
+     * @return the optimized program
+     */
+    public ProgramNode run(ProgramNode program) {
+        results.clear();
+        nodesBefore = count(program);
+        AbstractNode root = program;
+        for (Pass pass : passes) {
+            long start = System.nanoTime();
+            root = pass.transform(root);
+            results.add(new Result(pass, System.nanoTime() - start));
+        }
+        nodesAfter = count(root);
+        return (ProgramNode) root;
+    }
+
+    private static int count(AbstractNode root) {
+        int[] count = new int[1];
+        root.walk(node -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * @return one Result per pass of the last run, in the order they ran
+     */
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public int getNodesBefore() {
+        return nodesBefore;
+    }
+
+    public int getNodesAfter() {
+        return nodesAfter;
+    }
+}
@@ -0,0 +1,69 @@
+package compiler.optimizer;
+
+import compiler.parser.AST.*;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the statements of a block that follow a statement that always
+ * returns. A return always returns; so does a block whose last statement
+ * always returns, and an if with an else whose branches both always return.
+ *
+ * The tree is rewritten bottom-up, so a statement is known to always return
+ * by the time its parent is visited, and the check is constant time however
+ * deeply the statements nest.
+ */
+public class UnreachableCode extends Pass {
+    private final Set<StatementNode> returning = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @Override
+    public String getName() {
+        return "unreachable-code";
+    }
+
+    @Override
+    public String getChangeDescription() {
+        return "statements removed";
+    }
+
+    @Override
+    public AbstractNode transform(AbstractNode root) {
+        try {
+            return super.transform(root);
+        } finally {
+            returning.clear();
+        }
+    }
+
+    @Override
+    public AbstractNode visitReturnStmt(ReturnStmtNode node) {
+        returning.add(node);
+        return node;
+    }
+
+    @Override
+    public AbstractNode visitSelectionStmt(SelectionStmtNode node) {
+        if (node.getElseBranch() != null && returning.contains(node.getThenBranch())
+                && returning.contains(node.getElseBranch())) {
+            returning.add(node);
+        }
+        return node;
+    }
+
+    @Override
+    public AbstractNode visitCompoundStmt(CompoundStmtNode node) {
+        List<StatementNode> statements = node.getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            if (returning.contains(statements.get(i))) {
+                List<StatementNode> unreachable = statements.subList(i + 1, statements.size());
+                changed(unreachable.size());
+                unreachable.clear();
+                returning.add(node);
+                break;
+            }
+        }
+        return node;
+    }
+}
@@ -1,5 +1,12 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
 /**
  * Base class for all nodes in the Abstract Syntax Tree.
  */
@@ -15,9 +22,107 @@ public abstract class AbstractNode {
     }
 
     /**
-     * @param sb
-     * @param indent
+     * Adds delta to the line number of this node and all of its children,
+     * for a subtree that is kept after lines were added or removed above it.
+     * The subtree is walked with a work list, so its depth is not limited by
+     * the thread's stack.
+     *
+     * @param delta
+     */
+    public void shiftLines(int delta) {
+        walk(node -> node.lineNum += delta);
+    }
+
+    /**
+     * Calls action on this node and then on all of its descendants, parents
+     * before children. The subtree is walked with a work list, so its depth
+     * is not limited by the thread's stack.
+     *
+     * @param action
+     */
+    public void walk(Consumer<? super AbstractNode> action) {
+        Deque<AbstractNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            AbstractNode node = pending.pop();
+            action.accept(node);
+            node.addChildren(pending);
+        }
+    }
+
+    /**
+     * Calls the visitor's method for the class of this node.
+     *
+     * @param visitor
+     * @return what the visitor returned
      */
+    public abstract <R> R accept(NodeVisitor<R> visitor);
+
+    /**
+     * Adds the children of this node that are not null to pending.
+     */
+    protected void addChildren(Deque<AbstractNode> pending) {
+    }
 
-    public abstract void printTree(StringBuilder sb, String indent);
+    protected static void add(Deque<AbstractNode> pending, AbstractNode child) {
+        if (child != null) {
+            pending.push(child);
+        }
+    }
+
+    /**
+     * Replaces each child of this node that is not null with what
+     * replacement returns for it, for NodeTransformer. A statement in a list
+     * that is replaced by null is removed.
+     */
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+    }
+
+    // A required statement that was removed becomes an empty statement
+    protected static StatementNode replaceStatement(UnaryOperator<AbstractNode> replacement,
+            StatementNode statement) {
+        if (statement == null) {
+            return null;
+        }
+        StatementNode result = (StatementNode) replacement.apply(statement);
+        return result != null ? result : new ExpressionStmtNode(statement.getLineNum());
+    }
+
+    protected static ExpressionNode replaceExpression(UnaryOperator<AbstractNode> replacement,
+            ExpressionNode expression) {
+        return expression == null ? null : (ExpressionNode) replacement.apply(expression);
+    }
+
+    /**
+     * Writes this node and its children to out.
+     *
+     * @param out
+     * @param indent the number of spaces in front of this node's lines
+     * @throws IOException
+     */
+    public void printTree(TreePrinter out, int indent) throws IOException {
+        out.printTree(this, indent);
+    }
+
+    /**
+     * Writes the first line of this node and queues the lines and children
+     * that follow it on out.
+     *
+     * @param out
+     * @param indent the number of spaces in front of this node's lines
+     * @throws IOException
+     */
+    protected abstract void print(TreePrinter out, int indent) throws IOException;
+
+    /**
+     * @param sb
+     * @param indent a string of spaces
+     */
+    public void printTree(StringBuilder sb, String indent) {
+        try {
+            printTree(TreePrinter.of(sb), indent.length());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 public class AddExpressionNode extends ExpressionNode {
     private ExpressionNode leftExpr;
     private AddOpType operator;
@@ -23,18 +27,50 @@ public class AddExpressionNode extends ExpressionNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, leftExpr);
+        add(pending, rightExpr);
+    }
+
+    public ExpressionNode getLeft() {
+        return leftExpr;
+    }
+
+    /**
+     * @return the operator, or null for a single term
+     */
+    public AddOpType getOperator() {
+        return operator;
+    }
+
+    public ExpressionNode getRight() {
+        return rightExpr;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        leftExpr = replaceExpression(replacement, leftExpr);
+        rightExpr = replaceExpression(replacement, rightExpr);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitAddExpression(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
         if (operator == null) {
-            leftExpr.printTree(sb, indent);
+            out.queueNode(leftExpr, indent);
         } else {
-            sb.append(indent).append("Operator: ").append(operator);
-            sb.append(" [line: ").append(lineNum).append("]\n");
+            out.indent(indent).print("Operator: ").print(operator);
+            out.print(" [line: ").print(lineNum).println("]");
 
-            sb.append(indent).append("  Left:\n");
-            leftExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Left:");
+            out.queueNode(leftExpr, indent + 4);
 
-            sb.append(indent).append("  Right:\n");
-            rightExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Right:");
+            out.queueNode(rightExpr, indent + 4);
         }
     }
 }
\ No newline at end of file
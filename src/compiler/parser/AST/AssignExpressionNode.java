@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents an assignment expression (var = expr) in the AST
  */
@@ -14,13 +18,38 @@ public class AssignExpressionNode extends ExpressionNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Assign [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, variable);
+        add(pending, expression);
+    }
+
+    public VarExpressionNode getVariable() {
+        return variable;
+    }
+
+    public ExpressionNode getExpression() {
+        return expression;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        variable = (VarExpressionNode) replacement.apply(variable);
+        expression = replaceExpression(replacement, expression);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitAssignExpression(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Assign [line: ").print(lineNum).println("]");
 
-        sb.append(indent).append("  Left:\n");
-        variable.printTree(sb, indent + "    ");
+        out.queueLine(indent, "  Left:");
+        out.queueNode(variable, indent + 4);
 
-        sb.append(indent).append("  Right:\n");
-        expression.printTree(sb, indent + "    ");
+        out.queueLine(indent, "  Right:");
+        out.queueNode(expression, indent + 4);
     }
 }
\ No newline at end of file
@@ -0,0 +1,353 @@
+package compiler.parser.AST;
+
+import compiler.scanner.SymbolTable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads an AST written by BinaryTreeWriter, without the source it was
+ * parsed from.
+ *
+ * The nodes are stored children first, so read() goes through them once
+ * with a stack of the handles of the nodes that do not have a parent yet,
+ * and hands each one to a TreeBuilder: a NodeBuilder to get AbstractNodes
+ * back, a FlatTree, or a builder of one's own that only looks at the nodes
+ * as they go by and keeps nothing. open() maps the file into memory
+ * instead of reading it.
+ *
+ * Each child is checked to be of a kind its parent can have before the
+ * builder sees it, so corrupt nodes give an IOException and never a
+ * ClassCastException from the builder. An if without a then branch or a
+ * while without a body is corrupt too.
+ */
+public final class BinaryTreeReader {
+    private static final FlatTree.Kind[] KINDS = FlatTree.Kind.values();
+    private static final TypeSpecifier[] TYPES = TypeSpecifier.values();
+    private static final RelOpType[] REL_OPS = RelOpType.values();
+    private static final AddOpType[] ADD_OPS = AddOpType.values();
+    private static final MulOpType[] MUL_OPS = MulOpType.values();
+    private static final int NONE = TreeBuilder.NONE;
+    private static final FlatTree.Kind PROGRAM = FlatTree.Kind.PROGRAM;
+    private static final FlatTree.Kind VARIABLE_DECLARATION = FlatTree.Kind.VARIABLE_DECLARATION;
+    private static final FlatTree.Kind FUNCTION = FlatTree.Kind.FUNCTION;
+    private static final FlatTree.Kind PARAM = FlatTree.Kind.PARAM;
+    private static final FlatTree.Kind COMPOUND = FlatTree.Kind.COMPOUND;
+    private static final FlatTree.Kind RETURN = FlatTree.Kind.RETURN;
+    private static final FlatTree.Kind NUMBER = FlatTree.Kind.NUMBER;
+    private static final FlatTree.Kind VARIABLE = FlatTree.Kind.VARIABLE;
+    private static final FlatTree.Kind MULTIPLY = FlatTree.Kind.MULTIPLY;
+
+    private final ByteBuffer buffer;
+    private final int[] symbols;
+    private final int nodeCount;
+    private final int nodesStart;
+
+    /**
+     * Reads the header and the string table of the binary AST in buffer,
+     * from its position on. The identifiers are interned in
+     * SymbolTable.shared().
+     *
+     * @throws IOException if buffer does not hold a binary AST of this
+     *                     VERSION
+     */
+    public BinaryTreeReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.slice();
+        try {
+            byte[] magic = new byte[BinaryTreeWriter.MAGIC.length];
+            this.buffer.get(magic);
+            if (!Arrays.equals(magic, BinaryTreeWriter.MAGIC)) {
+                throw new IOException("Not a binary AST");
+            }
+            int version = varint();
+            if (version != BinaryTreeWriter.VERSION) {
+                throw new IOException("Binary AST version " + version + " is not supported");
+            }
+            symbols = new int[length()];
+            SymbolTable table = SymbolTable.shared();
+            for (int i = 0; i < symbols.length; i++) {
+                byte[] name = new byte[length()];
+                this.buffer.get(name);
+                symbols[i] = table.intern(new String(name, StandardCharsets.UTF_8));
+            }
+            // A node takes at least two bytes
+            nodeCount = varint();
+            if (nodeCount < 0 || nodeCount > this.buffer.remaining() / 2) {
+                throw new IOException("Corrupt binary AST: " + nodeCount + " nodes");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary AST", e);
+        }
+        nodesStart = this.buffer.position();
+    }
+
+    public BinaryTreeReader(byte[] bytes) throws IOException {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Maps file into memory and reads its header.
+     */
+    public static BinaryTreeReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new BinaryTreeReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the tree as AbstractNodes, or null for an empty tree
+     */
+    public ProgramNode readNodes() throws IOException {
+        NodeBuilder builder = new NodeBuilder();
+        return (ProgramNode) builder.node(read(builder));
+    }
+
+    /**
+     * @return the tree as a FlatTree, or null for an empty tree
+     */
+    public FlatTree readFlat() throws IOException {
+        FlatTree tree = new FlatTree(nodeCount);
+        return read(tree) == NONE ? null : tree;
+    }
+
+    /**
+     * Builds every node through builder, children before their parent.
+     * Can be called more than once.
+     *
+     * @return builder's handle for the root, or TreeBuilder.NONE for an
+     *         empty tree
+     * @throws IOException if the nodes are cut short or do not make a tree
+     */
+    public int read(TreeBuilder builder) throws IOException {
+        buffer.position(nodesStart);
+        // The nodes that are waiting for their parent
+        int[] stack = new int[64];
+        // The kind of each node on the stack
+        byte[] kinds = new byte[64];
+        int top = 0;
+        int line = 0;
+        try {
+            for (int n = 0; n < nodeCount; n++) {
+                int tag = varint();
+                int delta = varint();
+                line += delta >>> 1 ^ -(delta & 1);
+                int flags = tag >>> 4;
+                int node;
+                switch (KINDS[tag & 0xF]) {
+                    case PROGRAM: {
+                        int count = varint();
+                        top = children(top, count);
+                        expect(kinds, top, count, VARIABLE_DECLARATION, FUNCTION);
+                        node = builder.program(line);
+                        for (int i = 0; i < count; i++) {
+                            builder.addDeclaration(node, stack[top + i]);
+                        }
+                        break;
+                    }
+                    case VARIABLE_DECLARATION: {
+                        int symbol = name();
+                        node = (flags & 1) != 0
+                                ? builder.arrayDeclaration(line, symbol, TYPES[flags >>> 1], varint())
+                                : builder.variableDeclaration(line, symbol, TYPES[flags >>> 1]);
+                        break;
+                    }
+                    case FUNCTION: {
+                        int symbol = name();
+                        int count = varint();
+                        int body = NONE;
+                        if ((flags & 1) != 0) {
+                            top = children(top, 1);
+                            expect(kinds, top, 1, COMPOUND, COMPOUND);
+                            body = stack[top];
+                        }
+                        top = children(top, count);
+                        expect(kinds, top, count, PARAM, PARAM);
+                        node = builder.function(line, symbol, TYPES[flags >>> 1]);
+                        for (int i = 0; i < count; i++) {
+                            builder.addParam(node, stack[top + i]);
+                        }
+                        if (body != NONE) {
+                            builder.setBody(node, body);
+                        }
+                        break;
+                    }
+                    case PARAM:
+                        node = builder.param(line, name(), TYPES[flags >>> 1], (flags & 1) != 0);
+                        break;
+                    case COMPOUND: {
+                        int locals = varint();
+                        int statements = varint();
+                        top = children(top, locals + statements);
+                        expect(kinds, top, locals, VARIABLE_DECLARATION, VARIABLE_DECLARATION);
+                        expect(kinds, top + locals, statements, COMPOUND, RETURN);
+                        node = builder.compound(line);
+                        for (int i = 0; i < locals; i++) {
+                            builder.addLocalDeclaration(node, stack[top + i]);
+                        }
+                        for (int i = locals; i < locals + statements; i++) {
+                            builder.addStatement(node, stack[top + i]);
+                        }
+                        break;
+                    }
+                    case EXPRESSION_STATEMENT:
+                    case RETURN: {
+                        int expression = NONE;
+                        if (flags != 0) {
+                            top = children(top, 1);
+                            expect(kinds, top, 1, NUMBER, MULTIPLY);
+                            expression = stack[top];
+                        }
+                        node = KINDS[tag & 0xF] == FlatTree.Kind.RETURN
+                                ? builder.returnStatement(line, expression)
+                                : builder.expressionStatement(line, expression);
+                        break;
+                    }
+                    case SELECTION: {
+                        if ((flags & 1) == 0) {
+                            throw new IOException("Corrupt binary AST: an if without a then branch");
+                        }
+                        int elseBranch = NONE;
+                        if ((flags & 2) != 0) {
+                            top = children(top, 1);
+                            expect(kinds, top, 1, COMPOUND, RETURN);
+                            elseBranch = stack[top];
+                        }
+                        top = children(top, 1);
+                        expect(kinds, top, 1, COMPOUND, RETURN);
+                        int thenBranch = stack[top];
+                        top = children(top, 1);
+                        expect(kinds, top, 1, NUMBER, MULTIPLY);
+                        node = builder.selection(line, stack[top], thenBranch, elseBranch);
+                        break;
+                    }
+                    case ITERATION: {
+                        if (flags == 0) {
+                            throw new IOException("Corrupt binary AST: a while without a body");
+                        }
+                        top = children(top, 1);
+                        expect(kinds, top, 1, COMPOUND, RETURN);
+                        int body = stack[top];
+                        top = children(top, 1);
+                        expect(kinds, top, 1, NUMBER, MULTIPLY);
+                        node = builder.iteration(line, stack[top], body);
+                        break;
+                    }
+                    case NUMBER:
+                        node = builder.number(line, varint());
+                        break;
+                    case VARIABLE: {
+                        int index = NONE;
+                        if (flags != 0) {
+                            top = children(top, 1);
+                            expect(kinds, top, 1, NUMBER, MULTIPLY);
+                            index = stack[top];
+                        }
+                        node = builder.variable(line, name(), index);
+                        break;
+                    }
+                    case ASSIGN:
+                        top = children(top, 2);
+                        expect(kinds, top, 1, VARIABLE, VARIABLE);
+                        expect(kinds, top + 1, 1, NUMBER, MULTIPLY);
+                        node = builder.assign(line, stack[top], stack[top + 1]);
+                        break;
+                    case CALL: {
+                        int symbol = name();
+                        int count = varint();
+                        top = children(top, count);
+                        expect(kinds, top, count, NUMBER, MULTIPLY);
+                        node = builder.call(line, symbol);
+                        for (int i = 0; i < count; i++) {
+                            builder.addArgument(node, stack[top + i]);
+                        }
+                        break;
+                    }
+                    case COMPARE:
+                        top = children(top, 2);
+                        expect(kinds, top, 2, NUMBER, MULTIPLY);
+                        node = builder.compare(line, stack[top], REL_OPS[flags], stack[top + 1]);
+                        break;
+                    case ADD:
+                        top = children(top, 2);
+                        expect(kinds, top, 2, NUMBER, MULTIPLY);
+                        node = builder.add(line, stack[top], ADD_OPS[flags], stack[top + 1]);
+                        break;
+                    default:
+                        top = children(top, 2);
+                        expect(kinds, top, 2, NUMBER, MULTIPLY);
+                        node = builder.multiply(line, stack[top], MUL_OPS[flags], stack[top + 1]);
+                        break;
+                }
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                    kinds = Arrays.copyOf(kinds, top * 2);
+                }
+                kinds[top] = (byte) (tag & 0xF);
+                stack[top++] = node;
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt binary AST", e);
+        }
+        if (top > 1) {
+            throw new IOException("Corrupt binary AST: " + top + " nodes have no parent");
+        }
+        if (top == 1 && kinds[0] != PROGRAM.ordinal()) {
+            throw new IOException("Corrupt binary AST: the root is a " + KINDS[kinds[0]]);
+        }
+        return top == 0 ? NONE : stack[0];
+    }
+
+    // Takes the last count nodes off the stack; they are left in place from
+    // the returned top on
+    private static int children(int top, int count) throws IOException {
+        if (count < 0 || count > top) {
+            throw new IOException("Corrupt binary AST: missing children");
+        }
+        return top - count;
+    }
+
+    // Checks that the count nodes from stack index from on are of the kinds
+    // first to last
+    private static void expect(byte[] kinds, int from, int count, FlatTree.Kind first, FlatTree.Kind last)
+            throws IOException {
+        for (int i = from; i < from + count; i++) {
+            if (kinds[i] < first.ordinal() || kinds[i] > last.ordinal()) {
+                throw new IOException("Corrupt binary AST: a " + KINDS[kinds[i]] + " node in the wrong place");
+            }
+        }
+    }
+
+    // A count of bytes or entries that must fit in what is left
+    private int length() throws IOException {
+        int length = varint();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt binary AST: length " + length);
+        }
+        return length;
+    }
+
+    private int name() {
+        return symbols[varint()];
+    }
+
+    private int varint() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+}
@@ -0,0 +1,309 @@
+package compiler.parser.AST;
+
+import compiler.scanner.SymbolTable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a FlatTree in the compact binary AST format that BinaryTreeReader
+ * loads.
+ *
+ * The format is:
+ * - the magic bytes "CAST" and a varint format VERSION
+ * - a string table: a varint count, then each identifier as a varint
+ *   length and its UTF-8 bytes
+ * - a varint node count, then the nodes in postorder, children before
+ *   their parent
+ *
+ * Each node starts with a varint tag, the FlatTree.Kind ordinal plus flags
+ * times 16, and the difference from the line of the node before it as a
+ * zigzag varint. What follows depends on the kind:
+ * - PROGRAM: the number of declarations
+ * - VARIABLE_DECLARATION: flags = type ordinal * 2 + 1 for an array; the
+ *   name's string index, and the array size for an array
+ * - FUNCTION: flags = type ordinal * 2 + 1 if it has a body; the name and
+ *   the number of parameters
+ * - PARAM: flags as for VARIABLE_DECLARATION; the name
+ * - COMPOUND: the number of local declarations and of statements
+ * - EXPRESSION_STATEMENT, RETURN: flags = 1 if there is an expression
+ * - SELECTION: flags = 1 if there is a then branch + 2 for an else branch
+ * - ITERATION: flags = 1 if there is a body
+ * - NUMBER: the value
+ * - VARIABLE: flags = 1 if there is an index; the name
+ * - ASSIGN: nothing
+ * - CALL: the name and the number of arguments
+ * - COMPARE, ADD, MULTIPLY: flags = operator ordinal
+ * Counts, sizes, values and indexes are unsigned varints of the int's bits,
+ * seven bits to a byte, low bits first. The children a node has are the
+ * nodes just before it that are not children of anything else yet.
+ */
+public final class BinaryTreeWriter {
+    public static final int VERSION = 1;
+
+    static final byte[] MAGIC = { 'C', 'A', 'S', 'T' };
+
+    private final FlatTree tree;
+    private byte[] body = new byte[4096];
+    private int length;
+    private int nodes;
+    private int previousLine;
+
+    // The string index of each symbol that was written, plus one
+    private int[] strings = new int[256];
+    private int[] symbols = new int[64];
+    private int stringCount;
+
+    // Nodes still to be written; a node is pushed as ~node once its
+    // children have been pushed
+    private int[] pending = new int[64];
+    private int top;
+
+    private BinaryTreeWriter(FlatTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Writes node of tree and everything under it to out. A node of
+     * TreeBuilder.NONE writes an empty tree.
+     */
+    public static void write(FlatTree tree, int node, OutputStream out) throws IOException {
+        BinaryTreeWriter writer = new BinaryTreeWriter(tree);
+        if (node != TreeBuilder.NONE) {
+            writer.encode(node);
+        }
+        writer.writeTo(out);
+    }
+
+    public static void write(FlatTree tree, int node, String outputFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            write(tree, node, out);
+        }
+    }
+
+    /**
+     * @return node of tree and everything under it in the binary format
+     */
+    public static byte[] toBytes(FlatTree tree, int node) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(tree, node, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void encode(int root) {
+        push(root);
+        while (top > 0) {
+            int node = pending[--top];
+            if (node < 0) {
+                node(~node);
+                continue;
+            }
+            push(~node);
+            int from = top;
+            switch (tree.kind(node)) {
+                case PROGRAM:
+                case COMPOUND:
+                case CALL:
+                    for (int child = tree.first(node); child != TreeBuilder.NONE; child = tree.next(child)) {
+                        push(child);
+                    }
+                    break;
+                case FUNCTION:
+                    for (int child = tree.first(node); child != TreeBuilder.NONE; child = tree.next(child)) {
+                        push(child);
+                    }
+                    pushIfPresent(tree.body(node));
+                    break;
+                case EXPRESSION_STATEMENT:
+                case RETURN:
+                    pushIfPresent(tree.expression(node));
+                    break;
+                case SELECTION:
+                    push(tree.condition(node));
+                    pushIfPresent(tree.thenBranch(node));
+                    pushIfPresent(tree.elseBranch(node));
+                    break;
+                case ITERATION:
+                    push(tree.condition(node));
+                    pushIfPresent(tree.body(node));
+                    break;
+                case VARIABLE:
+                    pushIfPresent(tree.index(node));
+                    break;
+                case ASSIGN:
+                case COMPARE:
+                case ADD:
+                case MULTIPLY:
+                    push(tree.left(node));
+                    push(tree.right(node));
+                    break;
+                default:
+                    break;
+            }
+            // The first child has to come off the stack first
+            for (int i = from, j = top - 1; i < j; i++, j--) {
+                int swap = pending[i];
+                pending[i] = pending[j];
+                pending[j] = swap;
+            }
+        }
+    }
+
+    // Writes one node, whose children have been written
+    private void node(int node) {
+        FlatTree.Kind kind = tree.kind(node);
+        switch (kind) {
+            case PROGRAM:
+                header(kind, 0, node);
+                varint(count(tree.first(node)));
+                break;
+            case VARIABLE_DECLARATION:
+                header(kind, tree.type(node).ordinal() * 2 + (tree.isArray(node) ? 1 : 0), node);
+                name(node);
+                if (tree.isArray(node)) {
+                    varint(tree.arraySize(node));
+                }
+                break;
+            case FUNCTION:
+                header(kind, tree.type(node).ordinal() * 2 + (tree.body(node) != TreeBuilder.NONE ? 1 : 0), node);
+                name(node);
+                varint(count(tree.first(node)));
+                break;
+            case PARAM:
+                header(kind, tree.type(node).ordinal() * 2 + (tree.isArray(node) ? 1 : 0), node);
+                name(node);
+                break;
+            case COMPOUND: {
+                header(kind, 0, node);
+                int locals = 0;
+                int child = tree.first(node);
+                for (; child != TreeBuilder.NONE && tree.kind(child) == FlatTree.Kind.VARIABLE_DECLARATION;
+                        child = tree.next(child)) {
+                    locals++;
+                }
+                varint(locals);
+                varint(count(child));
+                break;
+            }
+            case EXPRESSION_STATEMENT:
+            case RETURN:
+                header(kind, flag(tree.expression(node)), node);
+                break;
+            case SELECTION:
+                header(kind, flag(tree.thenBranch(node)) + 2 * flag(tree.elseBranch(node)), node);
+                break;
+            case ITERATION:
+                header(kind, flag(tree.body(node)), node);
+                break;
+            case NUMBER:
+                header(kind, 0, node);
+                varint(tree.value(node));
+                break;
+            case VARIABLE:
+                header(kind, flag(tree.index(node)), node);
+                name(node);
+                break;
+            case ASSIGN:
+                header(kind, 0, node);
+                break;
+            case CALL:
+                header(kind, 0, node);
+                name(node);
+                varint(count(tree.first(node)));
+                break;
+            case COMPARE:
+                header(kind, tree.relOperator(node).ordinal(), node);
+                break;
+            case ADD:
+                header(kind, tree.addOperator(node).ordinal(), node);
+                break;
+            default:
+                header(kind, tree.mulOperator(node).ordinal(), node);
+                break;
+        }
+        nodes++;
+    }
+
+    private void header(FlatTree.Kind kind, int flags, int node) {
+        varint(kind.ordinal() | flags << 4);
+        int line = tree.line(node);
+        int delta = line - previousLine;
+        varint(delta << 1 ^ delta >> 31);
+        previousLine = line;
+    }
+
+    private void name(int node) {
+        int symbol = tree.symbol(node);
+        if (symbol >= strings.length) {
+            strings = Arrays.copyOf(strings, Math.max(symbol + 1, strings.length * 2));
+        }
+        if (strings[symbol] == 0) {
+            if (stringCount == symbols.length) {
+                symbols = Arrays.copyOf(symbols, stringCount * 2);
+            }
+            symbols[stringCount++] = symbol;
+            strings[symbol] = stringCount;
+        }
+        varint(strings[symbol] - 1);
+    }
+
+    private int count(int first) {
+        int count = 0;
+        for (int child = first; child != TreeBuilder.NONE; child = tree.next(child)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int flag(int child) {
+        return child != TreeBuilder.NONE ? 1 : 0;
+    }
+
+    private void pushIfPresent(int node) {
+        if (node != TreeBuilder.NONE) {
+            push(node);
+        }
+    }
+
+    private void push(int node) {
+        if (top == pending.length) {
+            pending = Arrays.copyOf(pending, top * 2);
+        }
+        pending[top++] = node;
+    }
+
+    private void varint(int value) {
+        if (length + 5 > body.length) {
+            body = Arrays.copyOf(body, body.length * 2);
+        }
+        while ((value & ~0x7F) != 0) {
+            body[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        body[length++] = (byte) value;
+    }
+
+    private void writeTo(OutputStream out) throws IOException {
+        byte[] nodeBytes = Arrays.copyOf(body, length);
+        length = 0;
+        varint(VERSION);
+        varint(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+            byte[] name = SymbolTable.shared().name(symbols[i]).getBytes(StandardCharsets.UTF_8);
+            varint(name.length);
+            if (length + name.length > body.length) {
+                body = Arrays.copyOf(body, Math.max(length + name.length, body.length * 2));
+            }
+            System.arraycopy(name, 0, body, length, name.length);
+            length += name.length;
+        }
+        varint(nodes);
+        out.write(MAGIC);
+        out.write(body, 0, length);
+        out.write(nodeBytes);
+    }
+}
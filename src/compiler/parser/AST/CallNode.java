@@ -1,34 +1,71 @@
 package compiler.parser.AST;
 
+import compiler.scanner.SymbolTable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents a function call in the AST
  */
 public class CallNode extends ExpressionNode {
-    private String functionName;
+    private int symbol;
     private List<ExpressionNode> arguments;
 
     public CallNode(int lineNum, String functionName) {
+        this(lineNum, SymbolTable.shared().intern(functionName));
+    }
+
+    public CallNode(int lineNum, int symbol) {
         super(lineNum);
-        this.functionName = functionName;
+        this.symbol = symbol;
         this.arguments = new ArrayList<>();
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public String getFunctionName() {
+        return SymbolTable.shared().name(symbol);
+    }
+
     public void addArgument(ExpressionNode arg) {
         arguments.add(arg);
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Call to function: ").append(functionName);
-        sb.append(" [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        for (ExpressionNode arg : arguments) {
+            add(pending, arg);
+        }
+    }
+
+    public List<ExpressionNode> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        arguments.replaceAll(arg -> (ExpressionNode) replacement.apply(arg));
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitCall(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Call to function: ").print(getFunctionName());
+        out.print(" [line: ").print(lineNum).println("]");
 
         if (!arguments.isEmpty()) {
-            sb.append(indent).append("  Arguments:\n");
+            out.queueLine(indent, "  Arguments:");
             for (ExpressionNode arg : arguments) {
-                arg.printTree(sb, indent + "    ");
+                out.queueNode(arg, indent + 4);
             }
         }
     }
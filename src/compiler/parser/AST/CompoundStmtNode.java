@@ -1,7 +1,10 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents a compound statement (block) in the AST
@@ -25,20 +28,51 @@ public class CompoundStmtNode extends StatementNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Compound Statement [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        for (VarDeclarationNode decl : localDeclarations) {
+            add(pending, decl);
+        }
+        for (StatementNode stmt : statements) {
+            add(pending, stmt);
+        }
+    }
+
+    public List<VarDeclarationNode> getLocalDeclarations() {
+        return localDeclarations;
+    }
+
+    public List<StatementNode> getStatements() {
+        return statements;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        localDeclarations.replaceAll(decl -> (VarDeclarationNode) replacement.apply(decl));
+        localDeclarations.removeIf(decl -> decl == null);
+        statements.replaceAll(stmt -> (StatementNode) replacement.apply(stmt));
+        statements.removeIf(stmt -> stmt == null);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitCompoundStmt(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Compound Statement [line: ").print(lineNum).println("]");
 
         if (!localDeclarations.isEmpty()) {
-            sb.append(indent).append("  Local Declarations:\n");
+            out.queueLine(indent, "  Local Declarations:");
             for (VarDeclarationNode decl : localDeclarations) {
-                decl.printTree(sb, indent + "    ");
+                out.queueNode(decl, indent + 4);
             }
         }
 
         if (!statements.isEmpty()) {
-            sb.append(indent).append("  Statements:\n");
+            out.queueLine(indent, "  Statements:");
             for (StatementNode stmt : statements) {
-                stmt.printTree(sb, indent + "    ");
+                out.queueNode(stmt, indent + 4);
             }
         }
     }
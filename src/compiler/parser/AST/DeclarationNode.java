@@ -1,20 +1,25 @@
 package compiler.parser.AST;
 
+import compiler.scanner.SymbolTable;
 /**
  * Base class for declaration nodes (variable or function)
  */
 public abstract class DeclarationNode extends AbstractNode {
-    protected String name;
+    protected int symbol;
     protected TypeSpecifier type;
 
-    public DeclarationNode(int lineNum, String name, TypeSpecifier type) {
+    public DeclarationNode(int lineNum, int symbol, TypeSpecifier type) {
         super(lineNum);
-        this.name = name;
+        this.symbol = symbol;
         this.type = type;
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
     public String getName() {
-        return name;
+        return SymbolTable.shared().name(symbol);
     }
 
     public TypeSpecifier getType() {
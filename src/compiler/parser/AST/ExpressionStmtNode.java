@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents an expression statement in the AST
  */
@@ -17,12 +21,34 @@ public class ExpressionStmtNode extends StatementNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, expression);
+    }
+
+    /**
+     * @return the expression, or null for an empty statement
+     */
+    public ExpressionNode getExpression() {
+        return expression;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        expression = replaceExpression(replacement, expression);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitExpressionStmt(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
         if (expression == null) {
-            sb.append(indent).append("Empty Statement [line: ").append(lineNum).append("]\n");
+            out.indent(indent).print("Empty Statement [line: ").print(lineNum).println("]");
         } else {
-            sb.append(indent).append("Expression Statement [line: ").append(lineNum).append("]\n");
-            expression.printTree(sb, indent + "  ");
+            out.indent(indent).print("Expression Statement [line: ").print(lineNum).println("]");
+            out.queueNode(expression, indent + 2);
         }
     }
 }
\ No newline at end of file
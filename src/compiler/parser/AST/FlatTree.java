@@ -0,0 +1,583 @@
+package compiler.parser.AST;
+
+import compiler.scanner.SymbolTable;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * An AST stored as parallel primitive arrays instead of one object per node.
+ *
+ * A node is an int index. Every node has a kind, a line, an operator byte, a
+ * payload and three child slots a, b and c; next links the nodes of a list.
+ * That is 26 bytes per node with no object headers or references, and
+ * walking the tree reads from a handful of arrays. The slots are used as
+ * follows:
+ * - PROGRAM: a, b = first and last declaration
+ * - VARIABLE_DECLARATION: payload = symbol, op = type, a = array size,
+ *   b = 1 for an array
+ * - FUNCTION: payload = symbol, op = type, a, b = first and last parameter,
+ *   c = body
+ * - PARAM: payload = symbol, op = type, a = 1 for an array
+ * - COMPOUND: a, b = first and last child; the local declarations come
+ *   before the statements
+ * - EXPRESSION_STATEMENT, RETURN: a = expression or NONE
+ * - SELECTION: a = condition, b = then branch, c = else branch or NONE
+ * - ITERATION: a = condition, b = body
+ * - NUMBER: payload = value
+ * - VARIABLE: payload = symbol, a = index or NONE
+ * - ASSIGN: a = variable, b = expression
+ * - CALL: payload = symbol, a, b = first and last argument
+ * - COMPARE, ADD, MULTIPLY: op = operator, a = left, b = right
+ * Names are symbols from SymbolTable.shared().
+ *
+ * CMinusParser.parseFlat() fills a FlatTree directly. printTree writes the
+ * same text as the object tree, and toNode converts back to AbstractNodes.
+ */
+public class FlatTree implements TreeBuilder {
+    public enum Kind {
+        PROGRAM, VARIABLE_DECLARATION, FUNCTION, PARAM, COMPOUND,
+        EXPRESSION_STATEMENT, SELECTION, ITERATION, RETURN,
+        NUMBER, VARIABLE, ASSIGN, CALL, COMPARE, ADD, MULTIPLY
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final TypeSpecifier[] TYPES = TypeSpecifier.values();
+    private static final RelOpType[] REL_OPS = RelOpType.values();
+    private static final AddOpType[] ADD_OPS = AddOpType.values();
+    private static final MulOpType[] MUL_OPS = MulOpType.values();
+
+    private byte[] kinds;
+    private byte[] ops;
+    private int[] lines;
+    private int[] payloads;
+    private int[] as;
+    private int[] bs;
+    private int[] cs;
+    private int[] nexts;
+    private int size;
+    private int root = NONE;
+
+    public FlatTree() {
+        this(1024);
+    }
+
+    public FlatTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        kinds = new byte[capacity];
+        ops = new byte[capacity];
+        lines = new int[capacity];
+        payloads = new int[capacity];
+        as = new int[capacity];
+        bs = new int[capacity];
+        cs = new int[capacity];
+        nexts = new int[capacity];
+    }
+
+    private int node(Kind kind, int line, int op, int payload, int a, int b, int c) {
+        if (size == kinds.length) {
+            grow();
+        }
+        kinds[size] = (byte) kind.ordinal();
+        ops[size] = (byte) op;
+        lines[size] = line;
+        payloads[size] = payload;
+        as[size] = a;
+        bs[size] = b;
+        cs[size] = c;
+        nexts[size] = NONE;
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        ops = Arrays.copyOf(ops, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        payloads = Arrays.copyOf(payloads, capacity);
+        as = Arrays.copyOf(as, capacity);
+        bs = Arrays.copyOf(bs, capacity);
+        cs = Arrays.copyOf(cs, capacity);
+        nexts = Arrays.copyOf(nexts, capacity);
+    }
+
+    // Appends child to the list whose first and last nodes are in a and b
+    private void append(int parent, int child) {
+        if (as[parent] == NONE) {
+            as[parent] = child;
+        } else {
+            nexts[bs[parent]] = child;
+        }
+        bs[parent] = child;
+    }
+
+    // Tree building
+
+    @Override
+    public int line(int node) {
+        return lines[node];
+    }
+
+    @Override
+    public int program(int line) {
+        root = node(Kind.PROGRAM, line, 0, 0, NONE, NONE, NONE);
+        return root;
+    }
+
+    @Override
+    public void addDeclaration(int program, int declaration) {
+        append(program, declaration);
+    }
+
+    @Override
+    public int variableDeclaration(int line, int symbol, TypeSpecifier type) {
+        return node(Kind.VARIABLE_DECLARATION, line, type.ordinal(), symbol, 0, 0, NONE);
+    }
+
+    @Override
+    public int arrayDeclaration(int line, int symbol, TypeSpecifier type, int arraySize) {
+        return node(Kind.VARIABLE_DECLARATION, line, type.ordinal(), symbol, arraySize, 1, NONE);
+    }
+
+    @Override
+    public int function(int line, int symbol, TypeSpecifier type) {
+        return node(Kind.FUNCTION, line, type.ordinal(), symbol, NONE, NONE, NONE);
+    }
+
+    @Override
+    public void addParam(int function, int param) {
+        append(function, param);
+    }
+
+    @Override
+    public void setBody(int function, int body) {
+        cs[function] = body;
+    }
+
+    @Override
+    public int param(int line, int symbol, TypeSpecifier type, boolean isArray) {
+        return node(Kind.PARAM, line, type.ordinal(), symbol, isArray ? 1 : 0, NONE, NONE);
+    }
+
+    @Override
+    public int compound(int line) {
+        return node(Kind.COMPOUND, line, 0, 0, NONE, NONE, NONE);
+    }
+
+    @Override
+    public void addLocalDeclaration(int compound, int declaration) {
+        append(compound, declaration);
+    }
+
+    @Override
+    public void addStatement(int compound, int statement) {
+        append(compound, statement);
+    }
+
+    @Override
+    public int expressionStatement(int line, int expression) {
+        return node(Kind.EXPRESSION_STATEMENT, line, 0, 0, expression, NONE, NONE);
+    }
+
+    @Override
+    public int selection(int line, int condition, int thenBranch, int elseBranch) {
+        return node(Kind.SELECTION, line, 0, 0, condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public int iteration(int line, int condition, int body) {
+        return node(Kind.ITERATION, line, 0, 0, condition, body, NONE);
+    }
+
+    @Override
+    public int returnStatement(int line, int expression) {
+        return node(Kind.RETURN, line, 0, 0, expression, NONE, NONE);
+    }
+
+    @Override
+    public int number(int line, int value) {
+        return node(Kind.NUMBER, line, 0, value, NONE, NONE, NONE);
+    }
+
+    @Override
+    public int variable(int line, int symbol, int index) {
+        return node(Kind.VARIABLE, line, 0, symbol, index, NONE, NONE);
+    }
+
+    @Override
+    public int assign(int line, int variable, int expression) {
+        return node(Kind.ASSIGN, line, 0, 0, variable, expression, NONE);
+    }
+
+    @Override
+    public int call(int line, int symbol) {
+        return node(Kind.CALL, line, 0, symbol, NONE, NONE, NONE);
+    }
+
+    @Override
+    public void addArgument(int call, int argument) {
+        append(call, argument);
+    }
+
+    @Override
+    public int compare(int line, int left, RelOpType operator, int right) {
+        return node(Kind.COMPARE, line, operator.ordinal(), 0, left, right, NONE);
+    }
+
+    @Override
+    public int add(int line, int left, AddOpType operator, int right) {
+        return node(Kind.ADD, line, operator.ordinal(), 0, left, right, NONE);
+    }
+
+    @Override
+    public int multiply(int line, int left, MulOpType operator, int right) {
+        return node(Kind.MULTIPLY, line, operator.ordinal(), 0, left, right, NONE);
+    }
+
+    // Reading the tree
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return root;
+    }
+
+    public Kind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public int symbol(int node) {
+        return payloads[node];
+    }
+
+    public String name(int node) {
+        return SymbolTable.shared().name(payloads[node]);
+    }
+
+    public int value(int node) {
+        return payloads[node];
+    }
+
+    public TypeSpecifier type(int node) {
+        return TYPES[ops[node]];
+    }
+
+    public RelOpType relOperator(int node) {
+        return REL_OPS[ops[node]];
+    }
+
+    public AddOpType addOperator(int node) {
+        return ADD_OPS[ops[node]];
+    }
+
+    public MulOpType mulOperator(int node) {
+        return MUL_OPS[ops[node]];
+    }
+
+    public boolean isArray(int node) {
+        return (kinds[node] == Kind.PARAM.ordinal() ? as[node] : bs[node]) != 0;
+    }
+
+    public int arraySize(int node) {
+        return as[node];
+    }
+
+    // The first child of a PROGRAM, FUNCTION, COMPOUND or CALL; the rest
+    // follow through next()
+    public int first(int node) {
+        return as[node];
+    }
+
+    public int next(int node) {
+        return nexts[node];
+    }
+
+    public int left(int node) {
+        return as[node];
+    }
+
+    public int right(int node) {
+        return bs[node];
+    }
+
+    public int condition(int node) {
+        return as[node];
+    }
+
+    public int thenBranch(int node) {
+        return bs[node];
+    }
+
+    public int elseBranch(int node) {
+        return cs[node];
+    }
+
+    public int body(int node) {
+        return kinds[node] == Kind.FUNCTION.ordinal() ? cs[node] : bs[node];
+    }
+
+    public int index(int node) {
+        return as[node];
+    }
+
+    // The expression of an EXPRESSION_STATEMENT, RETURN or ASSIGN
+    public int expression(int node) {
+        return kinds[node] == Kind.ASSIGN.ordinal() ? bs[node] : as[node];
+    }
+
+    // Adapters to the object tree
+
+    /**
+     * Builds node and its subtree again through builder, in the order the
+     * parser would.
+     *
+     * @return the builder's handle for the copy of node
+     */
+    public int copyTo(TreeBuilder builder, int node) {
+        if (node == NONE) {
+            return NONE;
+        }
+        int line = lines[node];
+        switch (kind(node)) {
+            case PROGRAM: {
+                int copy = builder.program(line);
+                for (int child = first(node); child != NONE; child = nexts[child]) {
+                    builder.addDeclaration(copy, copyTo(builder, child));
+                }
+                return copy;
+            }
+            case VARIABLE_DECLARATION:
+                return isArray(node)
+                        ? builder.arrayDeclaration(line, symbol(node), type(node), arraySize(node))
+                        : builder.variableDeclaration(line, symbol(node), type(node));
+            case FUNCTION: {
+                int copy = builder.function(line, symbol(node), type(node));
+                for (int child = first(node); child != NONE; child = nexts[child]) {
+                    builder.addParam(copy, copyTo(builder, child));
+                }
+                if (body(node) != NONE) {
+                    builder.setBody(copy, copyTo(builder, body(node)));
+                }
+                return copy;
+            }
+            case PARAM:
+                return builder.param(line, symbol(node), type(node), isArray(node));
+            case COMPOUND: {
+                int copy = builder.compound(line);
+                for (int child = first(node); child != NONE; child = nexts[child]) {
+                    if (kind(child) == Kind.VARIABLE_DECLARATION) {
+                        builder.addLocalDeclaration(copy, copyTo(builder, child));
+                    } else {
+                        builder.addStatement(copy, copyTo(builder, child));
+                    }
+                }
+                return copy;
+            }
+            case EXPRESSION_STATEMENT:
+                return builder.expressionStatement(line, copyTo(builder, expression(node)));
+            case SELECTION: {
+                int condition = copyTo(builder, condition(node));
+                int thenBranch = copyTo(builder, thenBranch(node));
+                return builder.selection(line, condition, thenBranch, copyTo(builder, elseBranch(node)));
+            }
+            case ITERATION: {
+                int condition = copyTo(builder, condition(node));
+                return builder.iteration(line, condition, copyTo(builder, body(node)));
+            }
+            case RETURN:
+                return builder.returnStatement(line, copyTo(builder, expression(node)));
+            case NUMBER:
+                return builder.number(line, value(node));
+            case VARIABLE:
+                return builder.variable(line, symbol(node), copyTo(builder, index(node)));
+            case ASSIGN: {
+                int variable = copyTo(builder, left(node));
+                return builder.assign(line, variable, copyTo(builder, expression(node)));
+            }
+            case CALL: {
+                int copy = builder.call(line, symbol(node));
+                for (int child = first(node); child != NONE; child = nexts[child]) {
+                    builder.addArgument(copy, copyTo(builder, child));
+                }
+                return copy;
+            }
+            case COMPARE: {
+                int left = copyTo(builder, left(node));
+                return builder.compare(line, left, relOperator(node), copyTo(builder, right(node)));
+            }
+            case ADD: {
+                int left = copyTo(builder, left(node));
+                return builder.add(line, left, addOperator(node), copyTo(builder, right(node)));
+            }
+            default: {
+                int left = copyTo(builder, left(node));
+                return builder.multiply(line, left, mulOperator(node), copyTo(builder, right(node)));
+            }
+        }
+    }
+
+    public AbstractNode toNode(int node) {
+        NodeBuilder builder = new NodeBuilder();
+        return builder.node(copyTo(builder, node));
+    }
+
+    /**
+     * Writes node and its subtree in the same format as
+     * AbstractNode.printTree.
+     */
+    public void printTree(TreePrinter out, int node, int indent) throws IOException {
+        out.printTree(this, node, indent);
+    }
+
+    // Writes the first line of node and queues the rest on out
+    void print(TreePrinter out, int node, int indent) throws IOException {
+        int line = lines[node];
+        switch (kind(node)) {
+            case PROGRAM:
+                out.indent(indent).print("Program [line: ").print(line).println("]");
+                for (int child = first(node); child != NONE; child = nexts[child]) {
+                    out.queueNode(this, child, indent + 2);
+                }
+                break;
+            case VARIABLE_DECLARATION:
+                out.indent(indent).print("Variable: ").print(name(node));
+                if (isArray(node)) {
+                    out.print("[").print(arraySize(node)).print("]");
+                }
+                out.print(" of type ").print(type(node));
+                out.print(" [line: ").print(line).println("]");
+                break;
+            case FUNCTION:
+                out.indent(indent).print("Function: ").print(name(node));
+                out.print(" returns ").print(type(node));
+                out.print(" [line: ").print(line).println("]");
+                out.queueLine(indent, "  Parameters:");
+                if (first(node) == NONE) {
+                    out.queueLine(indent, "    void");
+                } else {
+                    for (int child = first(node); child != NONE; child = nexts[child]) {
+                        out.queueNode(this, child, indent + 4);
+                    }
+                }
+                out.queueLine(indent, "  Body:");
+                if (body(node) != NONE) {
+                    out.queueNode(this, body(node), indent + 4);
+                }
+                break;
+            case PARAM:
+                out.indent(indent).print("Parameter: ").print(name(node));
+                if (isArray(node)) {
+                    out.print("[]");
+                }
+                out.print(" of type ").print(type(node));
+                out.print(" [line: ").print(line).println("]");
+                break;
+            case COMPOUND:
+                printCompound(out, node, indent);
+                break;
+            case EXPRESSION_STATEMENT:
+                if (expression(node) == NONE) {
+                    out.indent(indent).print("Empty Statement [line: ").print(line).println("]");
+                } else {
+                    out.indent(indent).print("Expression Statement [line: ").print(line).println("]");
+                    out.queueNode(this, expression(node), indent + 2);
+                }
+                break;
+            case SELECTION:
+                out.indent(indent).print("If Statement [line: ").print(line).println("]");
+                out.queueLine(indent, "  Condition:");
+                out.queueNode(this, condition(node), indent + 4);
+                out.queueLine(indent, "  Then Branch:");
+                out.queueNode(this, thenBranch(node), indent + 4);
+                if (elseBranch(node) != NONE) {
+                    out.queueLine(indent, "  Else Branch:");
+                    out.queueNode(this, elseBranch(node), indent + 4);
+                }
+                break;
+            case ITERATION:
+                out.indent(indent).print("While Statement [line: ").print(line).println("]");
+                out.queueLine(indent, "  Condition:");
+                out.queueNode(this, condition(node), indent + 4);
+                out.queueLine(indent, "  Body:");
+                out.queueNode(this, body(node), indent + 4);
+                break;
+            case RETURN:
+                out.indent(indent).print("Return Statement [line: ").print(line).println("]");
+                if (expression(node) != NONE) {
+                    out.queueLine(indent, "  Expression:");
+                    out.queueNode(this, expression(node), indent + 4);
+                }
+                break;
+            case NUMBER:
+                out.indent(indent).print("Number: ").print(value(node));
+                out.print(" [line: ").print(line).println("]");
+                break;
+            case VARIABLE:
+                out.indent(indent).print("Variable: ").print(name(node));
+                out.print(" [line: ").print(line).println("]");
+                if (index(node) != NONE) {
+                    out.queueLine(indent, "  Index:");
+                    out.queueNode(this, index(node), indent + 4);
+                }
+                break;
+            case ASSIGN:
+                out.indent(indent).print("Assign [line: ").print(line).println("]");
+                printOperands(out, node, indent);
+                break;
+            case CALL:
+                out.indent(indent).print("Call to function: ").print(name(node));
+                out.print(" [line: ").print(line).println("]");
+                if (first(node) != NONE) {
+                    out.queueLine(indent, "  Arguments:");
+                    for (int child = first(node); child != NONE; child = nexts[child]) {
+                        out.queueNode(this, child, indent + 4);
+                    }
+                }
+                break;
+            case COMPARE:
+                out.indent(indent).print("Comparison: ").print(relOperator(node));
+                out.print(" [line: ").print(line).println("]");
+                printOperands(out, node, indent);
+                break;
+            case ADD:
+                out.indent(indent).print("Operator: ").print(addOperator(node));
+                out.print(" [line: ").print(line).println("]");
+                printOperands(out, node, indent);
+                break;
+            case MULTIPLY:
+                out.indent(indent).print("Operator: ").print(mulOperator(node));
+                out.print(" [line: ").print(line).println("]");
+                printOperands(out, node, indent);
+                break;
+        }
+    }
+
+    private void printCompound(TreePrinter out, int node, int indent) throws IOException {
+        out.indent(indent).print("Compound Statement [line: ").print(lines[node]).println("]");
+
+        int child = first(node);
+        if (child != NONE && kind(child) == Kind.VARIABLE_DECLARATION) {
+            out.queueLine(indent, "  Local Declarations:");
+            while (child != NONE && kind(child) == Kind.VARIABLE_DECLARATION) {
+                out.queueNode(this, child, indent + 4);
+                child = nexts[child];
+            }
+        }
+
+        if (child != NONE) {
+            out.queueLine(indent, "  Statements:");
+            for (; child != NONE; child = nexts[child]) {
+                out.queueNode(this, child, indent + 4);
+            }
+        }
+    }
+
+    private void printOperands(TreePrinter out, int node, int indent) throws IOException {
+        out.queueLine(indent, "  Left:");
+        out.queueNode(this, left(node), indent + 4);
+        out.queueLine(indent, "  Right:");
+        out.queueNode(this, right(node), indent + 4);
+    }
+}
@@ -1,17 +1,32 @@
 package compiler.parser.AST;
 
+import compiler.scanner.SymbolTable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents a function declaration in the AST
+ *
+ * The body may be left unparsed, as CMinusParser.parseLazy does; it is
+ * then parsed by the first call to getBody(), or by anything that walks the
+ * node's children, on whichever thread gets there first.
  */
 public class FunDeclarationNode extends DeclarationNode {
     private List<ParamNode> params;
-    private CompoundStmtNode body;
+    private volatile CompoundStmtNode body;
+    // Parses the body if it has not been parsed yet; guarded by this
+    private Supplier<CompoundStmtNode> lazyBody;
 
     public FunDeclarationNode(int lineNum, String name, TypeSpecifier type) {
-        super(lineNum, name, type);
+        this(lineNum, SymbolTable.shared().intern(name), type);
+    }
+
+    public FunDeclarationNode(int lineNum, int symbol, TypeSpecifier type) {
+        super(lineNum, symbol, type);
         this.params = new ArrayList<>();
     }
 
@@ -23,31 +38,82 @@ public class FunDeclarationNode extends DeclarationNode {
         return params;
     }
 
-    public void setBody(CompoundStmtNode body) {
+    public synchronized void setBody(CompoundStmtNode body) {
         this.body = body;
+        lazyBody = null;
+    }
+
+    /**
+     * Leaves the body to be parsed by parser when it is first asked for.
+     * parser is called at most once and may return null if the body has
+     * syntax errors that leave no tree.
+     */
+    public synchronized void setLazyBody(Supplier<CompoundStmtNode> parser) {
+        body = null;
+        lazyBody = parser;
+    }
+
+    /**
+     * @return whether the body has been parsed, or was never lazy
+     */
+    public synchronized boolean isBodyParsed() {
+        return lazyBody == null;
     }
 
     public CompoundStmtNode getBody() {
-        return body;
+        CompoundStmtNode parsed = body;
+        if (parsed != null) {
+            return parsed;
+        }
+        synchronized (this) {
+            if (lazyBody != null) {
+                body = lazyBody.get();
+                lazyBody = null;
+            }
+            return body;
+        }
+    }
+
+    @Override
+    protected void addChildren(Deque<AbstractNode> pending) {
+        for (ParamNode param : params) {
+            add(pending, param);
+        }
+        add(pending, getBody());
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        params.replaceAll(param -> (ParamNode) replacement.apply(param));
+        CompoundStmtNode current = getBody();
+        if (current != null) {
+            setBody((CompoundStmtNode) replacement.apply(current));
+        }
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitFunDeclaration(this);
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Function: ").append(name);
-        sb.append(" returns ").append(type);
-        sb.append(" [line: ").append(lineNum).append("]\n");
-        sb.append(indent).append("  Parameters:\n");
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Function: ").print(getName());
+        out.print(" returns ").print(type);
+        out.print(" [line: ").print(lineNum).println("]");
+        out.queueLine(indent, "  Parameters:");
         if (params.isEmpty()) {
-            sb.append(indent).append("    void\n");
+            out.queueLine(indent, "    void");
         } else {
             for (ParamNode param : params) {
-                param.printTree(sb, indent + "    ");
+                out.queueNode(param, indent + 4);
             }
         }
 
-        sb.append(indent).append("  Body:\n");
+        out.queueLine(indent, "  Body:");
+        CompoundStmtNode body = getBody();
         if (body != null) {
-            body.printTree(sb, indent + "    ");
+            out.queueNode(body, indent + 4);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents a while statement in the AST
  */
@@ -14,13 +18,38 @@ public class IterationStmtNode extends StatementNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("While Statement [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, condition);
+        add(pending, body);
+    }
+
+    public ExpressionNode getCondition() {
+        return condition;
+    }
+
+    public StatementNode getBody() {
+        return body;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        condition = replaceExpression(replacement, condition);
+        body = replaceStatement(replacement, body);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitIterationStmt(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("While Statement [line: ").print(lineNum).println("]");
 
-        sb.append(indent).append("  Condition:\n");
-        condition.printTree(sb, indent + "    ");
+        out.queueLine(indent, "  Condition:");
+        out.queueNode(condition, indent + 4);
 
-        sb.append(indent).append("  Body:\n");
-        body.printTree(sb, indent + "    ");
+        out.queueLine(indent, "  Body:");
+        out.queueNode(body, indent + 4);
     }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package compiler.parser.AST;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the usual tree of AbstractNode objects. A handle is the index of
+ * the node in a list that is only kept while the tree is being built.
+ */
+public class NodeBuilder implements TreeBuilder {
+    private final List<AbstractNode> nodes = new ArrayList<>();
+
+    public AbstractNode node(int handle) {
+        return handle == NONE ? null : nodes.get(handle);
+    }
+
+    private ExpressionNode expression(int handle) {
+        return (ExpressionNode) node(handle);
+    }
+
+    private StatementNode statement(int handle) {
+        return (StatementNode) node(handle);
+    }
+
+    private int keep(AbstractNode node) {
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public int line(int node) {
+        return nodes.get(node).getLineNum();
+    }
+
+    @Override
+    public int program(int line) {
+        return keep(new ProgramNode(line));
+    }
+
+    @Override
+    public void addDeclaration(int program, int declaration) {
+        ((ProgramNode) node(program)).addDeclaration((DeclarationNode) node(declaration));
+    }
+
+    @Override
+    public int variableDeclaration(int line, int symbol, TypeSpecifier type) {
+        return keep(new VarDeclarationNode(line, symbol, type));
+    }
+
+    @Override
+    public int arrayDeclaration(int line, int symbol, TypeSpecifier type, int arraySize) {
+        return keep(new VarDeclarationNode(line, symbol, type, arraySize));
+    }
+
+    @Override
+    public int function(int line, int symbol, TypeSpecifier type) {
+        return keep(new FunDeclarationNode(line, symbol, type));
+    }
+
+    @Override
+    public void addParam(int function, int param) {
+        ((FunDeclarationNode) node(function)).addParam((ParamNode) node(param));
+    }
+
+    @Override
+    public void setBody(int function, int body) {
+        ((FunDeclarationNode) node(function)).setBody((CompoundStmtNode) node(body));
+    }
+
+    @Override
+    public int param(int line, int symbol, TypeSpecifier type, boolean isArray) {
+        return keep(new ParamNode(line, symbol, type, isArray));
+    }
+
+    @Override
+    public int compound(int line) {
+        return keep(new CompoundStmtNode(line));
+    }
+
+    @Override
+    public void addLocalDeclaration(int compound, int declaration) {
+        ((CompoundStmtNode) node(compound)).addLocalDeclaration((VarDeclarationNode) node(declaration));
+    }
+
+    @Override
+    public void addStatement(int compound, int statement) {
+        ((CompoundStmtNode) node(compound)).addStatement(statement(statement));
+    }
+
+    @Override
+    public int expressionStatement(int line, int expression) {
+        if (expression == NONE) {
+            return keep(new ExpressionStmtNode(line));
+        }
+        return keep(new ExpressionStmtNode(line, expression(expression)));
+    }
+
+    @Override
+    public int selection(int line, int condition, int thenBranch, int elseBranch) {
+        if (elseBranch == NONE) {
+            return keep(new SelectionStmtNode(line, expression(condition), statement(thenBranch)));
+        }
+        return keep(new SelectionStmtNode(line, expression(condition), statement(thenBranch),
+                statement(elseBranch)));
+    }
+
+    @Override
+    public int iteration(int line, int condition, int body) {
+        return keep(new IterationStmtNode(line, expression(condition), statement(body)));
+    }
+
+    @Override
+    public int returnStatement(int line, int expression) {
+        if (expression == NONE) {
+            return keep(new ReturnStmtNode(line));
+        }
+        return keep(new ReturnStmtNode(line, expression(expression)));
+    }
+
+    @Override
+    public int number(int line, int value) {
+        return keep(new NumberNode(line, value));
+    }
+
+    @Override
+    public int variable(int line, int symbol, int index) {
+        return keep(new VarExpressionNode(line, symbol, expression(index)));
+    }
+
+    @Override
+    public int assign(int line, int variable, int expression) {
+        return keep(new AssignExpressionNode(line, (VarExpressionNode) node(variable), expression(expression)));
+    }
+
+    @Override
+    public int call(int line, int symbol) {
+        return keep(new CallNode(line, symbol));
+    }
+
+    @Override
+    public void addArgument(int call, int argument) {
+        ((CallNode) node(call)).addArgument(expression(argument));
+    }
+
+    @Override
+    public int compare(int line, int left, RelOpType operator, int right) {
+        return keep(new SimpleExpressionNode(line, expression(left), operator, expression(right)));
+    }
+
+    @Override
+    public int add(int line, int left, AddOpType operator, int right) {
+        return keep(new SimpleExpressionNode(line, expression(left), operator, expression(right)));
+    }
+
+    @Override
+    public int multiply(int line, int left, MulOpType operator, int right) {
+        return keep(new TermNode(line, expression(left), operator, expression(right)));
+    }
+}
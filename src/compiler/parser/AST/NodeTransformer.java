@@ -0,0 +1,83 @@
+package compiler.parser.AST;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewrites an AST bottom-up. Every visit method gets a node whose children
+ * have already been rewritten and returns the node to put in its place:
+ * the node itself, one of its children, or a new node. A statement may be
+ * replaced by null to remove it; where a statement is required, as the
+ * branch of an if or the body of a while, it becomes an empty statement.
+ * By default every node is kept.
+ *
+ * The tree is walked with a work list instead of recursion, so its depth is
+ * not limited by the thread's stack. Nodes are changed in place.
+ */
+public abstract class NodeTransformer extends SimpleNodeVisitor<AbstractNode> {
+    private int changes;
+
+    /**
+     * Rewrites root and its subtree.
+     *
+     * @return the rewritten root
+     */
+    public AbstractNode transform(AbstractNode root) {
+        changes = 0;
+
+        // In reverse pre-order every node comes after its children
+        List<AbstractNode> order = new ArrayList<>();
+        Deque<AbstractNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            AbstractNode node = pending.pop();
+            order.add(node);
+            node.addChildren(pending);
+        }
+
+        Map<AbstractNode, AbstractNode> replaced = new IdentityHashMap<>();
+        UnaryOperator<AbstractNode> replacement = child -> replaced.containsKey(child) ? replaced.get(child) : child;
+        for (int i = order.size() - 1; i >= 0; i--) {
+            AbstractNode node = order.get(i);
+            if (!replaced.isEmpty()) {
+                node.replaceChildren(replacement);
+            }
+            AbstractNode result = node.accept(this);
+            if (result != node) {
+                replaced.put(node, result);
+            }
+        }
+        return replacement.apply(root);
+    }
+
+    /**
+     * Counts one change for getChanges.
+     */
+    protected void changed() {
+        changes++;
+    }
+
+    /**
+     * Counts count changes for getChanges.
+     */
+    protected void changed(int count) {
+        changes += count;
+    }
+
+    /**
+     * @return the number of changes the last transform made
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    @Override
+    protected AbstractNode defaultVisit(AbstractNode node) {
+        return node;
+    }
+}
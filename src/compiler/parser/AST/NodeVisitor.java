@@ -0,0 +1,48 @@
+package compiler.parser.AST;
+
+/**
+ * An operation on the nodes of an AST, with one method per node class.
+ * AbstractNode.accept calls the method for the node's class.
+ *
+ * SimpleNodeVisitor sends every node to one default method, for visitors
+ * that only handle some kinds of node.
+ *
+ * A visitor only sees the node it is given. To walk a subtree without
+ * recursion use AbstractNode.walk, and to rewrite one bottom-up use
+ * NodeTransformer.
+ *
+ * @param <R> what the visit methods return
+ */
+public interface NodeVisitor<R> {
+    R visitProgram(ProgramNode node);
+
+    R visitVarDeclaration(VarDeclarationNode node);
+
+    R visitFunDeclaration(FunDeclarationNode node);
+
+    R visitParam(ParamNode node);
+
+    R visitCompoundStmt(CompoundStmtNode node);
+
+    R visitExpressionStmt(ExpressionStmtNode node);
+
+    R visitSelectionStmt(SelectionStmtNode node);
+
+    R visitIterationStmt(IterationStmtNode node);
+
+    R visitReturnStmt(ReturnStmtNode node);
+
+    R visitNumber(NumberNode node);
+
+    R visitVarExpression(VarExpressionNode node);
+
+    R visitAssignExpression(AssignExpressionNode node);
+
+    R visitCall(CallNode node);
+
+    R visitSimpleExpression(SimpleExpressionNode node);
+
+    R visitAddExpression(AddExpressionNode node);
+
+    R visitTerm(TermNode node);
+}
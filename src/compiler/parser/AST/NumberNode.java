@@ -1,5 +1,7 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+
 /**
  * Represents a numeric literal in the AST
  */
@@ -16,8 +18,13 @@ public class NumberNode extends ExpressionNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Number: ").append(value);
-        sb.append(" [line: ").append(lineNum).append("]\n");
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitNumber(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Number: ").print(value);
+        out.print(" [line: ").print(lineNum).println("]");
     }
 }
\ No newline at end of file
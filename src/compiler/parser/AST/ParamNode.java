@@ -1,22 +1,33 @@
 package compiler.parser.AST;
 
+import compiler.scanner.SymbolTable;
+import java.io.IOException;
+
 /**
  * Represents a function parameter in the AST
  */
 public class ParamNode extends AbstractNode {
-    private String name;
+    private int symbol;
     private TypeSpecifier type;
     private boolean isArray;
 
     public ParamNode(int lineNum, String name, TypeSpecifier type, boolean isArray) {
+        this(lineNum, SymbolTable.shared().intern(name), type, isArray);
+    }
+
+    public ParamNode(int lineNum, int symbol, TypeSpecifier type, boolean isArray) {
         super(lineNum);
-        this.name = name;
+        this.symbol = symbol;
         this.type = type;
         this.isArray = isArray;
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
     public String getName() {
-        return name;
+        return SymbolTable.shared().name(symbol);
     }
 
     public TypeSpecifier getType() {
@@ -28,14 +39,19 @@ public class ParamNode extends AbstractNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Parameter: ").append(name);
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitParam(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Parameter: ").print(getName());
 
         if (isArray) {
-            sb.append("[]");
+            out.print("[]");
         }
 
-        sb.append(" of type ").append(type);
-        sb.append(" [line: ").append(lineNum).append("]\n");
+        out.print(" of type ").print(type);
+        out.print(" [line: ").print(lineNum).println("]");
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Root node of the AST representing a program.
@@ -19,10 +22,32 @@ public class ProgramNode extends AbstractNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Program [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        for (DeclarationNode declaration : declarations) {
+            add(pending, declaration);
+        }
+    }
+
+    public List<DeclarationNode> getDeclarations() {
+        return declarations;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        declarations.replaceAll(declaration -> (DeclarationNode) replacement.apply(declaration));
+        declarations.removeIf(declaration -> declaration == null);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitProgram(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Program [line: ").print(lineNum).println("]");
         for (DeclarationNode decl : declarations) {
-            decl.printTree(sb, indent + "  ");
+            out.queueNode(decl, indent + 2);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents a return statement in the AST
  */
@@ -17,12 +21,34 @@ public class ReturnStmtNode extends StatementNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Return Statement [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, expression);
+    }
+
+    /**
+     * @return the returned expression, or null for a bare return
+     */
+    public ExpressionNode getExpression() {
+        return expression;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        expression = replaceExpression(replacement, expression);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitReturnStmt(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Return Statement [line: ").print(lineNum).println("]");
 
         if (expression != null) {
-            sb.append(indent).append("  Expression:\n");
-            expression.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Expression:");
+            out.queueNode(expression, indent + 4);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents an if (if-else) statement in the AST
  */
@@ -24,18 +28,53 @@ public class SelectionStmtNode extends StatementNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("If Statement [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, condition);
+        add(pending, thenBranch);
+        add(pending, elseBranch);
+    }
+
+    public ExpressionNode getCondition() {
+        return condition;
+    }
+
+    public StatementNode getThenBranch() {
+        return thenBranch;
+    }
+
+    /**
+     * @return the else branch, or null if there is none
+     */
+    public StatementNode getElseBranch() {
+        return elseBranch;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        condition = replaceExpression(replacement, condition);
+        thenBranch = replaceStatement(replacement, thenBranch);
+        // A removed else branch is left out
+        elseBranch = elseBranch == null ? null : (StatementNode) replacement.apply(elseBranch);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitSelectionStmt(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("If Statement [line: ").print(lineNum).println("]");
 
-        sb.append(indent).append("  Condition:\n");
-        condition.printTree(sb, indent + "    ");
+        out.queueLine(indent, "  Condition:");
+        out.queueNode(condition, indent + 4);
 
-        sb.append(indent).append("  Then Branch:\n");
-        thenBranch.printTree(sb, indent + "    ");
+        out.queueLine(indent, "  Then Branch:");
+        out.queueNode(thenBranch, indent + 4);
 
         if (elseBranch != null) {
-            sb.append(indent).append("  Else Branch:\n");
-            elseBranch.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Else Branch:");
+            out.queueNode(elseBranch, indent + 4);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents a simple expression that can include both additive and relational
  * operations
@@ -44,27 +48,74 @@ public class SimpleExpressionNode extends ExpressionNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, leftExpr);
+        add(pending, rightExpr);
+    }
+
+    public ExpressionNode getLeft() {
+        return leftExpr;
+    }
+
+    /**
+     * @return the relational operator, or null if this is not a comparison
+     */
+    public RelOpType getRelOperator() {
+        return relOperator;
+    }
+
+    /**
+     * @return the additive operator, or null if this is not an addition or
+     *         subtraction
+     */
+    public AddOpType getAddOperator() {
+        return addOperator;
+    }
+
+    /**
+     * @return the right operand, or null for an expression with no operator
+     */
+    public ExpressionNode getRight() {
+        return rightExpr;
+    }
+
+    public boolean isRelational() {
+        return isRelational;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        leftExpr = replaceExpression(replacement, leftExpr);
+        rightExpr = replaceExpression(replacement, rightExpr);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitSimpleExpression(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
         if (relOperator == null && addOperator == null) {
-            leftExpr.printTree(sb, indent);
+            out.queueNode(leftExpr, indent);
         } else if (isRelational) {
-            sb.append(indent).append("Comparison: ").append(relOperator);
-            sb.append(" [line: ").append(lineNum).append("]\n");
+            out.indent(indent).print("Comparison: ").print(relOperator);
+            out.print(" [line: ").print(lineNum).println("]");
 
-            sb.append(indent).append("  Left:\n");
-            leftExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Left:");
+            out.queueNode(leftExpr, indent + 4);
 
-            sb.append(indent).append("  Right:\n");
-            rightExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Right:");
+            out.queueNode(rightExpr, indent + 4);
         } else {
-            sb.append(indent).append("Operator: ").append(addOperator);
-            sb.append(" [line: ").append(lineNum).append("]\n");
+            out.indent(indent).print("Operator: ").print(addOperator);
+            out.print(" [line: ").print(lineNum).println("]");
 
-            sb.append(indent).append("  Left:\n");
-            leftExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Left:");
+            out.queueNode(leftExpr, indent + 4);
 
-            sb.append(indent).append("  Right:\n");
-            rightExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Right:");
+            out.queueNode(rightExpr, indent + 4);
         }
     }
 }
\ No newline at end of file
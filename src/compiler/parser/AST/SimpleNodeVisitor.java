@@ -0,0 +1,94 @@
+package compiler.parser.AST;
+
+/**
+ * A NodeVisitor whose visit methods all call defaultVisit, so a visitor
+ * that only handles some kinds of node overrides just those.
+ *
+ * @param <R> what the visit methods return
+ */
+public abstract class SimpleNodeVisitor<R> implements NodeVisitor<R> {
+    /**
+     * Called for every node whose visit method is not overridden.
+     */
+    protected abstract R defaultVisit(AbstractNode node);
+
+    @Override
+    public R visitProgram(ProgramNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitVarDeclaration(VarDeclarationNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitFunDeclaration(FunDeclarationNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitParam(ParamNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitCompoundStmt(CompoundStmtNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitExpressionStmt(ExpressionStmtNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitSelectionStmt(SelectionStmtNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitIterationStmt(IterationStmtNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitReturnStmt(ReturnStmtNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitNumber(NumberNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitVarExpression(VarExpressionNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitAssignExpression(AssignExpressionNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitCall(CallNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitSimpleExpression(SimpleExpressionNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitAddExpression(AddExpressionNode node) {
+        return defaultVisit(node);
+    }
+
+    @Override
+    public R visitTerm(TermNode node) {
+        return defaultVisit(node);
+    }
+}
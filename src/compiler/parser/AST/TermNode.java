@@ -1,5 +1,9 @@
 package compiler.parser.AST;
 
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents a term (factor or factor * factor) in the AST
  */
@@ -26,20 +30,52 @@ public class TermNode extends ExpressionNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, leftFactor);
+        add(pending, rightFactor);
+    }
+
+    public ExpressionNode getLeft() {
+        return leftFactor;
+    }
+
+    /**
+     * @return the operator, or null for a single factor
+     */
+    public MulOpType getOperator() {
+        return operator;
+    }
+
+    public ExpressionNode getRight() {
+        return rightFactor;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        leftFactor = replaceExpression(replacement, leftFactor);
+        rightFactor = replaceExpression(replacement, rightFactor);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitTerm(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
         if (operator == null) {
             // Just the factor
-            leftFactor.printTree(sb, indent);
+            out.queueNode(leftFactor, indent);
         } else {
             // Multiplication/division
-            sb.append(indent).append("Operator: ").append(operator);
-            sb.append(" [line: ").append(lineNum).append("]\n");
+            out.indent(indent).print("Operator: ").print(operator);
+            out.print(" [line: ").print(lineNum).println("]");
 
-            sb.append(indent).append("  Left:\n");
-            leftFactor.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Left:");
+            out.queueNode(leftFactor, indent + 4);
 
-            sb.append(indent).append("  Right:\n");
-            rightFactor.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Right:");
+            out.queueNode(rightFactor, indent + 4);
         }
     }
 }
\ No newline at end of file
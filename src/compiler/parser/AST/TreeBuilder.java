@@ -0,0 +1,68 @@
+package compiler.parser.AST;
+
+/**
+ * Receives the nodes of an AST from the parser as it recognizes them.
+ *
+ * Nodes are referred to by int handles chosen by the builder, so the same
+ * parser can build either the object tree (NodeBuilder) or the flat arena
+ * tree (FlatTree). NONE stands for a missing child, such as an absent else
+ * branch or the expression of an empty statement.
+ *
+ * Each method matches one of the node constructors in this package.
+ */
+public interface TreeBuilder {
+    int NONE = -1;
+
+    /**
+     * @return the number of nodes built so far
+     */
+    int size();
+
+    int line(int node);
+
+    int program(int line);
+
+    void addDeclaration(int program, int declaration);
+
+    int variableDeclaration(int line, int symbol, TypeSpecifier type);
+
+    int arrayDeclaration(int line, int symbol, TypeSpecifier type, int arraySize);
+
+    int function(int line, int symbol, TypeSpecifier type);
+
+    void addParam(int function, int param);
+
+    void setBody(int function, int body);
+
+    int param(int line, int symbol, TypeSpecifier type, boolean isArray);
+
+    int compound(int line);
+
+    void addLocalDeclaration(int compound, int declaration);
+
+    void addStatement(int compound, int statement);
+
+    int expressionStatement(int line, int expression);
+
+    int selection(int line, int condition, int thenBranch, int elseBranch);
+
+    int iteration(int line, int condition, int body);
+
+    int returnStatement(int line, int expression);
+
+    int number(int line, int value);
+
+    int variable(int line, int symbol, int index);
+
+    int assign(int line, int variable, int expression);
+
+    int call(int line, int symbol);
+
+    void addArgument(int call, int argument);
+
+    int compare(int line, int left, RelOpType operator, int right);
+
+    int add(int line, int left, AddOpType operator, int right);
+
+    int multiply(int line, int left, MulOpType operator, int right);
+}
@@ -0,0 +1,213 @@
+package compiler.parser.AST;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Writes the text form of an AST straight to a Writer while the tree is
+ * walked, so the output never has to be held in memory.
+ *
+ * Indentation is given as a number of spaces and written from one shared
+ * array of spaces, so no indent String is built per node.
+ *
+ * The tree is walked with a stack of pending work instead of recursion, so
+ * the depth of the tree is not limited by the thread's stack. A node writes
+ * its own first line and queues the lines and children that follow it with
+ * queueLine and queueNode; they are written after the node returns, in the
+ * order they were queued.
+ */
+public final class TreePrinter implements Flushable {
+    private final Writer out;
+    private char[] spaces = filledSpaces(64);
+    private final char[] digits = new char[11];
+
+    // The pending work: a String line, an AbstractNode, or a FlatTree with
+    // the handle of one of its nodes
+    private Object[] pending = new Object[64];
+    private int[] handles = new int[64];
+    private int[] indents = new int[64];
+    private int top;
+
+    public TreePrinter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a printer that encodes its output with the default charset,
+     * as FileWriter does, and writes it to channel. The encoder buffers its
+     * output, so call flush() when done.
+     */
+    public static TreePrinter open(WritableByteChannel channel) {
+        return new TreePrinter(Channels.newWriter(channel, Charset.defaultCharset()));
+    }
+
+    /**
+     * Creates a printer that appends to sb.
+     */
+    public static TreePrinter of(StringBuilder sb) {
+        return new TreePrinter(new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                sb.append(chars, offset, length);
+            }
+
+            @Override
+            public void write(String text) {
+                sb.append(text);
+            }
+
+            @Override
+            public void write(int c) {
+                sb.append((char) c);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    public TreePrinter indent(int width) throws IOException {
+        if (width > spaces.length) {
+            spaces = filledSpaces(Math.max(width, spaces.length * 2));
+        }
+        out.write(spaces, 0, width);
+        return this;
+    }
+
+    public TreePrinter print(String text) throws IOException {
+        out.write(text);
+        return this;
+    }
+
+    public TreePrinter print(Object value) throws IOException {
+        return print(String.valueOf(value));
+    }
+
+    public TreePrinter print(int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            return print(Integer.toString(value));
+        }
+        int pos = digits.length;
+        int rest = Math.abs(value);
+        do {
+            digits[--pos] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            digits[--pos] = '-';
+        }
+        out.write(digits, pos, digits.length - pos);
+        return this;
+    }
+
+    public TreePrinter println(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+        return this;
+    }
+
+    /**
+     * Writes node and everything under it.
+     */
+    public void printTree(AbstractNode node, int indent) throws IOException {
+        int base = top;
+        queueNode(node, indent);
+        drain(base);
+    }
+
+    /**
+     * Writes node of tree and everything under it.
+     */
+    public void printTree(FlatTree tree, int node, int indent) throws IOException {
+        int base = top;
+        queueNode(tree, node, indent);
+        drain(base);
+    }
+
+    /**
+     * Queues a line of text that follows the node being written.
+     */
+    public void queueLine(int indent, String text) {
+        push(text, 0, indent);
+    }
+
+    /**
+     * Queues a child of the node being written.
+     */
+    public void queueNode(AbstractNode node, int indent) {
+        push(node, 0, indent);
+    }
+
+    /**
+     * Queues a child of the FlatTree node being written.
+     */
+    public void queueNode(FlatTree tree, int node, int indent) {
+        push(tree, node, indent);
+    }
+
+    private void push(Object item, int handle, int indent) {
+        if (top == pending.length) {
+            pending = Arrays.copyOf(pending, top * 2);
+            handles = Arrays.copyOf(handles, top * 2);
+            indents = Arrays.copyOf(indents, top * 2);
+        }
+        pending[top] = item;
+        handles[top] = handle;
+        indents[top] = indent;
+        top++;
+    }
+
+    private void drain(int base) throws IOException {
+        while (top > base) {
+            top--;
+            Object item = pending[top];
+            int handle = handles[top];
+            int indent = indents[top];
+            pending[top] = null;
+
+            int mark = top;
+            if (item instanceof String) {
+                indent(indent).println((String) item);
+            } else if (item instanceof FlatTree) {
+                ((FlatTree) item).print(this, handle, indent);
+            } else {
+                ((AbstractNode) item).print(this, indent);
+            }
+            reverse(mark, top);
+        }
+    }
+
+    // Puts the work a node queued in the order it is popped
+    private void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            Object item = pending[i];
+            pending[i] = pending[j];
+            pending[j] = item;
+            int handle = handles[i];
+            handles[i] = handles[j];
+            handles[j] = handle;
+            int indent = indents[i];
+            indents[i] = indents[j];
+            indents[j] = indent;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private static char[] filledSpaces(int length) {
+        char[] filled = new char[length];
+        Arrays.fill(filled, ' ');
+        return filled;
+    }
+}
@@ -1,5 +1,8 @@
 package compiler.parser.AST;
 
+import compiler.scanner.SymbolTable;
+import java.io.IOException;
+
 /**
  * Represents a variable declaration in the AST
  */
@@ -8,13 +11,21 @@ public class VarDeclarationNode extends DeclarationNode {
     private Integer arraySize;
 
     public VarDeclarationNode(int lineNum, String name, TypeSpecifier type) {
-        super(lineNum, name, type);
+        this(lineNum, SymbolTable.shared().intern(name), type);
+    }
+
+    public VarDeclarationNode(int lineNum, String name, TypeSpecifier type, int arraySize) {
+        this(lineNum, SymbolTable.shared().intern(name), type, arraySize);
+    }
+
+    public VarDeclarationNode(int lineNum, int symbol, TypeSpecifier type) {
+        super(lineNum, symbol, type);
         this.isArray = false;
         this.arraySize = null;
     }
 
-    public VarDeclarationNode(int lineNum, String name, TypeSpecifier type, int arraySize) {
-        super(lineNum, name, type);
+    public VarDeclarationNode(int lineNum, int symbol, TypeSpecifier type, int arraySize) {
+        super(lineNum, symbol, type);
         this.isArray = true;
         this.arraySize = arraySize;
     }
@@ -28,14 +39,19 @@ public class VarDeclarationNode extends DeclarationNode {
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Variable: ").append(name);
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitVarDeclaration(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Variable: ").print(getName());
 
         if (isArray) {
-            sb.append("[").append(arraySize).append("]");
+            out.print("[").print(arraySize).print("]");
         }
 
-        sb.append(" of type ").append(type);
-        sb.append(" [line: ").append(lineNum).append("]\n");
+        out.print(" of type ").print(type);
+        out.print(" [line: ").print(lineNum).println("]");
     }
 }
\ No newline at end of file
@@ -1,36 +1,73 @@
 package compiler.parser.AST;
 
+import compiler.scanner.SymbolTable;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.function.UnaryOperator;
+
 /**
  * Represents a variable reference (ID or ID[expr]) in the AST
  */
 public class VarExpressionNode extends ExpressionNode {
-    private String name;
+    private int symbol;
     private ExpressionNode indexExpr;
 
     public VarExpressionNode(int lineNum, String name) {
-        super(lineNum);
-        this.name = name;
-        this.indexExpr = null;
+        this(lineNum, SymbolTable.shared().intern(name), null);
     }
 
     public VarExpressionNode(int lineNum, String name, ExpressionNode indexExpr) {
+        this(lineNum, SymbolTable.shared().intern(name), indexExpr);
+    }
+
+    public VarExpressionNode(int lineNum, int symbol, ExpressionNode indexExpr) {
         super(lineNum);
-        this.name = name;
+        this.symbol = symbol;
         this.indexExpr = indexExpr;
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public String getName() {
+        return SymbolTable.shared().name(symbol);
+    }
+
     public boolean isArray() {
         return indexExpr != null;
     }
 
     @Override
-    public void printTree(StringBuilder sb, String indent) {
-        sb.append(indent).append("Variable: ").append(name);
-        sb.append(" [line: ").append(lineNum).append("]\n");
+    protected void addChildren(Deque<AbstractNode> pending) {
+        add(pending, indexExpr);
+    }
+
+    /**
+     * @return the index expression, or null for a scalar
+     */
+    public ExpressionNode getIndex() {
+        return indexExpr;
+    }
+
+    @Override
+    protected void replaceChildren(UnaryOperator<AbstractNode> replacement) {
+        indexExpr = replaceExpression(replacement, indexExpr);
+    }
+
+    @Override
+    public <R> R accept(NodeVisitor<R> visitor) {
+        return visitor.visitVarExpression(this);
+    }
+
+    @Override
+    protected void print(TreePrinter out, int indent) throws IOException {
+        out.indent(indent).print("Variable: ").print(getName());
+        out.print(" [line: ").print(lineNum).println("]");
 
         if (indexExpr != null) {
-            sb.append(indent).append("  Index:\n");
-            indexExpr.printTree(sb, indent + "    ");
+            out.queueLine(indent, "  Index:");
+            out.queueNode(indexExpr, indent + 4);
         }
     }
 }
\ No newline at end of file
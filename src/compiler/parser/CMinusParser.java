@@ -3,162 +3,641 @@ package compiler.parser;
 import compiler.parser.AST.*;
 import compiler.scanner.*;
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
- * A recursive-descent parser for the C- language.
+ * A predictive parser for the C- language.
+ *
+ * The grammar methods hand every node to a TreeBuilder and work with the
+ * int handles it returns. parse() builds the usual tree of AbstractNodes;
+ * parseFlat() builds a FlatTree instead.
+ *
+ * Statements and expressions nest without limit, so they are not parsed by
+ * methods that call themselves. A construct that contains another one
+ * pushes a frame onto an int stack and returns NEED_STATEMENT,
+ * NEED_EXPRESSION or the like; the loop in statements() or expression()
+ * parses the inner construct and hands it to the frame on top. Nesting
+ * depth is then bounded by the size of the input rather than by the
+ * thread's stack.
+ *
+ * Syntax errors are kept as Diagnostics. After an error the parser is in
+ * panic mode: it reports nothing more until it gets back in step at a ';'
+ * or '}' in a statement list, or at the next 'int' or 'void' at the top
+ * level, skipping the tokens in between. The parse stops once there are
+ * more errors than setMaxErrors allows.
+ *
+ * parseLazy() parses only the top-level declarations and the headers of
+ * the functions. Each body is skipped by matching braces over a TokenBuffer
+ * and parsed from its range of tokens when it is first asked for.
  */
 public class CMinusParser implements Parser {
-    private scanner scanner;
-    private Token currentToken;
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    // Part of every ParseCache key. Bump it whenever a change to the parser
+    // gives a different tree or different errors for some input.
+    public static final int VERSION = 2;
+
+    private static final int NONE = TreeBuilder.NONE;
+    private static final TokenType[] OPERATORS = TokenType.values();
+    private static final int RELOP_PRECEDENCE = 1;
+
+    // Returned instead of a node by a part of a construct that pushed a
+    // frame and needs the inner construct first
+    private static final int NEED_STATEMENT = -2;
+    private static final int NEED_COMPOUND_STMT = -3;
+    private static final int NEED_EXPRESSION = -4;
+    private static final int NEED_FACTOR = -5;
+
+    // The kinds of frames on the stack. A frame's fields are pushed before
+    // its kind: COMPOUND(node), SELECTION(line, condition),
+    // SELECTION_ELSE(line, condition, then), ITERATION(line, condition),
+    // ASSIGN(line, variable), INDEX and FACTOR_INDEX(line, symbol), CALL
+    // and FACTOR_CALL(node), OPERATOR(left, token type); the rest have none.
+    private static final int COMPOUND = 1;
+    private static final int SELECTION = 2;
+    private static final int SELECTION_ELSE = 3;
+    private static final int ITERATION = 4;
+    private static final int PAREN = 5;
+    private static final int ASSIGN = 6;
+    private static final int INDEX = 7;
+    private static final int CALL = 8;
+    private static final int SIMPLE_EXPRESSION = 9;
+    private static final int OPERATOR = 10;
+    private static final int FACTOR_PAREN = 11;
+    private static final int FACTOR_INDEX = 12;
+    private static final int FACTOR_CALL = 13;
+
+    private TokenStream tokens;
+    private TreeBuilder tree;
     private ProgramNode root;
-    private boolean hasError = false;
-    private List<String> errors = new ArrayList<>();
+    private FlatTree flatRoot;
+    private List<Diagnostic> diagnostics = new ArrayList<>();
+    private int maxErrors = DEFAULT_MAX_ERRORS;
+    // Set by a syntax error until the parser is back in step
+    private boolean panicking;
+    private int[] stack = new int[64];
+    private int top;
+    private long tokenCount;
+    private int nodeCount;
+    // Set by parseLazy: function bodies are skipped
+    private boolean lazy;
+    // The bodies parseLazy skipped, in order
+    private List<LazyBody> lazyBodies;
+    // For parseLazy, the index of the token each diagnostic was reported
+    // at; otherwise null
+    private int[] errorTokens;
 
     public CMinusParser(String inputFile) throws FileNotFoundException {
-        this.scanner = new cminus(inputFile);
+        this(new cminus(inputFile));
+    }
+
+    public CMinusParser(scanner scanner) {
+        this(new ScannerTokenStream(scanner));
+    }
+
+    public CMinusParser(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    // Thrown to stop the parse once there are too many errors
+    private static final class TooManyErrors extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooManyErrors() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Sets how many syntax errors are reported before the parse stops. A
+     * stopped parse has no AST. The default is DEFAULT_MAX_ERRORS.
+     */
+    public void setMaxErrors(int maxErrors) {
+        if (maxErrors < 1) {
+            throw new IllegalArgumentException("maxErrors must be positive");
+        }
+        this.maxErrors = maxErrors;
     }
 
     @Override
     public void parse() throws IOException {
+        lazy = false;
+        NodeBuilder builder = new NodeBuilder();
+        root = (ProgramNode) builder.node(parse(builder));
+    }
+
+    /**
+     * Parses the input like parse(), but skips the body of each function by
+     * matching its braces and leaves it to be parsed, from the tokens it
+     * spans, by the first call to FunDeclarationNode.getBody(). Bodies may
+     * be parsed from several threads at once. Listing the declarations and
+     * parameters costs little more than scanning.
+     *
+     * Syntax errors in a body are found when it is parsed and only then
+     * show up in getDiagnostics(), which puts them in order with the others
+     * by the token they were found at and applies setMaxErrors to them all,
+     * as parse() does. A body is parsed at once if the header before it has
+     * a syntax error or its braces do not match, so once every body is
+     * parsed the tree and the errors are the same as parse() gives, unless
+     * recovery from an error inside a body would have gone past its closing
+     * brace.
+     *
+     * @return the AST, or null if the parse stopped after too many errors
+     *         in the headers
+     * @throws IllegalStateException if the tokens do not come from a
+     *                               TokenBuffer
+     */
+    public ProgramNode parseLazy() throws IOException {
+        if (!(tokens instanceof TokenBuffer.Cursor)) {
+            throw new IllegalStateException("parseLazy needs the tokens in a TokenBuffer");
+        }
+        lazy = true;
+        lazyBodies = new ArrayList<>();
+        errorTokens = new int[8];
+        NodeBuilder builder = new NodeBuilder();
+        root = (ProgramNode) builder.node(parse(builder));
+        if (root == null) {
+            // The errors in the bodies before the stop come first
+            for (LazyBody body : lazyBodies) {
+                body.get();
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Parses every function body that parseLazy left unparsed. If the
+     * errors in the bodies go over setMaxErrors, getRoot() is null
+     * afterwards, as it would be after parse().
+     *
+     * @return the number of bodies parsed
+     */
+    public int parseBodies() {
+        int parsed = 0;
+        if (root != null) {
+            for (DeclarationNode declaration : root.getDeclarations()) {
+                if (declaration instanceof FunDeclarationNode
+                        && !((FunDeclarationNode) declaration).isBodyParsed()) {
+                    ((FunDeclarationNode) declaration).getBody();
+                    parsed++;
+                }
+            }
+            if (stopped(getDiagnostics())) {
+                root = null;
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean stopped(List<Diagnostic> errors) {
+        return !errors.isEmpty() && errors.get(errors.size() - 1).getCode() == Diagnostic.Code.TOO_MANY_ERRORS;
+    }
+
+    /**
+     * Parses the input into a FlatTree instead of AbstractNode objects.
+     * printTree writes the same output either way.
+     *
+     * @return the tree, or null if the parse stopped after too many errors
+     */
+    public FlatTree parseFlat() throws IOException {
+        lazy = false;
+        FlatTree builder = new FlatTree();
+        if (parse(builder) != NONE) {
+            flatRoot = builder;
+        }
+        return flatRoot;
+    }
+
+    private int parse(TreeBuilder builder) throws IOException {
+        tree = builder;
+        top = 0;
+        panicking = false;
         advance();
-        root = program();
-        if (currentToken.getType() != TokenType.ENDFILE) {
-            reportError("Expected end of file");
+        int program;
+        try {
+            program = program();
+        } catch (TooManyErrors e) {
+            program = NONE;
         }
+        nodeCount = builder.size();
+        tree = null;
+        return program;
     }
 
-    @Override
-    public void printTree(String outputFile) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
-            StringBuilder sb = new StringBuilder();
-            if (hasError) {
-                sb.append("SYNTAX ERRORS:\n");
-                for (String error : errors) {
-                    sb.append(error).append("\n");
+    /**
+     * Parses the one top-level declaration at the current token into builder,
+     * for IncrementalParser. Returns null if a syntax error left no
+     * declaration.
+     */
+    DeclarationNode parseDeclaration(NodeBuilder builder) throws IOException {
+        tree = builder;
+        top = 0;
+        panicking = false;
+        int decl = declaration();
+        tree = null;
+        return (DeclarationNode) builder.node(decl);
+    }
+
+    // Parses the compound-stmt at the next token, for LazyBody
+    private int parseBody(TreeBuilder builder) throws IOException {
+        tree = builder;
+        top = 0;
+        panicking = false;
+        advance();
+        int body;
+        try {
+            body = compoundStmt();
+        } catch (TooManyErrors e) {
+            body = NONE;
+        }
+        tree = null;
+        return body;
+    }
+
+    public ProgramNode getRoot() {
+        return root;
+    }
+
+    public FlatTree getFlatRoot() {
+        return flatRoot;
+    }
+
+    /**
+     * @return the number of tokens the parser has read, counting ENDFILE
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return the number of nodes the last parse built, including any
+     *         that error recovery left out of the tree
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the syntax errors; after parseLazy, a copy with those of the
+     *         headers and of the bodies parsed so far
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return lazy ? lazyDiagnostics() : diagnostics;
+    }
+
+    // Merges the errors of the headers with those of the parsed bodies in
+    // the order of their tokens, and cuts them off after maxErrors. Each
+    // list stops at its own TOO_MANY_ERRORS, which marks where its next
+    // error was found, so the first maxErrors + 1 are all known.
+    private List<Diagnostic> lazyDiagnostics() {
+        List<Diagnostic> merged = new ArrayList<>();
+        synchronized (diagnostics) {
+            int next = 0;
+            for (LazyBody body : lazyBodies) {
+                while (next < diagnostics.size() && errorTokens[next] < body.begin) {
+                    merged.add(diagnostics.get(next++));
+                }
+                if (body.errors != null) {
+                    merged.addAll(body.errors);
                 }
-                sb.append("\n");
             }
-            if (root != null) {
-                root.printTree(sb, "");
-            } else {
-                sb.append("No valid AST was constructed due to syntax errors.");
+            merged.addAll(diagnostics.subList(next, diagnostics.size()));
+        }
+        if (merged.size() > maxErrors) {
+            Diagnostic cut = merged.get(maxErrors);
+            merged.subList(maxErrors, merged.size()).clear();
+            merged.add(new Diagnostic(Diagnostic.Code.TOO_MANY_ERRORS, cut.getLine(), null, cut.getFound(), null));
+        }
+        return merged;
+    }
+
+    /**
+     * @return the syntax errors as they are printed, each one formatted
+     *         when it is read
+     */
+    public List<String> getErrors() {
+        List<Diagnostic> diagnostics = getDiagnostics();
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return diagnostics.get(index).toString();
+            }
+
+            @Override
+            public int size() {
+                return diagnostics.size();
             }
+        };
+    }
 
-            writer.print(sb.toString());
+    @Override
+    public void printTree(String outputFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(outputFile))) {
+            printTree(writer);
         }
     }
 
-    private void advance() throws IOException {
-        currentToken = scanner.getToken();
-        if (currentToken.getValue() != null) {
-            currentToken = new Token(
-                    currentToken.getType(),
-                    currentToken.getValue().trim(),
-                    currentToken.getLineNo());
+    /**
+     * Writes the syntax errors and the AST to channel as the tree is walked,
+     * encoded the same way as printTree(String).
+     */
+    public void printTree(WritableByteChannel channel) throws IOException {
+        TreePrinter out = TreePrinter.open(channel);
+        printTree(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the syntax errors and the AST to writer as the tree is walked.
+     * The writer is not flushed or closed.
+     */
+    public void printTree(Writer writer) throws IOException {
+        printTree(new TreePrinter(writer));
+    }
+
+    private void printTree(TreePrinter out) throws IOException {
+        if (lazy) {
+            parseBodies();
+        }
+        List<Diagnostic> errors = getDiagnostics();
+        if (!errors.isEmpty()) {
+            printErrors(out, errors);
+        }
+        if (root != null) {
+            root.printTree(out, 0);
+        } else if (flatRoot != null) {
+            flatRoot.printTree(out, flatRoot.root(), 0);
+        } else {
+            out.print("No valid AST was constructed due to syntax errors.");
         }
     }
 
+    static void printErrors(TreePrinter out, List<Diagnostic> errors) throws IOException {
+        out.println("SYNTAX ERRORS:");
+        for (Diagnostic error : errors) {
+            out.print("Line ").print(error.getLine()).print(": ").println(error.getMessage());
+        }
+        out.println("");
+    }
+
+    private void advance() throws IOException {
+        tokenCount++;
+        tokens.advance();
+    }
+
+    // Matching a ';' or '}' gets the parser back in step. A wrong token is
+    // skipped, unless the parser is already skipping tokens or the token is
+    // one it could get back in step at.
     private boolean match(TokenType expected) throws IOException {
-        if (currentToken.getType() == expected) {
+        TokenType type = tokens.type();
+        if (type == expected) {
             advance();
+            if (type == TokenType.SEMI || type == TokenType.RBRACE) {
+                panicking = false;
+            }
             return true;
         }
-        reportError("Expected " + expected + ", found " + currentToken.getType());
-        advance();
+        boolean skip = !panicking && type != TokenType.SEMI && type != TokenType.RBRACE
+                && type != TokenType.ENDFILE;
+        reportError(Diagnostic.Code.EXPECTED_TOKEN, expected);
+        if (skip) {
+            advance();
+        }
         return false;
     }
 
-    private void reportError(String message) {
-        hasError = true;
-        errors.add("Line " + currentToken.getLineNo() + ": " + message);
+    private void reportError(Diagnostic.Code code, TokenType expected) {
+        reportError(code, expected, null);
+    }
+
+    // Records an error at the current token unless the parser is in panic
+    // mode, and enters panic mode
+    private void reportError(Diagnostic.Code code, TokenType expected, String text) {
+        if (panicking) {
+            return;
+        }
+        panicking = true;
+        if (diagnostics.size() == maxErrors) {
+            addDiagnostic(new Diagnostic(Diagnostic.Code.TOO_MANY_ERRORS, tokens.line(), null, tokens.type(), null));
+            throw new TooManyErrors();
+        }
+        addDiagnostic(new Diagnostic(code, tokens.line(), expected, tokens.type(), text));
+    }
+
+    private void addDiagnostic(Diagnostic diagnostic) {
+        if (errorTokens != null) {
+            if (diagnostics.size() == errorTokens.length) {
+                errorTokens = Arrays.copyOf(errorTokens, errorTokens.length * 2);
+            }
+            errorTokens[diagnostics.size()] = ((TokenBuffer.Cursor) tokens).index();
+        }
+        diagnostics.add(diagnostic);
+    }
+
+    // Takes the current NUM token and returns its value. A number that does
+    // not fit in an int is an INVALID_NUMBER error and counts as 0.
+    private int number() throws IOException {
+        int value;
+        try {
+            value = tokens.intValue();
+        } catch (NumberFormatException e) {
+            reportError(Diagnostic.Code.INVALID_NUMBER, TokenType.NUM, tokens.text());
+            value = 0;
+        }
+        advance();
+        return value;
+    }
+
+    // Skips to a ';', which is taken, or a '}' in a statement list
+    private void synchronizeStatement() throws IOException {
+        while (tokens.type() != TokenType.SEMI && tokens.type() != TokenType.RBRACE
+                && tokens.type() != TokenType.ENDFILE) {
+            advance();
+        }
+        if (tokens.type() == TokenType.SEMI) {
+            advance();
+        }
+        panicking = false;
+    }
+
+    // Skips to the next 'int' or 'void' outside of braces
+    private void synchronizeDeclaration() throws IOException {
+        int depth = 0;
+        while (tokens.type() != TokenType.ENDFILE
+                && (depth > 0 || tokens.type() != TokenType.INT && tokens.type() != TokenType.VOID)) {
+            if (tokens.type() == TokenType.LBRACE) {
+                depth++;
+            } else if (tokens.type() == TokenType.RBRACE && depth > 0) {
+                depth--;
+            }
+            advance();
+        }
+        panicking = false;
     }
 
     // program -> decl {decl}
-    private ProgramNode program() throws IOException {
-        ProgramNode node = new ProgramNode(currentToken.getLineNo());
+    private int program() throws IOException {
+        int node = tree.program(tokens.line());
 
-        while (currentToken.getType() == TokenType.INT ||
-                currentToken.getType() == TokenType.VOID) {
-            DeclarationNode decl = decl();
-            if (decl != null) {
-                node.addDeclaration(decl);
+        while (tokens.type() != TokenType.ENDFILE) {
+            int decl = declaration();
+            if (decl != NONE) {
+                tree.addDeclaration(node, decl);
             }
         }
 
         return node;
     }
 
+    // A decl, after which the parser gets back in step at the next one
+    private int declaration() throws IOException {
+        int decl = decl();
+        if (panicking) {
+            synchronizeDeclaration();
+        }
+        return decl;
+    }
+
     // decl -> void ID fun-decl' | int ID decl'
-    private DeclarationNode decl() throws IOException {
-        int lineNum = currentToken.getLineNo();
-        if (currentToken.getType() == TokenType.VOID) {
+    private int decl() throws IOException {
+        int lineNum = tokens.line();
+        if (tokens.type() == TokenType.VOID) {
             advance();
 
-            if (currentToken.getType() != TokenType.ID) {
-                reportError("Expected identifier after 'void'");
-                return null;
+            if (tokens.type() != TokenType.ID) {
+                reportError(Diagnostic.Code.EXPECTED_IDENTIFIER_AFTER_VOID, TokenType.ID);
+                return NONE;
             }
 
-            String name = currentToken.getValue();
+            int symbol = tokens.symbol();
             advance();
 
-            return funDeclPrime(lineNum, name, TypeSpecifier.VOID);
-        } else if (currentToken.getType() == TokenType.INT) {
+            return funDeclPrime(lineNum, symbol, TypeSpecifier.VOID);
+        } else if (tokens.type() == TokenType.INT) {
             advance();
 
-            if (currentToken.getType() != TokenType.ID) {
-                reportError("Expected identifier after 'int'");
-                return null;
+            if (tokens.type() != TokenType.ID) {
+                reportError(Diagnostic.Code.EXPECTED_IDENTIFIER_AFTER_INT, TokenType.ID);
+                return NONE;
             }
 
-            String name = currentToken.getValue();
+            int symbol = tokens.symbol();
             advance();
 
-            return declPrime(lineNum, name, TypeSpecifier.INT);
+            return declPrime(lineNum, symbol, TypeSpecifier.INT);
         }
-        reportError("Expected 'void' or 'int'");
-        return null;
+        reportError(Diagnostic.Code.EXPECTED_DECLARATION, null);
+        return NONE;
     }
 
     // decl' -> ; | [num]; | fun-decl'
-    private DeclarationNode declPrime(int lineNum, String name, TypeSpecifier type) throws IOException {
-        if (currentToken.getType() == TokenType.SEMI) {
+    private int declPrime(int lineNum, int symbol, TypeSpecifier type) throws IOException {
+        if (tokens.type() == TokenType.SEMI) {
             advance();
-            return new VarDeclarationNode(lineNum, name, type);
-        } else if (currentToken.getType() == TokenType.LBRACK) {
+            return tree.variableDeclaration(lineNum, symbol, type);
+        } else if (tokens.type() == TokenType.LBRACK) {
             advance();
             int arraySize = 0;
-            if (currentToken.getType() == TokenType.NUM) {
-                arraySize = Integer.parseInt(currentToken.getValue());
-                advance();
+            if (tokens.type() == TokenType.NUM) {
+                arraySize = number();
             } else {
-                reportError("Expected number for array size");
+                reportError(Diagnostic.Code.EXPECTED_ARRAY_SIZE, TokenType.NUM);
             }
             match(TokenType.RBRACK);
             match(TokenType.SEMI);
-            return new VarDeclarationNode(lineNum, name, type, arraySize);
-        } else if (currentToken.getType() == TokenType.LPAREN) {
-            return funDeclPrime(lineNum, name, type);
+            return tree.arrayDeclaration(lineNum, symbol, type, arraySize);
+        } else if (tokens.type() == TokenType.LPAREN) {
+            return funDeclPrime(lineNum, symbol, type);
         }
-        reportError("Invalid declaration");
-        return null;
+        reportError(Diagnostic.Code.INVALID_DECLARATION, null);
+        return NONE;
     }
 
     // fun-decl' -> (params) compound-stmt
-    private FunDeclarationNode funDeclPrime(int lineNum, String name, TypeSpecifier type) throws IOException {
-        FunDeclarationNode node = new FunDeclarationNode(lineNum, name, type);
+    private int funDeclPrime(int lineNum, int symbol, TypeSpecifier type) throws IOException {
+        int node = tree.function(lineNum, symbol, type);
         match(TokenType.LPAREN);
         params(node);
         match(TokenType.RPAREN);
-        CompoundStmtNode body = compoundStmt();
-        node.setBody(body);
+        if (lazy && !panicking && skipBody(node)) {
+            return node;
+        }
+        int body = compoundStmt();
+        tree.setBody(node, body);
         return node;
     }
 
+    // For parseLazy: skips the compound-stmt at the current token by
+    // matching braces and gives the function a LazyBody for its tokens.
+    // Returns false, having skipped nothing, if there is no '{' or no
+    // matching '}'.
+    private boolean skipBody(int funNode) throws IOException {
+        TokenBuffer.Cursor cursor = (TokenBuffer.Cursor) tokens;
+        int begin = cursor.index();
+        if (cursor.type() != TokenType.LBRACE) {
+            return false;
+        }
+        int depth = 0;
+        do {
+            TokenType type = cursor.type();
+            if (type == TokenType.LBRACE) {
+                depth++;
+            } else if (type == TokenType.RBRACE) {
+                depth--;
+            } else if (type == TokenType.ENDFILE) {
+                tokenCount -= cursor.index() - begin;
+                cursor.seek(begin);
+                return false;
+            }
+            advance();
+        } while (depth > 0);
+        FunDeclarationNode function = (FunDeclarationNode) ((NodeBuilder) tree).node(funNode);
+        LazyBody body = new LazyBody(cursor.getBuffer(), begin, cursor.index());
+        lazyBodies.add(body);
+        function.setLazyBody(body);
+        return true;
+    }
+
+    // The body of a function skipped by parseLazy: the tokens from begin up
+    // to end. Its syntax errors are kept for lazyDiagnostics.
+    private final class LazyBody implements Supplier<CompoundStmtNode> {
+        private final TokenBuffer buffer;
+        private final int begin;
+        private final int end;
+        // Set once the body is parsed; guarded by the diagnostics of the
+        // parser that skipped it
+        private List<Diagnostic> errors;
+
+        LazyBody(TokenBuffer buffer, int begin, int end) {
+            this.buffer = buffer;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        public CompoundStmtNode get() {
+            CMinusParser parser = new CMinusParser(buffer.cursor(begin, end));
+            parser.setMaxErrors(maxErrors);
+            NodeBuilder builder = new NodeBuilder();
+            CompoundStmtNode body;
+            try {
+                body = (CompoundStmtNode) builder.node(parser.parseBody(builder));
+            } catch (IOException e) {
+                // A TokenBuffer.Cursor reads nothing
+                throw new UncheckedIOException(e);
+            }
+            synchronized (diagnostics) {
+                errors = parser.diagnostics;
+            }
+            return body;
+        }
+    }
+
     // params → param-list | void
-    private void params(FunDeclarationNode funNode) throws IOException {
-        if (currentToken.getType() == TokenType.VOID) {
+    private void params(int funNode) throws IOException {
+        if (tokens.type() == TokenType.VOID) {
             advance();
             return;
         }
@@ -166,13 +645,13 @@ public class CMinusParser implements Parser {
     }
 
     // param-list → param{, param}
-    private void paramList(FunDeclarationNode funNode) throws IOException {
+    private void paramList(int funNode) throws IOException {
         do {
-            ParamNode param = param();
-            if (param != null) {
-                funNode.addParam(param);
+            int param = param();
+            if (param != NONE) {
+                tree.addParam(funNode, param);
             }
-            if (currentToken.getType() != TokenType.COMMA) {
+            if (tokens.type() != TokenType.COMMA) {
                 break;
             }
             advance();
@@ -180,91 +659,114 @@ public class CMinusParser implements Parser {
     }
 
     // param → int ID[\[\]]
-    private ParamNode param() throws IOException {
-        int lineNum = currentToken.getLineNo();
-        if (currentToken.getType() != TokenType.INT) {
-            reportError("Expected 'int' in parameter");
-            return null;
+    private int param() throws IOException {
+        int lineNum = tokens.line();
+        if (tokens.type() != TokenType.INT) {
+            reportError(Diagnostic.Code.EXPECTED_PARAMETER_TYPE, TokenType.INT);
+            return NONE;
         }
         advance();
-        if (currentToken.getType() != TokenType.ID) {
-            reportError("Expected identifier for parameter");
-            return null;
+        if (tokens.type() != TokenType.ID) {
+            reportError(Diagnostic.Code.EXPECTED_PARAMETER_NAME, TokenType.ID);
+            return NONE;
         }
-        String name = currentToken.getValue();
+        int symbol = tokens.symbol();
         advance();
         boolean isArray = false;
-        if (currentToken.getType() == TokenType.LBRACK) {
+        if (tokens.type() == TokenType.LBRACK) {
             advance();
             match(TokenType.RBRACK);
             isArray = true;
         }
-        return new ParamNode(lineNum, name, TypeSpecifier.INT, isArray);
+        return tree.param(lineNum, symbol, TypeSpecifier.INT, isArray);
     }
 
     // compound-stmt → \{ local-declarations statement-list \}
-    private CompoundStmtNode compoundStmt() throws IOException {
-        int lineNum = currentToken.getLineNo();
-        CompoundStmtNode node = new CompoundStmtNode(lineNum);
+    private int compoundStmt() throws IOException {
+        return statements(NEED_COMPOUND_STMT);
+    }
+
+    private int beginCompoundStmt() throws IOException {
+        int lineNum = tokens.line();
+        int node = tree.compound(lineNum);
         match(TokenType.LBRACE);
         localDeclarations(node);
-        statementList(node);
-        match(TokenType.RBRACE);
-        return node;
+        if (panicking) {
+            synchronizeStatement();
+        }
+        return statementList(node);
     }
 
     // local-declarations → {var-declaration}
-    private void localDeclarations(CompoundStmtNode compoundNode) throws IOException {
-        while (currentToken.getType() == TokenType.INT) {
-            int lineNum = currentToken.getLineNo();
+    private void localDeclarations(int compoundNode) throws IOException {
+        while (tokens.type() == TokenType.INT) {
+            int lineNum = tokens.line();
             advance();
-            if (currentToken.getType() != TokenType.ID) {
-                reportError("Expected identifier after 'int'");
+            if (tokens.type() != TokenType.ID) {
+                reportError(Diagnostic.Code.EXPECTED_IDENTIFIER_AFTER_INT, TokenType.ID);
                 break;
             }
-            String name = currentToken.getValue();
+            int symbol = tokens.symbol();
             advance();
-            if (currentToken.getType() == TokenType.LBRACK) {
+            if (tokens.type() == TokenType.LBRACK) {
                 advance();
                 int arraySize = 0;
-                if (currentToken.getType() == TokenType.NUM) {
-                    arraySize = Integer.parseInt(currentToken.getValue());
-                    advance();
+                if (tokens.type() == TokenType.NUM) {
+                    arraySize = number();
                 } else {
-                    reportError("Expected number for array size");
+                    reportError(Diagnostic.Code.EXPECTED_ARRAY_SIZE, TokenType.NUM);
                 }
                 match(TokenType.RBRACK);
                 match(TokenType.SEMI);
-                compoundNode.addLocalDeclaration(new VarDeclarationNode(lineNum, name, TypeSpecifier.INT, arraySize));
+                tree.addLocalDeclaration(compoundNode, tree.arrayDeclaration(lineNum, symbol, TypeSpecifier.INT, arraySize));
             } else {
                 match(TokenType.SEMI);
-                compoundNode.addLocalDeclaration(new VarDeclarationNode(lineNum, name, TypeSpecifier.INT));
+                tree.addLocalDeclaration(compoundNode, tree.variableDeclaration(lineNum, symbol, TypeSpecifier.INT));
             }
         }
     }
 
     // statement-list → {statement}
-    private void statementList(CompoundStmtNode compoundNode) throws IOException {
-        while (currentToken.getType() != TokenType.RBRACE &&
-                currentToken.getType() != TokenType.ENDFILE) {
-            StatementNode stmt = statement();
-            if (stmt != null) {
-                compoundNode.addStatement(stmt);
+    private int statementList(int compoundNode) throws IOException {
+        if (tokens.type() != TokenType.RBRACE &&
+                tokens.type() != TokenType.ENDFILE) {
+            push(compoundNode, COMPOUND);
+            return NEED_STATEMENT;
+        }
+        match(TokenType.RBRACE);
+        return compoundNode;
+    }
+
+    // Parses a statement, or a compound-stmt for NEED_COMPOUND_STMT, and
+    // every statement nested in it. A statement that contains another one
+    // pushes a frame with what it has parsed so far and asks for the inner
+    // statement; the finished inner statement is handed to the frame on top.
+    private int statements(int stmt) throws IOException {
+        int base = top;
+        while (true) {
+            if (stmt == NEED_STATEMENT) {
+                stmt = beginStatement();
+            } else if (stmt == NEED_COMPOUND_STMT) {
+                stmt = beginCompoundStmt();
+            } else if (top == base) {
+                return stmt;
+            } else {
+                stmt = resumeStatement(stmt);
             }
         }
     }
 
     // statement → expression-stmt | compound-stmt | selection-stmt | iteration-stmt
     // | return-stmt
-    private StatementNode statement() throws IOException {
-        switch (currentToken.getType()) {
+    private int beginStatement() throws IOException {
+        switch (tokens.type()) {
             case SEMI:
             case ID:
             case LPAREN:
             case NUM:
                 return expressionStmt();
             case LBRACE:
-                return compoundStmt();
+                return beginCompoundStmt();
             case IF:
                 return selectionStmt();
             case WHILE:
@@ -272,236 +774,383 @@ public class CMinusParser implements Parser {
             case RETURN:
                 return returnStmt();
             default:
-                reportError("Invalid statement");
-                advance();
-                return null;
+                reportError(Diagnostic.Code.INVALID_STATEMENT, null);
+                return NONE;
         }
     }
 
+    // Goes on with the statement on top of the stack now that stmt, the
+    // statement it contains, is parsed
+    private int resumeStatement(int stmt) throws IOException {
+        switch (pop()) {
+            case COMPOUND: {
+                int node = pop();
+                if (stmt != NONE) {
+                    tree.addStatement(node, stmt);
+                }
+                if (panicking) {
+                    synchronizeStatement();
+                }
+                return statementList(node);
+            }
+            case SELECTION: {
+                int condition = pop();
+                int lineNum = pop();
+                if (tokens.type() == TokenType.ELSE) {
+                    advance();
+                    push(lineNum, condition, orEmpty(stmt), SELECTION_ELSE);
+                    return NEED_STATEMENT;
+                }
+                return tree.selection(lineNum, condition, orEmpty(stmt), NONE);
+            }
+            case SELECTION_ELSE: {
+                int thenBranch = pop();
+                int condition = pop();
+                int lineNum = pop();
+                return tree.selection(lineNum, condition, thenBranch, orEmpty(stmt));
+            }
+            case ITERATION: {
+                int condition = pop();
+                int lineNum = pop();
+                return tree.iteration(lineNum, condition, orEmpty(stmt));
+            }
+            default:
+                throw new IllegalStateException("No statement frame on the parse stack");
+        }
+    }
+
+    // An if or while whose inner statement a syntax error left out gets an
+    // empty expression-stmt in its place, so the tree has no holes
+    private int orEmpty(int stmt) {
+        return stmt != NONE ? stmt : tree.expressionStatement(tokens.line(), NONE);
+    }
+
     // expression-stmt → [expression];
-    private ExpressionStmtNode expressionStmt() throws IOException {
-        int lineNum = currentToken.getLineNo();
-        if (currentToken.getType() == TokenType.SEMI) {
+    private int expressionStmt() throws IOException {
+        int lineNum = tokens.line();
+        if (tokens.type() == TokenType.SEMI) {
             advance();
-            return new ExpressionStmtNode(lineNum);
+            return tree.expressionStatement(lineNum, NONE);
         }
-        ExpressionNode expr = expression();
+        int expr = expression();
         match(TokenType.SEMI);
-        return new ExpressionStmtNode(lineNum, expr);
+        return tree.expressionStatement(lineNum, expr);
     }
 
     // selection-stmt → if (expression) statement [else statement]
-    private SelectionStmtNode selectionStmt() throws IOException {
-        int lineNum = currentToken.getLineNo();
+    private int selectionStmt() throws IOException {
+        int lineNum = tokens.line();
         match(TokenType.IF);
         match(TokenType.LPAREN);
-        ExpressionNode condition = expression();
+        int condition = expression();
         match(TokenType.RPAREN);
-        StatementNode thenBranch = statement();
-        if (currentToken.getType() == TokenType.ELSE) {
-            advance();
-            StatementNode elseBranch = statement();
-            return new SelectionStmtNode(lineNum, condition, thenBranch, elseBranch);
-        } else {
-            return new SelectionStmtNode(lineNum, condition, thenBranch);
-        }
+        push(lineNum, condition, SELECTION);
+        return NEED_STATEMENT;
     }
 
     // iteration-stmt → while (expression) statement
-    private IterationStmtNode iterationStmt() throws IOException {
-        int lineNum = currentToken.getLineNo();
+    private int iterationStmt() throws IOException {
+        int lineNum = tokens.line();
         match(TokenType.WHILE);
         match(TokenType.LPAREN);
-        ExpressionNode condition = expression();
+        int condition = expression();
         match(TokenType.RPAREN);
-        StatementNode body = statement();
-        return new IterationStmtNode(lineNum, condition, body);
+        push(lineNum, condition, ITERATION);
+        return NEED_STATEMENT;
     }
 
     // return-stmt → return [expression];
-    private ReturnStmtNode returnStmt() throws IOException {
-        int lineNum = currentToken.getLineNo();
+    private int returnStmt() throws IOException {
+        int lineNum = tokens.line();
         match(TokenType.RETURN);
-        if (currentToken.getType() == TokenType.SEMI) {
+        if (tokens.type() == TokenType.SEMI) {
             advance();
-            return new ReturnStmtNode(lineNum);
+            return tree.returnStatement(lineNum, NONE);
         } else {
-            ExpressionNode expr = expression();
+            int expr = expression();
             match(TokenType.SEMI);
-            return new ReturnStmtNode(lineNum, expr);
+            return tree.returnStatement(lineNum, expr);
+        }
+    }
+
+    // Parses an expression and every expression nested in it, the same way
+    // statements() does for statements. The binary operators of a
+    // simple-expression are handled by precedence climbing: each operator
+    // waits on the stack with its left operand until an operator that binds
+    // less tightly, or the end of the simple-expression, completes it.
+    private int expression() throws IOException {
+        int base = top;
+        int expr = NEED_EXPRESSION;
+        while (true) {
+            if (expr == NEED_EXPRESSION) {
+                expr = beginExpression();
+            } else if (expr == NEED_FACTOR) {
+                expr = beginFactor();
+            } else if (top == base) {
+                return expr;
+            } else {
+                expr = resumeExpression(expr);
+            }
         }
     }
 
     // expression -> (expression) simple-expression' | NUM simple-expression' | ID
     // expression'
-    private ExpressionNode expression() throws IOException {
-        int lineNum = currentToken.getLineNo();
-        if (currentToken.getType() == TokenType.LPAREN) {
-            advance();
-            ExpressionNode expr = expression();
-            match(TokenType.RPAREN);
-            return simpleExpressionPrime(expr);
-        } else if (currentToken.getType() == TokenType.NUM) {
-            int value = Integer.parseInt(currentToken.getValue());
+    private int beginExpression() throws IOException {
+        int lineNum = tokens.line();
+        if (tokens.type() == TokenType.LPAREN) {
             advance();
-            return simpleExpressionPrime(new NumberNode(lineNum, value));
-        } else if (currentToken.getType() == TokenType.ID) {
-            String id = currentToken.getValue();
+            push(PAREN);
+            return NEED_EXPRESSION;
+        } else if (tokens.type() == TokenType.NUM) {
+            return simpleExpressionPrime(tree.number(lineNum, number()));
+        } else if (tokens.type() == TokenType.ID) {
+            int id = tokens.symbol();
             advance();
             return expressionPrime(lineNum, id);
         }
-        reportError("Invalid expression");
-        return new NumberNode(lineNum, 0);
+        reportError(Diagnostic.Code.INVALID_EXPRESSION, null);
+        return tree.number(lineNum, 0);
     }
 
     // expression' -> = expression | [expression] expression'' | [(args)]
     // simple-expression'
-    private ExpressionNode expressionPrime(int lineNum, String id) throws IOException {
-        VarExpressionNode var = new VarExpressionNode(lineNum, id);
-
-        if (currentToken.getType() == TokenType.ASSIGN) {
+    private int expressionPrime(int lineNum, int id) throws IOException {
+        if (tokens.type() == TokenType.ASSIGN) {
+            int var = tree.variable(lineNum, id, NONE);
             advance();
-            ExpressionNode rightExpr = expression();
-            return new AssignExpressionNode(lineNum, var, rightExpr);
-        } else if (currentToken.getType() == TokenType.LBRACK) {
+            push(lineNum, var, ASSIGN);
+            return NEED_EXPRESSION;
+        } else if (tokens.type() == TokenType.LBRACK) {
             advance();
-            ExpressionNode indexExpr = expression();
-            match(TokenType.RBRACK);
-            var = new VarExpressionNode(lineNum, id, indexExpr);
-
-            if (currentToken.getType() == TokenType.ASSIGN) {
-                advance();
-                ExpressionNode rightExpr = expression();
-                return new AssignExpressionNode(lineNum, var, rightExpr);
-            }
-        } else if (currentToken.getType() == TokenType.LPAREN) {
+            push(lineNum, id, INDEX);
+            return NEED_EXPRESSION;
+        } else if (tokens.type() == TokenType.LPAREN) {
             advance();
-            CallNode callNode = new CallNode(lineNum, id);
-            args(callNode);
+            int callNode = tree.call(lineNum, id);
+            return args(callNode);
+        }
+
+        return simpleExpressionPrime(tree.variable(lineNum, id, NONE));
+    }
+
+    // args -> arg-list | ε
+    private int args(int callNode) throws IOException {
+        if (tokens.type() == TokenType.RPAREN) {
             match(TokenType.RPAREN);
             return simpleExpressionPrime(callNode);
         }
-
-        return simpleExpressionPrime(var);
+        push(callNode, CALL);
+        return NEED_EXPRESSION;
     }
 
     // simple-expression' -> additive-expression' [relop additive-expression']
-    private ExpressionNode simpleExpressionPrime(ExpressionNode leftExpr) throws IOException {
-        int lineNum = leftExpr.getLineNum();
-        ExpressionNode left = additiveExpressionPrime(leftExpr);
-
-        RelOpType operator = null;
-        TokenType tokenType = currentToken.getType();
-
-        if (tokenType == TokenType.LT)
-            operator = RelOpType.LT;
-        else if (tokenType == TokenType.LTE)
-            operator = RelOpType.LTE;
-        else if (tokenType == TokenType.GT)
-            operator = RelOpType.GT;
-        else if (tokenType == TokenType.GTE)
-            operator = RelOpType.GTE;
-        else if (tokenType == TokenType.EQ)
-            operator = RelOpType.EQ;
-        else if (tokenType == TokenType.NEQ)
-            operator = RelOpType.NEQ;
-        else
-            return left;
+    private int simpleExpressionPrime(int leftExpr) throws IOException {
+        push(SIMPLE_EXPRESSION);
+        return operand(leftExpr);
+    }
 
+    // Takes the next operand of the simple-expression on top of the stack.
+    // additive-expression' -> term' {addop term'}
+    // term' -> factor {mulop factor}
+    private int operand(int expr) throws IOException {
+        TokenType next = tokens.type();
+        int precedence = precedence(next);
+        // A simple-expression has at most one relop; a second one ends it
+        if (precedence == RELOP_PRECEDENCE && hasRelop()) {
+            precedence = 0;
+        }
+        while (stack[top - 1] == OPERATOR && precedence(OPERATORS[stack[top - 2]]) >= precedence) {
+            pop();
+            TokenType operator = OPERATORS[pop()];
+            int left = pop();
+            expr = binary(left, operator, expr);
+        }
+        if (precedence == 0) {
+            pop();
+            return expr;
+        }
+        push(expr, next.ordinal(), OPERATOR);
         advance();
-        ExpressionNode right = additiveExpressionPrime(null);
-        return new SimpleExpressionNode(lineNum, left, operator, right);
+        return NEED_FACTOR;
     }
 
-    // additive-expression' -> term' {addop term'}
-    private ExpressionNode additiveExpressionPrime(ExpressionNode leftExpr) throws IOException {
-        ExpressionNode left = (leftExpr != null) ? termPrime(leftExpr) : termPrime(null);
-        int lineNum = left.getLineNum();
-        while (currentToken.getType() == TokenType.PLUS ||
-                currentToken.getType() == TokenType.MINUS) {
-            AddOpType operator = (currentToken.getType() == TokenType.PLUS) ? AddOpType.PLUS : AddOpType.MINUS;
-            advance();
+    // Whether the simple-expression on top of the stack already has a relop
+    private boolean hasRelop() {
+        for (int i = top - 1; stack[i] == OPERATOR; i -= 3) {
+            if (precedence(OPERATORS[stack[i - 1]]) == RELOP_PRECEDENCE) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            ExpressionNode right = termPrime(null);
-            left = new SimpleExpressionNode(lineNum, left, operator, right);
+    private static int precedence(TokenType type) {
+        switch (type) {
+            case TIMES:
+            case OVER:
+                return 3;
+            case PLUS:
+            case MINUS:
+                return 2;
+            case LT:
+            case LTE:
+            case GT:
+            case GTE:
+            case EQ:
+            case NEQ:
+                return RELOP_PRECEDENCE;
+            default:
+                return 0;
         }
-        return left;
     }
 
-    // term' -> factor {mulop factor}
-    private ExpressionNode termPrime(ExpressionNode leftExpr) throws IOException {
-        ExpressionNode left = (leftExpr != null) ? leftExpr : factor();
-        int lineNum = left.getLineNum();
-        while (currentToken.getType() == TokenType.TIMES ||
-                currentToken.getType() == TokenType.OVER) {
-            MulOpType operator = (currentToken.getType() == TokenType.TIMES) ? MulOpType.TIMES : MulOpType.DIVIDE;
-            advance();
-            ExpressionNode right = factor();
-            left = new TermNode(lineNum, left, operator, right);
+    // The node for left operator right, on the line of its left operand
+    private int binary(int left, TokenType operator, int right) {
+        int lineNum = tree.line(left);
+        switch (operator) {
+            case TIMES:
+                return tree.multiply(lineNum, left, MulOpType.TIMES, right);
+            case OVER:
+                return tree.multiply(lineNum, left, MulOpType.DIVIDE, right);
+            case PLUS:
+                return tree.add(lineNum, left, AddOpType.PLUS, right);
+            case MINUS:
+                return tree.add(lineNum, left, AddOpType.MINUS, right);
+            case LT:
+                return tree.compare(lineNum, left, RelOpType.LT, right);
+            case LTE:
+                return tree.compare(lineNum, left, RelOpType.LTE, right);
+            case GT:
+                return tree.compare(lineNum, left, RelOpType.GT, right);
+            case GTE:
+                return tree.compare(lineNum, left, RelOpType.GTE, right);
+            case EQ:
+                return tree.compare(lineNum, left, RelOpType.EQ, right);
+            default:
+                return tree.compare(lineNum, left, RelOpType.NEQ, right);
         }
-        return left;
     }
 
     // factor -> (expression) | var | call | NUM
-    private ExpressionNode factor() throws IOException {
-        int lineNum = currentToken.getLineNo();
-        if (currentToken.getType() == TokenType.LPAREN) {
+    private int beginFactor() throws IOException {
+        int lineNum = tokens.line();
+        if (tokens.type() == TokenType.LPAREN) {
             advance();
-            ExpressionNode expr = expression();
-            match(TokenType.RPAREN);
-            return expr;
-        } else if (currentToken.getType() == TokenType.NUM) {
-            try {
-                int value = Integer.parseInt(currentToken.getValue().trim());
-                advance();
-                return new NumberNode(lineNum, value);
-            } catch (NumberFormatException e) {
-                System.err.println("Error parsing number: '" + currentToken.getValue() + "'");
-                reportError("Invalid number format: " + currentToken.getValue());
-                advance();
-                return new NumberNode(lineNum, 0);
-            }
-        } else if (currentToken.getType() == TokenType.ID) {
-            String id = currentToken.getValue();
+            push(FACTOR_PAREN);
+            return NEED_EXPRESSION;
+        } else if (tokens.type() == TokenType.NUM) {
+            return operand(tree.number(lineNum, number()));
+        } else if (tokens.type() == TokenType.ID) {
+            int id = tokens.symbol();
             advance();
-            if (currentToken.getType() == TokenType.LBRACK) {
+            if (tokens.type() == TokenType.LBRACK) {
                 advance();
-                ExpressionNode indexExpr = expression();
-                match(TokenType.RBRACK);
-                return new VarExpressionNode(lineNum, id, indexExpr);
-            } else if (currentToken.getType() == TokenType.LPAREN) {
-                CallNode callNode = new CallNode(lineNum, id);
+                push(lineNum, id, FACTOR_INDEX);
+                return NEED_EXPRESSION;
+            } else if (tokens.type() == TokenType.LPAREN) {
+                int callNode = tree.call(lineNum, id);
                 advance();
-                if (currentToken.getType() != TokenType.RPAREN) {
-                    argList(callNode);
+                if (tokens.type() != TokenType.RPAREN) {
+                    push(callNode, FACTOR_CALL);
+                    return NEED_EXPRESSION;
                 }
                 match(TokenType.RPAREN);
-                return callNode;
+                return operand(callNode);
             }
-            return new VarExpressionNode(lineNum, id);
+            return operand(tree.variable(lineNum, id, NONE));
         }
 
-        reportError("Invalid factor");
-        return new NumberNode(lineNum, 0);
+        reportError(Diagnostic.Code.INVALID_FACTOR, null);
+        return operand(tree.number(lineNum, 0));
     }
 
-    // args -> arg-list | ε
-    private void args(CallNode callNode) throws IOException {
-        if (currentToken.getType() == TokenType.RPAREN) {
-            return;
+    // Goes on with the expression on top of the stack now that expr, the
+    // expression or factor it was waiting for, is parsed
+    private int resumeExpression(int expr) throws IOException {
+        switch (stack[top - 1]) {
+            case PAREN:
+                pop();
+                match(TokenType.RPAREN);
+                return simpleExpressionPrime(expr);
+            case ASSIGN: {
+                pop();
+                int var = pop();
+                int lineNum = pop();
+                return tree.assign(lineNum, var, expr);
+            }
+            case INDEX: {
+                pop();
+                int id = pop();
+                int lineNum = pop();
+                match(TokenType.RBRACK);
+                int var = tree.variable(lineNum, id, expr);
+
+                if (tokens.type() == TokenType.ASSIGN) {
+                    advance();
+                    push(lineNum, var, ASSIGN);
+                    return NEED_EXPRESSION;
+                }
+                return simpleExpressionPrime(var);
+            }
+            case CALL:
+            case FACTOR_CALL: {
+                // arg-list -> expression{, expression}
+                int callNode = stack[top - 2];
+                tree.addArgument(callNode, expr);
+                if (tokens.type() == TokenType.COMMA) {
+                    advance();
+                    return NEED_EXPRESSION;
+                }
+                int frame = pop();
+                pop();
+                match(TokenType.RPAREN);
+                return frame == CALL ? simpleExpressionPrime(callNode) : operand(callNode);
+            }
+            case FACTOR_PAREN:
+                pop();
+                match(TokenType.RPAREN);
+                return operand(expr);
+            case FACTOR_INDEX: {
+                pop();
+                int id = pop();
+                int lineNum = pop();
+                match(TokenType.RBRACK);
+                return operand(tree.variable(lineNum, id, expr));
+            }
+            case OPERATOR:
+                return operand(expr);
+            default:
+                throw new IllegalStateException("No expression frame on the parse stack");
         }
-        argList(callNode);
     }
 
-    // arg-list -> expression{, expression}
-    private void argList(CallNode callNode) throws IOException {
-        do {
-            ExpressionNode arg = expression();
-            callNode.addArgument(arg);
-            if (currentToken.getType() != TokenType.COMMA) {
-                break;
-            }
-            advance();
-        } while (true);
+    private void push(int value) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top++] = value;
+    }
+
+    private void push(int a, int frame) {
+        push(a);
+        push(frame);
+    }
+
+    private void push(int a, int b, int frame) {
+        push(a);
+        push(b);
+        push(frame);
+    }
+
+    private void push(int a, int b, int c, int frame) {
+        push(a);
+        push(b);
+        push(c);
+        push(frame);
+    }
+
+    private int pop() {
+        return stack[--top];
     }
-}
\ No newline at end of file
+}
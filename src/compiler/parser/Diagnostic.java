@@ -0,0 +1,97 @@
+package compiler.parser;
+
+import compiler.scanner.TokenType;
+
+/**
+ * A syntax error found by the parser. It keeps what went wrong as a code and
+ * the token types involved; the message text is only put together when the
+ * diagnostic is printed.
+ */
+public final class Diagnostic {
+
+    public enum Code {
+        EXPECTED_TOKEN(null),
+        EXPECTED_DECLARATION("Expected 'void' or 'int'"),
+        EXPECTED_IDENTIFIER_AFTER_VOID("Expected identifier after 'void'"),
+        EXPECTED_IDENTIFIER_AFTER_INT("Expected identifier after 'int'"),
+        EXPECTED_ARRAY_SIZE("Expected number for array size"),
+        INVALID_DECLARATION("Invalid declaration"),
+        EXPECTED_PARAMETER_TYPE("Expected 'int' in parameter"),
+        EXPECTED_PARAMETER_NAME("Expected identifier for parameter"),
+        INVALID_STATEMENT("Invalid statement"),
+        INVALID_EXPRESSION("Invalid expression"),
+        INVALID_FACTOR("Invalid factor"),
+        INVALID_NUMBER("Invalid number format: "),
+        TOO_MANY_ERRORS("Too many errors, parsing stopped");
+
+        private final String message;
+
+        Code(String message) {
+            this.message = message;
+        }
+    }
+
+    private final Code code;
+    private final int line;
+    private final TokenType expected;
+    private final TokenType found;
+    private final String text;
+
+    /**
+     * @param code
+     * @param line     the line of the token the error was found at
+     * @param expected the token type the parser wanted there, or null if
+     *                 several would have done
+     * @param found    the type of the token that was there
+     * @param text     the token's text, for INVALID_NUMBER; otherwise null
+     */
+    public Diagnostic(Code code, int line, TokenType expected, TokenType found, String text) {
+        this.code = code;
+        this.line = line;
+        this.expected = expected;
+        this.found = found;
+        this.text = text;
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public TokenType getExpected() {
+        return expected;
+    }
+
+    public TokenType getFound() {
+        return found;
+    }
+
+    /**
+     * @return the token's text for INVALID_NUMBER, otherwise null
+     */
+    public String getText() {
+        return text;
+    }
+
+    public String getMessage() {
+        switch (code) {
+            case EXPECTED_TOKEN:
+                return "Expected " + expected + ", found " + found;
+            case INVALID_NUMBER:
+                return code.message + text;
+            default:
+                return code.message;
+        }
+    }
+
+    /**
+     * @return the error as it is printed: "Line n: message"
+     */
+    @Override
+    public String toString() {
+        return "Line " + line + ": " + getMessage();
+    }
+}
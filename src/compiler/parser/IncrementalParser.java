@@ -0,0 +1,263 @@
+package compiler.parser;
+
+import compiler.parser.AST.*;
+import compiler.scanner.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Keeps the tokens and AST of a source that is being edited, and brings them
+ * up to date after each edit without scanning or parsing the whole source
+ * again.
+ *
+ * An edit replaces a range of the text. IncrementalScanner scans only the
+ * tokens around it again. Each top-level declaration remembers the range of
+ * tokens its parse looked at; the declarations whose range touches a token
+ * that was scanned again are parsed again, one at a time, until the parse
+ * reaches the first token of an old declaration that lies after the edit.
+ * From there on the old declarations, including their FunDeclarationNode
+ * subtrees, are kept. The parse and the ASTs are the same as a full parse of
+ * the edited text would give.
+ *
+ * The text and the TokenBuffer are edited in place. What is left that grows
+ * with the size of the file is moving the bytes and tokens after the edit
+ * and shifting their offsets, and, when an edit adds or removes lines,
+ * shifting the line numbers of the nodes after it.
+ *
+ * Offsets count bytes of the ISO-8859-1 encoded text, which are characters
+ * for C- source. The TokenBuffer from getTokens() and the nodes from
+ * getRoot() are changed by later edits. An IncrementalParser is not safe to
+ * use from several threads.
+ */
+public class IncrementalParser {
+
+    // A top-level declaration and the tokens it was parsed from. The parse
+    // looked at the tokens from begin up to and including end, the token it
+    // stopped at. node is null if a syntax error left no declaration.
+    private static final class Declaration {
+        int begin;
+        int end;
+        final DeclarationNode node;
+        final List<Diagnostic> errors;
+
+        Declaration(int begin, int end, DeclarationNode node, List<Diagnostic> errors) {
+            this.begin = begin;
+            this.end = end;
+            this.node = node;
+            this.errors = errors;
+        }
+    }
+
+    // The text is edited in place; bytes from length on are spare room
+    private byte[] text;
+    private int length;
+    private TokenBuffer tokens;
+    private List<Declaration> declarations = new ArrayList<>();
+    private ProgramNode root;
+    private List<Diagnostic> errors;
+
+    private int rescannedTokens;
+    private int reparsedDeclarations;
+    private int reusedDeclarations;
+
+    public IncrementalParser(String text) throws IOException {
+        this(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private IncrementalParser(byte[] text) throws IOException {
+        this.text = text;
+        length = text.length;
+        tokens = new cminusMapped(ByteBuffer.wrap(text)).scanAll();
+        rescannedTokens = tokens.size();
+        parseFrom(0, tokens.cursor(), Collections.emptyList(), 0, 0, 0);
+    }
+
+    public static IncrementalParser open(String inputFile) throws IOException {
+        return new IncrementalParser(Files.readAllBytes(Paths.get(inputFile)));
+    }
+
+    /**
+     * Replaces removed bytes at offset with inserted and updates the tokens
+     * and the AST. If the parse throws, getRoot() is null until the next
+     * edit.
+     *
+     * @throws IndexOutOfBoundsException if the removed range is not inside
+     *                                   the text
+     */
+    public void edit(int offset, int removed, String inserted) throws IOException {
+        Objects.checkFromIndexSize(offset, removed, length);
+        byte[] insertedBytes = inserted.getBytes(StandardCharsets.ISO_8859_1);
+        int newLength = length - removed + insertedBytes.length;
+        if (newLength > text.length) {
+            text = Arrays.copyOf(text, Math.max(newLength, text.length * 2));
+        }
+        System.arraycopy(text, offset + removed, text, offset + insertedBytes.length, length - offset - removed);
+        System.arraycopy(insertedBytes, 0, text, offset, insertedBytes.length);
+        length = newLength;
+
+        IncrementalScanner.Result damage = IncrementalScanner.rescan(tokens, ByteBuffer.wrap(text, 0, length),
+                offset, removed, insertedBytes.length);
+        rescannedTokens = damage.getNewEnd() - damage.getFirst();
+
+        // Declarations that stopped before the first token scanned again
+        // saw nothing that changed
+        List<Declaration> old = declarations;
+        int kept = 0;
+        while (kept < old.size() && old.get(kept).end < damage.getFirst()) {
+            kept++;
+        }
+        declarations = new ArrayList<>(old.subList(0, kept));
+        int pos = kept == 0 ? 0 : old.get(kept - 1).end;
+        try {
+            parseFrom(pos, tokens.cursor(), old.subList(kept, old.size()), damage.getNewEnd(),
+                    damage.getNewEnd() - damage.getOldEnd(), damage.getLineShift());
+        } catch (IOException | RuntimeException e) {
+            // Some of the old declarations may already have been moved, so
+            // the next edit parses everything again
+            declarations = new ArrayList<>();
+            root = null;
+            errors = Collections.emptyList();
+            throw e;
+        }
+    }
+
+    // Parses declarations from token pos on, as CMinusParser.program()
+    // does, with no limit on the number of errors: a limit would make the
+    // errors of a declaration depend on the ones before it. Once pos reaches resume or later and an old declaration begins
+    // at pos, that one and all after it are kept, moved by indexShift tokens
+    // and lineShift lines.
+    private void parseFrom(int pos, TokenBuffer.Cursor cursor, List<Declaration> old, int resume,
+            int indexShift, int lineShift) throws IOException {
+        CMinusParser parser = new CMinusParser(cursor);
+        parser.setMaxErrors(Integer.MAX_VALUE);
+        reparsedDeclarations = 0;
+        reusedDeclarations = 0;
+        int next = 0;
+        cursor.seek(pos);
+        while (cursor.type() != TokenType.ENDFILE) {
+            while (next < old.size() && old.get(next).begin + indexShift < pos) {
+                next++;
+            }
+            if (pos >= resume && next < old.size() && old.get(next).begin + indexShift == pos) {
+                for (Declaration declaration : old.subList(next, old.size())) {
+                    declarations.add(move(parser, cursor, declaration, indexShift, lineShift));
+                }
+                cursor.seek(declarations.get(declarations.size() - 1).end);
+                break;
+            }
+            Declaration declaration = parse(parser, cursor, pos);
+            declarations.add(declaration);
+            pos = declaration.end;
+        }
+
+        errors = new ArrayList<>();
+        root = new ProgramNode(tokens.line(0));
+        for (Declaration declaration : declarations) {
+            errors.addAll(declaration.errors);
+            if (declaration.node != null) {
+                root.addDeclaration(declaration.node);
+            }
+        }
+    }
+
+    private Declaration parse(CMinusParser parser, TokenBuffer.Cursor cursor, int pos) throws IOException {
+        reparsedDeclarations++;
+        cursor.seek(pos);
+        List<Diagnostic> parserErrors = parser.getDiagnostics();
+        int before = parserErrors.size();
+        DeclarationNode node = parser.parseDeclaration(new NodeBuilder());
+        List<Diagnostic> declarationErrors = parserErrors.size() == before ? Collections.emptyList()
+                : new ArrayList<>(parserErrors.subList(before, parserErrors.size()));
+        return new Declaration(pos, cursor.index(), node, declarationErrors);
+    }
+
+    // Keeps an old declaration at its new place. Its error messages name
+    // lines, so one with errors is parsed again if the lines moved.
+    private Declaration move(CMinusParser parser, TokenBuffer.Cursor cursor, Declaration declaration,
+            int indexShift, int lineShift) throws IOException {
+        if (lineShift != 0 && !declaration.errors.isEmpty()) {
+            return parse(parser, cursor, declaration.begin + indexShift);
+        }
+        reusedDeclarations++;
+        declaration.begin += indexShift;
+        declaration.end += indexShift;
+        if (lineShift != 0 && declaration.node != null) {
+            declaration.node.shiftLines(lineShift);
+        }
+        return declaration;
+    }
+
+    public ProgramNode getRoot() {
+        return root;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return errors;
+    }
+
+    /**
+     * @return the syntax errors as they are printed
+     */
+    public List<String> getErrors() {
+        List<String> messages = new ArrayList<>(errors.size());
+        for (Diagnostic error : errors) {
+            messages.add(error.toString());
+        }
+        return messages;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    public String getText() {
+        return new String(text, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return the number of tokens scanned by the last edit
+     */
+    public int getRescannedTokens() {
+        return rescannedTokens;
+    }
+
+    /**
+     * @return the number of top-level declarations parsed by the last edit
+     */
+    public int getReparsedDeclarations() {
+        return reparsedDeclarations;
+    }
+
+    /**
+     * @return the number of top-level declarations kept by the last edit
+     */
+    public int getReusedDeclarations() {
+        return reusedDeclarations;
+    }
+
+    /**
+     * Writes the syntax errors and the AST in the same form as
+     * CMinusParser.printTree.
+     */
+    public void printTree(String outputFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(outputFile))) {
+            printTree(writer);
+        }
+    }
+
+    public void printTree(Writer writer) throws IOException {
+        TreePrinter out = new TreePrinter(writer);
+        if (!errors.isEmpty()) {
+            CMinusParser.printErrors(out, errors);
+        }
+        if (root != null) {
+            root.printTree(out, 0);
+        } else {
+            out.print("No valid AST was constructed due to syntax errors.");
+        }
+    }
+}
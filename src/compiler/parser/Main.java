@@ -1,23 +1,160 @@
 package compiler.parser;
 
+import compiler.batch.BatchRunner;
+import compiler.optimizer.PassManager;
+import compiler.parser.AST.BinaryTreeWriter;
+import compiler.parser.AST.FlatTree;
+import compiler.parser.AST.ProgramNode;
+import compiler.parser.AST.TreeBuilder;
+import compiler.parser.AST.TreePrinter;
+import compiler.scanner.PipelinedTokenStream;
+import compiler.scanner.ScannerFactory;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.TokenStream;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Main class to run the C- parser on input files.
+ *
+ * --flat builds the FlatTree arena instead of AbstractNode objects; the
+ * output is the same.
+ *
+ * --binary writes the AST in the binary format of BinaryTreeWriter instead
+ * of as text; the syntax errors go to standard error.
+ *
+ * --max-errors=<n> stops the parse after n syntax errors (default
+ * CMinusParser.DEFAULT_MAX_ERRORS).
+ *
+ * --optimize runs PassManager.standard() over the AST before it is
+ * written, which folds constants and removes dead code; it only works with
+ * text output.
+ *
+ * --lazy parses with CMinusParser.parseLazy, which skips the function
+ * bodies, and then parses the bodies as a phase of their own before the
+ * tree is written; the output is the same. It needs an engine that scans
+ * ahead, mapped or parallel, and builds AbstractNode objects, so it cannot
+ * be combined with --flat, --binary or --cache.
+ *
+ * --cache=<dir> keeps each parse result in a ParseCache in dir, and
+ * reuses it for a source with the same content instead of parsing again.
+ * --cache-size=<megabytes> bounds the cache (default 256).
+ *
+ * --stats prints a table of the phases: reading the file, scanning,
+ * parsing, optimizing and printing the tree, with the time, the bytes the
+ * thread allocated and the tokens, nodes or bytes per second of each, and
+ * then the peak heap (see PhaseStats). With the cminus, jflex and pipelined
+ * engines the scan runs as the parser reads the file, so one scan+parse
+ * row covers both, and there is no read row unless --cache needs the bytes
+ * first; for the pipelined scanner it also prints how much of the scan ran
+ * while the parser was busy. With --optimize it also prints what each pass
+ * changed.
+ *
+ * Each phase is also a JDK Flight Recorder event (see PhaseEvents), which
+ * costs next to nothing unless a recording is running.
+ *
+ * With --batch the remaining arguments are files, directories, globs or
+ * @manifest files; each source is parsed concurrently and its AST written
+ * next to it as a .ast file, or a .bast file with --binary (see
+ * BatchRunner).
  */
 public class Main {
+    private static final class Options {
+        // --scanner=<engine> picks one of the ScannerFactory engines
+        String engine = ScannerFactory.DEFAULT_ENGINE;
+        boolean flat;
+        boolean binary;
+        boolean stats;
+        boolean optimize;
+        boolean lazy;
+        int maxErrors = CMinusParser.DEFAULT_MAX_ERRORS;
+        String cacheDirectory;
+        long cacheSize = ParseCache.DEFAULT_MAX_BYTES;
+        ParseCache cache;
+    }
+
     public static void main(String[] args) {
-        if (args.length < 2) {
-            System.out.println("Usage: java compiler.parser.Main <input-file> <output-file>");
+        Options options = new Options();
+        while (args.length > 0 && (args[0].startsWith("--scanner=") || args[0].equals("--flat")
+                || args[0].equals("--binary") || args[0].equals("--stats") || args[0].equals("--optimize")
+                || args[0].equals("--lazy") || args[0].startsWith("--max-errors=") || args[0].startsWith("--cache=")
+                || args[0].startsWith("--cache-size="))) {
+            if (args[0].equals("--flat")) {
+                options.flat = true;
+            } else if (args[0].equals("--binary")) {
+                options.binary = true;
+            } else if (args[0].equals("--stats")) {
+                options.stats = true;
+            } else if (args[0].equals("--optimize")) {
+                options.optimize = true;
+            } else if (args[0].equals("--lazy")) {
+                options.lazy = true;
+            } else if (args[0].startsWith("--max-errors=")) {
+                options.maxErrors = Integer.parseInt(args[0].substring("--max-errors=".length()));
+            } else if (args[0].startsWith("--cache=")) {
+                options.cacheDirectory = args[0].substring("--cache=".length());
+            } else if (args[0].startsWith("--cache-size=")) {
+                options.cacheSize = Long.parseLong(args[0].substring("--cache-size=".length())) * 1024 * 1024;
+            } else {
+                options.engine = args[0].substring("--scanner=".length());
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (options.optimize && options.binary) {
+            System.err.println("Error: --optimize cannot be combined with --binary");
+            System.exit(1);
+        }
+        if (options.lazy && (options.flat || options.binary || options.cacheDirectory != null)) {
+            System.err.println("Error: --lazy cannot be combined with --flat, --binary or --cache");
+            System.exit(1);
+        }
+        if (options.lazy && !options.engine.equals("mapped") && !options.engine.equals("parallel")) {
+            System.err.println("Error: --lazy needs --scanner=mapped or --scanner=parallel");
             System.exit(1);
         }
 
-        try {
-            Parser parser = new CMinusParser(args[0]);
+        if (options.cacheDirectory != null) {
+            try {
+                options.cache = new ParseCache(Paths.get(options.cacheDirectory), options.cacheSize);
+            } catch (IOException e) {
+                System.err.println("Error: cannot open cache " + options.cacheDirectory + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // Batch jobs report their times in the summary instead
+            boolean stats = options.stats;
+            options.stats = false;
+            int status = BatchRunner.main(Arrays.copyOfRange(args, 1, args.length), options.binary ? ".bast" : ".ast",
+                    (input, output) -> parseFile(options, input, output));
+            if (stats && options.cache != null) {
+                printCacheStats(options.cache);
+            }
+            System.exit(status);
+        }
 
-            parser.parse();
+        if (args.length < 2) {
+            System.out.println("Usage: java compiler.parser.Main [--scanner=<engine>] [--flat] [--binary] [--max-errors=<n>] [--optimize] [--lazy] [--cache=<dir>] [--cache-size=<megabytes>] [--stats] <input-file> <output-file>");
+            System.out.println("       java compiler.parser.Main [--scanner=<engine>] [--flat] [--binary] [--max-errors=<n>] [--optimize] [--lazy] [--cache=<dir>] [--cache-size=<megabytes>] [--stats] --batch [--jobs=<threads>] <file|directory|glob|@manifest>...");
+            System.exit(1);
+        }
 
-            parser.printTree(args[1]);
+        try {
+            List<String> errors = parseFile(options, args[0], args[1]);
+            if (options.binary) {
+                for (String error : errors) {
+                    System.err.println(error);
+                }
+            }
 
             System.out.println("Parsing completed. AST written to " + args[1]);
         } catch (IOException e) {
@@ -25,4 +162,205 @@ public class Main {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    // Writes an AST to the output file
+    private interface Output {
+        void write() throws IOException;
+    }
+
+    // Parses inputFile, writes its AST to outputFile and returns the syntax
+    // errors. Each phase is a PhaseEvents event and, with --stats, a row of
+    // the PhaseStats table
+    private static List<String> parseFile(Options options, String inputFile, String outputFile)
+            throws IOException {
+        PhaseStats stats = new PhaseStats(options.stats);
+        PhaseEvents events = new PhaseEvents();
+
+        // The cache hashes the source, and the mapped and parallel engines
+        // scan all of it before the parse, so for those the file is read
+        // first. The other engines read it as they scan.
+        ByteBuffer source = null;
+        long size;
+        if (options.cache != null || ScannerFactory.scansAhead(options.engine)) {
+            events.beginRead();
+            stats.start();
+            source = ScannerFactory.read(options.engine, inputFile);
+            size = source.remaining();
+            stats.end("read").rate(size, "bytes");
+            events.endRead(inputFile, size);
+        } else {
+            size = Files.size(Paths.get(inputFile));
+        }
+
+        String key = null;
+        if (options.cache != null) {
+            stats.start();
+            key = ParseCache.key(bytes(source), options.engine, options.maxErrors);
+            ParseCache.Entry entry = options.cache.get(key);
+            stats.end(entry != null ? "cache hit" : "cache miss");
+            if (entry != null) {
+                if (options.optimize) {
+                    FlatTree tree = entry.getTree();
+                    printOptimized(options, stats, events, tree != null ? (ProgramNode) tree.toNode(tree.root()) : null,
+                            entry.getDiagnostics(), outputFile);
+                } else if (options.binary) {
+                    print(stats, events, outputFile, () -> entry.writeBinary(outputFile));
+                } else {
+                    print(stats, events, outputFile, () -> entry.printTree(outputFile));
+                }
+                stats.print(System.out);
+                return entry.getErrors();
+            }
+        }
+
+        // The mapped and parallel engines scan the whole file first; the
+        // others scan as the parser reads, so their scan is timed with the
+        // parse
+        events.beginScan();
+        stats.start();
+        TokenBuffer buffer = source != null ? ScannerFactory.scanAhead(options.engine, source) : null;
+        TokenStream tokens;
+        if (buffer != null) {
+            events.endScan();
+            stats.end("scan").rate(buffer.size(), "tokens").rate(size, "bytes");
+            tokens = buffer.cursor();
+        } else if (source != null) {
+            tokens = ScannerFactory.open(options.engine, source);
+        } else {
+            tokens = ScannerFactory.open(options.engine, inputFile);
+        }
+
+        events.beginParse();
+        if (buffer != null) {
+            stats.start();
+        }
+        CMinusParser parser = new CMinusParser(tokens);
+        parser.setMaxErrors(options.maxErrors);
+        boolean flat = options.flat || options.binary || key != null;
+        try {
+            // The cache stores the FlatTree
+            if (flat) {
+                parser.parseFlat();
+            } else if (options.lazy) {
+                parser.parseLazy();
+            } else {
+                parser.parse();
+            }
+        } finally {
+            if (tokens instanceof PipelinedTokenStream) {
+                ((PipelinedTokenStream) tokens).close();
+            }
+        }
+        if (buffer == null) {
+            events.endScan();
+            stats.end("scan+parse").rate(parser.getTokenCount(), "tokens").rate(parser.getNodeCount(), "nodes");
+        } else {
+            stats.end("parse").rate(parser.getNodeCount(), "nodes");
+        }
+        events.endParse(inputFile, flat, parser.getNodeCount(), parser.getDiagnostics().size());
+        events.commitScan(inputFile, options.engine, buffer != null ? buffer.size() : parser.getTokenCount(), size,
+                buffer == null);
+        if (options.lazy) {
+            stats.start();
+            int bodies = parser.parseBodies();
+            stats.end("bodies").rate(bodies, "functions");
+        }
+
+        if (options.optimize) {
+            if (key != null) {
+                options.cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+            }
+            ProgramNode program = parser.getRoot();
+            FlatTree tree = parser.getFlatRoot();
+            if (program == null && tree != null) {
+                program = (ProgramNode) tree.toNode(tree.root());
+            }
+            printOptimized(options, stats, events, program, parser.getDiagnostics(), outputFile);
+        } else if (key != null) {
+            ParseCache.Entry entry = options.cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+            if (options.binary) {
+                print(stats, events, outputFile, () -> entry.writeBinary(outputFile));
+            } else {
+                print(stats, events, outputFile, () -> parser.printTree(outputFile));
+            }
+        } else if (options.binary) {
+            FlatTree tree = parser.getFlatRoot();
+            print(stats, events, outputFile,
+                    () -> BinaryTreeWriter.write(tree, tree != null ? tree.root() : TreeBuilder.NONE, outputFile));
+        } else {
+            print(stats, events, outputFile, () -> parser.printTree(outputFile));
+        }
+        stats.print(System.out);
+        if (options.stats && tokens instanceof PipelinedTokenStream) {
+            PipelinedTokenStream pipeline = (PipelinedTokenStream) tokens;
+            System.out.printf("Pipeline: %d tokens in %d batches, scanner busy %.1f ms and blocked %.1f ms,"
+                    + " parser waited %.1f ms, overlap %.0f%%%n",
+                    pipeline.getTokenCount(), pipeline.getBatchesRead(), pipeline.getScanNanos() / 1e6,
+                    pipeline.getBlockedNanos() / 1e6, pipeline.getWaitNanos() / 1e6,
+                    pipeline.getOverlap() * 100);
+        }
+        return parser.getErrors();
+    }
+
+    // Runs output as the print phase
+    private static void print(PhaseStats stats, PhaseEvents events, String outputFile, Output output)
+            throws IOException {
+        events.beginPrint();
+        stats.start();
+        output.write();
+        boolean recorded = events.isPrintRecorded();
+        if (stats.isEnabled() || recorded) {
+            long bytes = Files.size(Paths.get(outputFile));
+            stats.end("print").rate(bytes, "bytes");
+            events.endPrint(outputFile, bytes);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer source) {
+        if (source.hasArray() && source.arrayOffset() == 0 && source.position() == 0
+                && source.remaining() == source.array().length) {
+            return source.array();
+        }
+        byte[] bytes = new byte[source.remaining()];
+        source.duplicate().get(bytes);
+        return bytes;
+    }
+
+    // Optimizes program, if there is one, and writes the syntax errors and
+    // the tree to outputFile
+    private static void printOptimized(Options options, PhaseStats stats, PhaseEvents events, ProgramNode program,
+            List<Diagnostic> diagnostics, String outputFile) throws IOException {
+        PassManager passes = PassManager.standard();
+        if (program != null) {
+            stats.start();
+            program = passes.run(program);
+            stats.end("optimize").rate(passes.getNodesBefore(), "nodes");
+        }
+        ProgramNode optimized = program;
+        print(stats, events, outputFile, () -> {
+            try (Writer writer = new BufferedWriter(new FileWriter(outputFile))) {
+                TreePrinter out = new TreePrinter(writer);
+                if (!diagnostics.isEmpty()) {
+                    CMinusParser.printErrors(out, diagnostics);
+                }
+                if (optimized != null) {
+                    optimized.printTree(out, 0);
+                } else {
+                    out.print("No valid AST was constructed due to syntax errors.");
+                }
+            }
+        });
+        if (options.stats && program != null) {
+            for (PassManager.Result result : passes.getResults()) {
+                System.out.println(result);
+            }
+            System.out.printf("Optimized %d nodes to %d%n", passes.getNodesBefore(), passes.getNodesAfter());
+        }
+    }
+
+    private static void printCacheStats(ParseCache cache) {
+        System.out.printf("Cache %s: %d hits, %d misses%s%n", cache.getDirectory(), cache.getHits(),
+                cache.getMisses(),
+                cache.getFailedWrites() > 0 ? ", " + cache.getFailedWrites() + " failed writes" : "");
+    }
+}
@@ -0,0 +1,420 @@
+package compiler.parser;
+
+import compiler.parser.AST.BinaryTreeReader;
+import compiler.parser.AST.BinaryTreeWriter;
+import compiler.parser.AST.FlatTree;
+import compiler.parser.AST.TreeBuilder;
+import compiler.parser.AST.TreePrinter;
+import compiler.scanner.TokenType;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A directory of parse results, looked up by the content of the source.
+ *
+ * The key of a source is the SHA-256 of CMinusParser.VERSION,
+ * BinaryTreeWriter.VERSION, the scanner engine, the error limit and the
+ * source bytes, so a result is found again for the same text under any
+ * file name, and never for a parser or scanner that would parse it
+ * differently; the jflex engine, for one, counts lines apart from the
+ * others. Each entry is one file
+ * named after its key, holding:
+ * - the magic bytes "CPC2", the CRC-32C of the rest of the entry as an int
+ *   and the number of diagnostics as an int
+ * - each diagnostic as its code ordinal (byte), line (int), expected and
+ *   found token ordinals (bytes, -1 for none) and text (int length, -1 for
+ *   none, then UTF-8 bytes)
+ * - the AST in the format of BinaryTreeWriter
+ *
+ * An entry is written to a temporary file in the directory and then moved
+ * over its name in one step, so a reader sees the whole entry or none, and
+ * any number of threads or batch processes can share the directory. Every
+ * hit sets the entry's modification time; once the entries are over the
+ * size limit the least recently used ones are deleted until they take up
+ * three quarters of it. The cache only saves work: an entry that does not
+ * match its checksum or cannot be read in full counts as a miss and is
+ * deleted, and a failed write leaves the parse result as it was.
+ */
+public final class ParseCache {
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final byte[] MAGIC = { 'C', 'P', 'C', '2' };
+    // Where the checksum is, and the bytes it covers start after it
+    private static final int CHECKSUM_OFFSET = MAGIC.length;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Temporary files older than this were left by a writer that died
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private static final Diagnostic.Code[] CODES = Diagnostic.Code.values();
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxBytes;
+    // The size of the entries as last counted, plus what was written since
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    /**
+     * Opens the cache in directory, creating the directory if needed.
+     *
+     * @param maxBytes how much space the entries may take up
+     */
+    public ParseCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        size.set(entries().stream().mapToLong(EntryFile::size).sum());
+    }
+
+    /**
+     * @return the key of source scanned by the ScannerFactory engine and
+     *         parsed with a limit of maxErrors errors, as 64 hex digits
+     */
+    public static String key(byte[] source, String engine, int maxErrors) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] engineName = engine.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(16 + engineName.length)
+                .putInt(CMinusParser.VERSION).putInt(BinaryTreeWriter.VERSION).putInt(maxErrors)
+                .putInt(engineName.length).put(engineName).flip());
+        byte[] hash = digest.digest(source);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[hash[i] >> 4 & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return the entry stored under key, or null if there is none
+     */
+    public Entry get(String key) {
+        Path file = directory.resolve(key + ENTRY_SUFFIX);
+        Entry entry;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            entry = new Entry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            // Truncated or corrupt; the next put writes it again
+            misses.incrementAndGet();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Replaced by the next put
+            }
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Evicted in the meantime; the mapping is still good
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Stores the result of a parse under key.
+     *
+     * @param tree        the parser's FlatTree, or null if the parse was
+     *                    stopped
+     * @param diagnostics the parser's syntax errors
+     * @return the entry that was stored, which is returned even if it could
+     *         not be written
+     */
+    public Entry put(String key, FlatTree tree, List<Diagnostic> diagnostics) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(MAGIC);
+            // The checksum, filled in below
+            out.writeInt(0);
+            out.writeInt(diagnostics.size());
+            for (Diagnostic diagnostic : diagnostics) {
+                out.writeByte(diagnostic.getCode().ordinal());
+                out.writeInt(diagnostic.getLine());
+                out.writeByte(diagnostic.getExpected() != null ? diagnostic.getExpected().ordinal() : -1);
+                out.writeByte(diagnostic.getFound() != null ? diagnostic.getFound().ordinal() : -1);
+                String text = diagnostic.getText();
+                if (text == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            }
+            BinaryTreeWriter.write(tree, tree != null ? tree.root() : TreeBuilder.NONE, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] data = bytes.toByteArray();
+        CRC32C checksum = new CRC32C();
+        checksum.update(data, CHECKSUM_OFFSET + 4, data.length - CHECKSUM_OFFSET - 4);
+        ByteBuffer.wrap(data).putInt(CHECKSUM_OFFSET, (int) checksum.getValue());
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+            Files.write(temp, data);
+            Files.move(temp, directory.resolve(key + ENTRY_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+            if (size.addAndGet(data.length) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            failedWrites.incrementAndGet();
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Removed as stale by a later eviction
+                }
+            }
+        }
+
+        try {
+            return new Entry(ByteBuffer.wrap(data), tree);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Deletes the least recently used entries, counting what other
+    // processes have written as well
+    private synchronized void evict() throws IOException {
+        if (size.get() <= maxBytes) {
+            return;
+        }
+        List<EntryFile> entries = entries();
+        entries.sort(Comparator.comparing(EntryFile::lastUsed));
+        long total = entries.stream().mapToLong(EntryFile::size).sum();
+        long target = maxBytes / 4 * 3;
+        for (EntryFile entry : entries) {
+            if (total <= target) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.path);
+            } catch (IOException e) {
+                continue;
+            }
+            total -= entry.size;
+        }
+        size.set(total);
+    }
+
+    // Lists the entries, and deletes stale temporary files on the way
+    private List<EntryFile> entries() throws IOException {
+        List<EntryFile> entries = new ArrayList<>();
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (name.endsWith(ENTRY_SUFFIX)) {
+                    entries.add(new EntryFile(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                } else if (name.endsWith(TEMP_SUFFIX) && attributes.lastModifiedTime().toMillis() < staleBefore) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return entries;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    private static final class EntryFile {
+        final Path path;
+        final long size;
+        final long lastUsed;
+
+        EntryFile(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        long size() {
+            return size;
+        }
+
+        long lastUsed() {
+            return lastUsed;
+        }
+    }
+
+    /**
+     * A cached parse result. The whole entry is checked against its
+     * checksum and decoded when it is read, so one that is truncated or
+     * corrupt fails in get() rather than later.
+     */
+    public static final class Entry {
+        private final List<Diagnostic> diagnostics;
+        private final ByteBuffer ast;
+        private final FlatTree tree;
+
+        // Reads a stored entry
+        private Entry(ByteBuffer buffer) throws IOException {
+            checkSum(buffer);
+            diagnostics = readDiagnostics(buffer);
+            ast = buffer.slice();
+            tree = new BinaryTreeReader(ast.duplicate()).readFlat();
+        }
+
+        // An entry just written from tree
+        private Entry(ByteBuffer buffer, FlatTree tree) throws IOException {
+            diagnostics = readDiagnostics(buffer);
+            ast = buffer.slice();
+            this.tree = tree;
+        }
+
+        private static void checkSum(ByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < CHECKSUM_OFFSET + 4) {
+                throw new IOException("Truncated parse cache entry");
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.duplicate().position(buffer.position() + CHECKSUM_OFFSET + 4));
+            if ((int) checksum.getValue() != buffer.getInt(buffer.position() + CHECKSUM_OFFSET)) {
+                throw new IOException("Parse cache entry does not match its checksum");
+            }
+        }
+
+        private static List<Diagnostic> readDiagnostics(ByteBuffer buffer) throws IOException {
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                buffer.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("Not a parse cache entry");
+                }
+                // The checksum, which checkSum has looked at
+                buffer.getInt();
+                int count = buffer.getInt();
+                List<Diagnostic> list = new ArrayList<>(Math.min(count, 1024));
+                for (int i = 0; i < count; i++) {
+                    Diagnostic.Code code = CODES[buffer.get()];
+                    int line = buffer.getInt();
+                    TokenType expected = tokenType(buffer.get());
+                    TokenType found = tokenType(buffer.get());
+                    String text = null;
+                    int length = buffer.getInt();
+                    if (length >= 0) {
+                        byte[] utf8 = new byte[length];
+                        buffer.get(utf8);
+                        text = new String(utf8, StandardCharsets.UTF_8);
+                    }
+                    list.add(new Diagnostic(code, line, expected, found, text));
+                }
+                return Collections.unmodifiableList(list);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt parse cache entry", e);
+            }
+        }
+
+        private static TokenType tokenType(byte ordinal) {
+            return ordinal < 0 ? null : TOKEN_TYPES[ordinal];
+        }
+
+        public List<Diagnostic> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * @return the syntax errors as they are printed
+         */
+        public List<String> getErrors() {
+            List<String> errors = new ArrayList<>(diagnostics.size());
+            for (Diagnostic diagnostic : diagnostics) {
+                errors.add(diagnostic.toString());
+            }
+            return errors;
+        }
+
+        /**
+         * @return the tree, or null if the parse stopped after too many
+         *         errors
+         */
+        public FlatTree getTree() {
+            return tree;
+        }
+
+        /**
+         * Writes the AST to outputFile in the format of BinaryTreeWriter,
+         * copying the stored bytes.
+         */
+        public void writeBinary(String outputFile) throws IOException {
+            try (FileChannel channel = FileChannel.open(Paths.get(outputFile), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ast.duplicate();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        }
+
+        /**
+         * Writes the syntax errors and the AST to outputFile, the same as
+         * CMinusParser.printTree(String) after the parse.
+         */
+        public void printTree(String outputFile) throws IOException {
+            try (Writer writer = new BufferedWriter(new FileWriter(outputFile))) {
+                TreePrinter out = new TreePrinter(writer);
+                if (!diagnostics.isEmpty()) {
+                    CMinusParser.printErrors(out, diagnostics);
+                }
+                if (tree != null) {
+                    tree.printTree(out, tree.root(), 0);
+                } else {
+                    out.print("No valid AST was constructed due to syntax errors.");
+                }
+            }
+        }
+    }
+}
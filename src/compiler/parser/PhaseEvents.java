@@ -0,0 +1,191 @@
+package compiler.parser;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the phases Main runs on each file. Any
+ * recording includes them unless its settings turn them off, for example
+ *
+ *   java -XX:StartFlightRecording:filename=parse.jfr compiler.parser.Main ...
+ *
+ * and shown under "C- Compiler" in JDK Mission Control or by
+ * "jfr print --categories 'C- Compiler' parse.jfr".
+ *
+ * Main makes one PhaseEvents per file and calls begin and end around each
+ * phase. Loading the first event class starts up Flight Recorder, which
+ * takes a few hundred milliseconds, so no event is made unless Flight
+ * Recorder is already running; one started later with jcmd is seen from
+ * the next file on. The fields are filled in only for an event that will
+ * be committed.
+ */
+final class PhaseEvents {
+    private final boolean recording = FlightRecorder.isInitialized();
+    private FileRead read;
+    private Scan scan;
+    private Parse parse;
+    private PrintTree print;
+
+    void beginRead() {
+        if (recording) {
+            read = new FileRead();
+            read.begin();
+        }
+    }
+
+    void endRead(String path, long bytes) {
+        if (read != null && read.shouldCommit()) {
+            read.path = path;
+            read.bytes = bytes;
+            read.commit();
+        }
+    }
+
+    void beginScan() {
+        if (recording) {
+            scan = new Scan();
+            scan.begin();
+        }
+    }
+
+    /**
+     * Ends the scan, which is committed later by commitScan once the token
+     * count is known.
+     */
+    void endScan() {
+        if (scan != null) {
+            scan.end();
+        }
+    }
+
+    void commitScan(String path, String engine, long tokens, long bytes, boolean interleaved) {
+        if (scan != null && scan.shouldCommit()) {
+            scan.path = path;
+            scan.engine = engine;
+            scan.tokens = tokens;
+            scan.bytes = bytes;
+            scan.interleaved = interleaved;
+            scan.commit();
+        }
+    }
+
+    void beginParse() {
+        if (recording) {
+            parse = new Parse();
+            parse.begin();
+        }
+    }
+
+    void endParse(String path, boolean flat, long nodes, int errors) {
+        if (parse != null && parse.shouldCommit()) {
+            parse.path = path;
+            parse.flat = flat;
+            parse.nodes = nodes;
+            parse.errors = errors;
+            parse.commit();
+        }
+    }
+
+    void beginPrint() {
+        if (recording) {
+            print = new PrintTree();
+            print.begin();
+        }
+    }
+
+    /**
+     * @return whether endPrint wants the size of the output
+     */
+    boolean isPrintRecorded() {
+        if (print == null) {
+            return false;
+        }
+        print.end();
+        return print.shouldCommit();
+    }
+
+    void endPrint(String path, long bytes) {
+        if (print != null && print.shouldCommit()) {
+            print.path = path;
+            print.bytes = bytes;
+            print.commit();
+        }
+    }
+
+    @Name("compiler.FileRead")
+    @Label("File Read")
+    @Category("C- Compiler")
+    @Description("The source file read into memory")
+    @StackTrace(false)
+    static final class FileRead extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("compiler.Scan")
+    @Label("Scan")
+    @Category("C- Compiler")
+    @Description("The source split into tokens. With the engines that scan as the parser reads, the scan"
+            + " is interleaved with the parse and the event covers the same time")
+    @StackTrace(false)
+    static final class Scan extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Engine")
+        String engine;
+
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Interleaved with Parse")
+        boolean interleaved;
+    }
+
+    @Name("compiler.Parse")
+    @Label("Parse")
+    @Category("C- Compiler")
+    @Description("The tokens parsed into an AST")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Flat Tree")
+        boolean flat;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Syntax Errors")
+        int errors;
+    }
+
+    @Name("compiler.PrintTree")
+    @Label("Print Tree")
+    @Category("C- Compiler")
+    @Description("The AST and syntax errors written to the output file")
+    @StackTrace(false)
+    static final class PrintTree extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,144 @@
+package compiler.parser;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The --stats table of Main: for each phase of one file, the time it took,
+ * the bytes the thread allocated in it and how fast it went through its
+ * input, then the peak heap.
+ *
+ * Allocation comes from com.sun.management.ThreadMXBean and counts only
+ * the calling thread, so the scanner thread of the pipelined engine and
+ * the pool of the parallel one are left out. The peak heap is the sum of
+ * the peaks of the heap memory pools since the PhaseStats was made; they
+ * may peak at different times, so it is an upper bound.
+ */
+final class PhaseStats {
+    private static final class Phase {
+        final String name;
+        final long nanos;
+        final long allocated;
+        final StringBuilder rates = new StringBuilder();
+
+        Phase(String name, long nanos, long allocated) {
+            this.name = name;
+            this.nanos = nanos;
+            this.allocated = allocated;
+        }
+    }
+
+    private final boolean enabled;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final List<Phase> phases = new ArrayList<>();
+    private long start;
+    private long startAllocated;
+
+    /**
+     * @param enabled whether to measure anything; if not, every method
+     *                returns at once
+     */
+    PhaseStats(boolean enabled) {
+        this.enabled = enabled;
+        ThreadMXBean bean = enabled ? ManagementFactory.getThreadMXBean() : null;
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            threads = null;
+        }
+        if (!enabled) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        startAllocated = allocated();
+        start = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase begun by the last start().
+     */
+    PhaseStats end(String name) {
+        if (!enabled) {
+            return this;
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads != null ? allocated() - startAllocated : -1;
+        phases.add(new Phase(name, nanos, allocated));
+        return this;
+    }
+
+    /**
+     * Adds how many units per second the last phase went through.
+     */
+    PhaseStats rate(long count, String unit) {
+        if (!enabled) {
+            return this;
+        }
+        Phase phase = phases.get(phases.size() - 1);
+        double perSecond = count / Math.max(phase.nanos / 1e9, 1e-9);
+        phase.rates.append(phase.rates.length() > 0 ? ", " : "").append(scaled(perSecond)).append(' ')
+                .append(unit).append("/s");
+        return this;
+    }
+
+    void print(PrintStream out) {
+        if (!enabled) {
+            return;
+        }
+        out.printf("%-12s %10s %12s  %s%n", "Phase", "Time", "Allocated", "Rate");
+        for (Phase phase : phases) {
+            out.printf("%-12s %7.1f ms %12s  %s%n", phase.name, phase.nanos / 1e6,
+                    phase.allocated >= 0 ? megabytes(phase.allocated) : "n/a", phase.rates);
+        }
+        if (!heapPools.isEmpty()) {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : heapPools) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+            out.printf("Peak heap %s%n", megabytes(peak));
+        }
+    }
+
+    private long allocated() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private static String scaled(double value) {
+        if (value >= 1e9) {
+            return String.format("%.2fG", value / 1e9);
+        }
+        if (value >= 1e6) {
+            return String.format("%.2fM", value / 1e6);
+        }
+        if (value >= 1e3) {
+            return String.format("%.1fK", value / 1e3);
+        }
+        return String.format("%.0f", value);
+    }
+}
@@ -0,0 +1,53 @@
+package compiler.scanner;
+
+/**
+ * Character classes used by the hand-written scanners. ASCII characters are
+ * classified with a single table lookup instead of the Unicode-aware
+ * Character methods.
+ */
+final class CharClass {
+    static final int OTHER = 0;
+    static final int DIGIT = 1;
+    static final int LETTER = 2;
+    static final int WHITESPACE = 3;
+
+    private static final byte[] ASCII = new byte[128];
+
+    static {
+        for (int c = '0'; c <= '9'; c++)
+            ASCII[c] = DIGIT;
+        for (int c = 'a'; c <= 'z'; c++)
+            ASCII[c] = LETTER;
+        for (int c = 'A'; c <= 'Z'; c++)
+            ASCII[c] = LETTER;
+        // The ASCII characters Character.isWhitespace() accepts
+        for (int c = '\t'; c <= '\r'; c++)
+            ASCII[c] = WHITESPACE;
+        for (int c = 0x1C; c <= 0x1F; c++)
+            ASCII[c] = WHITESPACE;
+        ASCII[' '] = WHITESPACE;
+    }
+
+    private CharClass() {
+    }
+
+    // Classifies c, treating EOF and every non-ASCII character as OTHER
+    static int ascii(int c) {
+        return (c & ~0x7F) == 0 ? ASCII[c] : OTHER;
+    }
+
+    // Classifies c, falling back to the Unicode rules outside of ASCII
+    static int of(int c) {
+        if ((c & ~0x7F) == 0)
+            return ASCII[c];
+        if (c < 0)
+            return OTHER;
+        if (Character.isDigit(c))
+            return DIGIT;
+        if (Character.isLetter(c))
+            return LETTER;
+        if (Character.isWhitespace(c))
+            return WHITESPACE;
+        return OTHER;
+    }
+}
@@ -0,0 +1,134 @@
+package compiler.scanner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Brings the TokenBuffer of a source up to date after a text edit by
+ * scanning only the tokens around the edit again.
+ *
+ * Scanning restarts at the last token that ends at least one character
+ * before the edit, since neither that token nor anything in front of it can
+ * have changed. It stops as soon as a token that starts after the inserted
+ * text lines up with a token of the old buffer: both scans began a token at
+ * the same place in the same text, so every later token is the old one moved
+ * by the size of the edit. Those are kept and only have their offsets and
+ * line numbers shifted.
+ */
+public final class IncrementalScanner {
+
+    /**
+     * The range of tokens that were scanned again. Tokens before getFirst()
+     * are unchanged. From getNewEnd() on, token i is the old token
+     * i - getNewEnd() + getOldEnd(), moved down getLineShift() lines.
+     */
+    public static final class Result {
+        private final int first;
+        private final int oldEnd;
+        private final int newEnd;
+        private final int lineShift;
+
+        private Result(int first, int oldEnd, int newEnd, int lineShift) {
+            this.first = first;
+            this.oldEnd = oldEnd;
+            this.newEnd = newEnd;
+            this.lineShift = lineShift;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getOldEnd() {
+            return oldEnd;
+        }
+
+        public int getNewEnd() {
+            return newEnd;
+        }
+
+        public int getLineShift() {
+            return lineShift;
+        }
+    }
+
+    private IncrementalScanner() {
+    }
+
+    /**
+     * Updates tokens, the tokens of a text, for source, the same text after
+     * removed bytes at offset were replaced by inserted bytes.
+     *
+     * @param tokens   the tokens of the text before the edit
+     * @param source   the text after the edit
+     * @param offset   where the edit starts
+     * @param removed  the number of bytes removed at offset
+     * @param inserted the number of bytes inserted at offset
+     * @return the range of tokens that changed
+     */
+    public static Result rescan(TokenBuffer tokens, ByteBuffer source, int offset, int removed, int inserted) {
+        int shift = inserted - removed;
+        int size = tokens.size();
+        int first = restartIndex(tokens, offset);
+        int start = first < size ? tokens.start(first) : 0;
+        int line = first < size ? tokens.line(first) : 1;
+        if (first == size) {
+            first = 0;
+        }
+
+        TokenBuffer scanned = new TokenBuffer(source, 16 + inserted / 4);
+        cminusMapped scanner = new cminusMapped(source, start, -1, line, false);
+        int editEnd = offset + inserted;
+        int candidate = first;
+        while (true) {
+            TokenType type = scanner.scanInto(scanned);
+            int last = scanned.size() - 1;
+            if (type == TokenType.ENDFILE) {
+                int lineShift = scanned.line(last) - tokens.line(size - 1);
+                tokens.replace(first, size, scanned, shift, lineShift);
+                return new Result(first, size, first + scanned.size(), lineShift);
+            }
+            // Zero-length tokens are skipped: trimming may have moved their
+            // start away from where the scan began them
+            int length = scanned.length(last);
+            if (scanned.start(last) < editEnd || length == 0) {
+                continue;
+            }
+            int oldStart = scanned.start(last) - shift;
+            while (candidate < size && tokens.start(candidate) < oldStart) {
+                candidate++;
+            }
+            for (int i = candidate; i < size && tokens.start(i) == oldStart; i++) {
+                if (tokens.type(i) == type && tokens.length(i) == length) {
+                    int lineShift = scanned.line(last) - tokens.line(i);
+                    scanned.truncate(last);
+                    tokens.replace(first, i, scanned, shift, lineShift);
+                    return new Result(first, i, first + last, lineShift);
+                }
+            }
+        }
+    }
+
+    // Returns the last token that is safe to scan again from its own start:
+    // one whose text and the character after it come before offset. Tokens
+    // that may have been cut at MAXTOKENLEN or trimmed to nothing do not
+    // show where their text ends. Returns tokens.size() if there is none.
+    private static int restartIndex(TokenBuffer tokens, int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.start(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        for (int i = high; i >= 0; i--) {
+            int length = tokens.length(i);
+            if (length > 0 && length < cminusMapped.MAXTOKENLEN && tokens.start(i) + length < offset) {
+                return i;
+            }
+        }
+        return tokens.size();
+    }
+}
@@ -1,6 +1,10 @@
 package compiler.scanner;
 
+import compiler.batch.BatchRunner;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class serves as the start point for the C Scanner program, handling
@@ -19,25 +23,53 @@ import java.io.*;
  *          file. Each token output includes its line number, type, and value.
  *          The program requires two command-line arguments: the input source
  *          file path and the output file path.
+ *          With --batch it instead takes any number of files, directories,
+ *          globs or @manifest files and writes a .txt token listing next to
+ *          each source, scanning the files concurrently (see BatchRunner).
  */
 
 // Reads a the source file and writes the token listing to an output file
 public class Main {
     public static void main(String[] args) {
+        // --scanner=<engine> picks one of the ScannerFactory engines
+        String engine = ScannerFactory.DEFAULT_ENGINE;
+        if (args.length > 0 && args[0].startsWith("--scanner=")) {
+            engine = args[0].substring("--scanner=".length());
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            String batchEngine = engine;
+            System.exit(BatchRunner.main(Arrays.copyOfRange(args, 1, args.length), ".txt",
+                    (input, output) -> scanFile(batchEngine, input, output)));
+        }
+
         // Checks to make sure that the required arguments are provided
         if (args.length < 2) {
-            System.out.println("Usage: java Main <input-file> <output-file>");
+            System.out.println("Usage: java Main [--scanner=<engine>] <input-file> <output-file>");
+            System.out.println("       java Main [--scanner=<engine>] --batch [--jobs=<threads>] <file|directory|glob|@manifest>...");
             System.exit(1);
         }
 
-        try (PrintWriter writer = new PrintWriter(new FileWriter(args[1]))) {
-            scanner scanner = new cminus(args[0]);
-            Token token;
+        try {
+            scanFile(engine, args[0], args[1]);
+            System.out.println("Scanning completed. Output written to " + args[1]);
 
-            // cminus scanner = new cminus(args[0]);
-            // Token token;
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Writes the token listing for inputFile to outputFile and returns an
+    // error for each ERROR token
+    private static List<String> scanFile(String engine, String inputFile, String outputFile) throws IOException {
+        List<String> errors = new ArrayList<>();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
+            scanner scanner = ScannerFactory.create(engine, inputFile);
+            Token token;
 
-            writer.println("TOKEN LISTING FOR FILE: " + args[0]);
+            writer.println("TOKEN LISTING FOR FILE: " + inputFile);
             writer.println("Line\tType\t\tValue");
             writer.println("----------------------------------------");
 
@@ -48,17 +80,16 @@ public class Main {
                         token.getType(),
                         token.getValue());
 
+                if (token.getType() == TokenType.ERROR) {
+                    errors.add("Line " + token.getLineNo() + ": invalid token '" + token.getValue() + "'");
+                }
                 if (token.getType() == TokenType.ENDFILE) {
                     break;
                 }
             }
 
             writer.println("\nScanning completed successfully.");
-            System.out.println("Scanning completed. Output written to " + args[1]);
-
-        } catch (IOException e) {
-            System.err.println("Error: " + e.getMessage());
-            e.printStackTrace();
         }
+        return errors;
     }
 }
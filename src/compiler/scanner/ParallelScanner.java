@@ -0,0 +1,174 @@
+package compiler.scanner;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Scans a memory-mapped file on several threads by splitting it into chunks
+ * and running cminusMapped over each chunk.
+ *
+ * Chunks always end just after a '\n', so the only scanner state that can
+ * carry over a chunk boundary is being inside a comment. Scanning happens in
+ * two parallel passes:
+ * - a pre-pass counts the line terminators in each chunk and works out
+ *   whether the chunk ends inside a comment, both for starting outside and
+ *   for starting inside one
+ * - after chaining those results in order to get the first line and comment
+ *   state of every chunk, each chunk is scanned into its own TokenBuffer
+ * The chunk buffers are then appended in order. The result is the same
+ * TokenBuffer that cminusMapped.scanAll() produces for the whole file.
+ */
+public final class ParallelScanner {
+    // Chunks smaller than this are not worth handing to another thread
+    public static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private static final int OUT = 0;
+    private static final int SLASH = 1;
+    private static final int IN = 2;
+    private static final int STAR = 3;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelScanner() {
+        this(ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * @param pool      the pool that runs both passes
+     * @param chunkSize the target chunk size in bytes, or 0 to split the file
+     *                  into a few chunks per thread of the pool
+     */
+    public ParallelScanner(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public TokenBuffer scan(String inputFile) throws IOException {
+        return scan(cminusMapped.map(inputFile));
+    }
+
+    public TokenBuffer scan(ByteBuffer source) {
+        int[] bounds = split(source);
+        int chunks = bounds.length - 1;
+        if (chunks == 1) {
+            return new cminusMapped(source).scanAll();
+        }
+
+        List<Callable<int[]>> counts = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            counts.add(() -> summarize(source, start, end));
+        }
+        List<int[]> summaries = runAll(counts);
+
+        List<Callable<TokenBuffer>> scans = new ArrayList<>(chunks);
+        int line = 1;
+        boolean inComment = false;
+        for (int i = 0; i < chunks; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            int firstLine = line;
+            boolean startsInComment = inComment;
+            boolean last = i == chunks - 1;
+            scans.add(() -> {
+                TokenBuffer buffer = new TokenBuffer(source, (end - start) / 4);
+                new cminusMapped(source, start, end, firstLine, startsInComment).scanRange(buffer, last);
+                return buffer;
+            });
+            int[] summary = summaries.get(i);
+            line += summary[0];
+            inComment = (inComment ? summary[2] : summary[1]) == IN;
+        }
+
+        TokenBuffer result = null;
+        for (TokenBuffer buffer : runAll(scans)) {
+            if (result == null) {
+                result = buffer;
+            } else {
+                result.append(buffer);
+            }
+        }
+        return result;
+    }
+
+    // Returns the chunk boundaries, starting with 0 and ending with the limit
+    private int[] split(ByteBuffer source) {
+        int limit = source.limit();
+        int target = chunkSize > 0
+                ? chunkSize
+                : Math.max(MIN_CHUNK_SIZE, limit / (4 * pool.getParallelism()));
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int pos = target;
+        while (pos < limit) {
+            while (pos < limit && source.get(pos - 1) != '\n') {
+                pos++;
+            }
+            if (pos >= limit) {
+                break;
+            }
+            bounds.add(pos);
+            pos += target;
+        }
+        bounds.add(limit);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Returns the number of line terminators in the chunk, then the comment
+    // state at its end when starting outside a comment, then the same when
+    // starting inside one. Follows the comment states of the DFA in cminus.
+    private static int[] summarize(ByteBuffer source, int start, int end) {
+        int lines = 0;
+        int fromOut = OUT;
+        int fromIn = IN;
+        for (int pos = start; pos < end; pos++) {
+            int c = source.get(pos);
+            if (c == '\n' || (c == '\r' && (pos + 1 >= end || source.get(pos + 1) != '\n'))) {
+                lines++;
+            }
+            fromOut = next(fromOut, c);
+            fromIn = next(fromIn, c);
+        }
+        return new int[] { lines, fromOut, fromIn };
+    }
+
+    private static int next(int state, int c) {
+        switch (state) {
+            case OUT:
+                return c == '/' ? SLASH : OUT;
+            case SLASH:
+                return c == '*' ? IN : c == '/' ? SLASH : OUT;
+            case IN:
+                return c == '*' ? STAR : IN;
+            default:
+                return c == '/' ? OUT : c == '*' ? STAR : IN;
+        }
+    }
+
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,310 @@
+package compiler.scanner;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A TokenStream that runs a scanner on its own thread, so scanning overlaps
+ * with parsing.
+ *
+ * The scanner thread fills batches of tokens into a bounded ring of slots
+ * that it shares with the thread reading the stream. There is exactly one
+ * writer and one reader, so the ring needs no lock: the writer publishes a
+ * filled slot by advancing tail, and the reader hands it back by advancing
+ * head. When the ring is full the scanner waits for the reader, and when it
+ * is empty the reader waits for the scanner; either one spins briefly and
+ * then parks until the other side wakes it.
+ *
+ * If the scanner throws, the tokens scanned before that are still delivered
+ * and the exception is thrown by the advance() that would have read the next
+ * token. close() stops a scanner thread whose tokens are no longer needed.
+ */
+public final class PipelinedTokenStream implements TokenStream, Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final int DEFAULT_BATCHES = 64;
+
+    // How often a waiting thread checks again before it parks
+    private static final int SPINS = 100;
+
+    private final scanner scanner;
+    private final Token[][] slots;
+    private final int[] counts;
+    private final int mask;
+    private final Thread producer;
+    private volatile Thread consumer;
+
+    // The next slot the reader takes and the next slot the scanner fills
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile boolean producerParked;
+    private volatile boolean consumerParked;
+    private volatile boolean finished;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    // Written by the scanner thread before it sets finished
+    private long tokenCount;
+    private long scanNanos;
+    private long blockedNanos;
+
+    // Only used by the reading thread
+    private Token[] batch;
+    private int batchCount;
+    private int next;
+    private Token current;
+    private long batchesRead;
+    private long waitNanos;
+
+    public PipelinedTokenStream(scanner scanner) {
+        this(scanner, DEFAULT_BATCH_SIZE, DEFAULT_BATCHES);
+    }
+
+    /**
+     * Starts the scanner thread.
+     *
+     * @param scanner   the scanner to run
+     * @param batchSize the number of tokens handed over at a time
+     * @param batches   the number of batches the scanner may be ahead of the
+     *                  reader; rounded up to a power of two
+     */
+    public PipelinedTokenStream(scanner scanner, int batchSize, int batches) {
+        if (batchSize < 1 || batches < 1) {
+            throw new IllegalArgumentException("batchSize and batches must be positive");
+        }
+        this.scanner = scanner;
+        int capacity = Integer.highestOneBit(batches - 1) << 1;
+        capacity = Math.max(capacity, 1);
+        slots = new Token[capacity][batchSize];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        producer = new Thread(this::produce, "scanner-pipeline");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce() {
+        long start = System.nanoTime();
+        long blocked = 0;
+        long count = 0;
+        try {
+            boolean atEnd = false;
+            while (!atEnd) {
+                long slot = tail.get();
+                if (slot - head.get() == slots.length) {
+                    long waitStart = System.nanoTime();
+                    awaitSpace(slot);
+                    blocked += System.nanoTime() - waitStart;
+                }
+                if (closed) {
+                    break;
+                }
+                Token[] tokens = slots[(int) slot & mask];
+                int n = 0;
+                try {
+                    while (n < tokens.length && !atEnd) {
+                        Token token = scanner.getToken();
+                        tokens[n++] = token;
+                        atEnd = token.getType() == TokenType.ENDFILE;
+                    }
+                } finally {
+                    // Tokens scanned before a failure are still handed over
+                    counts[(int) slot & mask] = n;
+                    count += n;
+                    if (n > 0) {
+                        tail.set(slot + 1);
+                        wakeConsumer();
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            tokenCount = count;
+            scanNanos = System.nanoTime() - start - blocked;
+            blockedNanos = blocked;
+            finished = true;
+            wakeConsumer();
+        }
+    }
+
+    private void awaitSpace(long slot) {
+        for (int spins = 0; slot - head.get() == slots.length && !closed; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                producerParked = true;
+                if (slot - head.get() == slots.length && !closed) {
+                    LockSupport.park(this);
+                }
+                producerParked = false;
+            }
+        }
+    }
+
+    private void wakeConsumer() {
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @Override
+    public void advance() throws IOException {
+        if (next < batchCount) {
+            current = batch[next++];
+        } else if (current != null && current.getType() == TokenType.ENDFILE) {
+            // Like the scanners, count one more line for each call past the end
+            current = new Token(TokenType.ENDFILE, current.getValue(), current.getLineNo() + 1);
+        } else {
+            nextBatch();
+            current = batch[next++];
+        }
+    }
+
+    private void nextBatch() throws IOException {
+        long slot = head.get();
+        if (batch != null) {
+            head.set(++slot);
+            if (producerParked) {
+                LockSupport.unpark(producer);
+            }
+        }
+        if (tail.get() == slot) {
+            long waitStart = System.nanoTime();
+            awaitTokens(slot);
+            waitNanos += System.nanoTime() - waitStart;
+        }
+        if (tail.get() == slot) {
+            batch = null;
+            batchCount = 0;
+            rethrow(failure);
+            throw new IOException("Token stream is closed");
+        }
+        batch = slots[(int) slot & mask];
+        batchCount = counts[(int) slot & mask];
+        next = 0;
+        batchesRead++;
+    }
+
+    private void awaitTokens(long slot) {
+        consumer = Thread.currentThread();
+        for (int spins = 0; tail.get() == slot && !finished; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                consumerParked = true;
+                if (tail.get() == slot && !finished) {
+                    LockSupport.park(this);
+                }
+                consumerParked = false;
+            }
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * @return the current token, as a scanner would have returned it
+     */
+    public Token token() {
+        return current;
+    }
+
+    @Override
+    public TokenType type() {
+        return current.getType();
+    }
+
+    @Override
+    public int line() {
+        return current.getLineNo();
+    }
+
+    @Override
+    public String text() {
+        return current.getValue();
+    }
+
+    @Override
+    public int symbol() {
+        int symbol = current.getSymbol();
+        if (symbol == SymbolTable.NO_SYMBOL && current.getType() == TokenType.ID) {
+            symbol = SymbolTable.shared().intern(current.getValue());
+        }
+        return symbol;
+    }
+
+    @Override
+    public int intValue() {
+        return Integer.parseInt(current.getValue());
+    }
+
+    /**
+     * Stops the scanner thread if it is still running and waits for it to
+     * end. The scanner statistics below are final after close().
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    public long getBatchesRead() {
+        return batchesRead;
+    }
+
+    /**
+     * @return the time the scanner thread spent scanning, not counting the
+     *         time it waited for room in the ring
+     */
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * @return the time the scanner thread waited for the reader to free a
+     *         slot
+     */
+    public long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    /**
+     * @return the time the reader waited for the scanner
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return the share of the scan time that the reader did not have to wait
+     *         for, from 0 when scanning and parsing never overlapped to 1
+     *         when the scan was completely hidden
+     */
+    public double getOverlap() {
+        if (scanNanos == 0) {
+            return 1;
+        }
+        return Math.max(0, 1 - (double) waitNanos / scanNanos);
+    }
+}
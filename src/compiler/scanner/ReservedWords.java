@@ -0,0 +1,87 @@
+package compiler.scanner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Recognizes the C- reserved words directly in a scanner's buffer. The length
+ * and first character of an identifier select at most one candidate word, so
+ * an identifier is compared against a single keyword at most and is never
+ * turned into a String or hashed.
+ */
+final class ReservedWords {
+    private ReservedWords() {
+    }
+
+    static TokenType lookup(char[] buffer, int start, int length) {
+        switch (length) {
+            case 2:
+                if (buffer[start] == 'i' && buffer[start + 1] == 'f')
+                    return TokenType.IF;
+                break;
+            case 3:
+                if (buffer[start] == 'i' && matches(buffer, start, "int"))
+                    return TokenType.INT;
+                break;
+            case 4:
+                if (buffer[start] == 'e' && matches(buffer, start, "else"))
+                    return TokenType.ELSE;
+                if (buffer[start] == 'v' && matches(buffer, start, "void"))
+                    return TokenType.VOID;
+                break;
+            case 5:
+                if (buffer[start] == 'w' && matches(buffer, start, "while"))
+                    return TokenType.WHILE;
+                break;
+            case 6:
+                if (buffer[start] == 'r' && matches(buffer, start, "return"))
+                    return TokenType.RETURN;
+                break;
+        }
+        return TokenType.ID;
+    }
+
+    static TokenType lookup(ByteBuffer buffer, int start, int length) {
+        switch (length) {
+            case 2:
+                if (buffer.get(start) == 'i' && buffer.get(start + 1) == 'f')
+                    return TokenType.IF;
+                break;
+            case 3:
+                if (buffer.get(start) == 'i' && matches(buffer, start, "int"))
+                    return TokenType.INT;
+                break;
+            case 4:
+                if (buffer.get(start) == 'e' && matches(buffer, start, "else"))
+                    return TokenType.ELSE;
+                if (buffer.get(start) == 'v' && matches(buffer, start, "void"))
+                    return TokenType.VOID;
+                break;
+            case 5:
+                if (buffer.get(start) == 'w' && matches(buffer, start, "while"))
+                    return TokenType.WHILE;
+                break;
+            case 6:
+                if (buffer.get(start) == 'r' && matches(buffer, start, "return"))
+                    return TokenType.RETURN;
+                break;
+        }
+        return TokenType.ID;
+    }
+
+    // The first character has already been checked by the caller
+    private static boolean matches(char[] buffer, int start, String word) {
+        for (int i = 1; i < word.length(); i++) {
+            if (buffer[start + i] != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, String word) {
+        for (int i = 1; i < word.length(); i++) {
+            if (buffer.get(start + i) != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package compiler.scanner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that every scanner engine produces the same token stream as the
+ * hand-written cminus scanner, and reports how long each engine took.
+ *
+ * Usage: java compiler.scanner.ScannerEquivalence <input-file>...
+ *
+ * Tokens are compared by type, value and line number up to and including
+ * ENDFILE. The program exits with status 1 if any stream differs.
+ */
+public class ScannerEquivalence {
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java compiler.scanner.ScannerEquivalence <input-file>...");
+            System.exit(1);
+        }
+
+        boolean allMatch = true;
+        for (String file : args) {
+            try {
+                allMatch &= check(file);
+            } catch (IOException e) {
+                System.err.println(file + ": " + e.getMessage());
+                allMatch = false;
+            }
+        }
+
+        System.out.println(allMatch ? "All engines match." : "Engines differ.");
+        System.exit(allMatch ? 0 : 1);
+    }
+
+    private static boolean check(String file) throws IOException {
+        List<Token> expected = scan(ScannerFactory.DEFAULT_ENGINE, file);
+        boolean match = true;
+
+        for (String engine : ScannerFactory.ENGINES) {
+            long start = System.nanoTime();
+            List<Token> actual = scan(engine, file);
+            long elapsed = System.nanoTime() - start;
+
+            String mismatch = compare(expected, actual);
+            System.out.printf("%-30s %-8s %7d tokens %10.3f ms  %s%n",
+                    file, engine, actual.size(), elapsed / 1e6,
+                    mismatch == null ? "OK" : mismatch);
+            match &= mismatch == null;
+        }
+        return match;
+    }
+
+    private static List<Token> scan(String engine, String file) throws IOException {
+        scanner scanner = ScannerFactory.create(engine, file);
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = scanner.getToken();
+            tokens.add(token);
+        } while (token.getType() != TokenType.ENDFILE);
+        return tokens;
+    }
+
+    // Describes the first difference between two token streams, or returns
+    // null if they are identical
+    private static String compare(List<Token> expected, List<Token> actual) {
+        int count = Math.min(expected.size(), actual.size());
+        for (int i = 0; i < count; i++) {
+            Token e = expected.get(i);
+            Token a = actual.get(i);
+            if (e.getType() != a.getType() || e.getLineNo() != a.getLineNo()
+                    || !e.getValue().equals(a.getValue())) {
+                return "token " + i + ": expected " + e + ", found " + a;
+            }
+        }
+        if (expected.size() != actual.size()) {
+            return "expected " + expected.size() + " tokens, found " + actual.size();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,157 @@
+package compiler.scanner;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Creates scanners by engine name so the command line tools can switch
+ * between scanner implementations.
+ *
+ * The engines are:
+ * - cminus: the hand-written DFA that reads the file line by line (default)
+ * - mapped: the hand-written DFA over a memory-mapped file
+ * - jflex: the table-driven DFA generated by JFlex from cminus.flex
+ * - parallel: the mapped engine run over chunks of the file on the common
+ *   fork-join pool by ParallelScanner
+ * - pipelined: the cminus engine run on its own thread by
+ *   PipelinedTokenStream, ahead of the parser
+ *
+ * All engines produce the same tokens for ASCII sources; ScannerEquivalence
+ * checks this. The mapped and parallel engines report non-ASCII bytes as
+ * ERROR tokens, and JFlex also counts vertical tabs and form feeds as line
+ * breaks.
+ *
+ * cminusScanner.java is generated; after editing cminus.flex, regenerate it
+ * with: jflex --nobak cminus.flex
+ */
+public final class ScannerFactory {
+    public static final String DEFAULT_ENGINE = "cminus";
+
+    public static final String[] ENGINES = { "cminus", "mapped", "jflex", "parallel", "pipelined" };
+
+    private ScannerFactory() {
+    }
+
+    public static scanner create(String engine, String inputFile) throws IOException {
+        switch (engine) {
+            case "cminus":
+                return new cminus(inputFile);
+            case "mapped":
+                return new cminusMapped(inputFile);
+            case "jflex":
+                return new cminusScanner(new BufferedReader(new FileReader(inputFile)));
+            case "parallel":
+                TokenBuffer.Cursor cursor = new ParallelScanner().scan(inputFile).cursor();
+                return () -> {
+                    cursor.advance();
+                    return new Token(cursor.type(), cursor.text(), cursor.line());
+                };
+            case "pipelined":
+                PipelinedTokenStream tokens = new PipelinedTokenStream(new cminus(inputFile));
+                return () -> {
+                    tokens.advance();
+                    return tokens.token();
+                };
+            default:
+                throw new IllegalArgumentException("Unknown scanner engine: " + engine);
+        }
+    }
+
+    /**
+     * Opens a token stream for the parser. The mapped and parallel engines
+     * scan the whole file into a TokenBuffer first, the pipelined engine
+     * scans on another thread while the parser runs, and the others are read
+     * one token at a time. A pipelined stream should be closed if it is not
+     * read up to ENDFILE.
+     */
+    public static TokenStream open(String engine, String inputFile) throws IOException {
+        if (engine.equals("mapped")) {
+            return new cminusMapped(inputFile).scanAll().cursor();
+        }
+        if (engine.equals("parallel")) {
+            return new ParallelScanner().scan(inputFile).cursor();
+        }
+        if (engine.equals("pipelined")) {
+            return new PipelinedTokenStream(new cminus(inputFile));
+        }
+        return new ScannerTokenStream(create(engine, inputFile));
+    }
+
+    /**
+     * Reads inputFile into memory for scanAhead and open(String,
+     * ByteBuffer), so reading the file and scanning it can be timed apart.
+     * The mapped and parallel engines map the file and load its pages; the
+     * others read it into a heap buffer.
+     */
+    public static ByteBuffer read(String engine, String inputFile) throws IOException {
+        if (scansAhead(engine)) {
+            MappedByteBuffer mapped = cminusMapped.map(inputFile);
+            mapped.load();
+            return mapped;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(Paths.get(inputFile)));
+    }
+
+    /**
+     * @return whether engine scans the whole file before the parser reads
+     *         the first token, as mapped and parallel do
+     */
+    public static boolean scansAhead(String engine) {
+        return engine.equals("mapped") || engine.equals("parallel");
+    }
+
+    /**
+     * Scans all of source into a TokenBuffer for the engines that scan
+     * ahead of the parser, mapped and parallel.
+     *
+     * @return the tokens, or null for the engines that scan as the parser
+     *         reads
+     */
+    public static TokenBuffer scanAhead(String engine, ByteBuffer source) {
+        if (engine.equals("mapped")) {
+            return new cminusMapped(source).scanAll();
+        }
+        if (engine.equals("parallel")) {
+            return new ParallelScanner().scan(source);
+        }
+        return null;
+    }
+
+    /**
+     * Opens a token stream over a source read by read(). The cminus and
+     * jflex engines decode it with the default charset, as FileReader does.
+     */
+    public static TokenStream open(String engine, ByteBuffer source) {
+        TokenBuffer tokens = scanAhead(engine, source);
+        if (tokens != null) {
+            return tokens.cursor();
+        }
+        switch (engine) {
+            case "cminus":
+                return new ScannerTokenStream(new cminus(reader(source)));
+            case "jflex":
+                return new ScannerTokenStream(new cminusScanner(reader(source)));
+            case "pipelined":
+                return new PipelinedTokenStream(new cminus(reader(source)));
+            default:
+                throw new IllegalArgumentException("Unknown scanner engine: " + engine);
+        }
+    }
+
+    private static Reader reader(ByteBuffer source) {
+        byte[] bytes;
+        int offset;
+        if (source.hasArray()) {
+            bytes = source.array();
+            offset = source.arrayOffset() + source.position();
+        } else {
+            bytes = new byte[source.remaining()];
+            source.duplicate().get(bytes);
+            offset = 0;
+        }
+        return new InputStreamReader(new ByteArrayInputStream(bytes, offset, source.remaining()));
+    }
+}
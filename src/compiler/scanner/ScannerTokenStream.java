@@ -0,0 +1,51 @@
+package compiler.scanner;
+
+import java.io.IOException;
+
+/**
+ * Adapts a scanner to the TokenStream interface by pulling one Token at a
+ * time from it.
+ */
+public class ScannerTokenStream implements TokenStream {
+    private final scanner scanner;
+    private Token currentToken;
+
+    public ScannerTokenStream(scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public void advance() throws IOException {
+        currentToken = scanner.getToken();
+    }
+
+    @Override
+    public TokenType type() {
+        return currentToken.getType();
+    }
+
+    @Override
+    public int line() {
+        return currentToken.getLineNo();
+    }
+
+    @Override
+    public String text() {
+        return currentToken.getValue();
+    }
+
+    @Override
+    public int symbol() {
+        int symbol = currentToken.getSymbol();
+        if (symbol == SymbolTable.NO_SYMBOL && currentToken.getType() == TokenType.ID) {
+            // A scanner that does not intern its identifiers
+            symbol = SymbolTable.shared().intern(currentToken.getValue());
+        }
+        return symbol;
+    }
+
+    @Override
+    public int intValue() {
+        return Integer.parseInt(currentToken.getValue());
+    }
+}
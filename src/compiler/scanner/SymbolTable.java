@@ -0,0 +1,214 @@
+package compiler.scanner;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Interns identifier names as dense int symbol IDs, so equal names share one
+ * String and can be compared as ints.
+ *
+ * The scanners intern every ID token into the table returned by shared(),
+ * and the AST stores the symbol IDs. A symbol is never removed, so the
+ * shared table grows with the number of distinct names seen by the process.
+ *
+ * The table is safe to use from many threads. Names are hashed into one of
+ * a fixed number of stripes, each an open-addressing table of symbol IDs.
+ * Looking up a name that is already interned takes no lock and allocates
+ * nothing; adding a new name locks only its stripe.
+ */
+public final class SymbolTable {
+    // Returned by Token.getSymbol() and TokenStream.symbol() for tokens
+    // that are not identifiers
+    public static final int NO_SYMBOL = -1;
+
+    private static final SymbolTable SHARED = new SymbolTable();
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // One open-addressing table; slots hold symbol + 1, with 0 for empty
+    private static final class Stripe {
+        volatile AtomicIntegerArray slots = new AtomicIntegerArray(16);
+        int count;
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // The names by symbol ID, in chunks so the table never has to be copied
+    private volatile String[][] chunks = new String[16][];
+    private int size;
+
+    public SymbolTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return the table shared by the scanners and the AST
+     */
+    public static SymbolTable shared() {
+        return SHARED;
+    }
+
+    public int intern(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        int symbol = find(name, 0, name.length(), hash);
+        return symbol != NO_SYMBOL ? symbol : add(name, hash);
+    }
+
+    public int intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int symbol = find(chars, offset, length, hash);
+        return symbol != NO_SYMBOL ? symbol : add(new String(chars, offset, length), hash);
+    }
+
+    /**
+     * Interns the name held as ISO-8859-1 bytes in source.
+     */
+    public int intern(ByteBuffer source, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + (source.get(i) & 0xFF);
+        }
+        int symbol = find(source, offset, length, hash);
+        if (symbol != NO_SYMBOL) {
+            return symbol;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (source.get(offset + i) & 0xFF);
+        }
+        return add(new String(chars), hash);
+    }
+
+    public String name(int symbol) {
+        return chunks[symbol >>> CHUNK_BITS][symbol & (CHUNK_SIZE - 1)];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private Stripe stripe(int hash) {
+        return stripes[mix(hash) >>> (32 - STRIPE_BITS)];
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Looks the name up without locking. Returns NO_SYMBOL if it is not
+    // there, which may also happen while another thread is adding it.
+    private int find(Object key, int offset, int length, int hash) {
+        AtomicIntegerArray slots = stripe(hash).slots;
+        int mask = slots.length() - 1;
+        for (int i = mix(hash) & mask;; i = (i + 1) & mask) {
+            int entry = slots.get(i);
+            if (entry == 0) {
+                return NO_SYMBOL;
+            }
+            if (matches(name(entry - 1), key, offset, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static boolean matches(String name, Object key, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        if (key instanceof String) {
+            return name.equals(key);
+        }
+        if (key instanceof char[]) {
+            char[] chars = (char[]) key;
+            for (int i = 0; i < length; i++) {
+                if (name.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        ByteBuffer source = (ByteBuffer) key;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != (source.get(offset + i) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(String name, int hash) {
+        Stripe stripe = stripe(hash);
+        synchronized (stripe) {
+            int symbol = find(name, 0, name.length(), hash);
+            if (symbol != NO_SYMBOL) {
+                return symbol;
+            }
+            symbol = newSymbol(name);
+
+            AtomicIntegerArray slots = stripe.slots;
+            if ((stripe.count + 1) * 2 > slots.length()) {
+                slots = rehash(slots);
+            }
+            insert(slots, mix(hash), symbol);
+            stripe.count++;
+            stripe.slots = slots;
+            return symbol;
+        }
+    }
+
+    private static void insert(AtomicIntegerArray slots, int mixed, int symbol) {
+        int mask = slots.length() - 1;
+        int i = mixed & mask;
+        while (slots.get(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        slots.set(i, symbol + 1);
+    }
+
+    private AtomicIntegerArray rehash(AtomicIntegerArray slots) {
+        AtomicIntegerArray larger = new AtomicIntegerArray(slots.length() * 2);
+        for (int i = 0; i < slots.length(); i++) {
+            int entry = slots.get(i);
+            if (entry != 0) {
+                String name = name(entry - 1);
+                int hash = 0;
+                for (int j = 0; j < name.length(); j++) {
+                    hash = 31 * hash + name.charAt(j);
+                }
+                insert(larger, mix(hash), entry - 1);
+            }
+        }
+        return larger;
+    }
+
+    // Stores the name under the next symbol ID. The name is in place before
+    // the caller publishes the ID through a stripe.
+    private synchronized int newSymbol(String name) {
+        int symbol = size;
+        int chunk = symbol >>> CHUNK_BITS;
+        String[][] current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new String[CHUNK_SIZE];
+        }
+        current[chunk][symbol & (CHUNK_SIZE - 1)] = name;
+        chunks = current;
+        size++;
+        return symbol;
+    }
+}
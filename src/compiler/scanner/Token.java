@@ -23,14 +23,21 @@ public class Token {
     private TokenType type;
     private String value;
     private int lineNo;
+    private int symbol;
 
     public Token(TokenType type, String value, int lineNo) {
+        this(type, value, lineNo, SymbolTable.NO_SYMBOL);
+    }
+
+    public Token(TokenType type, String value, int lineNo, int symbol) {
         // Type of the token from the TokenType enum
         this.type = type;
         // String value of the token
         this.value = value;
         // Line number where the token was found
         this.lineNo = lineNo;
+        // Interned symbol of an ID token, or NO_SYMBOL
+        this.symbol = symbol;
     }
 
     public TokenType getType() {
@@ -45,6 +52,10 @@ public class Token {
         return lineNo;
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
     // Puts the token into a string representation of the token
     @Override
     public String toString() {
@@ -0,0 +1,248 @@
+package compiler.scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Stores a whole token stream in parallel primitive arrays instead of one
+ * Token object per token.
+ *
+ * Each token is described by its type ordinal, the offset and length of its
+ * text in the source buffer, its line number, and a value: the number for
+ * NUM tokens and the interned symbol for ID tokens. The text of other tokens
+ * is only copied out of the source when text() or token() is called.
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    // Stored in place of a NUM value that does not fit in an int
+    static final int OVERFLOW = -1;
+
+    private ByteBuffer source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] values;
+    private int size;
+
+    public TokenBuffer(ByteBuffer source, int initialCapacity) {
+        this.source = source;
+        int capacity = Math.max(initialCapacity, 16);
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public void add(TokenType type, int start, int length, int line, int value) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Appends every token of other, which must index the same source.
+     */
+    public void append(TokenBuffer other) {
+        int count = other.size;
+        if (size + count > types.length) {
+            grow(size + count);
+        }
+        System.arraycopy(other.types, 0, types, size, count);
+        System.arraycopy(other.starts, 0, starts, size, count);
+        System.arraycopy(other.lengths, 0, lengths, size, count);
+        System.arraycopy(other.lines, 0, lines, size, count);
+        System.arraycopy(other.values, 0, values, size, count);
+        size += count;
+    }
+
+    /**
+     * Replaces the tokens from index from up to index to with the tokens of
+     * replacement, and moves the tokens after them by startShift bytes and
+     * lineShift lines. The buffer takes over the source of replacement, which
+     * is the edited version of its own source.
+     */
+    public void replace(int from, int to, TokenBuffer replacement, int startShift, int lineShift) {
+        int count = replacement.size;
+        int tail = size - to;
+        int newSize = size - (to - from) + count;
+        if (newSize > types.length) {
+            grow(Math.max(newSize, types.length * 2));
+        }
+        System.arraycopy(types, to, types, from + count, tail);
+        System.arraycopy(starts, to, starts, from + count, tail);
+        System.arraycopy(lengths, to, lengths, from + count, tail);
+        System.arraycopy(lines, to, lines, from + count, tail);
+        System.arraycopy(values, to, values, from + count, tail);
+        for (int i = from + count; i < newSize; i++) {
+            starts[i] += startShift;
+            lines[i] += lineShift;
+        }
+        System.arraycopy(replacement.types, 0, types, from, count);
+        System.arraycopy(replacement.starts, 0, starts, from, count);
+        System.arraycopy(replacement.lengths, 0, lengths, from, count);
+        System.arraycopy(replacement.lines, 0, lines, from, count);
+        System.arraycopy(replacement.values, 0, values, from, count);
+        size = newSize;
+        source = replacement.source;
+    }
+
+    // Drops the tokens from index size on
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    private void grow() {
+        grow(types.length * 2);
+    }
+
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ByteBuffer getSource() {
+        return source;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int intValue(int index) {
+        int value = values[index];
+        if (value == OVERFLOW && TYPES[types[index]] == TokenType.NUM) {
+            throw new NumberFormatException("For input string: \"" + text(index) + "\"");
+        }
+        return value;
+    }
+
+    public int symbol(int index) {
+        return TYPES[types[index]] == TokenType.ID ? values[index] : SymbolTable.NO_SYMBOL;
+    }
+
+    public String text(int index) {
+        if (TYPES[types[index]] == TokenType.ID) {
+            return SymbolTable.shared().name(values[index]);
+        }
+        byte[] bytes = new byte[lengths[index]];
+        source.get(starts[index], bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), text(index), lines[index], symbol(index));
+    }
+
+    public Cursor cursor() {
+        return new Cursor(-1, -1);
+    }
+
+    /**
+     * @return a cursor over the tokens from index from up to index to, which
+     *         reads ENDFILE from to on, on the line of the token before it.
+     *         Its first advance() moves to from.
+     */
+    public Cursor cursor(int from, int to) {
+        return new Cursor(from - 1, to);
+    }
+
+    /**
+     * A TokenStream that walks the buffer by index. The last token is always
+     * ENDFILE; advancing past it behaves like calling a scanner again after
+     * the end of the file, which counts one more line per call.
+     */
+    public class Cursor implements TokenStream {
+        private int index;
+        // The index the cursor reads ENDFILE from, or -1 for the end of the
+        // buffer
+        private final int end;
+
+        Cursor(int index, int end) {
+            this.index = index;
+            this.end = end;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public TokenBuffer getBuffer() {
+            return TokenBuffer.this;
+        }
+
+        public void seek(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void advance() {
+            index++;
+        }
+
+        private int current() {
+            return Math.min(index, size - 1);
+        }
+
+        private boolean atEnd() {
+            return end >= 0 && index >= end;
+        }
+
+        @Override
+        public TokenType type() {
+            return atEnd() ? TokenType.ENDFILE : TYPES[types[current()]];
+        }
+
+        @Override
+        public int line() {
+            if (atEnd()) {
+                return lines[end - 1];
+            }
+            int last = size - 1;
+            return index > last ? lines[last] + (index - last) : lines[index];
+        }
+
+        @Override
+        public String text() {
+            return atEnd() ? "" : TokenBuffer.this.text(current());
+        }
+
+        @Override
+        public int symbol() {
+            return atEnd() ? SymbolTable.NO_SYMBOL : TokenBuffer.this.symbol(current());
+        }
+
+        @Override
+        public int intValue() {
+            return atEnd() ? 0 : TokenBuffer.this.intValue(current());
+        }
+    }
+}
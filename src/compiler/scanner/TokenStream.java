@@ -0,0 +1,38 @@
+package compiler.scanner;
+
+import java.io.IOException;
+
+/**
+ * A cursor over a sequence of tokens. The parser reads the current token
+ * through this interface, so it does not care whether the tokens come one at
+ * a time from a scanner or from a TokenBuffer that was filled in advance.
+ */
+public interface TokenStream {
+    /**
+     * Moves to the next token. Advancing past ENDFILE keeps returning
+     * ENDFILE.
+     *
+     * @throws IOException
+     */
+    void advance() throws IOException;
+
+    TokenType type();
+
+    int line();
+
+    /**
+     * @return the text of the current token, trimmed
+     */
+    String text();
+
+    /**
+     * @return the symbol of the current ID token in SymbolTable.shared()
+     */
+    int symbol();
+
+    /**
+     * @return the value of the current NUM token
+     * @throws NumberFormatException if the number does not fit in an int
+     */
+    int intValue();
+}
@@ -1,7 +1,6 @@
 package compiler.scanner;
 
 import java.io.*;
-import java.util.*;
 
 /**
  * Implements a scanner for the C- programming language
@@ -20,12 +19,15 @@ import java.util.*;
  *          It reads input character by character, recognizing tokens based on
  *          DFA states.
  *          Features include:
- *          - Reserved word recognition
+ *          - Reserved word recognition without building a String
  *          - Comment handling
- *          - Number and identifier tokenization
+ *          - Number and identifier tokenization, with identifiers interned
+ *            in SymbolTable.shared() so a repeated name reuses one String
  *          - Special symbol and operator detection
  *          The scanner maintains line number tracking for error reporting and
- *          supports file input with buffered reading.
+ *          supports file input with buffered reading. ASCII characters are
+ *          classified with a lookup table; the token text is collected in a
+ *          reused char array.
  * 
  */
 
@@ -38,32 +40,26 @@ public class cminus implements scanner {
     private int linePos;
     private int lineNo;
     private boolean EOF_flag;
-    private String tokenString;
+    private final char[] tokenChars;
+    private int tokenLength;
+    private final SymbolTable symbols = SymbolTable.shared();
 
     private enum State {
         START, INLT, INGT, INEQ, INNOT, INSLASH,
         INCOMMENT, INCOMMENTSTAR, INNUM, INID, DONE
     }
 
-    private static final Map<String, TokenType> reservedWords;
-
-    static {
-        reservedWords = new HashMap<>();
-        reservedWords.put("else", TokenType.ELSE);
-        reservedWords.put("if", TokenType.IF);
-        reservedWords.put("int", TokenType.INT);
-        reservedWords.put("return", TokenType.RETURN);
-        reservedWords.put("void", TokenType.VOID);
-        reservedWords.put("while", TokenType.WHILE);
+    public cminus(String inputFile) throws FileNotFoundException {
+        this(new FileReader(inputFile));
     }
 
-    public cminus(String inputFile) throws FileNotFoundException {
-        reader = new BufferedReader(new FileReader(inputFile));
+    public cminus(Reader in) {
+        reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
         currentLine = "";
         linePos = 0;
         lineNo = 0;
         EOF_flag = false;
-        tokenString = "";
+        tokenChars = new char[MAXTOKENLEN];
     }
 
     private int getNextChar() throws IOException {
@@ -88,24 +84,30 @@ public class cminus implements scanner {
         }
     }
 
+    private void saveChar(int c) {
+        if (tokenLength < MAXTOKENLEN)
+            tokenChars[tokenLength++] = (char) c;
+    }
+
     public Token getToken() throws IOException {
-        StringBuilder tokenBuilder = new StringBuilder();
+        tokenLength = 0;
         State state = State.START;
         TokenType currentToken = null;
 
         while (state != State.DONE) {
             int c = getNextChar();
+            int charClass = CharClass.of(c);
             boolean save = true;
 
             switch (state) {
                 case DONE:
                     break;
                 case START:
-                    if (Character.isDigit(c)) {
+                    if (charClass == CharClass.DIGIT) {
                         state = State.INNUM;
-                    } else if (Character.isLetter(c)) {
+                    } else if (charClass == CharClass.LETTER) {
                         state = State.INID;
-                    } else if (Character.isWhitespace(c)) {
+                    } else if (charClass == CharClass.WHITESPACE) {
                         save = false;
                     } else if (c == '<') {
                         state = State.INLT;
@@ -171,8 +173,8 @@ public class cminus implements scanner {
                     } else {
                         state = State.DONE;
                         ungetNextChar();
-                        save = true;
-                        tokenBuilder.append('/');
+                        save = false;
+                        saveChar('/');
                         currentToken = TokenType.OVER;
                     }
                     break;
@@ -202,6 +204,7 @@ public class cminus implements scanner {
                         currentToken = TokenType.LTE;
                     else {
                         ungetNextChar();
+                        save = false;
                         currentToken = TokenType.LT;
                     }
                     break;
@@ -211,6 +214,7 @@ public class cminus implements scanner {
                         currentToken = TokenType.GTE;
                     else {
                         ungetNextChar();
+                        save = false;
                         currentToken = TokenType.GT;
                     }
                     break;
@@ -220,6 +224,7 @@ public class cminus implements scanner {
                         currentToken = TokenType.EQ;
                     else {
                         ungetNextChar();
+                        save = false;
                         currentToken = TokenType.ASSIGN;
                     }
                     break;
@@ -234,11 +239,10 @@ public class cminus implements scanner {
                     }
                     break;
                 case INNUM:
-                    if (Character.isLetter(c)) {
-                        tokenString += (char) c;
+                    if (charClass == CharClass.LETTER) {
                         currentToken = TokenType.ERROR;
                         state = State.DONE;
-                    } else if (!Character.isDigit(c)) {
+                    } else if (charClass != CharClass.DIGIT) {
                         ungetNextChar();
                         save = false;
                         state = State.DONE;
@@ -246,7 +250,7 @@ public class cminus implements scanner {
                     }
                     break;
                 case INID:
-                    if (!Character.isLetterOrDigit(c)) {
+                    if (charClass != CharClass.LETTER && charClass != CharClass.DIGIT) {
                         ungetNextChar();
                         save = false;
                         state = State.DONE;
@@ -255,15 +259,24 @@ public class cminus implements scanner {
                     break;
             }
 
-            if (save && tokenBuilder.length() < MAXTOKENLEN)
-                tokenBuilder.append((char) c);
+            if (save)
+                saveChar(c);
+        }
 
-            if (state == State.DONE) {
-                tokenString = tokenBuilder.toString();
-                if (currentToken == TokenType.ID)
-                    currentToken = reservedWords.getOrDefault(tokenString, TokenType.ID);
-            }
+        if (currentToken == TokenType.ID)
+            currentToken = ReservedWords.lookup(tokenChars, 0, tokenLength);
+
+        // Trim the way String.trim() would, without the extra String
+        int start = 0;
+        int end = tokenLength;
+        while (start < end && tokenChars[start] <= ' ')
+            start++;
+        while (end > start && tokenChars[end - 1] <= ' ')
+            end--;
+        if (currentToken == TokenType.ID) {
+            int symbol = symbols.intern(tokenChars, start, end - start);
+            return new Token(currentToken, symbols.name(symbol), lineNo, symbol);
         }
-        return new Token(currentToken, tokenString.trim(), lineNo);
+        return new Token(currentToken, new String(tokenChars, start, end - start), lineNo);
     }
 }
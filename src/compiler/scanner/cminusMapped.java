@@ -0,0 +1,404 @@
+package compiler.scanner;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implements a scanner for the C- programming language that reads its input
+ * from a memory-mapped file instead of line by line.
+ *
+ * @author Asher Antrim & Ethan Emery
+ * @version 1.0
+ *          File: cminusMapped.java
+ *          Created: 18-Oct-2026
+ *          ©Copyright Cedarville University, its Computer Science faculty, and
+ *          the
+ *          authors. All rights reserved.
+ *
+ *          Description: This scanner runs the same DFA as cminus, but the
+ *          source file is mapped into memory once with FileChannel.map and the
+ *          ASCII bytes are read directly by offset. No String is built per
+ *          line; a token's text is only copied out of the mapping when the
+ *          Token is created. scanAll() skips the Token objects entirely and
+ *          fills a TokenBuffer.
+ *          Features include:
+ *          - The same token types, values and line numbers as cminus
+ *          - CR and CR/LF line endings treated like BufferedReader.readLine()
+ *          - A final line without a line terminator is still terminated
+ *          Bytes outside of the ASCII range are reported as ERROR tokens.
+ *          Input files must be smaller than 2 GB.
+ *
+ */
+
+public class cminusMapped implements scanner {
+
+    static final int MAXTOKENLEN = 40;
+
+    private final ByteBuffer source;
+    private final int limit;
+    private int pos;
+    private int lineNo;
+    private boolean atLineStart;
+    private boolean inComment;
+    private boolean hitEnd;
+    private int markPos;
+    private int tokenStart;
+    private int tokenLength;
+    private final byte[] textBuffer = new byte[MAXTOKENLEN];
+    private final SymbolTable symbols = SymbolTable.shared();
+
+    private enum State {
+        START, INLT, INGT, INEQ, INNOT, INSLASH,
+        INCOMMENT, INCOMMENTSTAR, INNUM, INID, DONE
+    }
+
+    public cminusMapped(String inputFile) throws IOException {
+        this(map(inputFile));
+    }
+
+    /**
+     * Scans a buffer that is already in memory, from its first byte to its
+     * limit.
+     */
+    public cminusMapped(ByteBuffer source) {
+        this(source, 0, -1, 1, false);
+    }
+
+    /**
+     * Scans source from start up to end, which must either be the end of the
+     * buffer or just after a '\n'. start must be at the beginning of a line,
+     * or where an earlier scan began a token, on line number line, and
+     * inComment tells whether it is inside a comment. An end of -1 means the
+     * end of the buffer.
+     */
+    cminusMapped(ByteBuffer source, int start, int end, int line, boolean inComment) {
+        this.source = source;
+        this.limit = end < 0 ? source.limit() : end;
+        this.pos = start;
+        this.lineNo = line - 1;
+        this.atLineStart = true;
+        this.inComment = inComment;
+    }
+
+    static MappedByteBuffer map(String inputFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + inputFile);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    // Returns the next character, collapsing CR and CR/LF into '\n' and
+    // supplying the '\n' missing from a final unterminated line
+    private int getNextChar() {
+        markPos = pos;
+        if (atLineStart) {
+            lineNo++;
+            if (pos >= limit) {
+                hitEnd = true;
+                return -1;
+            }
+            atLineStart = false;
+        }
+        if (pos >= limit) {
+            atLineStart = true;
+            return '\n';
+        }
+        int c = source.get(pos++) & 0xFF;
+        if (c == '\r') {
+            if (pos < limit && source.get(pos) == '\n') {
+                pos++;
+            }
+            c = '\n';
+        }
+        if (c == '\n') {
+            atLineStart = true;
+        }
+        return c;
+    }
+
+    private void ungetNextChar(int c) {
+        if (c != -1) {
+            pos = markPos;
+            atLineStart = false;
+        }
+    }
+
+    public Token getToken() {
+        TokenType type = scan();
+        if (type == TokenType.ID) {
+            int symbol = symbols.intern(source, tokenStart, tokenLength);
+            return new Token(type, symbols.name(symbol), lineNo, symbol);
+        }
+        return new Token(type, tokenText(), lineNo);
+    }
+
+    /**
+     * Scans the rest of the file into a TokenBuffer without creating a Token
+     * or a String per token. The last token in the buffer is ENDFILE.
+     *
+     * @return the filled buffer
+     */
+    public TokenBuffer scanAll() {
+        TokenBuffer buffer = new TokenBuffer(source, (limit - pos) / 4);
+        scanRange(buffer, true);
+        return buffer;
+    }
+
+    /**
+     * Scans up to the end of the range into buffer. When last is false the
+     * range is followed by more of the file, so reaching its end adds neither
+     * ENDFILE nor the ERROR for a comment that is still open.
+     */
+    void scanRange(TokenBuffer buffer, boolean last) {
+        TokenType type;
+        do {
+            type = scan();
+            if (hitEnd && !last) {
+                return;
+            }
+            add(buffer, type);
+        } while (type != TokenType.ENDFILE);
+    }
+
+    /**
+     * Scans one token into buffer and returns its type.
+     */
+    TokenType scanInto(TokenBuffer buffer) {
+        TokenType type = scan();
+        add(buffer, type);
+        return type;
+    }
+
+    private void add(TokenBuffer buffer, TokenType type) {
+        int value = 0;
+        if (type == TokenType.NUM) {
+            value = numberValue();
+        } else if (type == TokenType.ID) {
+            value = symbols.intern(source, tokenStart, tokenLength);
+        }
+        buffer.add(type, tokenStart, tokenLength, lineNo, value);
+    }
+
+    // Runs the DFA for one token and leaves the trimmed text of the token in
+    // tokenStart and tokenLength
+    private TokenType scan() {
+        int start = pos;
+        int length = 0;
+        State state = inComment ? State.INCOMMENT : State.START;
+        TokenType currentToken = null;
+        inComment = false;
+
+        while (state != State.DONE) {
+            int c = getNextChar();
+            int charClass = CharClass.ascii(c);
+            boolean save = true;
+
+            switch (state) {
+                case DONE:
+                    break;
+                case START:
+                    start = markPos;
+                    if (charClass == CharClass.DIGIT) {
+                        state = State.INNUM;
+                    } else if (charClass == CharClass.LETTER) {
+                        state = State.INID;
+                    } else if (charClass == CharClass.WHITESPACE) {
+                        save = false;
+                    } else if (c == '<') {
+                        state = State.INLT;
+                    } else if (c == '>') {
+                        state = State.INGT;
+                    } else if (c == '=') {
+                        state = State.INEQ;
+                    } else if (c == '!') {
+                        state = State.INNOT;
+                    } else if (c == '/') {
+                        save = false;
+                        state = State.INSLASH;
+                    } else {
+                        state = State.DONE;
+                        switch (c) {
+                            case -1:
+                                save = false;
+                                currentToken = TokenType.ENDFILE;
+                                break;
+                            case '+':
+                                currentToken = TokenType.PLUS;
+                                break;
+                            case '-':
+                                currentToken = TokenType.MINUS;
+                                break;
+                            case '*':
+                                currentToken = TokenType.TIMES;
+                                break;
+                            case ';':
+                                currentToken = TokenType.SEMI;
+                                break;
+                            case ',':
+                                currentToken = TokenType.COMMA;
+                                break;
+                            case '(':
+                                currentToken = TokenType.LPAREN;
+                                break;
+                            case ')':
+                                currentToken = TokenType.RPAREN;
+                                break;
+                            case '[':
+                                currentToken = TokenType.LBRACK;
+                                break;
+                            case ']':
+                                currentToken = TokenType.RBRACK;
+                                break;
+                            case '{':
+                                currentToken = TokenType.LBRACE;
+                                break;
+                            case '}':
+                                currentToken = TokenType.RBRACE;
+                                break;
+                            default:
+                                currentToken = TokenType.ERROR;
+                                break;
+                        }
+                    }
+                    break;
+                case INSLASH:
+                    if (c == '*') {
+                        state = State.INCOMMENT;
+                        save = false;
+                    } else {
+                        state = State.DONE;
+                        ungetNextChar(c);
+                        save = false;
+                        length++;
+                        currentToken = TokenType.OVER;
+                    }
+                    break;
+                case INCOMMENT:
+                    save = false;
+                    if (c == -1) {
+                        currentToken = TokenType.ERROR;
+                        state = State.DONE;
+                    } else if (c == '*') {
+                        state = State.INCOMMENTSTAR;
+                    }
+                    break;
+                case INCOMMENTSTAR:
+                    save = false;
+                    if (c == -1) {
+                        currentToken = TokenType.ERROR;
+                        state = State.DONE;
+                    } else if (c == '/') {
+                        state = State.START;
+                    } else if (c != '*') {
+                        state = State.INCOMMENT;
+                    }
+                    break;
+                case INLT:
+                    state = State.DONE;
+                    if (c == '=')
+                        currentToken = TokenType.LTE;
+                    else {
+                        ungetNextChar(c);
+                        save = false;
+                        currentToken = TokenType.LT;
+                    }
+                    break;
+                case INGT:
+                    state = State.DONE;
+                    if (c == '=')
+                        currentToken = TokenType.GTE;
+                    else {
+                        ungetNextChar(c);
+                        save = false;
+                        currentToken = TokenType.GT;
+                    }
+                    break;
+                case INEQ:
+                    state = State.DONE;
+                    if (c == '=')
+                        currentToken = TokenType.EQ;
+                    else {
+                        ungetNextChar(c);
+                        save = false;
+                        currentToken = TokenType.ASSIGN;
+                    }
+                    break;
+                case INNOT:
+                    state = State.DONE;
+                    if (c == '=')
+                        currentToken = TokenType.NEQ;
+                    else {
+                        ungetNextChar(c);
+                        save = false;
+                        currentToken = TokenType.ERROR;
+                    }
+                    break;
+                case INNUM:
+                    if (charClass == CharClass.LETTER) {
+                        currentToken = TokenType.ERROR;
+                        state = State.DONE;
+                    } else if (charClass != CharClass.DIGIT) {
+                        ungetNextChar(c);
+                        save = false;
+                        state = State.DONE;
+                        currentToken = TokenType.NUM;
+                    }
+                    break;
+                case INID:
+                    if (charClass != CharClass.LETTER && charClass != CharClass.DIGIT) {
+                        ungetNextChar(c);
+                        save = false;
+                        state = State.DONE;
+                        currentToken = TokenType.ID;
+                    }
+                    break;
+            }
+
+            if (save && length < MAXTOKENLEN)
+                length++;
+        }
+
+        trimToken(start, Math.min(length, MAXTOKENLEN));
+        if (currentToken == TokenType.ID)
+            currentToken = ReservedWords.lookup(source, tokenStart, tokenLength);
+        return currentToken;
+    }
+
+    // Drops the whitespace and control characters around the token the way
+    // String.trim() does
+    private void trimToken(int start, int length) {
+        int end = Math.min(start + length, limit);
+        while (start < end && (source.get(start) & 0xFF) <= ' ')
+            start++;
+        while (end > start && (source.get(end - 1) & 0xFF) <= ' ')
+            end--;
+        tokenStart = start;
+        tokenLength = end - start;
+    }
+
+    private String tokenText() {
+        source.get(tokenStart, textBuffer, 0, tokenLength);
+        return new String(textBuffer, 0, tokenLength, StandardCharsets.ISO_8859_1);
+    }
+
+    // Parses the digits of the current NUM token, or returns
+    // TokenBuffer.OVERFLOW if they do not fit in an int
+    private int numberValue() {
+        int value = 0;
+        for (int i = tokenStart; i < tokenStart + tokenLength; i++) {
+            int digit = source.get(i) - '0';
+            if (value > (Integer.MAX_VALUE - digit) / 10)
+                return TokenBuffer.OVERFLOW;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
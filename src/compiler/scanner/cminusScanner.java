@@ -0,0 +1,930 @@
+// DO NOT EDIT
+// Generated by JFlex 1.9.1 http://jflex.de/
+// source: cminus.flex
+
+package compiler.scanner;
+
+
+@SuppressWarnings("fallthrough")
+public class cminusScanner implements scanner {
+
+  /** This character denotes the end of file. */
+  public static final int YYEOF = -1;
+
+  /** Initial size of the lookahead buffer. */
+  private static final int ZZ_BUFFERSIZE = 16384;
+
+  // Lexical states.
+  public static final int YYINITIAL = 0;
+  public static final int COMMENT = 2;
+
+  /**
+   * ZZ_LEXSTATE[l] is the state in the DFA for the lexical state l
+   * ZZ_LEXSTATE[l+1] is the state in the DFA for the lexical state l
+   *                  at the beginning of a line
+   * l is of the form l = 2*k, k a non negative integer
+   */
+  private static final int ZZ_LEXSTATE[] = {
+     0,  0,  1, 1
+  };
+
+  /**
+   * Top-level table for translating characters to character classes
+   */
+  private static final int [] ZZ_CMAP_TOP = zzUnpackcmap_top();
+
+  private static final String ZZ_CMAP_TOP_PACKED_0 =
+    "\1\0\u10ff\u0100";
+
+  private static int [] zzUnpackcmap_top() {
+    int [] result = new int[4352];
+    int offset = 0;
+    offset = zzUnpackcmap_top(ZZ_CMAP_TOP_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackcmap_top(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+
+  /**
+   * Second-level tables for translating characters to character classes
+   */
+  private static final int [] ZZ_CMAP_BLOCKS = zzUnpackcmap_blocks();
+
+  private static final String ZZ_CMAP_BLOCKS_PACKED_0 =
+    "\11\0\1\1\1\2\3\1\16\0\5\1\1\3\6\0"+
+    "\1\4\1\5\1\6\1\7\1\10\1\11\1\0\1\12"+
+    "\12\13\1\0\1\14\1\15\1\16\1\17\2\0\32\20"+
+    "\1\21\1\0\1\22\3\0\3\20\1\23\1\24\1\25"+
+    "\1\20\1\26\1\27\2\20\1\30\1\20\1\31\1\32"+
+    "\2\20\1\33\1\34\1\35\1\36\1\37\1\40\3\20"+
+    "\1\41\1\0\1\42\u0182\0";
+
+  private static int [] zzUnpackcmap_blocks() {
+    int [] result = new int[512];
+    int offset = 0;
+    offset = zzUnpackcmap_blocks(ZZ_CMAP_BLOCKS_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackcmap_blocks(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+  /**
+   * Translates DFA states to action switch labels.
+   */
+  private static final int [] ZZ_ACTION = zzUnpackAction();
+
+  private static final String ZZ_ACTION_PACKED_0 =
+    "\2\0\1\1\1\2\1\1\1\3\1\4\1\5\1\6"+
+    "\1\7\1\10\1\11\1\12\1\13\1\14\1\15\1\16"+
+    "\1\17\1\20\1\21\5\17\1\22\1\23\3\2\1\24"+
+    "\1\25\1\26\1\27\1\30\1\31\1\17\1\32\4\17"+
+    "\1\33\1\17\1\34\3\17\1\35\1\17\1\36\2\17"+
+    "\1\37\1\40";
+
+  private static int [] zzUnpackAction() {
+    int [] result = new int[55];
+    int offset = 0;
+    offset = zzUnpackAction(ZZ_ACTION_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackAction(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+
+  /**
+   * Translates a state to a row index in the transition table
+   */
+  private static final int [] ZZ_ROWMAP = zzUnpackRowMap();
+
+  private static final String ZZ_ROWMAP_PACKED_0 =
+    "\0\0\0\43\0\106\0\151\0\214\0\106\0\106\0\106"+
+    "\0\106\0\106\0\106\0\257\0\322\0\106\0\365\0\u0118"+
+    "\0\u013b\0\u015e\0\106\0\106\0\u0181\0\u01a4\0\u01c7\0\u01ea"+
+    "\0\u020d\0\106\0\106\0\u0230\0\106\0\u0253\0\106\0\106"+
+    "\0\106\0\106\0\106\0\106\0\u0276\0\u015e\0\u0299\0\u02bc"+
+    "\0\u02df\0\u0302\0\106\0\u0325\0\u015e\0\u0348\0\u036b\0\u038e"+
+    "\0\u015e\0\u03b1\0\u015e\0\u03d4\0\u03f7\0\u015e\0\u015e";
+
+  private static int [] zzUnpackRowMap() {
+    int [] result = new int[55];
+    int offset = 0;
+    offset = zzUnpackRowMap(ZZ_ROWMAP_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackRowMap(String packed, int offset, int [] result) {
+    int i = 0;  /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length() - 1;
+    while (i < l) {
+      int high = packed.charAt(i++) << 16;
+      result[j++] = high | packed.charAt(i++);
+    }
+    return j;
+  }
+
+  /**
+   * The transition table of the DFA
+   */
+  private static final int [] ZZ_TRANS = zzUnpacktrans();
+
+  private static final String ZZ_TRANS_PACKED_0 =
+    "\1\3\2\4\1\5\1\6\1\7\1\10\1\11\1\12"+
+    "\1\13\1\14\1\15\1\16\1\17\1\20\1\21\1\22"+
+    "\1\23\1\24\1\22\1\25\2\22\1\26\3\22\1\27"+
+    "\3\22\1\30\1\31\1\32\1\33\2\34\1\35\3\34"+
+    "\1\36\34\34\44\0\2\4\56\0\1\37\32\0\1\40"+
+    "\47\0\1\15\4\0\1\41\2\0\16\41\20\0\1\42"+
+    "\42\0\1\43\42\0\1\44\37\0\1\22\4\0\1\22"+
+    "\2\0\16\22\15\0\1\22\4\0\1\22\2\0\5\22"+
+    "\1\45\10\22\15\0\1\22\4\0\1\22\2\0\2\22"+
+    "\1\46\3\22\1\47\7\22\15\0\1\22\4\0\1\22"+
+    "\2\0\1\22\1\50\14\22\15\0\1\22\4\0\1\22"+
+    "\2\0\7\22\1\51\6\22\15\0\1\22\4\0\1\22"+
+    "\2\0\3\22\1\52\12\22\2\0\2\34\1\0\3\34"+
+    "\1\0\34\34\12\0\1\53\43\0\1\22\4\0\1\22"+
+    "\2\0\11\22\1\54\4\22\15\0\1\22\4\0\1\22"+
+    "\2\0\12\22\1\55\3\22\15\0\1\22\4\0\1\22"+
+    "\2\0\12\22\1\56\3\22\15\0\1\22\4\0\1\22"+
+    "\2\0\4\22\1\57\11\22\15\0\1\22\4\0\1\22"+
+    "\2\0\4\22\1\60\11\22\15\0\1\22\4\0\1\22"+
+    "\2\0\1\22\1\61\14\22\15\0\1\22\4\0\1\22"+
+    "\2\0\13\22\1\62\2\22\15\0\1\22\4\0\1\22"+
+    "\2\0\1\63\15\22\15\0\1\22\4\0\1\22\2\0"+
+    "\5\22\1\64\10\22\15\0\1\22\4\0\1\22\2\0"+
+    "\10\22\1\65\5\22\15\0\1\22\4\0\1\22\2\0"+
+    "\1\22\1\66\14\22\15\0\1\22\4\0\1\22\2\0"+
+    "\6\22\1\67\7\22\2\0";
+
+  private static int [] zzUnpacktrans() {
+    int [] result = new int[1050];
+    int offset = 0;
+    offset = zzUnpacktrans(ZZ_TRANS_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpacktrans(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      value--;
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+
+  /** Error code for "Unknown internal scanner error". */
+  private static final int ZZ_UNKNOWN_ERROR = 0;
+  /** Error code for "could not match input". */
+  private static final int ZZ_NO_MATCH = 1;
+  /** Error code for "pushback value was too large". */
+  private static final int ZZ_PUSHBACK_2BIG = 2;
+
+  /**
+   * Error messages for {@link #ZZ_UNKNOWN_ERROR}, {@link #ZZ_NO_MATCH}, and
+   * {@link #ZZ_PUSHBACK_2BIG} respectively.
+   */
+  private static final String ZZ_ERROR_MSG[] = {
+    "Unknown internal scanner error",
+    "Error: could not match input",
+    "Error: pushback value was too large"
+  };
+
+  /**
+   * ZZ_ATTRIBUTE[aState] contains the attributes of state {@code aState}
+   */
+  private static final int [] ZZ_ATTRIBUTE = zzUnpackAttribute();
+
+  private static final String ZZ_ATTRIBUTE_PACKED_0 =
+    "\2\0\1\11\2\1\6\11\2\1\1\11\4\1\2\11"+
+    "\5\1\2\11\1\1\1\11\1\1\6\11\6\1\1\11"+
+    "\14\1";
+
+  private static int [] zzUnpackAttribute() {
+    int [] result = new int[55];
+    int offset = 0;
+    offset = zzUnpackAttribute(ZZ_ATTRIBUTE_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackAttribute(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+  /** Input device. */
+  private java.io.Reader zzReader;
+
+  /** Current state of the DFA. */
+  private int zzState;
+
+  /** Current lexical state. */
+  private int zzLexicalState = YYINITIAL;
+
+  /**
+   * This buffer contains the current text to be matched and is the source of the {@link #yytext()}
+   * string.
+   */
+  private char zzBuffer[] = new char[Math.min(ZZ_BUFFERSIZE, zzMaxBufferLen())];
+
+  /** Text position at the last accepting state. */
+  private int zzMarkedPos;
+
+  /** Current text position in the buffer. */
+  private int zzCurrentPos;
+
+  /** Marks the beginning of the {@link #yytext()} string in the buffer. */
+  private int zzStartRead;
+
+  /** Marks the last character in the buffer, that has been read from input. */
+  private int zzEndRead;
+
+  /**
+   * Whether the scanner is at the end of file.
+   * @see #yyatEOF
+   */
+  private boolean zzAtEOF;
+
+  /**
+   * The number of occupied positions in {@link #zzBuffer} beyond {@link #zzEndRead}.
+   *
+   * <p>When a lead/high surrogate has been read from the input stream into the final
+   * {@link #zzBuffer} position, this will have a value of 1; otherwise, it will have a value of 0.
+   */
+  private int zzFinalHighSurrogate = 0;
+
+  /** Number of newlines encountered up to the start of the matched text. */
+  private int yyline;
+
+  /** Number of characters from the last newline up to the start of the matched text. */
+  private int yycolumn;
+
+  /** Number of characters up to the start of the matched text. */
+  @SuppressWarnings("unused")
+  private long yychar;
+
+  /** Whether the scanner is currently at the beginning of a line. */
+  @SuppressWarnings("unused")
+  private boolean zzAtBOL = true;
+
+  /** Whether the user-EOF-code has already been executed. */
+  @SuppressWarnings("unused")
+  private boolean zzEOFDone;
+
+  /* user code: */
+    private static final int MAXTOKENLEN = 40;
+
+    // Number of times the end of the file has been reported
+    private int eofCount = 0;
+
+    private Token createToken(TokenType type, String value) {
+        if (value.length() > MAXTOKENLEN) {
+            value = value.substring(0, MAXTOKENLEN);
+        }
+        if (type == TokenType.ID) {
+            int symbol = SymbolTable.shared().intern(value);
+            return new Token(type, SymbolTable.shared().name(symbol), yyline + 1, symbol);
+        }
+        return new Token(type, value, yyline + 1);
+    }
+
+    // Reports the end of the file on the line after the last one, counting
+    // an unterminated last line, and one line further on each call after
+    // that, the same as cminus does
+    private Token endToken(TokenType type) {
+        int line = yyline + (yycolumn > 0 ? 2 : 1) + eofCount;
+        eofCount++;
+        return new Token(type, "", line);
+    }
+
+
+  /**
+   * Creates a new scanner
+   *
+   * @param   in  the java.io.Reader to read input from.
+   */
+  public cminusScanner(java.io.Reader in) {
+    this.zzReader = in;
+  }
+
+
+  /** Returns the maximum size of the scanner buffer, which limits the size of tokens. */
+  private int zzMaxBufferLen() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**  Whether the scanner buffer can grow to accommodate a larger token. */
+  private boolean zzCanGrow() {
+    return true;
+  }
+
+  /**
+   * Translates raw input code points to DFA table row
+   */
+  private static int zzCMap(int input) {
+    int offset = input & 255;
+    return offset == input ? ZZ_CMAP_BLOCKS[offset] : ZZ_CMAP_BLOCKS[ZZ_CMAP_TOP[input >> 8] | offset];
+  }
+
+  /**
+   * Refills the input buffer.
+   *
+   * @return {@code false} iff there was new input.
+   * @exception java.io.IOException  if any I/O-Error occurs
+   */
+  private boolean zzRefill() throws java.io.IOException {
+
+    /* first: make room (if you can) */
+    if (zzStartRead > 0) {
+      zzEndRead += zzFinalHighSurrogate;
+      zzFinalHighSurrogate = 0;
+      System.arraycopy(zzBuffer, zzStartRead,
+                       zzBuffer, 0,
+                       zzEndRead - zzStartRead);
+
+      /* translate stored positions */
+      zzEndRead -= zzStartRead;
+      zzCurrentPos -= zzStartRead;
+      zzMarkedPos -= zzStartRead;
+      zzStartRead = 0;
+    }
+
+    /* is the buffer big enough? */
+    if (zzCurrentPos >= zzBuffer.length - zzFinalHighSurrogate && zzCanGrow()) {
+      /* if not, and it can grow: blow it up */
+      char newBuffer[] = new char[Math.min(zzBuffer.length * 2, zzMaxBufferLen())];
+      System.arraycopy(zzBuffer, 0, newBuffer, 0, zzBuffer.length);
+      zzBuffer = newBuffer;
+      zzEndRead += zzFinalHighSurrogate;
+      zzFinalHighSurrogate = 0;
+    }
+
+    /* fill the buffer with new input */
+    int requested = zzBuffer.length - zzEndRead;
+    int numRead = zzReader.read(zzBuffer, zzEndRead, requested);
+
+    /* not supposed to occur according to specification of java.io.Reader */
+    if (numRead == 0) {
+      if (requested == 0) {
+        throw new java.io.EOFException("Scan buffer limit reached ["+zzBuffer.length+"]");
+      }
+      else {
+        throw new java.io.IOException(
+            "Reader returned 0 characters. See JFlex examples/zero-reader for a workaround.");
+      }
+    }
+    if (numRead > 0) {
+      zzEndRead += numRead;
+      if (Character.isHighSurrogate(zzBuffer[zzEndRead - 1])) {
+        if (numRead == requested) { // We requested too few chars to encode a full Unicode character
+          --zzEndRead;
+          zzFinalHighSurrogate = 1;
+        } else {                    // There is room in the buffer for at least one more char
+          int c = zzReader.read();  // Expecting to read a paired low surrogate char
+          if (c == -1) {
+            return true;
+          } else {
+            zzBuffer[zzEndRead++] = (char)c;
+          }
+        }
+      }
+      /* potentially more input available */
+      return false;
+    }
+
+    /* numRead < 0 ==> end of stream */
+    return true;
+  }
+
+
+  /**
+   * Closes the input reader.
+   *
+   * @throws java.io.IOException if the reader could not be closed.
+   */
+  public final void yyclose() throws java.io.IOException {
+    zzAtEOF = true; // indicate end of file
+    zzEndRead = zzStartRead; // invalidate buffer
+
+    if (zzReader != null) {
+      zzReader.close();
+    }
+  }
+
+
+  /**
+   * Resets the scanner to read from a new input stream.
+   *
+   * <p>Does not close the old reader.
+   *
+   * <p>All internal variables are reset, the old input stream <b>cannot</b> be reused (internal
+   * buffer is discarded and lost). Lexical state is set to {@code ZZ_INITIAL}.
+   *
+   * <p>Internal scan buffer is resized down to its initial length, if it has grown.
+   *
+   * @param reader The new input stream.
+   */
+  public final void yyreset(java.io.Reader reader) {
+    zzReader = reader;
+    zzEOFDone = false;
+    yyResetPosition();
+    zzLexicalState = YYINITIAL;
+    int initBufferSize = Math.min(ZZ_BUFFERSIZE, zzMaxBufferLen());
+    if (zzBuffer.length > initBufferSize) {
+      zzBuffer = new char[initBufferSize];
+    }
+  }
+
+  /**
+   * Resets the input position.
+   */
+  private final void yyResetPosition() {
+      zzAtBOL  = true;
+      zzAtEOF  = false;
+      zzCurrentPos = 0;
+      zzMarkedPos = 0;
+      zzStartRead = 0;
+      zzEndRead = 0;
+      zzFinalHighSurrogate = 0;
+      yyline = 0;
+      yycolumn = 0;
+      yychar = 0L;
+  }
+
+
+  /**
+   * Returns whether the scanner has reached the end of the reader it reads from.
+   *
+   * @return whether the scanner has reached EOF.
+   */
+  public final boolean yyatEOF() {
+    return zzAtEOF;
+  }
+
+
+  /**
+   * Returns the current lexical state.
+   *
+   * @return the current lexical state.
+   */
+  public final int yystate() {
+    return zzLexicalState;
+  }
+
+
+  /**
+   * Enters a new lexical state.
+   *
+   * @param newState the new lexical state
+   */
+  public final void yybegin(int newState) {
+    zzLexicalState = newState;
+  }
+
+
+  /**
+   * Returns the text matched by the current regular expression.
+   *
+   * @return the matched text.
+   */
+  public final String yytext() {
+    return new String(zzBuffer, zzStartRead, zzMarkedPos-zzStartRead);
+  }
+
+
+  /**
+   * Returns the character at the given position from the matched text.
+   *
+   * <p>It is equivalent to {@code yytext().charAt(pos)}, but faster.
+   *
+   * @param position the position of the character to fetch. A value from 0 to {@code yylength()-1}.
+   *
+   * @return the character at {@code position}.
+   */
+  public final char yycharat(int position) {
+    return zzBuffer[zzStartRead + position];
+  }
+
+
+  /**
+   * How many characters were matched.
+   *
+   * @return the length of the matched text region.
+   */
+  public final int yylength() {
+    return zzMarkedPos-zzStartRead;
+  }
+
+
+  /**
+   * Reports an error that occurred while scanning.
+   *
+   * <p>In a well-formed scanner (no or only correct usage of {@code yypushback(int)} and a
+   * match-all fallback rule) this method will only be called with things that
+   * "Can't Possibly Happen".
+   *
+   * <p>If this method is called, something is seriously wrong (e.g. a JFlex bug producing a faulty
+   * scanner etc.).
+   *
+   * <p>Usual syntax/scanner level error handling should be done in error fallback rules.
+   *
+   * @param errorCode the code of the error message to display.
+   */
+  private static void zzScanError(int errorCode) {
+    String message;
+    try {
+      message = ZZ_ERROR_MSG[errorCode];
+    } catch (ArrayIndexOutOfBoundsException e) {
+      message = ZZ_ERROR_MSG[ZZ_UNKNOWN_ERROR];
+    }
+
+    throw new Error(message);
+  }
+
+
+  /**
+   * Pushes the specified amount of characters back into the input stream.
+   *
+   * <p>They will be read again by then next call of the scanning method.
+   *
+   * @param number the number of characters to be read again. This number must not be greater than
+   *     {@link #yylength()}.
+   */
+  public void yypushback(int number)  {
+    if ( number > yylength() )
+      zzScanError(ZZ_PUSHBACK_2BIG);
+
+    zzMarkedPos -= number;
+  }
+
+
+
+
+  /**
+   * Resumes scanning until the next regular expression is matched, the end of input is encountered
+   * or an I/O-Error occurs.
+   *
+   * @return the next token.
+   * @exception java.io.IOException if any I/O-Error occurs.
+   */
+  public Token getToken() throws java.io.IOException
+  {
+    int zzInput;
+    int zzAction;
+
+    // cached fields:
+    int zzCurrentPosL;
+    int zzMarkedPosL;
+    int zzEndReadL = zzEndRead;
+    char[] zzBufferL = zzBuffer;
+
+    int [] zzTransL = ZZ_TRANS;
+    int [] zzRowMapL = ZZ_ROWMAP;
+    int [] zzAttrL = ZZ_ATTRIBUTE;
+
+    while (true) {
+      zzMarkedPosL = zzMarkedPos;
+
+      boolean zzR = false;
+      int zzCh;
+      int zzCharCount;
+      for (zzCurrentPosL = zzStartRead  ;
+           zzCurrentPosL < zzMarkedPosL ;
+           zzCurrentPosL += zzCharCount ) {
+        zzCh = Character.codePointAt(zzBufferL, zzCurrentPosL, zzMarkedPosL);
+        zzCharCount = Character.charCount(zzCh);
+        switch (zzCh) {
+        case '\u000B':  // fall through
+        case '\u000C':  // fall through
+        case '\u0085':  // fall through
+        case '\u2028':  // fall through
+        case '\u2029':
+          yyline++;
+          yycolumn = 0;
+          zzR = false;
+          break;
+        case '\r':
+          yyline++;
+          yycolumn = 0;
+          zzR = true;
+          break;
+        case '\n':
+          if (zzR)
+            zzR = false;
+          else {
+            yyline++;
+            yycolumn = 0;
+          }
+          break;
+        default:
+          zzR = false;
+          yycolumn += zzCharCount;
+        }
+      }
+
+      if (zzR) {
+        // peek one character ahead if it is
+        // (if we have counted one line too much)
+        boolean zzPeek;
+        if (zzMarkedPosL < zzEndReadL)
+          zzPeek = zzBufferL[zzMarkedPosL] == '\n';
+        else if (zzAtEOF)
+          zzPeek = false;
+        else {
+          boolean eof = zzRefill();
+          zzEndReadL = zzEndRead;
+          zzMarkedPosL = zzMarkedPos;
+          zzBufferL = zzBuffer;
+          if (eof)
+            zzPeek = false;
+          else
+            zzPeek = zzBufferL[zzMarkedPosL] == '\n';
+        }
+        if (zzPeek) yyline--;
+      }
+      zzAction = -1;
+
+      zzCurrentPosL = zzCurrentPos = zzStartRead = zzMarkedPosL;
+
+      zzState = ZZ_LEXSTATE[zzLexicalState];
+
+      // set up zzAction for empty match case:
+      int zzAttributes = zzAttrL[zzState];
+      if ( (zzAttributes & 1) == 1 ) {
+        zzAction = zzState;
+      }
+
+
+      zzForAction: {
+        while (true) {
+
+          if (zzCurrentPosL < zzEndReadL) {
+            zzInput = Character.codePointAt(zzBufferL, zzCurrentPosL, zzEndReadL);
+            zzCurrentPosL += Character.charCount(zzInput);
+          }
+          else if (zzAtEOF) {
+            zzInput = YYEOF;
+            break zzForAction;
+          }
+          else {
+            // store back cached positions
+            zzCurrentPos  = zzCurrentPosL;
+            zzMarkedPos   = zzMarkedPosL;
+            boolean eof = zzRefill();
+            // get translated positions and possibly new buffer
+            zzCurrentPosL  = zzCurrentPos;
+            zzMarkedPosL   = zzMarkedPos;
+            zzBufferL      = zzBuffer;
+            zzEndReadL     = zzEndRead;
+            if (eof) {
+              zzInput = YYEOF;
+              break zzForAction;
+            }
+            else {
+              zzInput = Character.codePointAt(zzBufferL, zzCurrentPosL, zzEndReadL);
+              zzCurrentPosL += Character.charCount(zzInput);
+            }
+          }
+          int zzNext = zzTransL[ zzRowMapL[zzState] + zzCMap(zzInput) ];
+          if (zzNext == -1) break zzForAction;
+          zzState = zzNext;
+
+          zzAttributes = zzAttrL[zzState];
+          if ( (zzAttributes & 1) == 1 ) {
+            zzAction = zzState;
+            zzMarkedPosL = zzCurrentPosL;
+            if ( (zzAttributes & 8) == 8 ) break zzForAction;
+          }
+
+        }
+      }
+
+      // store back cached position
+      zzMarkedPos = zzMarkedPosL;
+
+      if (zzInput == YYEOF && zzStartRead == zzCurrentPos) {
+        zzAtEOF = true;
+            switch (zzLexicalState) {
+            case COMMENT: {
+              yybegin(YYINITIAL); return endToken(TokenType.ERROR);
+            }  // fall though
+            case 56: break;
+            default:
+              {
+                return endToken(TokenType.ENDFILE);
+              }
+        }
+      }
+      else {
+        switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
+          case 1:
+            { return createToken(TokenType.ERROR, yytext().trim());
+            }
+          // fall through
+          case 33: break;
+          case 2:
+            { 
+            }
+          // fall through
+          case 34: break;
+          case 3:
+            { return createToken(TokenType.LPAREN, yytext());
+            }
+          // fall through
+          case 35: break;
+          case 4:
+            { return createToken(TokenType.RPAREN, yytext());
+            }
+          // fall through
+          case 36: break;
+          case 5:
+            { return createToken(TokenType.TIMES, yytext());
+            }
+          // fall through
+          case 37: break;
+          case 6:
+            { return createToken(TokenType.PLUS, yytext());
+            }
+          // fall through
+          case 38: break;
+          case 7:
+            { return createToken(TokenType.COMMA, yytext());
+            }
+          // fall through
+          case 39: break;
+          case 8:
+            { return createToken(TokenType.MINUS, yytext());
+            }
+          // fall through
+          case 40: break;
+          case 9:
+            { return createToken(TokenType.OVER, yytext());
+            }
+          // fall through
+          case 41: break;
+          case 10:
+            { return createToken(TokenType.NUM, yytext());
+            }
+          // fall through
+          case 42: break;
+          case 11:
+            { return createToken(TokenType.SEMI, yytext());
+            }
+          // fall through
+          case 43: break;
+          case 12:
+            { return createToken(TokenType.LT, yytext());
+            }
+          // fall through
+          case 44: break;
+          case 13:
+            { return createToken(TokenType.ASSIGN, yytext());
+            }
+          // fall through
+          case 45: break;
+          case 14:
+            { return createToken(TokenType.GT, yytext());
+            }
+          // fall through
+          case 46: break;
+          case 15:
+            { return createToken(TokenType.ID, yytext());
+            }
+          // fall through
+          case 47: break;
+          case 16:
+            { return createToken(TokenType.LBRACK, yytext());
+            }
+          // fall through
+          case 48: break;
+          case 17:
+            { return createToken(TokenType.RBRACK, yytext());
+            }
+          // fall through
+          case 49: break;
+          case 18:
+            { return createToken(TokenType.LBRACE, yytext());
+            }
+          // fall through
+          case 50: break;
+          case 19:
+            { return createToken(TokenType.RBRACE, yytext());
+            }
+          // fall through
+          case 51: break;
+          case 20:
+            { return createToken(TokenType.NEQ, yytext());
+            }
+          // fall through
+          case 52: break;
+          case 21:
+            { yybegin(COMMENT);
+            }
+          // fall through
+          case 53: break;
+          case 22:
+            { return createToken(TokenType.ERROR, yytext());
+            }
+          // fall through
+          case 54: break;
+          case 23:
+            { return createToken(TokenType.LTE, yytext());
+            }
+          // fall through
+          case 55: break;
+          case 24:
+            { return createToken(TokenType.EQ, yytext());
+            }
+          // fall through
+          case 56: break;
+          case 25:
+            { return createToken(TokenType.GTE, yytext());
+            }
+          // fall through
+          case 57: break;
+          case 26:
+            { return createToken(TokenType.IF, yytext());
+            }
+          // fall through
+          case 58: break;
+          case 27:
+            { yybegin(YYINITIAL);
+            }
+          // fall through
+          case 59: break;
+          case 28:
+            { return createToken(TokenType.INT, yytext());
+            }
+          // fall through
+          case 60: break;
+          case 29:
+            { return createToken(TokenType.ELSE, yytext());
+            }
+          // fall through
+          case 61: break;
+          case 30:
+            { return createToken(TokenType.VOID, yytext());
+            }
+          // fall through
+          case 62: break;
+          case 31:
+            { return createToken(TokenType.WHILE, yytext());
+            }
+          // fall through
+          case 63: break;
+          case 32:
+            { return createToken(TokenType.RETURN, yytext());
+            }
+          // fall through
+          case 64: break;
+          default:
+            zzScanError(ZZ_NO_MATCH);
+        }
+      }
+    }
+  }
+
+
+}
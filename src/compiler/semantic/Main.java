@@ -0,0 +1,63 @@
+package compiler.semantic;
+
+import compiler.parser.CMinusParser;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses a C- program and runs the SemanticAnalyzer over it. The syntax
+ * errors, or else the semantic errors, go to standard error, and the exit
+ * status is 1 if there were any.
+ *
+ * --stats prints the number of top-level declarations and how long the
+ * parse and the check took to standard error.
+ */
+public class Main {
+    public static void main(String[] args) {
+        boolean stats = false;
+        while (args.length > 0 && args[0].startsWith("--")) {
+            if (args[0].equals("--stats")) {
+                stats = true;
+            } else {
+                break;
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length != 1) {
+            System.out.println("Usage: java compiler.semantic.Main [--stats] <input-file>");
+            System.exit(1);
+        }
+
+        try {
+            long start = System.nanoTime();
+            CMinusParser parser = new CMinusParser(args[0]);
+            parser.parse();
+            long parsed = System.nanoTime();
+            if (!parser.getErrors().isEmpty()) {
+                for (String error : parser.getErrors()) {
+                    System.err.println(error);
+                }
+                System.exit(1);
+            }
+
+            List<SemanticDiagnostic> diagnostics = SemanticAnalyzer.analyze(parser.getRoot());
+            long checked = System.nanoTime();
+            for (SemanticDiagnostic diagnostic : diagnostics) {
+                System.err.println(diagnostic);
+            }
+            if (stats) {
+                System.err.printf("%d declarations, parse %.1f ms, check %.1f ms%n",
+                        parser.getRoot().getDeclarations().size(), (parsed - start) / 1e6, (checked - parsed) / 1e6);
+            }
+            if (!diagnostics.isEmpty()) {
+                System.exit(1);
+            }
+            System.out.println("No semantic errors in " + args[0]);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package compiler.semantic;
+
+import java.util.Arrays;
+
+/**
+ * The declarations in scope at one point of a program, keyed by the symbol
+ * IDs of SymbolTable.shared().
+ *
+ * Declarations are appended to flat arrays, and a scope is a marker: the
+ * number of declarations when it was entered. For each symbol the table
+ * keeps its innermost declaration, and each declaration keeps the one it
+ * shadows. Entering a scope pushes a marker; leaving it pops its
+ * declarations and restores what they shadowed. So each declaration is
+ * added and removed once, a lookup is one array read, and nothing is
+ * copied per scope however deeply blocks nest.
+ */
+public final class ScopedSymbolTable {
+    public static final int NOT_FOUND = -1;
+
+    // The kinds of declaration
+    public static final int VARIABLE = 0;
+    public static final int ARRAY = 1;
+    public static final int FUNCTION = 2;
+
+    // The innermost declaration of each symbol, or NOT_FOUND
+    private int[] innermost = new int[64];
+
+    private int[] symbols = new int[64];
+    private int[] kinds = new int[64];
+    private int[] infos = new int[64];
+    private int[] lines = new int[64];
+    private int[] shadowed = new int[64];
+    private int count;
+
+    private int[] scopeStarts = new int[16];
+    private int depth;
+    private int maxDepth;
+
+    public ScopedSymbolTable() {
+        Arrays.fill(innermost, NOT_FOUND);
+    }
+
+    public void enterScope() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = count;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Removes the declarations of the innermost scope.
+     */
+    public void leaveScope() {
+        int start = scopeStarts[--depth];
+        while (count > start) {
+            count--;
+            innermost[symbols[count]] = shadowed[count];
+        }
+    }
+
+    /**
+     * @return the number of open scopes
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the most scopes that were open at once
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Declares symbol in the innermost scope, shadowing any declaration of
+     * it in an outer one.
+     *
+     * @param info the size of an ARRAY, or what the caller wants to keep
+     *             for a FUNCTION
+     * @return the declaration
+     */
+    public int declare(int symbol, int kind, int info, int line) {
+        if (symbol >= innermost.length) {
+            int length = innermost.length;
+            innermost = Arrays.copyOf(innermost, Math.max(symbol + 1, length * 2));
+            Arrays.fill(innermost, length, innermost.length, NOT_FOUND);
+        }
+        if (count == symbols.length) {
+            int length = count * 2;
+            symbols = Arrays.copyOf(symbols, length);
+            kinds = Arrays.copyOf(kinds, length);
+            infos = Arrays.copyOf(infos, length);
+            lines = Arrays.copyOf(lines, length);
+            shadowed = Arrays.copyOf(shadowed, length);
+        }
+        symbols[count] = symbol;
+        kinds[count] = kind;
+        infos[count] = info;
+        lines[count] = line;
+        shadowed[count] = innermost[symbol];
+        innermost[symbol] = count;
+        return count++;
+    }
+
+    /**
+     * @return the innermost declaration of symbol, or NOT_FOUND
+     */
+    public int lookup(int symbol) {
+        return symbol >= 0 && symbol < innermost.length ? innermost[symbol] : NOT_FOUND;
+    }
+
+    /**
+     * @return the declaration of symbol in the innermost scope, or NOT_FOUND
+     *         if it is only declared outside it or not at all
+     */
+    public int lookupInScope(int symbol) {
+        int declaration = lookup(symbol);
+        return depth > 0 && declaration >= scopeStarts[depth - 1] ? declaration : NOT_FOUND;
+    }
+
+    public int getSymbol(int declaration) {
+        return symbols[declaration];
+    }
+
+    public int getKind(int declaration) {
+        return kinds[declaration];
+    }
+
+    public int getInfo(int declaration) {
+        return infos[declaration];
+    }
+
+    public int getLine(int declaration) {
+        return lines[declaration];
+    }
+}
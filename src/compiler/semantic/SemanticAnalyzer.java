@@ -0,0 +1,473 @@
+package compiler.semantic;
+
+import compiler.parser.AST.*;
+import compiler.scanner.SymbolTable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the declarations and types of a parsed C- program: every name is
+ * declared before it is used and used as what it is, calls match the
+ * parameters of their function, arrays are only indexed or passed whole,
+ * and returns match the function's type. The errors are collected as
+ * SemanticDiagnostics, in source order; an expression that already has an
+ * error does not report another.
+ *
+ * Names live in a ScopedSymbolTable, with input and output in a scope
+ * outside the globals so a program may declare its own. The parameters of
+ * a function get a scope of their own, and so does each CompoundStmtNode,
+ * as in the interpreters.
+ *
+ * The tree is walked with a work stack instead of recursion, and the types
+ * of expressions are kept on a second stack, so deep nesting is limited
+ * neither by the thread's stack nor by the time to enter a scope. Each node
+ * is handled a constant number of times and each declaration is added and
+ * removed once, so the check is linear in the size of the program.
+ */
+public final class SemanticAnalyzer {
+    private static final int MAIN = SymbolTable.shared().intern("main");
+
+    // The types of expressions. ERROR is an expression that has already
+    // been reported
+    private static final int INT = 0;
+    private static final int ARRAY = 1;
+    private static final int VOID = 2;
+    private static final int ERROR = 3;
+
+    // What to do with a node on the work stack
+    private static final int STATEMENT = 0;
+    private static final int EXPRESSION = 1;
+    private static final int TYPE = 2;
+    private static final int AFTER_EXPRESSION = 3;
+    private static final int LEAVE_SCOPE = 4;
+
+    private final ScopedSymbolTable symbols = new ScopedSymbolTable();
+    // The FUNCTION declarations keep their index here
+    private final List<FunDeclarationNode> functions = new ArrayList<>();
+    private final List<SemanticDiagnostic> diagnostics = new ArrayList<>();
+    private final Statements statements = new Statements();
+    private final Children children = new Children();
+    private final Types types = new Types();
+
+    // The function being checked
+    private FunDeclarationNode function;
+
+    private AbstractNode[] workNodes = new AbstractNode[64];
+    private int[] workActions = new int[64];
+    private int workTop;
+
+    // The types of the expressions checked and not yet used, with the
+    // nodes they came from
+    private int[] valueTypes = new int[64];
+    private AbstractNode[] valueNodes = new AbstractNode[64];
+    private int valueTop;
+
+    private SemanticAnalyzer() {
+    }
+
+    /**
+     * @return the errors in root, in source order; empty if there are none
+     */
+    public static List<SemanticDiagnostic> analyze(ProgramNode root) {
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        analyzer.checkProgram(root);
+        return analyzer.diagnostics;
+    }
+
+    private void checkProgram(ProgramNode root) {
+        symbols.enterScope();
+        FunDeclarationNode input = new FunDeclarationNode(0, "input", TypeSpecifier.INT);
+        FunDeclarationNode output = new FunDeclarationNode(0, "output", TypeSpecifier.VOID);
+        output.addParam(new ParamNode(0, "value", TypeSpecifier.INT, false));
+        declareFunction(input);
+        declareFunction(output);
+
+        symbols.enterScope();
+        for (DeclarationNode decl : root.getDeclarations()) {
+            if (decl instanceof VarDeclarationNode) {
+                declareVariable((VarDeclarationNode) decl);
+            } else if (decl instanceof FunDeclarationNode) {
+                FunDeclarationNode fun = (FunDeclarationNode) decl;
+                if (checkNotDeclared(fun.getSymbol(), fun.getName(), fun.getLineNum())) {
+                    // Declared before its body, so it may call itself
+                    declareFunction(fun);
+                }
+                checkFunction(fun);
+            }
+        }
+
+        int main = symbols.lookup(MAIN);
+        if (main == ScopedSymbolTable.NOT_FOUND || symbols.getKind(main) != ScopedSymbolTable.FUNCTION
+                || !functions.get(symbols.getInfo(main)).getParams().isEmpty()) {
+            report(SemanticDiagnostic.Code.NO_MAIN, root.getLineNum(), null);
+        }
+        symbols.leaveScope();
+        symbols.leaveScope();
+    }
+
+    private void declareFunction(FunDeclarationNode fun) {
+        symbols.declare(fun.getSymbol(), ScopedSymbolTable.FUNCTION, functions.size(), fun.getLineNum());
+        functions.add(fun);
+    }
+
+    private void declareVariable(VarDeclarationNode var) {
+        if (checkNotDeclared(var.getSymbol(), var.getName(), var.getLineNum())) {
+            symbols.declare(var.getSymbol(), var.isArray() ? ScopedSymbolTable.ARRAY : ScopedSymbolTable.VARIABLE,
+                    var.isArray() ? var.getArraySize() : 0, var.getLineNum());
+        }
+    }
+
+    // Reports symbol if the innermost scope already declares it
+    private boolean checkNotDeclared(int symbol, String name, int line) {
+        int earlier = symbols.lookupInScope(symbol);
+        if (earlier == ScopedSymbolTable.NOT_FOUND) {
+            return true;
+        }
+        diagnostics.add(new SemanticDiagnostic(SemanticDiagnostic.Code.ALREADY_DECLARED, line, name,
+                symbols.getLine(earlier), 0));
+        return false;
+    }
+
+    private void checkFunction(FunDeclarationNode fun) {
+        function = fun;
+        symbols.enterScope();
+        for (ParamNode param : fun.getParams()) {
+            if (checkNotDeclared(param.getSymbol(), param.getName(), param.getLineNum())) {
+                symbols.declare(param.getSymbol(),
+                        param.isArray() ? ScopedSymbolTable.ARRAY : ScopedSymbolTable.VARIABLE, 0,
+                        param.getLineNum());
+            }
+        }
+        push(fun.getBody(), STATEMENT);
+        run();
+        symbols.leaveScope();
+        function = null;
+    }
+
+    private void run() {
+        while (workTop > 0) {
+            workTop--;
+            AbstractNode node = workNodes[workTop];
+            int action = workActions[workTop];
+            workNodes[workTop] = null;
+            if (node == null) {
+                // Left out of a tree with syntax errors
+                if (action == EXPRESSION) {
+                    pushType(ERROR, null);
+                }
+                continue;
+            }
+            switch (action) {
+                case STATEMENT:
+                    node.accept(statements);
+                    break;
+                case EXPRESSION:
+                    push(node, TYPE);
+                    node.accept(children);
+                    break;
+                case TYPE:
+                    node.accept(types);
+                    break;
+                case AFTER_EXPRESSION:
+                    afterExpression(node);
+                    break;
+                default:
+                    symbols.leaveScope();
+                    break;
+            }
+        }
+    }
+
+    // Checks the use a statement makes of its expression, whose type is on
+    // top of the stack
+    private void afterExpression(AbstractNode statement) {
+        int type = valueTypes[valueTop - 1];
+        AbstractNode value = valueNodes[valueTop - 1];
+        popTypes(1);
+        if (statement instanceof ReturnStmtNode) {
+            if (function.getType() == TypeSpecifier.VOID) {
+                report(SemanticDiagnostic.Code.RETURN_VALUE_IN_VOID_FUNCTION, statement.getLineNum(),
+                        function.getName());
+            } else {
+                expectInt(type, value);
+            }
+        } else if (!(statement instanceof ExpressionStmtNode)) {
+            // The condition of an if or a while
+            expectInt(type, value);
+        }
+    }
+
+    // Reports a value of type that is not an int
+    private void expectInt(int type, AbstractNode value) {
+        if (type == ARRAY) {
+            report(SemanticDiagnostic.Code.ARRAY_AS_VALUE, value.getLineNum(), ((VarExpressionNode) value).getName());
+        } else if (type == VOID) {
+            report(SemanticDiagnostic.Code.VOID_AS_VALUE, value.getLineNum(), ((CallNode) value).getFunctionName());
+        }
+    }
+
+    private void report(SemanticDiagnostic.Code code, int line, String name) {
+        diagnostics.add(new SemanticDiagnostic(code, line, name, 0, 0));
+    }
+
+    private void push(AbstractNode node, int action) {
+        if (workTop == workNodes.length) {
+            workNodes = Arrays.copyOf(workNodes, workTop * 2);
+            workActions = Arrays.copyOf(workActions, workTop * 2);
+        }
+        workNodes[workTop] = node;
+        workActions[workTop++] = action;
+    }
+
+    private void pushType(int type, AbstractNode node) {
+        if (valueTop == valueTypes.length) {
+            valueTypes = Arrays.copyOf(valueTypes, valueTop * 2);
+            valueNodes = Arrays.copyOf(valueNodes, valueTop * 2);
+        }
+        valueTypes[valueTop] = type;
+        valueNodes[valueTop++] = node;
+    }
+
+    private void popTypes(int count) {
+        for (int i = 0; i < count; i++) {
+            valueNodes[--valueTop] = null;
+        }
+    }
+
+    // Pushes the work for each statement before it is checked
+    private final class Statements extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            return null;
+        }
+
+        @Override
+        public Void visitCompoundStmt(CompoundStmtNode node) {
+            symbols.enterScope();
+            for (VarDeclarationNode var : node.getLocalDeclarations()) {
+                declareVariable(var);
+            }
+            push(node, LEAVE_SCOPE);
+            List<StatementNode> list = node.getStatements();
+            for (int i = list.size() - 1; i >= 0; i--) {
+                push(list.get(i), STATEMENT);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(ExpressionStmtNode node) {
+            if (node.getExpression() != null) {
+                push(node, AFTER_EXPRESSION);
+                push(node.getExpression(), EXPRESSION);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSelectionStmt(SelectionStmtNode node) {
+            if (node.getElseBranch() != null) {
+                push(node.getElseBranch(), STATEMENT);
+            }
+            push(node.getThenBranch(), STATEMENT);
+            push(node, AFTER_EXPRESSION);
+            push(node.getCondition(), EXPRESSION);
+            return null;
+        }
+
+        @Override
+        public Void visitIterationStmt(IterationStmtNode node) {
+            push(node.getBody(), STATEMENT);
+            push(node, AFTER_EXPRESSION);
+            push(node.getCondition(), EXPRESSION);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(ReturnStmtNode node) {
+            if (node.getExpression() != null) {
+                push(node, AFTER_EXPRESSION);
+                push(node.getExpression(), EXPRESSION);
+            } else if (function.getType() == TypeSpecifier.INT) {
+                report(SemanticDiagnostic.Code.MISSING_RETURN_VALUE, node.getLineNum(), function.getName());
+            }
+            return null;
+        }
+    }
+
+    // Pushes the operands of an expression, so they are checked left to
+    // right before it
+    private final class Children extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            return null;
+        }
+
+        @Override
+        public Void visitVarExpression(VarExpressionNode node) {
+            if (node.isArray()) {
+                push(node.getIndex(), EXPRESSION);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpression(AssignExpressionNode node) {
+            push(node.getExpression(), EXPRESSION);
+            push(node.getVariable(), EXPRESSION);
+            return null;
+        }
+
+        @Override
+        public Void visitCall(CallNode node) {
+            List<ExpressionNode> args = node.getArguments();
+            for (int i = args.size() - 1; i >= 0; i--) {
+                push(args.get(i), EXPRESSION);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSimpleExpression(SimpleExpressionNode node) {
+            return pair(node.getLeft(), node.getRight());
+        }
+
+        @Override
+        public Void visitAddExpression(AddExpressionNode node) {
+            return pair(node.getLeft(), node.getRight());
+        }
+
+        @Override
+        public Void visitTerm(TermNode node) {
+            return pair(node.getLeft(), node.getRight());
+        }
+
+        private Void pair(ExpressionNode left, ExpressionNode right) {
+            if (right != null) {
+                push(right, EXPRESSION);
+            }
+            push(left, EXPRESSION);
+            return null;
+        }
+    }
+
+    // Replaces the types of an expression's operands on the stack with the
+    // type of the expression
+    private final class Types extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            pushType(ERROR, node);
+            return null;
+        }
+
+        @Override
+        public Void visitNumber(NumberNode node) {
+            pushType(INT, node);
+            return null;
+        }
+
+        @Override
+        public Void visitVarExpression(VarExpressionNode node) {
+            int type = ERROR;
+            if (node.isArray()) {
+                int index = valueTypes[valueTop - 1];
+                expectInt(index, valueNodes[valueTop - 1]);
+                popTypes(1);
+            }
+            int declaration = symbols.lookup(node.getSymbol());
+            if (declaration == ScopedSymbolTable.NOT_FOUND) {
+                report(SemanticDiagnostic.Code.UNDECLARED_VARIABLE, node.getLineNum(), node.getName());
+            } else if (symbols.getKind(declaration) == ScopedSymbolTable.FUNCTION) {
+                report(SemanticDiagnostic.Code.FUNCTION_AS_VARIABLE, node.getLineNum(), node.getName());
+            } else if (!node.isArray()) {
+                type = symbols.getKind(declaration) == ScopedSymbolTable.ARRAY ? ARRAY : INT;
+            } else if (symbols.getKind(declaration) != ScopedSymbolTable.ARRAY) {
+                report(SemanticDiagnostic.Code.NOT_AN_ARRAY, node.getLineNum(), node.getName());
+            } else {
+                type = INT;
+            }
+            pushType(type, node);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpression(AssignExpressionNode node) {
+            int target = valueTypes[valueTop - 2];
+            int value = valueTypes[valueTop - 1];
+            AbstractNode valueNode = valueNodes[valueTop - 1];
+            popTypes(2);
+            if (target == ARRAY) {
+                report(SemanticDiagnostic.Code.ASSIGN_TO_ARRAY, node.getLineNum(), node.getVariable().getName());
+            } else if (target == INT) {
+                expectInt(value, valueNode);
+            }
+            pushType(target == INT && (value == INT || value == ERROR) ? value : ERROR, node);
+            return null;
+        }
+
+        @Override
+        public Void visitCall(CallNode node) {
+            int count = node.getArguments().size();
+            int first = valueTop - count;
+            int type = ERROR;
+            int declaration = symbols.lookup(node.getSymbol());
+            if (declaration == ScopedSymbolTable.NOT_FOUND) {
+                report(SemanticDiagnostic.Code.UNDECLARED_FUNCTION, node.getLineNum(), node.getFunctionName());
+            } else if (symbols.getKind(declaration) != ScopedSymbolTable.FUNCTION) {
+                report(SemanticDiagnostic.Code.NOT_A_FUNCTION, node.getLineNum(), node.getFunctionName());
+            } else {
+                FunDeclarationNode callee = functions.get(symbols.getInfo(declaration));
+                List<ParamNode> params = callee.getParams();
+                if (params.size() != count) {
+                    diagnostics.add(new SemanticDiagnostic(SemanticDiagnostic.Code.WRONG_ARGUMENT_COUNT,
+                            node.getLineNum(), node.getFunctionName(), params.size(), count));
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int arg = valueTypes[first + i];
+                        if (!params.get(i).isArray()) {
+                            expectInt(arg, valueNodes[first + i]);
+                        } else if (arg != ARRAY && arg != ERROR) {
+                            diagnostics.add(new SemanticDiagnostic(SemanticDiagnostic.Code.ARRAY_ARGUMENT_EXPECTED,
+                                    valueNodes[first + i].getLineNum(), node.getFunctionName(), i + 1, 0));
+                        }
+                    }
+                }
+                type = callee.getType() == TypeSpecifier.INT ? INT : VOID;
+            }
+            popTypes(count);
+            pushType(type, node);
+            return null;
+        }
+
+        @Override
+        public Void visitSimpleExpression(SimpleExpressionNode node) {
+            return binary(node, node.getRight() != null);
+        }
+
+        @Override
+        public Void visitAddExpression(AddExpressionNode node) {
+            return binary(node, node.getRight() != null);
+        }
+
+        @Override
+        public Void visitTerm(TermNode node) {
+            return binary(node, node.getRight() != null);
+        }
+
+        // A node without a right operand has the type of its left one,
+        // which stays on the stack
+        private Void binary(ExpressionNode node, boolean hasRight) {
+            if (!hasRight) {
+                return null;
+            }
+            int left = valueTypes[valueTop - 2];
+            int right = valueTypes[valueTop - 1];
+            expectInt(left, valueNodes[valueTop - 2]);
+            expectInt(right, valueNodes[valueTop - 1]);
+            popTypes(2);
+            pushType(left == INT && right == INT ? INT : ERROR, node);
+            return null;
+        }
+    }
+}
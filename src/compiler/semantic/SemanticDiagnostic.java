@@ -0,0 +1,112 @@
+package compiler.semantic;
+
+/**
+ * A declaration or type error found by the SemanticAnalyzer. Like the
+ * parser's Diagnostic it keeps a code and the names and numbers involved,
+ * and puts the message together only when it is printed.
+ */
+public final class SemanticDiagnostic {
+
+    public enum Code {
+        UNDECLARED_VARIABLE,
+        UNDECLARED_FUNCTION,
+        ALREADY_DECLARED,
+        NOT_A_FUNCTION,
+        FUNCTION_AS_VARIABLE,
+        NOT_AN_ARRAY,
+        ARRAY_AS_VALUE,
+        VOID_AS_VALUE,
+        ASSIGN_TO_ARRAY,
+        WRONG_ARGUMENT_COUNT,
+        ARRAY_ARGUMENT_EXPECTED,
+        RETURN_VALUE_IN_VOID_FUNCTION,
+        MISSING_RETURN_VALUE,
+        NO_MAIN
+    }
+
+    private final Code code;
+    private final int line;
+    private final String name;
+    private final int expected;
+    private final int found;
+
+    /**
+     * @param code
+     * @param line     the line of the node the error was found at
+     * @param name     the variable or function involved, or null
+     * @param expected for WRONG_ARGUMENT_COUNT the number of parameters, for
+     *                 ARRAY_ARGUMENT_EXPECTED the argument's position from
+     *                 1, and for ALREADY_DECLARED the line of the earlier
+     *                 declaration; otherwise 0
+     * @param found    for WRONG_ARGUMENT_COUNT the number of arguments;
+     *                 otherwise 0
+     */
+    public SemanticDiagnostic(Code code, int line, String name, int expected, int found) {
+        this.code = code;
+        this.line = line;
+        this.name = name;
+        this.expected = expected;
+        this.found = found;
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getExpected() {
+        return expected;
+    }
+
+    public int getFound() {
+        return found;
+    }
+
+    public String getMessage() {
+        switch (code) {
+            case UNDECLARED_VARIABLE:
+                return "Undeclared variable " + name;
+            case UNDECLARED_FUNCTION:
+                return "Undeclared function " + name;
+            case ALREADY_DECLARED:
+                return name + " is already declared" + (expected > 0 ? " on line " + expected : "");
+            case NOT_A_FUNCTION:
+                return name + " is not a function";
+            case FUNCTION_AS_VARIABLE:
+                return "Function " + name + " used as a variable";
+            case NOT_AN_ARRAY:
+                return name + " is not an array";
+            case ARRAY_AS_VALUE:
+                return "Array " + name + " used as a value";
+            case VOID_AS_VALUE:
+                return name + " returns void but its value is used";
+            case ASSIGN_TO_ARRAY:
+                return "Cannot assign to array " + name;
+            case WRONG_ARGUMENT_COUNT:
+                return name + " takes " + expected + " arguments, not " + found;
+            case ARRAY_ARGUMENT_EXPECTED:
+                return "Argument " + expected + " of " + name + " must be an array";
+            case RETURN_VALUE_IN_VOID_FUNCTION:
+                return name + " returns void but the return has a value";
+            case MISSING_RETURN_VALUE:
+                return name + " returns int but the return has no value";
+            default:
+                return "No main(void) function";
+        }
+    }
+
+    /**
+     * @return the error as it is printed: "Line n: message"
+     */
+    @Override
+    public String toString() {
+        return "Line " + line + ": " + getMessage();
+    }
+}
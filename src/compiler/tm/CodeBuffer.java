@@ -0,0 +1,222 @@
+package compiler.tm;
+
+import java.util.Arrays;
+
+/**
+ * TM instructions as TmCodeGenerator emits them, before they have
+ * addresses. Jumps go to labels, which assemble() turns into offsets from
+ * the program counter, so the Peephole can delete instructions freely.
+ */
+final class CodeBuffer {
+    // Flags of an instruction
+    static final int SPILL = 1;
+    static final int PINNED = 2;
+
+    static final int NO_LABEL = -1;
+
+    private Opcode[] ops = new Opcode[256];
+    private int[] r = new int[256];
+    private int[] s = new int[256];
+    private int[] d = new int[256];
+    private int[] targets = new int[256];
+    private int[] flags = new int[256];
+    private int[] lines = new int[256];
+    private String[] comments = new String[256];
+    private int size;
+    private int[] labels = new int[64];
+    private int labelCount;
+    private int line;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sets the C- line of the instructions that follow.
+     */
+    void line(int line) {
+        this.line = line;
+    }
+
+    int newLabel() {
+        if (labelCount == labels.length) {
+            labels = Arrays.copyOf(labels, labelCount * 2);
+        }
+        labels[labelCount] = -1;
+        return labelCount++;
+    }
+
+    /**
+     * Places label at the next instruction.
+     */
+    void mark(int label) {
+        labels[label] = size;
+    }
+
+    /**
+     * Emits "op r,s,t".
+     */
+    void ro(Opcode op, int r, int s, int t, String comment) {
+        emit(op, r, s, t, NO_LABEL, 0, comment);
+    }
+
+    /**
+     * Emits "op r,d(s)".
+     *
+     * @return the index of the instruction
+     */
+    int rm(Opcode op, int r, int d, int s, String comment) {
+        return emit(op, r, s, d, NO_LABEL, 0, comment);
+    }
+
+    /**
+     * Emits "op r,d(s)" with the given flags.
+     */
+    int rm(Opcode op, int r, int d, int s, int flags, String comment) {
+        return emit(op, r, s, d, NO_LABEL, flags, comment);
+    }
+
+    /**
+     * Emits a jump to label: a conditional jump on r, or with LDA and r
+     * the program counter, an unconditional one.
+     */
+    void jump(Opcode op, int r, int label, String comment) {
+        emit(op, r, TmCodeGenerator.PC, 0, label, 0, comment);
+    }
+
+    private int emit(Opcode op, int r, int s, int d, int target, int flags, String comment) {
+        if (size == ops.length) {
+            int length = size * 2;
+            ops = Arrays.copyOf(ops, length);
+            this.r = Arrays.copyOf(this.r, length);
+            this.s = Arrays.copyOf(this.s, length);
+            this.d = Arrays.copyOf(this.d, length);
+            targets = Arrays.copyOf(targets, length);
+            this.flags = Arrays.copyOf(this.flags, length);
+            lines = Arrays.copyOf(lines, length);
+            comments = Arrays.copyOf(comments, length);
+        }
+        ops[size] = op;
+        this.r[size] = r;
+        this.s[size] = s;
+        this.d[size] = d;
+        targets[size] = target;
+        this.flags[size] = flags;
+        lines[size] = line;
+        comments[size] = comment;
+        return size++;
+    }
+
+    Opcode op(int i) {
+        return ops[i];
+    }
+
+    int r(int i) {
+        return r[i];
+    }
+
+    int s(int i) {
+        return s[i];
+    }
+
+    int d(int i) {
+        return d[i];
+    }
+
+    boolean hasFlag(int i, int flag) {
+        return (flags[i] & flag) != 0;
+    }
+
+    boolean isJump(int i) {
+        return targets[i] != NO_LABEL;
+    }
+
+    /**
+     * @return whether the instruction can be reached by a jump
+     */
+    boolean[] jumpTargets() {
+        boolean[] marked = new boolean[size + 1];
+        for (int i = 0; i < labelCount; i++) {
+            if (labels[i] >= 0) {
+                marked[labels[i]] = true;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * @return the index the label marks, or -1
+     */
+    int labelIndex(int i) {
+        return targets[i] == NO_LABEL ? -1 : labels[targets[i]];
+    }
+
+    void setR(int i, int r) {
+        this.r[i] = r;
+    }
+
+    void setD(int i, int d) {
+        this.d[i] = d;
+    }
+
+    /**
+     * Replaces instruction i with "op r,d(s)", keeping its line and comment.
+     */
+    void replace(int i, Opcode op, int r, int d, int s) {
+        ops[i] = op;
+        this.r[i] = r;
+        this.d[i] = d;
+        this.s[i] = s;
+        targets[i] = NO_LABEL;
+        flags[i] = 0;
+    }
+
+    /**
+     * Removes the instructions marked in removed. A label on a removed
+     * instruction moves to the next one kept.
+     */
+    void remove(boolean[] removed) {
+        int[] newIndex = new int[size + 1];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            newIndex[i] = kept;
+            if (!removed[i]) {
+                ops[kept] = ops[i];
+                r[kept] = r[i];
+                s[kept] = s[i];
+                d[kept] = d[i];
+                targets[kept] = targets[i];
+                flags[kept] = flags[i];
+                lines[kept] = lines[i];
+                comments[kept] = comments[i];
+                kept++;
+            }
+        }
+        newIndex[size] = kept;
+        Arrays.fill(comments, kept, size, null);
+        size = kept;
+        for (int i = 0; i < labelCount; i++) {
+            if (labels[i] >= 0) {
+                labels[i] = newIndex[labels[i]];
+            }
+        }
+    }
+
+    /**
+     * Resolves the jumps and gives the finished program.
+     */
+    TmProgram assemble(String header) {
+        int[] resolved = Arrays.copyOf(d, size);
+        for (int i = 0; i < size; i++) {
+            if (targets[i] != NO_LABEL) {
+                int target = labels[targets[i]];
+                if (target < 0) {
+                    throw new IllegalStateException("Jump at " + i + " to a label that was never placed");
+                }
+                resolved[i] = target - (i + 1);
+            }
+        }
+        return new TmProgram(Arrays.copyOf(ops, size), Arrays.copyOf(r, size), Arrays.copyOf(s, size), resolved,
+                Arrays.copyOf(lines, size), Arrays.copyOf(comments, size), header);
+    }
+}
@@ -0,0 +1,166 @@
+package compiler.tm;
+
+import compiler.interpreter.InterpreterException;
+import compiler.optimizer.PassManager;
+import compiler.parser.CMinusParser;
+import compiler.parser.AST.ProgramNode;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Compiles a C- program to Tiny Machine code and runs it on TmMachine.
+ * input() reads integers from standard input and output(x) prints x on a
+ * line of its own. A file ending in .tm is read as TM assembly and run as
+ * it is.
+ *
+ * --emit=<file> also writes the assembly to file.
+ * --no-registers keeps every temporary in the frame, as Louden's compiler
+ * does, and --no-peephole skips the Peephole.
+ * --optimize runs PassManager.standard() over the AST first.
+ * --stats prints the size of the code and the instructions and cycles the
+ * run took to standard error.
+ * --compare runs the program four times, with and without each of
+ * register allocation and the Peephole, and prints those numbers for each
+ * to standard error.
+ */
+public class Main {
+    public static void main(String[] args) {
+        boolean registers = true;
+        boolean peephole = true;
+        boolean optimize = false;
+        boolean stats = false;
+        boolean compare = false;
+        String emit = null;
+        while (args.length > 0 && args[0].startsWith("--")) {
+            if (args[0].equals("--no-registers")) {
+                registers = false;
+            } else if (args[0].equals("--no-peephole")) {
+                peephole = false;
+            } else if (args[0].equals("--optimize")) {
+                optimize = true;
+            } else if (args[0].equals("--stats")) {
+                stats = true;
+            } else if (args[0].equals("--compare")) {
+                compare = true;
+            } else if (args[0].startsWith("--emit=")) {
+                emit = args[0].substring("--emit=".length());
+            } else {
+                break;
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length != 1) {
+            System.out.println("Usage: java compiler.tm.Main [--emit=<file>] [--no-registers] [--no-peephole]"
+                    + " [--optimize] [--stats] [--compare] <input-file>");
+            System.exit(1);
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            if (args[0].endsWith(".tm")) {
+                TmProgram program;
+                try (Reader in = Files.newBufferedReader(Paths.get(args[0]))) {
+                    program = TmProgram.parse(in);
+                }
+                run(program, new BufferedReader(new InputStreamReader(System.in)), out, stats);
+                out.flush();
+                return;
+            }
+
+            CMinusParser parser = new CMinusParser(args[0]);
+            parser.parse();
+            if (!parser.getErrors().isEmpty()) {
+                for (String error : parser.getErrors()) {
+                    System.err.println(error);
+                }
+                System.exit(1);
+            }
+            ProgramNode root = parser.getRoot();
+            if (optimize) {
+                root = PassManager.standard().run(root);
+            }
+            String sourceFile = Paths.get(args[0]).getFileName().toString();
+
+            if (compare) {
+                compare(root, sourceFile, out);
+                out.flush();
+                return;
+            }
+
+            TmProgram program = TmCodeGenerator.generate(root, sourceFile, registers, peephole);
+            if (emit != null) {
+                try (Writer file = Files.newBufferedWriter(Paths.get(emit))) {
+                    program.write(file);
+                }
+            }
+            run(program, new BufferedReader(new InputStreamReader(System.in)), out, stats);
+            out.flush();
+        } catch (InterpreterException | IllegalArgumentException | IOException | UncheckedIOException e) {
+            flush(out);
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(TmProgram program, Reader in, Writer out, boolean stats) {
+        TmMachine machine = new TmMachine(program);
+        long start = System.nanoTime();
+        try {
+            machine.run(in, out);
+        } finally {
+            if (stats) {
+                System.err.printf("%d instructions of code, executed %d instructions in %d cycles, %.1f ms%n",
+                        program.size(), machine.getInstructions(), machine.getCycles(),
+                        (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+
+    // Runs every combination on the same input; prints the output of the last
+    private static void compare(ProgramNode root, String sourceFile, Writer out) throws IOException {
+        String input = new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
+        String[] names = { "spill everything", "peephole only", "registers only", "registers and peephole" };
+        String expected = null;
+        System.err.printf("%-24s %8s %14s %14s%n", "", "code", "instructions", "cycles");
+        for (int i = 0; i < names.length; i++) {
+            TmProgram program = TmCodeGenerator.generate(root, sourceFile, i >= 2, i % 2 == 1);
+            TmMachine machine = new TmMachine(program);
+            StringWriter output = new StringWriter();
+            String error = null;
+            try {
+                machine.run(new StringReader(input), output);
+            } catch (InterpreterException e) {
+                error = e.getMessage();
+            }
+            System.err.printf("%-24s %8d %14d %14d%n", names[i], program.size(), machine.getInstructions(),
+                    machine.getCycles());
+            String result = output + (error == null ? "" : "Error: " + error + "\n");
+            if (expected != null && !expected.equals(result)) {
+                System.err.println("  warning: the output differs from " + names[0]);
+            }
+            if (expected == null) {
+                expected = result;
+            }
+            if (i == names.length - 1) {
+                out.write(output.toString());
+                if (error != null) {
+                    out.flush();
+                    System.err.println("Error: " + error);
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    private static void flush(Writer out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // The output is gone either way
+        }
+    }
+}
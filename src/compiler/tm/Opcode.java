@@ -0,0 +1,56 @@
+package compiler.tm;
+
+/**
+ * The instructions of the Tiny Machine, with the cycles TmMachine charges
+ * for each.
+ *
+ * Register-only instructions take three registers, "OP r,s,t". The others
+ * take a register and an address, "OP r,d(s)", which is d plus register s.
+ * A load or store takes two cycles, MUL four and DIV twelve, and the rest
+ * one; a jump that is taken costs one more.
+ */
+public enum Opcode {
+    HALT(true, 1),
+    IN(true, 1),
+    OUT(true, 1),
+    ADD(true, 1),
+    SUB(true, 1),
+    MUL(true, 4),
+    DIV(true, 12),
+    LD(false, 2),
+    ST(false, 2),
+    LDA(false, 1),
+    LDC(false, 1),
+    JLT(false, 1),
+    JLE(false, 1),
+    JGT(false, 1),
+    JGE(false, 1),
+    JEQ(false, 1),
+    JNE(false, 1);
+
+    private final boolean registerOnly;
+    private final int cycles;
+
+    Opcode(boolean registerOnly, int cycles) {
+        this.registerOnly = registerOnly;
+        this.cycles = cycles;
+    }
+
+    /**
+     * @return true for "OP r,s,t", false for "OP r,d(s)"
+     */
+    public boolean isRegisterOnly() {
+        return registerOnly;
+    }
+
+    /**
+     * @return true for the conditional jumps, JLT to JNE
+     */
+    public boolean isJump() {
+        return ordinal() >= JLT.ordinal();
+    }
+
+    public int getCycles() {
+        return cycles;
+    }
+}
@@ -0,0 +1,213 @@
+package compiler.tm;
+
+/**
+ * Rewrites the code in a CodeBuffer within basic blocks, until nothing
+ * changes:
+ *
+ * - A load from an address whose value a register already holds, after a
+ *   store to it or an earlier load from it, becomes a move, or goes if it
+ *   is the same register. A store of the value already there goes.
+ * - A temporary stored to the frame and loaded back before its register
+ *   changes becomes a move at the store, and the load goes.
+ * - A value computed into one register and then only moved to another is
+ *   computed there directly.
+ * - A value overwritten before it is read goes, as do moves of a register
+ *   to itself, jumps to the next instruction and code after an
+ *   unconditional jump that no label leads to.
+ *
+ * A store through a computed address may change any variable, so it ends
+ * what is known about memory.
+ */
+final class Peephole {
+    // How far a load or store looks ahead for its pair
+    private static final int WINDOW = 64;
+
+    private final CodeBuffer code;
+    private boolean[] labeled;
+    private boolean[] removed;
+    private boolean changed;
+
+    private Peephole(CodeBuffer code) {
+        this.code = code;
+    }
+
+    static void run(CodeBuffer code) {
+        Peephole peephole = new Peephole(code);
+        do {
+            peephole.pass();
+        } while (peephole.changed);
+    }
+
+    private void pass() {
+        changed = false;
+        labeled = code.jumpTargets();
+        removed = new boolean[code.size()];
+        for (int i = 0; i < code.size(); i++) {
+            if (removed[i] || code.hasFlag(i, CodeBuffer.PINNED)) {
+                continue;
+            }
+            Opcode op = code.op(i);
+            if (endsFlow(i)) {
+                for (int j = i + 1; j < code.size() && !labeled[j]; j++) {
+                    remove(j);
+                }
+            }
+            if (op == Opcode.LDA && code.d(i) == 0 && code.r(i) == code.s(i) && !code.isJump(i)) {
+                remove(i);
+                continue;
+            }
+            if (op == Opcode.LDA && code.r(i) == TmCodeGenerator.PC && code.isJump(i)
+                    && code.labelIndex(i) == i + 1) {
+                remove(i);
+                continue;
+            }
+            if (op == Opcode.ST && code.hasFlag(i, CodeBuffer.SPILL)) {
+                forwardSpill(i);
+            } else if ((op == Opcode.ST || op == Opcode.LD && code.r(i) != code.s(i))
+                    && code.s(i) != TmCodeGenerator.PC) {
+                forwardValue(i);
+            }
+            if (code.r(i) != TmCodeGenerator.PC && writes(i, code.r(i))) {
+                deadOrMoved(i);
+            }
+        }
+        code.remove(removed);
+    }
+
+    // Drops i if its value is overwritten unread, or computes it straight
+    // into the register it is only moved to
+    private void deadOrMoved(int i) {
+        int next = next(i);
+        if (next < 0 || labeled[next]) {
+            return;
+        }
+        int r = code.r(i);
+        if (isPure(code.op(i)) && writes(next, r) && !reads(next, r)) {
+            remove(i);
+        } else if (code.op(next) == Opcode.LDA && code.d(next) == 0 && code.s(next) == r
+                && code.r(next) != TmCodeGenerator.PC && !code.isJump(next)) {
+            int after = next(next);
+            if (after >= 0 && writes(after, r) && !reads(after, r)) {
+                code.setR(i, code.r(next));
+                remove(next);
+            }
+        }
+    }
+
+    // A load of the address of i whose value is still in i's register
+    private void forwardValue(int i) {
+        int r = code.r(i);
+        int s = code.s(i);
+        int d = code.d(i);
+        for (int j = next(i), seen = 0; j >= 0 && seen < WINDOW && !labeled[j]; j = next(j), seen++) {
+            Opcode op = code.op(j);
+            if (code.s(j) == s && code.d(j) == d) {
+                if (op == Opcode.LD) {
+                    if (code.r(j) == r) {
+                        remove(j);
+                    } else {
+                        code.replace(j, Opcode.LDA, code.r(j), 0, r);
+                        changed = true;
+                    }
+                    return;
+                }
+                if (op == Opcode.ST && code.r(j) == r) {
+                    remove(j);
+                    return;
+                }
+            }
+            if (op == Opcode.ST && (code.s(j) != s || code.d(j) == d) || endsBlock(j) || writes(j, r)
+                    || writes(j, s)) {
+                return;
+            }
+        }
+    }
+
+    // The reload of the temporary spilled by i, if its register is free
+    private void forwardSpill(int i) {
+        int d = code.d(i);
+        for (int j = next(i), seen = 0; j >= 0 && seen < WINDOW && !labeled[j]; j = next(j), seen++) {
+            if (code.op(j) == Opcode.LD && code.s(j) == TmCodeGenerator.FP && code.d(j) == d
+                    && code.hasFlag(j, CodeBuffer.SPILL)) {
+                int q = code.r(j);
+                for (int k = next(i); k != j; k = next(k)) {
+                    if (reads(k, q) || writes(k, q)) {
+                        return;
+                    }
+                }
+                code.replace(i, Opcode.LDA, q, 0, code.r(i));
+                remove(j);
+                return;
+            }
+            if (endsBlock(j)) {
+                return;
+            }
+        }
+    }
+
+    private int next(int i) {
+        for (int j = i + 1; j < code.size(); j++) {
+            if (!removed[j]) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private void remove(int i) {
+        if (!removed[i]) {
+            removed[i] = true;
+            changed = true;
+        }
+    }
+
+    // Instructions that only set register r, and cannot fail
+    private static boolean isPure(Opcode op) {
+        return op == Opcode.LDA || op == Opcode.LDC || op == Opcode.ADD || op == Opcode.SUB || op == Opcode.MUL;
+    }
+
+    private boolean endsFlow(int i) {
+        return code.op(i) == Opcode.HALT || writes(i, TmCodeGenerator.PC);
+    }
+
+    private boolean endsBlock(int i) {
+        return endsFlow(i) || code.op(i).isJump();
+    }
+
+    private boolean writes(int i, int register) {
+        switch (code.op(i)) {
+            case IN:
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case LD:
+            case LDA:
+            case LDC:
+                return code.r(i) == register;
+            default:
+                return false;
+        }
+    }
+
+    private boolean reads(int i, int register) {
+        switch (code.op(i)) {
+            case HALT:
+            case IN:
+            case LDC:
+                return false;
+            case OUT:
+                return code.r(i) == register;
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+                return code.s(i) == register || code.d(i) == register;
+            case LD:
+            case LDA:
+                return code.s(i) == register;
+            default:
+                return code.r(i) == register || code.s(i) == register;
+        }
+    }
+}
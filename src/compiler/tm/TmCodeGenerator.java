@@ -0,0 +1,765 @@
+package compiler.tm;
+
+import compiler.interpreter.InterpreterException;
+import compiler.parser.AST.*;
+import compiler.scanner.SymbolTable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates Tiny Machine code for a C- program, in the style of Louden's
+ * C- compiler.
+ *
+ * Register 7 is the program counter, 6 points to the globals, 5 to the
+ * frame of the running function and 4 is scratch. The globals sit at the
+ * top of data memory and the stack grows down from them, so a program that
+ * recurses too deeply fails on a negative address. A frame holds, from fp
+ * down, the return address, the caller's fp, the parameters, the locals
+ * and the temporaries. An array parameter holds the address of the array.
+ * The word below element 0 of every array holds its length, so an index
+ * can be checked through a parameter too. A function returns its value in
+ * register 0.
+ *
+ * With register allocation, expression temporaries live in registers 0 to
+ * 3, and only go to the frame when an expression needs more than four, or
+ * around a call. A constant operand of + or - goes in the d field of an
+ * LDA and needs no register at all. Without it, as in Louden's compiler,
+ * every expression is computed in register 0 and every left operand is
+ * stored in the frame while the right one is computed. The Peephole then
+ * removes load and store pairs that the generator leaves behind.
+ *
+ * Locals start at zero, as in the other engines. An index outside its
+ * array jumps to code after the function that leaves the length in
+ * register 4 and loads from the address just above data memory, which
+ * TmMachine reports as the index error. A comparison of values with
+ * different signs is decided by the signs, since their difference may
+ * overflow.
+ *
+ * Names are resolved in declaration order, as in the ClosureCompiler, and
+ * a program that uses an undeclared name gives an InterpreterException.
+ */
+public class TmCodeGenerator {
+    static final int PC = 7;
+    static final int GP = 6;
+    static final int FP = 5;
+    static final int SCRATCH = 4;
+    static final int AC = 0;
+
+    // How many registers hold temporaries with register allocation
+    private static final int TEMP_REGISTERS = 4;
+
+    private static final int INPUT = SymbolTable.shared().intern("input");
+    private static final int OUTPUT = SymbolTable.shared().intern("output");
+    private static final int MAIN = SymbolTable.shared().intern("main");
+
+    // Where a variable lives: an offset from gp or fp
+    private static final class Slot {
+        final boolean global;
+        final boolean array;
+        // Set for an array parameter, whose slot holds the array's address
+        final boolean reference;
+        final int offset;
+        // The length of an array that is not a parameter
+        final int length;
+
+        Slot(boolean global, boolean array, boolean reference, int offset, int length) {
+            this.global = global;
+            this.array = array;
+            this.reference = reference;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        int base() {
+            return global ? GP : FP;
+        }
+    }
+
+    private static final class Function {
+        final String name;
+        final int label;
+        final boolean[] arrayParams;
+        final boolean returnsValue;
+
+        Function(String name, int label, boolean[] arrayParams, boolean returnsValue) {
+            this.name = name;
+            this.label = label;
+            this.arrayParams = arrayParams;
+            this.returnsValue = returnsValue;
+        }
+    }
+
+    private final CodeBuffer code = new CodeBuffer();
+    private final boolean allocate;
+    private final int registers;
+    private final Deque<Map<Integer, Slot>> scopes = new ArrayDeque<>();
+    private final Map<Integer, Function> functions = new HashMap<>();
+    private final StatementGenerator statements = new StatementGenerator();
+    private final ExpressionGenerator expressions = new ExpressionGenerator();
+    private final int mainLabel = code.newLabel();
+    // The index checks of the function being generated that jump to code
+    // after it: a label, a C- line and the register of the index for each
+    private final List<int[]> indexErrors = new ArrayList<>();
+
+    // The next free offset from gp, counting down
+    private int globalTop;
+    // The next free offset from fp, counting down
+    private int frameTop;
+    // The register ExpressionGenerator leaves its value in
+    private int target;
+    private Function function;
+
+    private TmCodeGenerator(boolean allocate) {
+        this.allocate = allocate;
+        this.registers = allocate ? TEMP_REGISTERS : 1;
+    }
+
+    /**
+     * @param sourceFile        the name of the source, for the header
+     * @param allocateRegisters keep temporaries in registers rather than in
+     *                          the frame
+     * @param peephole          run the Peephole over the code
+     * @throws InterpreterException if the program cannot be compiled
+     */
+    public static TmProgram generate(ProgramNode root, String sourceFile, boolean allocateRegisters,
+            boolean peephole) {
+        TmCodeGenerator generator = new TmCodeGenerator(allocateRegisters);
+        generator.generateProgram(root);
+        if (peephole) {
+            Peephole.run(generator.code);
+        }
+        return generator.code.assemble("C- compilation to TM code\nFile: " + sourceFile
+                + "\nRegister allocation " + (allocateRegisters ? "on" : "off")
+                + ", peephole " + (peephole ? "on" : "off"));
+    }
+
+    private void generateProgram(ProgramNode root) {
+        code.line(root.getLineNum());
+        code.rm(Opcode.LD, GP, 0, AC, "gp = highest address");
+        code.rm(Opcode.ST, AC, 0, AC, "clear location 0");
+        int setFrame = code.rm(Opcode.LDA, FP, 0, GP, "fp = below the globals");
+        // The globals get their places first, so the lengths of the arrays
+        // can be stored before main runs
+        List<DeclarationNode> declarations = root.getDeclarations();
+        int[] offsets = new int[declarations.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            if (declarations.get(i) instanceof VarDeclarationNode) {
+                VarDeclarationNode var = (VarDeclarationNode) declarations.get(i);
+                int offset = allocate(var, true);
+                offsets[i] = offset;
+                if (var.isArray()) {
+                    code.line(var.getLineNum());
+                    code.rm(Opcode.LDC, AC, var.getArraySize(), 0, "size of " + var.getName());
+                    code.rm(Opcode.ST, AC, offset - 1, GP, "length of " + var.getName());
+                }
+            }
+        }
+        code.line(root.getLineNum());
+        callSequence(mainLabel, "call main");
+        code.ro(Opcode.HALT, 0, 0, 0, "end");
+
+        scopes.push(new HashMap<>());
+        for (int i = 0; i < offsets.length; i++) {
+            DeclarationNode decl = declarations.get(i);
+            if (decl instanceof VarDeclarationNode) {
+                VarDeclarationNode var = (VarDeclarationNode) decl;
+                declare(var.getSymbol(), var.getName(), var.getLineNum(),
+                        new Slot(true, var.isArray(), false, offsets[i], length(var)));
+            } else {
+                FunDeclarationNode fun = (FunDeclarationNode) decl;
+                if (functions.containsKey(fun.getSymbol()) || scopes.peek().containsKey(fun.getSymbol())) {
+                    throw new InterpreterException(fun.getLineNum(), fun.getName() + " is already declared");
+                }
+                try {
+                    generateFunction(fun);
+                } catch (StackOverflowError e) {
+                    throw new InterpreterException(fun.getLineNum(),
+                            "Function " + fun.getName() + " nests too deeply to compile");
+                }
+            }
+        }
+        scopes.pop();
+        code.setD(setFrame, globalTop);
+
+        Function main = functions.get(MAIN);
+        if (main == null || main.arrayParams.length != 0) {
+            throw new InterpreterException(root.getLineNum(), "No main(void) function");
+        }
+    }
+
+    private void generateFunction(FunDeclarationNode fun) {
+        List<ParamNode> params = fun.getParams();
+        boolean[] arrayParams = new boolean[params.size()];
+        for (int i = 0; i < arrayParams.length; i++) {
+            arrayParams[i] = params.get(i).isArray();
+        }
+        int label = fun.getSymbol() == MAIN ? mainLabel : code.newLabel();
+        function = new Function(fun.getName(), label, arrayParams, fun.getType() == TypeSpecifier.INT);
+        functions.put(fun.getSymbol(), function);
+
+        code.line(fun.getLineNum());
+        code.mark(label);
+        code.rm(Opcode.ST, AC, 0, FP, fun.getName() + ": store return address");
+        frameTop = -2 - params.size();
+        scopes.push(new HashMap<>());
+        for (int i = 0; i < params.size(); i++) {
+            ParamNode param = params.get(i);
+            declare(param.getSymbol(), param.getName(), param.getLineNum(),
+                    new Slot(false, param.isArray(), param.isArray(), -2 - i, 0));
+        }
+        fun.getBody().accept(statements);
+        scopes.pop();
+
+        if (function.returnsValue) {
+            code.rm(Opcode.LDC, AC, 0, 0, "return 0");
+        }
+        returnSequence();
+        for (int[] error : indexErrors) {
+            code.line(error[1]);
+            code.mark(error[0]);
+            code.ro(Opcode.SUB, SCRATCH, error[2], SCRATCH, "length of the array");
+            code.rm(Opcode.LD, error[2], 1, GP, "index outside the array");
+        }
+        indexErrors.clear();
+        function = null;
+    }
+
+    // Calls the function at label, with fp already pointing to its frame
+    private void callSequence(int label, String comment) {
+        code.rm(Opcode.LDA, AC, 1, PC, CodeBuffer.PINNED, "return address");
+        code.jump(Opcode.LDA, PC, label, comment);
+        // Returns come back here, so the Peephole must keep it
+        code.mark(code.newLabel());
+    }
+
+    private void returnSequence() {
+        code.rm(Opcode.LD, SCRATCH, 0, FP, "load return address");
+        code.rm(Opcode.LD, FP, -1, FP, "pop frame");
+        code.rm(Opcode.LDA, PC, 0, SCRATCH, "return");
+    }
+
+    /**
+     * Gives a variable room below globalTop or frameTop, with a word for
+     * the length below an array.
+     *
+     * @return the offset of the variable, or of element 0 of an array
+     */
+    private int allocate(VarDeclarationNode var, boolean global) {
+        int size = var.isArray() ? var.getArraySize() + 1 : 1;
+        int first = var.isArray() ? 2 : 1;
+        if (global) {
+            globalTop -= size;
+            return globalTop + first;
+        }
+        frameTop -= size;
+        return frameTop + first;
+    }
+
+    private static int length(VarDeclarationNode var) {
+        return var.isArray() ? var.getArraySize() : 0;
+    }
+
+    // Gives a temporary a slot in the frame; pop with frameTop++
+    private int pushTemp() {
+        return frameTop--;
+    }
+
+    private void declare(int symbol, String name, int line, Slot slot) {
+        if (scopes.peek().putIfAbsent(symbol, slot) != null) {
+            throw new InterpreterException(line, name + " is already declared");
+        }
+    }
+
+    private Slot lookup(VarExpressionNode var) {
+        for (Map<Integer, Slot> scope : scopes) {
+            Slot slot = scope.get(var.getSymbol());
+            if (slot != null) {
+                return slot;
+            }
+        }
+        throw new InterpreterException(var.getLineNum(), "Undeclared variable " + var.getName());
+    }
+
+    // Leaves the value of node in register k; registers below k are kept
+    private void generate(ExpressionNode node, int k) {
+        int saved = target;
+        target = k;
+        node.accept(expressions);
+        target = saved;
+    }
+
+    // Leaves the address of element 0 of the array in register k
+    private void arrayAddress(Slot slot, String name, int k) {
+        if (slot.reference) {
+            code.rm(Opcode.LD, k, slot.offset, FP, "load address of " + name);
+        } else {
+            code.rm(Opcode.LDA, k, slot.offset, slot.base(), "address of " + name);
+        }
+    }
+
+    // Leaves the address of the element in register k
+    private void elementAddress(VarExpressionNode var, Slot slot, int k) {
+        checkArray(var, slot);
+        generate(var.getIndex(), k);
+        indexedAddress(var, slot, k);
+    }
+
+    private static void checkArray(VarExpressionNode var, Slot slot) {
+        if (!slot.array) {
+            throw new InterpreterException(var.getLineNum(), var.getName() + " is not an array");
+        }
+    }
+
+    /**
+     * Turns the index in register k into the address of the element, after
+     * checking it. When the check fails, register 4 holds the index minus
+     * the length, which may have overflowed if the index is negative; the
+     * length is found again by subtracting it from the index.
+     */
+    private void indexedAddress(VarExpressionNode var, Slot slot, int k) {
+        String name = var.getName();
+        int error = code.newLabel();
+        indexErrors.add(new int[] {error, var.getLineNum(), k});
+        if (slot.reference) {
+            arrayAddress(slot, name, SCRATCH);
+            code.rm(Opcode.LD, SCRATCH, -1, SCRATCH, "length of " + name);
+            code.ro(Opcode.SUB, SCRATCH, k, SCRATCH, "index - length");
+        } else {
+            code.rm(Opcode.LDA, SCRATCH, -slot.length, k, "index - length");
+        }
+        code.jump(Opcode.JGE, SCRATCH, error, "index too large");
+        code.jump(Opcode.JLT, k, error, "index below 0");
+        arrayAddress(slot, name, SCRATCH);
+        code.ro(Opcode.ADD, k, SCRATCH, k, "address of " + name + "[]");
+    }
+
+    private static boolean isLeaf(ExpressionNode node) {
+        return node instanceof NumberNode || node instanceof VarExpressionNode && !((VarExpressionNode) node).isArray();
+    }
+
+    /**
+     * Computes left and then right, with register k for the first.
+     *
+     * @return the register of left times 8 plus the register of right
+     */
+    private int operands(ExpressionNode left, ExpressionNode right, int k) {
+        generate(left, k);
+        if (k + 1 < registers) {
+            generate(right, k + 1);
+            return k * 8 + k + 1;
+        }
+        if (allocate && isLeaf(right)) {
+            generate(right, SCRATCH);
+            return k * 8 + SCRATCH;
+        }
+        int temp = pushTemp();
+        code.rm(Opcode.ST, k, temp, FP, CodeBuffer.SPILL, "spill left operand");
+        generate(right, k);
+        code.rm(Opcode.LD, SCRATCH, temp, FP, CodeBuffer.SPILL, "reload left operand");
+        frameTop++;
+        return SCRATCH * 8 + k;
+    }
+
+    private void arithmetic(ExpressionNode left, Opcode op, ExpressionNode right, int k) {
+        if (allocate && right instanceof NumberNode && (op == Opcode.ADD || op == Opcode.SUB)) {
+            int value = ((NumberNode) right).getValue();
+            generate(left, k);
+            code.rm(Opcode.LDA, k, op == Opcode.ADD ? value : -value, k, op == Opcode.ADD ? "add" : "subtract");
+            return;
+        }
+        int registers = operands(left, right, k);
+        code.ro(op, k, registers / 8, registers % 8, op.name().toLowerCase());
+    }
+
+    /**
+     * Emits a jump to label, taken when the condition is true if whenTrue
+     * is set and when it is false otherwise. Uses registers k and up.
+     */
+    private void branch(ExpressionNode condition, int label, boolean whenTrue, int k) {
+        if (condition instanceof SimpleExpressionNode && ((SimpleExpressionNode) condition).isRelational()) {
+            SimpleExpressionNode compare = (SimpleExpressionNode) condition;
+            RelOpType operator = whenTrue ? compare.getRelOperator() : negate(compare.getRelOperator());
+            boolean ordered = operator != RelOpType.EQ && operator != RelOpType.NEQ;
+            int skip = code.newLabel();
+            int less = holds(operator, -1) ? label : skip;
+            int greater = holds(operator, 1) ? label : skip;
+            if (allocate && compare.getRight() instanceof NumberNode) {
+                int value = ((NumberNode) compare.getRight()).getValue();
+                generate(compare.getLeft(), k);
+                if (ordered && value > 0) {
+                    code.jump(Opcode.JLT, k, less, "left < 0 < " + value);
+                } else if (ordered && value < 0) {
+                    code.jump(Opcode.JGE, k, greater, "left >= 0 > " + value);
+                }
+                if (value != 0) {
+                    code.rm(Opcode.LDA, k, -value, k, "compare with " + value);
+                }
+            } else {
+                int registers = operands(compare.getLeft(), compare.getRight(), k);
+                int left = registers / 8;
+                int right = registers % 8;
+                if (ordered) {
+                    int leftNotNegative = code.newLabel();
+                    int sameSigns = code.newLabel();
+                    code.jump(Opcode.JGE, left, leftNotNegative, "left >= 0");
+                    code.jump(Opcode.JGE, right, less, "left < 0 <= right");
+                    code.jump(Opcode.LDA, PC, sameSigns, "both below 0");
+                    code.mark(leftNotNegative);
+                    code.jump(Opcode.JLT, right, greater, "right < 0 <= left");
+                    code.mark(sameSigns);
+                }
+                code.ro(Opcode.SUB, k, left, right, "compare");
+            }
+            code.jump(jumpOpcode(operator), k, label, "if " + operator);
+            code.mark(skip);
+        } else {
+            generate(condition, k);
+            code.jump(whenTrue ? Opcode.JNE : Opcode.JEQ, k, label, whenTrue ? "if true" : "if false");
+        }
+    }
+
+    // Whether the comparison holds when left - right has the sign of
+    // difference, -1 or 1
+    private static boolean holds(RelOpType operator, int difference) {
+        switch (operator) {
+            case LTE:
+            case LT:
+                return difference < 0;
+            case GT:
+            case GTE:
+                return difference > 0;
+            case EQ:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static Opcode jumpOpcode(RelOpType operator) {
+        switch (operator) {
+            case LTE:
+                return Opcode.JLE;
+            case LT:
+                return Opcode.JLT;
+            case GT:
+                return Opcode.JGT;
+            case GTE:
+                return Opcode.JGE;
+            case EQ:
+                return Opcode.JEQ;
+            default:
+                return Opcode.JNE;
+        }
+    }
+
+    private static RelOpType negate(RelOpType operator) {
+        switch (operator) {
+            case LTE:
+                return RelOpType.GT;
+            case LT:
+                return RelOpType.GTE;
+            case GT:
+                return RelOpType.LTE;
+            case GTE:
+                return RelOpType.LT;
+            case EQ:
+                return RelOpType.NEQ;
+            default:
+                return RelOpType.EQ;
+        }
+    }
+
+    /**
+     * Emits an assignment, leaving the value in register k.
+     */
+    private void assign(AssignExpressionNode node, int k) {
+        VarExpressionNode var = node.getVariable();
+        Slot slot = lookup(var);
+        if (!var.isArray()) {
+            if (slot.array) {
+                throw new InterpreterException(var.getLineNum(), "Cannot assign to array " + var.getName());
+            }
+            generate(node.getExpression(), k);
+            code.rm(Opcode.ST, k, slot.offset, slot.base(), "store " + var.getName());
+            return;
+        }
+
+        // The index is checked after the value is computed, as in the
+        // other engines
+        checkArray(var, slot);
+        generate(var.getIndex(), k);
+        if (k + 1 < registers) {
+            generate(node.getExpression(), k + 1);
+            indexedAddress(var, slot, k);
+            code.rm(Opcode.ST, k + 1, 0, k, "store " + var.getName() + "[]");
+            code.rm(Opcode.LDA, k, 0, k + 1, "value of the assignment");
+            return;
+        }
+        int index = pushTemp();
+        code.rm(Opcode.ST, k, index, FP, CodeBuffer.SPILL, "spill index");
+        generate(node.getExpression(), k);
+        int value = pushTemp();
+        code.rm(Opcode.ST, k, value, FP, CodeBuffer.SPILL, "spill value");
+        code.rm(Opcode.LD, k, index, FP, CodeBuffer.SPILL, "reload index");
+        indexedAddress(var, slot, k);
+        code.rm(Opcode.LD, SCRATCH, value, FP, CodeBuffer.SPILL, "reload value");
+        frameTop += 2;
+        code.rm(Opcode.ST, SCRATCH, 0, k, "store " + var.getName() + "[]");
+        code.rm(Opcode.LDA, k, 0, SCRATCH, "value of the assignment");
+    }
+
+    /**
+     * Emits a call, leaving its value in register k. Registers below k are
+     * saved in the frame around it.
+     */
+    private void call(CallNode node, int k) {
+        int line = node.getLineNum();
+        List<ExpressionNode> args = node.getArguments();
+        Function callee = functions.get(node.getSymbol());
+        if (callee == null) {
+            builtin(node, k);
+            return;
+        }
+        if (args.size() != callee.arrayParams.length) {
+            throw new InterpreterException(line, callee.name + " takes " + callee.arrayParams.length
+                    + " arguments, not " + args.size());
+        }
+
+        int saved = frameTop;
+        for (int i = 0; i < k; i++) {
+            code.rm(Opcode.ST, i, pushTemp(), FP, CodeBuffer.SPILL, "save register " + i);
+        }
+        int frame = frameTop;
+        frameTop -= 2 + args.size();
+        for (int i = 0; i < args.size(); i++) {
+            ExpressionNode arg = args.get(i);
+            if (callee.arrayParams[i]) {
+                Slot slot = arg instanceof VarExpressionNode && !((VarExpressionNode) arg).isArray()
+                        ? lookup((VarExpressionNode) arg) : null;
+                if (slot == null || !slot.array) {
+                    throw new InterpreterException(line, "An argument of " + callee.name + " must be an array");
+                }
+                arrayAddress(slot, ((VarExpressionNode) arg).getName(), AC);
+            } else {
+                generate(arg, AC);
+            }
+            code.rm(Opcode.ST, AC, frame - 2 - i, FP, "argument " + (i + 1));
+        }
+        code.rm(Opcode.ST, FP, frame - 1, FP, "store fp");
+        code.rm(Opcode.LDA, FP, frame, FP, "push frame");
+        callSequence(callee.label, "call " + callee.name);
+
+        if (!callee.returnsValue) {
+            code.rm(Opcode.LDC, k, 0, 0, "no value");
+        } else if (k != AC) {
+            code.rm(Opcode.LDA, k, 0, AC, "move result");
+        }
+        for (int i = 0; i < k; i++) {
+            code.rm(Opcode.LD, i, saved - i, FP, CodeBuffer.SPILL, "restore register " + i);
+        }
+        frameTop = saved;
+    }
+
+    private void builtin(CallNode node, int k) {
+        int line = node.getLineNum();
+        int arguments = node.getArguments().size();
+        if (node.getSymbol() == INPUT && arguments == 0) {
+            code.ro(Opcode.IN, k, 0, 0, "input");
+        } else if (node.getSymbol() == OUTPUT && arguments == 1) {
+            generate(node.getArguments().get(0), k);
+            code.ro(Opcode.OUT, k, 0, 0, "output");
+            code.rm(Opcode.LDC, k, 0, 0, "no value");
+        } else if (node.getSymbol() == INPUT || node.getSymbol() == OUTPUT) {
+            throw new InterpreterException(line, node.getFunctionName() + " takes "
+                    + (node.getSymbol() == INPUT ? 0 : 1) + " arguments, not " + arguments);
+        } else {
+            throw new InterpreterException(line, "Undeclared function " + node.getFunctionName());
+        }
+    }
+
+    private final class StatementGenerator extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            throw new IllegalArgumentException("Not a statement: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitCompoundStmt(CompoundStmtNode node) {
+            int saved = frameTop;
+            scopes.push(new HashMap<>());
+            List<VarDeclarationNode> locals = node.getLocalDeclarations();
+            if (!locals.isEmpty()) {
+                code.line(locals.get(0).getLineNum());
+                code.rm(Opcode.LDC, 1, 0, 0, "zero");
+            }
+            for (VarDeclarationNode var : locals) {
+                int offset = allocate(var, false);
+                declare(var.getSymbol(), var.getName(), var.getLineNum(),
+                        new Slot(false, var.isArray(), false, offset, length(var)));
+                code.line(var.getLineNum());
+                if (!var.isArray()) {
+                    code.rm(Opcode.ST, 1, offset, FP, "clear " + var.getName());
+                    continue;
+                }
+                int loop = code.newLabel();
+                code.rm(Opcode.LDA, 2, offset, FP, "address of " + var.getName());
+                code.rm(Opcode.LDC, 3, var.getArraySize(), 0, "size of " + var.getName());
+                code.rm(Opcode.ST, 3, offset - 1, FP, "length of " + var.getName());
+                code.mark(loop);
+                code.rm(Opcode.ST, 1, 0, 2, "clear " + var.getName() + "[]");
+                code.rm(Opcode.LDA, 2, 1, 2, "next element");
+                code.rm(Opcode.LDA, 3, -1, 3, "count down");
+                code.jump(Opcode.JGT, 3, loop, "until cleared");
+            }
+            for (StatementNode statement : node.getStatements()) {
+                statement.accept(this);
+            }
+            scopes.pop();
+            frameTop = saved;
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(ExpressionStmtNode node) {
+            ExpressionNode expression = node.getExpression();
+            if (expression != null) {
+                code.line(node.getLineNum());
+                generate(expression, AC);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSelectionStmt(SelectionStmtNode node) {
+            code.line(node.getLineNum());
+            int elseLabel = code.newLabel();
+            branch(node.getCondition(), elseLabel, false, AC);
+            node.getThenBranch().accept(this);
+            if (node.getElseBranch() == null) {
+                code.mark(elseLabel);
+                return null;
+            }
+            int end = code.newLabel();
+            code.jump(Opcode.LDA, PC, end, "skip else");
+            code.mark(elseLabel);
+            node.getElseBranch().accept(this);
+            code.mark(end);
+            return null;
+        }
+
+        @Override
+        public Void visitIterationStmt(IterationStmtNode node) {
+            // The condition goes after the body, so each iteration takes
+            // one jump
+            code.line(node.getLineNum());
+            int body = code.newLabel();
+            int condition = code.newLabel();
+            code.jump(Opcode.LDA, PC, condition, "to condition");
+            code.mark(body);
+            node.getBody().accept(this);
+            code.line(node.getLineNum());
+            code.mark(condition);
+            branch(node.getCondition(), body, true, AC);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(ReturnStmtNode node) {
+            code.line(node.getLineNum());
+            if (node.getExpression() != null) {
+                generate(node.getExpression(), AC);
+            } else if (function.returnsValue) {
+                code.rm(Opcode.LDC, AC, 0, 0, "return 0");
+            }
+            returnSequence();
+            return null;
+        }
+    }
+
+    // Each visit leaves the expression's value in register target
+    private final class ExpressionGenerator extends SimpleNodeVisitor<Void> {
+        @Override
+        protected Void defaultVisit(AbstractNode node) {
+            throw new IllegalArgumentException("Not an expression: " + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitNumber(NumberNode node) {
+            code.rm(Opcode.LDC, target, node.getValue(), 0, "constant");
+            return null;
+        }
+
+        @Override
+        public Void visitVarExpression(VarExpressionNode node) {
+            Slot slot = lookup(node);
+            if (!node.isArray()) {
+                if (slot.array) {
+                    throw new InterpreterException(node.getLineNum(), "Array " + node.getName() + " used as a value");
+                }
+                code.rm(Opcode.LD, target, slot.offset, slot.base(), "load " + node.getName());
+                return null;
+            }
+            elementAddress(node, slot, target);
+            code.rm(Opcode.LD, target, 0, target, "load " + node.getName() + "[]");
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpression(AssignExpressionNode node) {
+            assign(node, target);
+            return null;
+        }
+
+        @Override
+        public Void visitCall(CallNode node) {
+            call(node, target);
+            return null;
+        }
+
+        @Override
+        public Void visitSimpleExpression(SimpleExpressionNode node) {
+            if (node.getRight() == null) {
+                return node.getLeft().accept(this);
+            }
+            if (node.isRelational()) {
+                int k = target;
+                int isFalse = code.newLabel();
+                int end = code.newLabel();
+                branch(node, isFalse, false, k);
+                code.rm(Opcode.LDC, k, 1, 0, "true");
+                code.jump(Opcode.LDA, PC, end, "skip false");
+                code.mark(isFalse);
+                code.rm(Opcode.LDC, k, 0, 0, "false");
+                code.mark(end);
+                return null;
+            }
+            arithmetic(node.getLeft(), node.getAddOperator() == AddOpType.PLUS ? Opcode.ADD : Opcode.SUB,
+                    node.getRight(), target);
+            return null;
+        }
+
+        @Override
+        public Void visitAddExpression(AddExpressionNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            arithmetic(node.getLeft(), node.getOperator() == AddOpType.PLUS ? Opcode.ADD : Opcode.SUB,
+                    node.getRight(), target);
+            return null;
+        }
+
+        @Override
+        public Void visitTerm(TermNode node) {
+            if (node.getOperator() == null) {
+                return node.getLeft().accept(this);
+            }
+            arithmetic(node.getLeft(), node.getOperator() == MulOpType.TIMES ? Opcode.MUL : Opcode.DIV,
+                    node.getRight(), target);
+            return null;
+        }
+    }
+}
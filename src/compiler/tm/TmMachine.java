@@ -0,0 +1,229 @@
+package compiler.tm;
+
+import compiler.interpreter.InterpreterException;
+import compiler.interpreter.ProgramIo;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Simulates the Tiny Machine running a TmProgram, counting the
+ * instructions it executes and the cycles they take by the costs in
+ * Opcode.
+ *
+ * As in Louden's simulator, a run starts at address 0 with every register
+ * and data word zero, except location 0, which holds the highest data
+ * address. The program counter is register 7 and already points to the
+ * next instruction while one executes.
+ *
+ * The instructions are decoded once into arrays, so a step is an array
+ * read and a switch. Addresses are checked by the array accesses
+ * themselves.
+ *
+ * A load from the address just above data memory is how TmCodeGenerator
+ * reports an index outside an array: register r holds the index and
+ * register 4 the length, and the error says so as the other engines do.
+ */
+public final class TmMachine {
+    public static final int REGISTERS = 8;
+    public static final int DEFAULT_MEMORY = 1 << 20;
+
+    private static final int PC = REGISTERS - 1;
+    // Holds the length of the array at an index error
+    private static final int LENGTH = 4;
+
+    private final TmProgram program;
+    private final Opcode[] ops;
+    private final int[] r;
+    private final int[] s;
+    private final int[] d;
+    private final int[] cycleCosts;
+    private final int[] memory;
+    private final int[] registers = new int[REGISTERS];
+    private long instructions;
+    private long cycles;
+
+    public TmMachine(TmProgram program) {
+        this(program, DEFAULT_MEMORY);
+    }
+
+    /**
+     * @param memoryWords the size of data memory
+     */
+    public TmMachine(TmProgram program, int memoryWords) {
+        if (memoryWords < 1) {
+            throw new IllegalArgumentException("Data memory needs at least one word");
+        }
+        this.program = program;
+        int size = program.size();
+        ops = new Opcode[size];
+        r = new int[size];
+        s = new int[size];
+        d = new int[size];
+        cycleCosts = new int[size];
+        for (int i = 0; i < size; i++) {
+            ops[i] = program.getOpcode(i);
+            r[i] = program.getR(i);
+            s[i] = program.getS(i);
+            d[i] = program.getD(i);
+            cycleCosts[i] = ops[i].getCycles();
+        }
+        memory = new int[memoryWords];
+    }
+
+    /**
+     * @return the instructions the last run executed
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the cycles the last run took
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Runs the program until it halts.
+     *
+     * @param input  supplies the values of IN; it throws
+     *               NoSuchElementException when there are no more
+     * @param output receives the values of OUT
+     * @throws InterpreterException if the program divides by zero, uses an
+     *                              index outside an array or an address
+     *                              outside memory
+     */
+    public void run(IntSupplier input, IntConsumer output) {
+        int[] reg = registers;
+        int[] mem = memory;
+        Arrays.fill(reg, 0);
+        Arrays.fill(mem, 0);
+        mem[0] = mem.length - 1;
+
+        Opcode[] ops = this.ops;
+        int[] r = this.r;
+        int[] s = this.s;
+        int[] d = this.d;
+        int[] cycleCosts = this.cycleCosts;
+        long count = 0;
+        long cycles = 0;
+        int pc = 0;
+        try {
+            while (true) {
+                Opcode op = ops[pc];
+                int next = pc + 1;
+                reg[PC] = next;
+                count++;
+                cycles += cycleCosts[pc];
+                switch (op) {
+                    case HALT:
+                        return;
+                    case IN:
+                        reg[r[pc]] = read(input, pc);
+                        break;
+                    case OUT:
+                        output.accept(reg[r[pc]]);
+                        break;
+                    case ADD:
+                        reg[r[pc]] = reg[s[pc]] + reg[d[pc]];
+                        break;
+                    case SUB:
+                        reg[r[pc]] = reg[s[pc]] - reg[d[pc]];
+                        break;
+                    case MUL:
+                        reg[r[pc]] = reg[s[pc]] * reg[d[pc]];
+                        break;
+                    case DIV:
+                        if (reg[d[pc]] == 0) {
+                            throw new InterpreterException(program.getLine(pc), "Division by zero");
+                        }
+                        reg[r[pc]] = reg[s[pc]] / reg[d[pc]];
+                        break;
+                    case LD:
+                        reg[r[pc]] = mem[d[pc] + reg[s[pc]]];
+                        break;
+                    case ST:
+                        mem[d[pc] + reg[s[pc]]] = reg[r[pc]];
+                        break;
+                    case LDA:
+                        reg[r[pc]] = d[pc] + reg[s[pc]];
+                        break;
+                    case LDC:
+                        reg[r[pc]] = d[pc];
+                        break;
+                    case JLT:
+                        if (reg[r[pc]] < 0) {
+                            reg[PC] = d[pc] + reg[s[pc]];
+                        }
+                        break;
+                    case JLE:
+                        if (reg[r[pc]] <= 0) {
+                            reg[PC] = d[pc] + reg[s[pc]];
+                        }
+                        break;
+                    case JGT:
+                        if (reg[r[pc]] > 0) {
+                            reg[PC] = d[pc] + reg[s[pc]];
+                        }
+                        break;
+                    case JGE:
+                        if (reg[r[pc]] >= 0) {
+                            reg[PC] = d[pc] + reg[s[pc]];
+                        }
+                        break;
+                    case JEQ:
+                        if (reg[r[pc]] == 0) {
+                            reg[PC] = d[pc] + reg[s[pc]];
+                        }
+                        break;
+                    default:
+                        if (reg[r[pc]] != 0) {
+                            reg[PC] = d[pc] + reg[s[pc]];
+                        }
+                        break;
+                }
+                pc = reg[PC];
+                if (pc != next) {
+                    // A taken jump
+                    cycles++;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            if (pc < 0 || pc >= ops.length) {
+                throw new InterpreterException(0, "Jumped to address " + pc + ", outside the program");
+            }
+            int address = d[pc] + reg[s[pc]];
+            if (ops[pc] == Opcode.LD && address == mem.length) {
+                throw new InterpreterException(program.getLine(pc), "Index " + reg[r[pc]]
+                        + " is outside an array of " + reg[LENGTH] + " elements");
+            }
+            throw new InterpreterException(program.getLine(pc), "Data address " + address
+                    + " is outside memory" + (address < 0 ? ", the stack overflowed" : ""));
+        } finally {
+            this.instructions = count;
+            this.cycles = cycles;
+        }
+    }
+
+    /**
+     * Runs the program, reading the values of IN from in, separated by
+     * white space, and writing each value of OUT to out on a line of its
+     * own. out is not flushed.
+     */
+    public void run(Reader in, Writer out) {
+        run(ProgramIo.reader(in), ProgramIo.writer(out));
+    }
+
+    private int read(IntSupplier input, int pc) {
+        try {
+            return input.getAsInt();
+        } catch (NoSuchElementException e) {
+            throw new InterpreterException(program.getLine(pc), "input() found no more numbers");
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package compiler.tm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A Tiny Machine program: the instructions in memory order, the C- line
+ * each came from, and a comment for each.
+ *
+ * It is written and read in the assembly format of Louden's TM simulator,
+ * one instruction per line:
+ *
+ *     12:     LDA  0,1(7)     return address
+ *
+ * where lines starting with '*' are comments. The C- lines are not part of
+ * the format, so a program that was read has none.
+ */
+public final class TmProgram {
+    private final Opcode[] ops;
+    private final int[] r;
+    private final int[] s;
+    // t for a register-only instruction, d for the others
+    private final int[] d;
+    private final int[] lines;
+    private final String[] comments;
+    private final String header;
+
+    TmProgram(Opcode[] ops, int[] r, int[] s, int[] d, int[] lines, String[] comments, String header) {
+        this.ops = ops;
+        this.r = r;
+        this.s = s;
+        this.d = d;
+        this.lines = lines;
+        this.comments = comments;
+        this.header = header;
+    }
+
+    /**
+     * @return the number of instructions
+     */
+    public int size() {
+        return ops.length;
+    }
+
+    public Opcode getOpcode(int address) {
+        return ops[address];
+    }
+
+    public int getR(int address) {
+        return r[address];
+    }
+
+    public int getS(int address) {
+        return s[address];
+    }
+
+    /**
+     * @return t for a register-only instruction and d for the others
+     */
+    public int getD(int address) {
+        return d[address];
+    }
+
+    /**
+     * @return the C- line the instruction came from, or 0 if not known
+     */
+    public int getLine(int address) {
+        return address >= 0 && address < lines.length ? lines[address] : 0;
+    }
+
+    /**
+     * @return the instruction in assembly, without its address
+     */
+    public String toString(int address) {
+        Opcode op = ops[address];
+        return op.isRegisterOnly()
+                ? String.format("%5s  %d,%d,%d", op, r[address], s[address], d[address])
+                : String.format("%5s  %d,%d(%d)", op, r[address], d[address], s[address]);
+    }
+
+    /**
+     * Writes the program in assembly.
+     */
+    public void write(Writer out) throws IOException {
+        for (String line : header.split("\n", -1)) {
+            if (!line.isEmpty()) {
+                out.write("* " + line + "\n");
+            }
+        }
+        for (int i = 0; i < ops.length; i++) {
+            out.write(String.format("%3d:  %s", i, toString(i)));
+            if (comments[i] != null) {
+                out.write(" \t" + comments[i]);
+            }
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Reads a program in assembly. Instructions may come in any order, and
+     * any address without one holds HALT.
+     *
+     * @throws IllegalArgumentException if a line is not an instruction
+     */
+    public static TmProgram parse(Reader in) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        Opcode[] ops = new Opcode[64];
+        int[] r = new int[64];
+        int[] s = new int[64];
+        int[] d = new int[64];
+        String[] comments = new String[64];
+        int size = 0;
+        int lineNum = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNum++;
+            String text = line.trim();
+            if (text.isEmpty() || text.startsWith("*")) {
+                continue;
+            }
+            try {
+                int colon = text.indexOf(':');
+                int address = Integer.parseInt(text.substring(0, colon).trim());
+                if (address < 0) {
+                    throw new IllegalArgumentException("negative address");
+                }
+                if (address >= ops.length) {
+                    int length = Math.max(ops.length * 2, address + 1);
+                    ops = Arrays.copyOf(ops, length);
+                    r = Arrays.copyOf(r, length);
+                    s = Arrays.copyOf(s, length);
+                    d = Arrays.copyOf(d, length);
+                    comments = Arrays.copyOf(comments, length);
+                }
+                String rest = text.substring(colon + 1).trim();
+                int space = 0;
+                while (space < rest.length() && !Character.isWhitespace(rest.charAt(space))) {
+                    space++;
+                }
+                Opcode op = Opcode.valueOf(rest.substring(0, space));
+                rest = rest.substring(space).trim();
+                int end = 0;
+                while (end < rest.length() && !Character.isWhitespace(rest.charAt(end))) {
+                    end++;
+                }
+                String[] operands = rest.substring(0, end).split("[,()]");
+                if (op.isRegisterOnly() ? operands.length != 3 : operands.length != 3 || !rest.startsWith(")", end - 1)) {
+                    throw new IllegalArgumentException("bad operands");
+                }
+                ops[address] = op;
+                r[address] = Integer.parseInt(operands[0]);
+                if (op.isRegisterOnly()) {
+                    s[address] = Integer.parseInt(operands[1]);
+                    d[address] = Integer.parseInt(operands[2]);
+                } else {
+                    d[address] = Integer.parseInt(operands[1]);
+                    s[address] = Integer.parseInt(operands[2]);
+                }
+                if (r[address] < 0 || r[address] >= TmMachine.REGISTERS
+                        || s[address] < 0 || s[address] >= TmMachine.REGISTERS
+                        || op.isRegisterOnly() && (d[address] < 0 || d[address] >= TmMachine.REGISTERS)) {
+                    throw new IllegalArgumentException("no such register");
+                }
+                String comment = rest.substring(end).trim();
+                comments[address] = comment.isEmpty() ? null : comment;
+                size = Math.max(size, address + 1);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + lineNum + ": not a TM instruction: " + text, e);
+            }
+        }
+
+        ops = Arrays.copyOf(ops, size);
+        for (int i = 0; i < size; i++) {
+            if (ops[i] == null) {
+                ops[i] = Opcode.HALT;
+            }
+        }
+        return new TmProgram(ops, Arrays.copyOf(r, size), Arrays.copyOf(s, size), Arrays.copyOf(d, size),
+                new int[size], Arrays.copyOf(comments, size), "");
+    }
+}
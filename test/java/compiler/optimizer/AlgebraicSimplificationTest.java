@@ -0,0 +1,78 @@
+package compiler.optimizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import compiler.interpreter.ClosureCompiler;
+import compiler.interpreter.InterpreterException;
+import compiler.parser.CMinusParser;
+import compiler.parser.AST.*;
+import compiler.scanner.cminus;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The standard passes must not change what a program does.
+ */
+class AlgebraicSimplificationTest {
+
+    private static ProgramNode optimize(String source) throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.parse();
+        assertTrue(parser.getDiagnostics().isEmpty(), parser.getErrors().toString());
+        return PassManager.standard().run(parser.getRoot());
+    }
+
+    // The argument of the first statement of main, output(argument)
+    private static ExpressionNode outputArgument(ProgramNode program) {
+        List<DeclarationNode> declarations = program.getDeclarations();
+        FunDeclarationNode main = (FunDeclarationNode) declarations.get(declarations.size() - 1);
+        StatementNode statement = main.getBody().getStatements().get(0);
+        CallNode call = (CallNode) ((ExpressionStmtNode) statement).getExpression();
+        return call.getArguments().get(0);
+    }
+
+    private static List<Integer> run(ProgramNode program) {
+        List<Integer> output = new ArrayList<>();
+        ClosureCompiler.compile(program).run(() -> 0, output::add);
+        return output;
+    }
+
+    @Test
+    void timesZeroKeepsDivision() throws IOException {
+        ProgramNode program = optimize("int x; int y; void main(void) { output(0 * (x / (y - 3))); }");
+        assertFalse(outputArgument(program) instanceof NumberNode);
+
+        ProgramNode divides = optimize("int y; void main(void) { output(0 * (6 / y)); }");
+        InterpreterException e = assertThrows(InterpreterException.class, () -> run(divides));
+        assertEquals("Line 1: Division by zero", e.getMessage());
+    }
+
+    @Test
+    void timesZeroKeepsArrayElement() throws IOException {
+        ProgramNode program = optimize("int a[2]; int i; void main(void) { output(a[i] * 0); }");
+        assertFalse(outputArgument(program) instanceof NumberNode);
+    }
+
+    @Test
+    void timesZeroDropsPlainOperand() throws IOException {
+        ProgramNode program = optimize("int x; void main(void) { output(0 * (x + 1)); }");
+        ExpressionNode argument = outputArgument(program);
+        assertTrue(argument instanceof NumberNode);
+        assertEquals(0, ((NumberNode) argument).getValue());
+    }
+
+    @Test
+    void timesZeroKeepsCall() throws IOException {
+        ProgramNode program = optimize("void main(void) { output(input() * 0); }");
+        assertFalse(outputArgument(program) instanceof NumberNode);
+    }
+
+    @Test
+    void identitiesAreRemoved() throws IOException {
+        ProgramNode program = optimize("int x; void main(void) { output((x + 0) * 1 / 1 - 0); }");
+        assertTrue(outputArgument(program) instanceof VarExpressionNode);
+    }
+}
@@ -0,0 +1,112 @@
+package compiler.parser.AST;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import compiler.parser.CMinusParser;
+import compiler.scanner.cminus;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips through BinaryTreeWriter, and what BinaryTreeReader does
+ * with bytes that were damaged on the way.
+ */
+class BinaryTreeReaderTest {
+    private static final String SOURCE = "int a[10];\nint f(int x, int y[]) { int z; z = x * y[0]; return z; }\n"
+            + "void main(void) { int i; i = 0; while (i < 10) { if (i != 3) a[i] = f(i, a); else ; i = i + 1; }"
+            + " output(a[9] - (1 + 2) / 3); }\n";
+
+    private static FlatTree parse(String source) throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.parseFlat();
+        assertTrue(parser.getDiagnostics().isEmpty(), parser.getErrors().toString());
+        return parser.getFlatRoot();
+    }
+
+    private static String print(AbstractNode node) throws IOException {
+        StringWriter out = new StringWriter();
+        TreePrinter printer = new TreePrinter(out);
+        node.printTree(printer, 0);
+        printer.flush();
+        return out.toString();
+    }
+
+    private static String print(FlatTree tree) throws IOException {
+        StringWriter out = new StringWriter();
+        TreePrinter printer = new TreePrinter(out);
+        tree.printTree(printer, tree.root(), 0);
+        printer.flush();
+        return out.toString();
+    }
+
+    // Reads bytes both ways and prints the trees; anything wrong with them
+    // must be an IOException
+    private static void readAndPrint(byte[] bytes) throws IOException {
+        BinaryTreeReader reader = new BinaryTreeReader(bytes);
+        ProgramNode root = reader.readNodes();
+        FlatTree flat = reader.readFlat();
+        if (root != null) {
+            assertEquals(print(root), print(flat));
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        FlatTree tree = parse(SOURCE);
+        byte[] bytes = BinaryTreeWriter.toBytes(tree, tree.root());
+        BinaryTreeReader reader = new BinaryTreeReader(bytes);
+        assertEquals(print(tree), print(reader.readNodes()));
+        assertEquals(print(tree), print(reader.readFlat()));
+    }
+
+    @Test
+    void everyDamagedByteIsAnIOException() throws IOException {
+        FlatTree tree = parse(SOURCE);
+        byte[] bytes = BinaryTreeWriter.toBytes(tree, tree.root());
+        int[] values = { 0x00, 0x01, 0x0F, 0x7F, 0x80, 0xFF };
+        for (int i = 0; i < bytes.length; i++) {
+            for (int value : values) {
+                byte[] damaged = bytes.clone();
+                damaged[i] = (byte) value;
+                try {
+                    readAndPrint(damaged);
+                } catch (IOException e) {
+                    // Expected for most
+                }
+            }
+        }
+    }
+
+    @Test
+    void truncatedIsAnIOException() throws IOException {
+        FlatTree tree = parse(SOURCE);
+        byte[] bytes = BinaryTreeWriter.toBytes(tree, tree.root());
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> readAndPrint(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void childOfTheWrongKind() throws IOException {
+        // The nodes of "int x;" end with the declaration, three bytes, and
+        // the program, three more. A NUMBER has the same layout as the
+        // declaration, so only the tag changes.
+        FlatTree tree = parse("int x;");
+        byte[] bytes = BinaryTreeWriter.toBytes(tree, tree.root());
+        bytes[bytes.length - 6] = (byte) FlatTree.Kind.NUMBER.ordinal();
+        IOException e = assertThrows(IOException.class, () -> new BinaryTreeReader(bytes).readNodes());
+        assertEquals("Corrupt binary AST: a NUMBER node in the wrong place", e.getMessage());
+    }
+
+    @Test
+    void rootOfTheWrongKind() throws IOException {
+        FlatTree tree = parse("int x;");
+        byte[] bytes = BinaryTreeWriter.toBytes(tree, tree.first(tree.root()));
+        IOException e = assertThrows(IOException.class, () -> new BinaryTreeReader(bytes).readNodes());
+        assertEquals("Corrupt binary AST: the root is a VARIABLE_DECLARATION", e.getMessage());
+    }
+}
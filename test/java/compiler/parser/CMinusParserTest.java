@@ -0,0 +1,116 @@
+package compiler.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import compiler.parser.AST.*;
+import compiler.scanner.cminus;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Syntax error recovery and the error cap of CMinusParser.
+ */
+class CMinusParserTest {
+
+    private static CMinusParser parse(String source) throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.parse();
+        return parser;
+    }
+
+    private static String print(CMinusParser parser) throws IOException {
+        StringWriter out = new StringWriter();
+        parser.printTree(out);
+        return out.toString();
+    }
+
+    private static String printFlat(String source) throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.parseFlat();
+        return print(parser);
+    }
+
+    private static Diagnostic.Code onlyError(CMinusParser parser) {
+        assertEquals(1, parser.getDiagnostics().size(), parser.getErrors().toString());
+        return parser.getDiagnostics().get(0).getCode();
+    }
+
+    @Test
+    void numberTooLargeInExpressionStatement() throws IOException {
+        CMinusParser parser = parse("void main(void){ 99999999999; }");
+        assertEquals(Diagnostic.Code.INVALID_NUMBER, onlyError(parser));
+        assertEquals("Line 1: Invalid number format: 99999999999", parser.getErrors().get(0));
+        assertNotNull(parser.getRoot());
+    }
+
+    @Test
+    void numberTooLargeInFactor() throws IOException {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        CMinusParser parser;
+        try {
+            parser = parse("void main(void){ output(1 + 99999999999); }");
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals(Diagnostic.Code.INVALID_NUMBER, onlyError(parser));
+        assertEquals("", captured.toString());
+    }
+
+    @Test
+    void arraySizeTooLarge() throws IOException {
+        CMinusParser parser = parse("int a[99999999999];\nvoid main(void){ int b[88888888888]; }");
+        List<Diagnostic> errors = parser.getDiagnostics();
+        assertEquals(2, errors.size());
+        assertEquals(Diagnostic.Code.INVALID_NUMBER, errors.get(0).getCode());
+        assertEquals(1, errors.get(0).getLine());
+        assertEquals(Diagnostic.Code.INVALID_NUMBER, errors.get(1).getCode());
+        assertEquals(2, errors.get(1).getLine());
+        assertEquals(2, parser.getRoot().getDeclarations().size());
+    }
+
+    @Test
+    void invalidStatementAfterIf() throws IOException {
+        String source = "void main(void) { int x; if (x) int y; output(1); }";
+        CMinusParser parser = parse(source);
+        assertEquals(Diagnostic.Code.INVALID_STATEMENT, onlyError(parser));
+
+        FunDeclarationNode main = (FunDeclarationNode) parser.getRoot().getDeclarations().get(0);
+        SelectionStmtNode selection = (SelectionStmtNode) main.getBody().getStatements().get(0);
+        assertNotNull(selection.getThenBranch());
+        assertEquals(print(parser), printFlat(source));
+    }
+
+    @Test
+    void invalidStatementAfterElseAndWhile() throws IOException {
+        String source = "void main(void) { int x; if (x) ; else } while (x) }";
+        CMinusParser parser = parse(source);
+        assertFalse(parser.getDiagnostics().isEmpty());
+        assertEquals(print(parser), printFlat(source));
+    }
+
+    @Test
+    void stopsAfterMaxErrors() throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(
+                "void main(void) { 1 2; 3 4; 5 6; 7 8; }")));
+        parser.setMaxErrors(2);
+        parser.parse();
+        List<Diagnostic> errors = parser.getDiagnostics();
+        assertEquals(3, errors.size());
+        assertEquals(Diagnostic.Code.TOO_MANY_ERRORS, errors.get(2).getCode());
+        assertNull(parser.getRoot());
+    }
+
+    @Test
+    void recoversAtNextDeclaration() throws IOException {
+        CMinusParser parser = parse("int 5;\nint x;\nvoid main(void) { }");
+        assertEquals(Diagnostic.Code.EXPECTED_IDENTIFIER_AFTER_INT, onlyError(parser));
+        assertEquals(2, parser.getRoot().getDeclarations().size());
+    }
+}
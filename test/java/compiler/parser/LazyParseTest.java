@@ -0,0 +1,152 @@
+package compiler.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import compiler.parser.AST.*;
+import compiler.scanner.TokenBuffer;
+import compiler.scanner.cminusMapped;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * CMinusParser.parseLazy must end up with the tree and the errors of
+ * parse().
+ */
+class LazyParseTest {
+    private static final String ERRORS = "int f(int a) {\n  return a;\n}\nint 5;\n"
+            + "void main(void) { int y; y = 1 2; while (y) { y = y - 1 } }\n";
+
+    private static TokenBuffer scan(String source) {
+        return new cminusMapped(ByteBuffer.wrap(source.getBytes(StandardCharsets.ISO_8859_1))).scanAll();
+    }
+
+    private static CMinusParser eager(String source, int maxErrors) throws IOException {
+        CMinusParser parser = new CMinusParser(scan(source).cursor());
+        parser.setMaxErrors(maxErrors);
+        parser.parse();
+        return parser;
+    }
+
+    private static CMinusParser lazy(String source, int maxErrors) throws IOException {
+        CMinusParser parser = new CMinusParser(scan(source).cursor());
+        parser.setMaxErrors(maxErrors);
+        parser.parseLazy();
+        return parser;
+    }
+
+    private static String print(CMinusParser parser) throws IOException {
+        StringWriter out = new StringWriter();
+        parser.printTree(out);
+        return out.toString();
+    }
+
+    @Test
+    void bodiesAreParsedOnDemand() throws IOException {
+        String source = "int add(int a, int b[]) { return a + b[0]; }\nvoid main(void) { output(add(1, 2)); }\n";
+        CMinusParser parser = lazy(source, CMinusParser.DEFAULT_MAX_ERRORS);
+        FunDeclarationNode add = (FunDeclarationNode) parser.getRoot().getDeclarations().get(0);
+        assertEquals("add", add.getName());
+        assertEquals(2, add.getParams().size());
+        assertFalse(add.isBodyParsed());
+        assertNotNull(add.getBody());
+        assertTrue(add.isBodyParsed());
+        assertEquals(print(eager(source, CMinusParser.DEFAULT_MAX_ERRORS)), print(parser));
+    }
+
+    @Test
+    void sameErrorsAsEager() throws IOException {
+        for (int maxErrors = 1; maxErrors <= 5; maxErrors++) {
+            CMinusParser eager = eager(ERRORS, maxErrors);
+            CMinusParser lazy = lazy(ERRORS, maxErrors);
+            assertEquals(print(eager), print(lazy), "maxErrors " + maxErrors);
+            assertEquals(eager.getErrors(), lazy.getErrors(), "maxErrors " + maxErrors);
+            assertEquals(eager.getRoot() == null, lazy.getRoot() == null, "maxErrors " + maxErrors);
+        }
+    }
+
+    @Test
+    void errorLimitCountsBodies() throws IOException {
+        String source = "void f(void) { 1 2; 3 4; }\nvoid g(void) { 5 6; 7 8; }\nvoid main(void) { }\n";
+        CMinusParser parser = lazy(source, 3);
+        assertTrue(parser.getDiagnostics().isEmpty());
+        assertEquals(3, parser.parseBodies());
+        List<Diagnostic> errors = parser.getDiagnostics();
+        assertEquals(4, errors.size());
+        assertEquals(Diagnostic.Code.TOO_MANY_ERRORS, errors.get(3).getCode());
+        assertEquals(2, errors.get(3).getLine());
+        assertNull(parser.getRoot());
+        assertEquals(eager(source, 3).getErrors(), parser.getErrors());
+    }
+
+    @Test
+    void errorsInOrderOfTokens() throws IOException {
+        String source = "void f(void) { 1 2; } int 5; void g(void) { 3 4; }\nvoid main(void) { }\n";
+        CMinusParser lazy = lazy(source, CMinusParser.DEFAULT_MAX_ERRORS);
+        assertEquals(1, lazy.getErrors().size());
+        lazy.parseBodies();
+        assertEquals(eager(source, CMinusParser.DEFAULT_MAX_ERRORS).getErrors(), lazy.getErrors());
+        assertEquals(print(eager(source, 2)), print(lazy(source, 2)));
+    }
+
+    @Test
+    void headerStopIncludesEarlierBodies() throws IOException {
+        String source = "void f(void) { 1 2; }\nint 5;\nint 6;\nint 7;\nvoid main(void) { }\n";
+        CMinusParser lazy = lazy(source, 2);
+        assertNull(lazy.getRoot());
+        assertEquals(eager(source, 2).getErrors(), lazy.getErrors());
+    }
+
+    @Test
+    void diagnosticsAreASnapshot() throws IOException {
+        CMinusParser parser = lazy(ERRORS, CMinusParser.DEFAULT_MAX_ERRORS);
+        List<Diagnostic> before = parser.getDiagnostics();
+        assertEquals(1, before.size());
+        parser.parseBodies();
+        assertEquals(1, before.size());
+        assertEquals(3, parser.getDiagnostics().size());
+    }
+
+    @Test
+    void bodiesParsedFromSeveralThreads() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            source.append("int f").append(i).append("(int a) { int b; b = a * ").append(i).append("; 1 2; return b; }\n");
+        }
+        source.append("void main(void) { }\n");
+        CMinusParser parser = lazy(source.toString(), Integer.MAX_VALUE);
+        List<DeclarationNode> declarations = parser.getRoot().getDeclarations();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<CompoundStmtNode>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(pool.submit(() -> {
+                    List<CompoundStmtNode> bodies = new ArrayList<>();
+                    for (DeclarationNode declaration : declarations) {
+                        bodies.add(((FunDeclarationNode) declaration).getBody());
+                    }
+                    return bodies;
+                }));
+            }
+            List<CompoundStmtNode> first = results.get(0).get();
+            for (Future<List<CompoundStmtNode>> result : results) {
+                List<CompoundStmtNode> bodies = result.get();
+                for (int i = 0; i < bodies.size(); i++) {
+                    assertSame(first.get(i), bodies.get(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(200, parser.getDiagnostics().size());
+        assertEquals(print(eager(source.toString(), Integer.MAX_VALUE)), print(parser));
+    }
+}
@@ -0,0 +1,136 @@
+package compiler.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import compiler.parser.AST.FlatTree;
+import compiler.parser.AST.TreePrinter;
+import compiler.scanner.cminus;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Hits, misses and damaged entries of a ParseCache.
+ */
+class ParseCacheTest {
+    private static final String SOURCE = "int x;\nvoid main(void) { x = 1 2; output(x); }\n";
+
+    @TempDir
+    Path directory;
+
+    private static CMinusParser parse(String source) throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.parseFlat();
+        return parser;
+    }
+
+    private static String print(FlatTree tree) throws IOException {
+        StringWriter out = new StringWriter();
+        TreePrinter printer = new TreePrinter(out);
+        tree.printTree(printer, tree.root(), 0);
+        printer.flush();
+        return out.toString();
+    }
+
+    private static String key(String source, String engine) {
+        return ParseCache.key(source.getBytes(StandardCharsets.ISO_8859_1), engine, CMinusParser.DEFAULT_MAX_ERRORS);
+    }
+
+    private Path entryFile(String key) {
+        return directory.resolve(key + ".entry");
+    }
+
+    @Test
+    void missThenHit() throws IOException {
+        ParseCache cache = new ParseCache(directory, ParseCache.DEFAULT_MAX_BYTES);
+        String key = key(SOURCE, "cminus");
+        assertNull(cache.get(key));
+
+        CMinusParser parser = parse(SOURCE);
+        cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+        ParseCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        assertEquals(parser.getErrors(), entry.getErrors());
+        assertEquals(print(parser.getFlatRoot()), print(entry.getTree()));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void keyDependsOnEngineAndErrorLimit() {
+        byte[] source = SOURCE.getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(key(SOURCE, "cminus"), key(SOURCE, "cminus"));
+        assertNotEquals(key(SOURCE, "cminus"), key(SOURCE, "jflex"));
+        assertNotEquals(ParseCache.key(source, "cminus", 1), ParseCache.key(source, "cminus", 2));
+    }
+
+    @Test
+    void truncatedEntryIsAMiss() throws IOException {
+        ParseCache cache = new ParseCache(directory, ParseCache.DEFAULT_MAX_BYTES);
+        String key = key(SOURCE, "cminus");
+        CMinusParser parser = parse(SOURCE);
+        cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+
+        byte[] bytes = Files.readAllBytes(entryFile(key));
+        Files.write(entryFile(key), Arrays.copyOf(bytes, bytes.length - 8));
+        assertNull(cache.get(key));
+        assertEquals(1, cache.getMisses());
+        assertFalse(Files.exists(entryFile(key)));
+    }
+
+    @Test
+    void corruptTreeIsAMiss() throws IOException {
+        ParseCache cache = new ParseCache(directory, ParseCache.DEFAULT_MAX_BYTES);
+        String key = key(SOURCE, "cminus");
+        CMinusParser parser = parse(SOURCE);
+        cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+
+        byte[] bytes = Files.readAllBytes(entryFile(key));
+        for (int i = bytes.length - 40; i < bytes.length; i++) {
+            bytes[i] = (byte) 0xFF;
+        }
+        Files.write(entryFile(key), bytes);
+        assertNull(cache.get(key));
+        assertFalse(Files.exists(entryFile(key)));
+    }
+
+    @Test
+    void flippedByteIsAMiss() throws IOException {
+        ParseCache cache = new ParseCache(directory, ParseCache.DEFAULT_MAX_BYTES);
+        String key = key(SOURCE, "cminus");
+        CMinusParser parser = parse(SOURCE);
+        cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+        byte[] bytes = Files.readAllBytes(entryFile(key));
+
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] damaged = bytes.clone();
+            damaged[i] ^= 1 << (i % 8);
+            Files.write(entryFile(key), damaged);
+            assertNull(cache.get(key), "byte " + i);
+            assertFalse(Files.exists(entryFile(key)), "byte " + i);
+        }
+        assertEquals(bytes.length, cache.getMisses());
+    }
+
+    @Test
+    void stoppedParseIsCached() throws IOException {
+        ParseCache cache = new ParseCache(directory, ParseCache.DEFAULT_MAX_BYTES);
+        String source = "void main(void) { 1 2; 3 4; }";
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.setMaxErrors(1);
+        parser.parseFlat();
+        String key = ParseCache.key(source.getBytes(StandardCharsets.ISO_8859_1), "cminus", 1);
+        cache.put(key, parser.getFlatRoot(), parser.getDiagnostics());
+
+        ParseCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        assertNull(entry.getTree());
+        assertEquals(parser.getErrors(), entry.getErrors());
+    }
+}
@@ -0,0 +1,78 @@
+package compiler.tm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import compiler.interpreter.ClosureCompiler;
+import compiler.interpreter.InterpreterException;
+import compiler.parser.CMinusParser;
+import compiler.parser.AST.ProgramNode;
+import compiler.scanner.cminus;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TM code must do what the ClosureCompiler does, with and without
+ * register allocation and the Peephole.
+ */
+class TmCodeGeneratorTest {
+
+    private static ProgramNode parse(String source) throws IOException {
+        CMinusParser parser = new CMinusParser(new cminus(new StringReader(source)));
+        parser.parse();
+        assertTrue(parser.getDiagnostics().isEmpty(), parser.getErrors().toString());
+        return parser.getRoot();
+    }
+
+    private static List<Integer> interpret(ProgramNode program) {
+        List<Integer> output = new ArrayList<>();
+        ClosureCompiler.compile(program).run(() -> 0, output::add);
+        return output;
+    }
+
+    private static void assertSameAsInterpreter(String source) throws IOException {
+        ProgramNode program = parse(source);
+        List<Integer> expected = interpret(program);
+        for (int mode = 0; mode < 4; mode++) {
+            TmProgram code = TmCodeGenerator.generate(program, "test.cm", mode % 2 == 0, mode < 2);
+            List<Integer> output = new ArrayList<>();
+            new TmMachine(code).run(() -> 0, output::add);
+            assertEquals(expected, output, "mode " + mode);
+        }
+    }
+
+    private static void assertSameError(String source) throws IOException {
+        ProgramNode program = parse(source);
+        String expected = assertThrows(InterpreterException.class, () -> interpret(program)).getMessage();
+        for (int mode = 0; mode < 4; mode++) {
+            TmProgram code = TmCodeGenerator.generate(program, "test.cm", mode % 2 == 0, mode < 2);
+            InterpreterException e = assertThrows(InterpreterException.class,
+                    () -> new TmMachine(code).run(() -> 0, value -> { }));
+            assertEquals(expected, e.getMessage(), "mode " + mode);
+        }
+    }
+
+    @Test
+    void comparisonsThatOverflow() throws IOException {
+        assertSameAsInterpreter("void main(void) { int a; int b; int c;\n"
+                + "a = 2147483647; b = 0 - 2; c = 0 - 2147483647 - 1;\n"
+                + "output(a > b); output(b < a); output(a <= b); output(b >= a);\n"
+                + "output(c < a); output(a > c); output(c < 1); output(a > 0 - 5); output(c >= 3);\n"
+                + "if (b < a) output(1); else output(0);\n"
+                + "while (c < a) { c = a; output(2); } }");
+    }
+
+    @Test
+    void indexOutsideArray() throws IOException {
+        assertSameError("int a[3];\nvoid main(void) { a[0] = 1; output(a[3]); }");
+        assertSameError("int f(int p[], int i) { return p[i]; }\n"
+                + "void main(void) { int a[3]; output(f(a, 2)); output(f(a, 0 - 1)); }");
+    }
+
+    @Test
+    void valueBeforeIndexCheck() throws IOException {
+        assertSameError("int a[3]; int z;\nvoid main(void) { a[5] = 1 / z; }");
+    }
+}